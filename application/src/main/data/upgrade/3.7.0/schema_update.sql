@@ -213,3 +213,142 @@ UPDATE admin_settings SET json_value = (json_value::jsonb || '{"userActivationTo
     WHERE key = 'securitySettings';
 
 -- USER CREDENTIALS UPDATE END
+
+-- TIME SERIES ROLLUPS START
+
+CREATE TABLE IF NOT EXISTS ts_rollup
+(
+    entity_id   uuid   NOT NULL,
+    key         int    NOT NULL,
+    bucket_size bigint NOT NULL,
+    ts          bigint NOT NULL,
+    bool_count  bigint NOT NULL,
+    str_count   bigint NOT NULL,
+    json_count  bigint NOT NULL,
+    long_count  bigint NOT NULL,
+    long_sum    numeric,
+    long_min    bigint,
+    long_max    bigint,
+    dbl_count   bigint NOT NULL,
+    dbl_sum     double precision,
+    dbl_min     double precision,
+    dbl_max     double precision,
+    max_ts      bigint NOT NULL,
+    CONSTRAINT ts_rollup_pkey PRIMARY KEY (entity_id, key, bucket_size, ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_coverage
+(
+    id          int    NOT NULL,
+    start_ts    bigint NOT NULL,
+    end_ts      bigint NOT NULL,
+    backfill_ts bigint NOT NULL,
+    CONSTRAINT ts_rollup_coverage_pkey PRIMARY KEY (id)
+);
+
+CREATE OR REPLACE FUNCTION delete_records_from_ts_rollup(entity_ids varchar, ttl bigint, OUT deleted bigint) AS
+$$
+DECLARE
+    bucket_sizes       bigint[] := ARRAY [60000, 3600000, 86400000];
+    source_bucket_size bigint   := NULL;
+    size               bigint;
+    bucket_start       bigint;
+BEGIN
+    EXECUTE format(
+            'WITH deleted AS (DELETE FROM ts_rollup WHERE entity_id IN (%s) AND ts < %L::bigint RETURNING *) SELECT count(*) FROM deleted',
+            entity_ids, ttl) into deleted;
+    -- the buckets that contain the expiration time are rebuilt from the data that is left, from the finest to the coarsest one
+    FOREACH size IN ARRAY bucket_sizes
+        LOOP
+            bucket_start := ttl - ttl % size;
+            IF bucket_start < ttl THEN
+                IF source_bucket_size IS NULL THEN
+                    EXECUTE format(
+                            'INSERT INTO ts_rollup (entity_id, key, bucket_size, ts, bool_count, str_count, json_count, long_count, long_sum, long_min, long_max, ' ||
+                            'dbl_count, dbl_sum, dbl_min, dbl_max, max_ts) ' ||
+                            'SELECT entity_id, key, %L::bigint, %L::bigint, COUNT(bool_v), COUNT(str_v), COUNT(json_v), COUNT(long_v), SUM(long_v), MIN(long_v), MAX(long_v), ' ||
+                            'COUNT(dbl_v), SUM(dbl_v), MIN(dbl_v), MAX(dbl_v), MAX(ts) ' ||
+                            'FROM ts_kv WHERE entity_id IN (%s) AND ts >= %L::bigint AND ts < %L::bigint GROUP BY entity_id, key ON CONFLICT ON CONSTRAINT ts_rollup_pkey DO NOTHING',
+                            size, bucket_start, entity_ids, ttl, bucket_start + size);
+                ELSE
+                    EXECUTE format(
+                            'INSERT INTO ts_rollup (entity_id, key, bucket_size, ts, bool_count, str_count, json_count, long_count, long_sum, long_min, long_max, ' ||
+                            'dbl_count, dbl_sum, dbl_min, dbl_max, max_ts) ' ||
+                            'SELECT entity_id, key, %L::bigint, %L::bigint, SUM(bool_count), SUM(str_count), SUM(json_count), SUM(long_count), SUM(long_sum), MIN(long_min), MAX(long_max), ' ||
+                            'SUM(dbl_count), SUM(dbl_sum), MIN(dbl_min), MAX(dbl_max), MAX(max_ts) ' ||
+                            'FROM ts_rollup WHERE bucket_size = %L::bigint AND entity_id IN (%s) AND ts >= %L::bigint AND ts < %L::bigint GROUP BY entity_id, key ON CONFLICT ON CONSTRAINT ts_rollup_pkey DO NOTHING',
+                            size, bucket_start, source_bucket_size, entity_ids, bucket_start, bucket_start + size);
+                END IF;
+            END IF;
+            source_bucket_size := size;
+        END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE PROCEDURE cleanup_timeseries_rollups_by_ttl(IN null_uuid uuid,
+                                                              IN system_ttl bigint, INOUT deleted bigint)
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    tenant_cursor CURSOR FOR select tenant.id as tenant_id
+                             from tenant;
+    tenant_id_record     uuid;
+    customer_id_record   uuid;
+    tenant_ttl           bigint;
+    customer_ttl         bigint;
+    deleted_for_entities bigint;
+    tenant_ttl_ts        bigint;
+    customer_ttl_ts      bigint;
+BEGIN
+    OPEN tenant_cursor;
+    FETCH tenant_cursor INTO tenant_id_record;
+    WHILE FOUND
+        LOOP
+            EXECUTE format(
+                    'select attribute_kv.long_v from attribute_kv where attribute_kv.entity_id = %L and attribute_kv.attribute_key = (select key_id from key_dictionary where key = %L)',
+                    tenant_id_record, 'TTL') INTO tenant_ttl;
+            if tenant_ttl IS NULL THEN
+                tenant_ttl := system_ttl;
+            END IF;
+            IF tenant_ttl > 0 THEN
+                tenant_ttl_ts := (EXTRACT(EPOCH FROM current_timestamp) * 1000 - tenant_ttl::bigint * 1000)::bigint;
+                deleted_for_entities := delete_records_from_ts_rollup(
+                        format('SELECT id FROM device WHERE tenant_id = %L AND customer_id = %L', tenant_id_record, null_uuid), tenant_ttl_ts);
+                deleted := deleted + deleted_for_entities;
+                deleted_for_entities := delete_records_from_ts_rollup(
+                        format('SELECT id FROM asset WHERE tenant_id = %L AND customer_id = %L', tenant_id_record, null_uuid), tenant_ttl_ts);
+                deleted := deleted + deleted_for_entities;
+            END IF;
+            FOR customer_id_record IN
+                SELECT customer.id AS customer_id FROM customer WHERE customer.tenant_id = tenant_id_record
+                LOOP
+                    EXECUTE format(
+                            'select attribute_kv.long_v from attribute_kv where attribute_kv.entity_id = %L and attribute_kv.attribute_key = (select key_id from key_dictionary where key = %L)',
+                            customer_id_record, 'TTL') INTO customer_ttl;
+                    IF customer_ttl IS NULL THEN
+                        customer_ttl_ts := tenant_ttl_ts;
+                    ELSE
+                        IF customer_ttl > 0 THEN
+                            customer_ttl_ts :=
+                                    (EXTRACT(EPOCH FROM current_timestamp) * 1000 -
+                                     customer_ttl::bigint * 1000)::bigint;
+                        END IF;
+                    END IF;
+                    IF customer_ttl_ts IS NOT NULL AND customer_ttl_ts > 0 THEN
+                        deleted_for_entities := delete_records_from_ts_rollup(
+                                format('SELECT id FROM customer WHERE tenant_id = %L AND id = %L', tenant_id_record, customer_id_record), customer_ttl_ts);
+                        deleted := deleted + deleted_for_entities;
+                        deleted_for_entities := delete_records_from_ts_rollup(
+                                format('SELECT id FROM device WHERE tenant_id = %L AND customer_id = %L', tenant_id_record, customer_id_record), customer_ttl_ts);
+                        deleted := deleted + deleted_for_entities;
+                        deleted_for_entities := delete_records_from_ts_rollup(
+                                format('SELECT id FROM asset WHERE tenant_id = %L AND customer_id = %L', tenant_id_record, customer_id_record), customer_ttl_ts);
+                        deleted := deleted + deleted_for_entities;
+                    END IF;
+                END LOOP;
+            FETCH tenant_cursor INTO tenant_id_record;
+        END LOOP;
+END
+$$;
+
+-- TIME SERIES ROLLUPS END
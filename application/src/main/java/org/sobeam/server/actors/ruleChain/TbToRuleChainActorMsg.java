@@ -44,7 +44,11 @@ public abstract class TbToRuleChainActorMsg extends TbRuleEngineActorMsg impleme
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", target.getId()) : String.format("Failed to initialize rule chain [%s]!", target.getId());
+        String message = switch (reason) {
+            case STOPPED -> String.format("Rule chain [%s] stopped", target.getId());
+            case MAILBOX_OVERFLOW -> String.format("Rule chain [%s] mailbox is full!", target.getId());
+            default -> String.format("Failed to initialize rule chain [%s]!", target.getId());
+        };
         msg.getCallback().onFailure(new RuleEngineException(message));
     }
 }
@@ -21,25 +21,39 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.sobeam.common.util.SoBeamExecutors;
-import org.sobeam.common.util.SoBeamThreadFactory;
 import org.sobeam.server.actors.ActorSystemContext;
 import org.sobeam.server.actors.DefaultTbActorSystem;
+import org.sobeam.server.actors.TbActorDispatcherExecutors;
+import org.sobeam.server.actors.TbActorId;
+import org.sobeam.server.actors.TbActorMailboxOverflowPolicy;
+import org.sobeam.server.actors.TbActorMailboxType;
 import org.sobeam.server.actors.TbActorRef;
 import org.sobeam.server.actors.TbActorSystem;
 import org.sobeam.server.actors.TbActorSystemSettings;
+import org.sobeam.server.actors.TbEntityActorId;
+import org.sobeam.server.actors.TbTenantQueueingStats;
 import org.sobeam.server.actors.app.AppActor;
 import org.sobeam.server.actors.app.AppInitMsg;
 import org.sobeam.server.actors.stats.StatsActor;
+import org.sobeam.server.common.data.TenantProfile;
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
 import org.sobeam.server.common.msg.queue.PartitionChangeMsg;
 import org.sobeam.server.common.msg.queue.ServiceType;
+import org.sobeam.server.common.stats.DefaultCounter;
+import org.sobeam.server.common.stats.StatsFactory;
 import org.sobeam.server.queue.discovery.TbApplicationEventListener;
 import org.sobeam.server.queue.discovery.event.PartitionChangeEvent;
 import org.sobeam.server.queue.util.AfterStartUp;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -53,6 +67,9 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     private TbActorSystem system;
 
     private TbActorRef appActor;
@@ -78,17 +95,39 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:8}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.mailbox.type:LINKED}")
+    private TbActorMailboxType mailboxType;
+
+    @Value("${actors.system.mailbox.capacity:64}")
+    private int mailboxCapacity;
+
+    @Value("${actors.system.mailbox.overflow_policy:REJECT}")
+    private TbActorMailboxOverflowPolicy mailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.back_pressure_timeout_ms:1000}")
+    private long mailboxBackPressureTimeoutMs;
+
+    @Value("${actors.system.tenant_fair_scheduling.enabled:false}")
+    private boolean tenantFairSchedulingEnabled;
+
+    @Value("${actors.statistics.enabled:true}")
+    private boolean statisticsEnabled;
+
+    private final ConcurrentMap<String, AtomicLong> queueingDelayGauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DefaultCounter> mailboxOverflowCounters = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
-        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts,
+                mailboxType, mailboxCapacity, mailboxOverflowPolicy, mailboxBackPressureTimeoutMs);
         system = new DefaultTbActorSystem(settings);
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
-        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
-        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        createTenantDispatcher(TENANT_DISPATCHER_NAME, tenantDispatcherSize);
+        createTenantDispatcher(DEVICE_DISPATCHER_NAME, deviceDispatcherSize);
+        createTenantDispatcher(RULE_DISPATCHER_NAME, ruleDispatcherSize);
 
         actorContext.setActorSystem(system);
 
@@ -101,15 +140,81 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         log.info("Actor system initialized.");
     }
 
+    private void createTenantDispatcher(String dispatcherName, int poolSize) {
+        ExecutorService executor = initDispatcherExecutor(dispatcherName, poolSize);
+        if (tenantFairSchedulingEnabled) {
+            system.createTenantFairDispatcher(dispatcherName, executor, this::getSchedulingWeight);
+        } else {
+            system.createDispatcher(dispatcherName, executor);
+        }
+    }
+
+    private int getSchedulingWeight(TbActorId tenantActorId) {
+        if (tenantActorId instanceof TbEntityActorId entityActorId) {
+            TenantProfile tenantProfile = actorContext.getTenantProfileCache().get(TenantId.fromUUID(entityActorId.getEntityId().getId()));
+            DefaultTenantProfileConfiguration configuration = tenantProfile != null ? tenantProfile.getDefaultProfileConfiguration() : null;
+            if (configuration != null && configuration.getActorSchedulingWeight() > 0) {
+                return configuration.getActorSchedulingWeight();
+            }
+        }
+        return 1;
+    }
+
+    @Scheduled(fixedDelayString = "${actors.system.tenant_fair_scheduling.stats_print_interval_ms:60000}")
+    public void reportTenantQueueingStats() {
+        if (!tenantFairSchedulingEnabled || system == null) {
+            return;
+        }
+        system.refreshSchedulingWeights();
+        for (String dispatcherName : List.of(TENANT_DISPATCHER_NAME, DEVICE_DISPATCHER_NAME, RULE_DISPATCHER_NAME)) {
+            for (TbTenantQueueingStats stats : system.getTenantQueueingStats(dispatcherName)) {
+                String tenantId = stats.getTenantActorId() instanceof TbEntityActorId entityActorId ?
+                        entityActorId.getEntityId().getId().toString() : "system";
+                long avgDelayMs = TimeUnit.NANOSECONDS.toMillis(stats.getAvgDelayNanos());
+                long maxDelayMs = TimeUnit.NANOSECONDS.toMillis(stats.getMaxDelayNanos());
+                if (statisticsEnabled) {
+                    getQueueingDelayGauge("actorQueueingDelayAvg", dispatcherName, tenantId).set(avgDelayMs);
+                    getQueueingDelayGauge("actorQueueingDelayMax", dispatcherName, tenantId).set(maxDelayMs);
+                }
+                if (stats.getTasks() > 0) {
+                    log.debug("[{}][{}] Tenant queueing stats: weight [{}] tasks [{}] queued [{}] avg delay [{}ms] max delay [{}ms]",
+                            dispatcherName, tenantId, stats.getWeight(), stats.getTasks(), stats.getQueueSize(), avgDelayMs, maxDelayMs);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${actors.system.mailbox.stats_print_interval_ms:60000}")
+    public void reportMailboxOverflows() {
+        if (mailboxType != TbActorMailboxType.RING_BUFFER || system == null) {
+            return;
+        }
+        for (String dispatcherName : List.of(APP_DISPATCHER_NAME, TENANT_DISPATCHER_NAME, DEVICE_DISPATCHER_NAME, RULE_DISPATCHER_NAME)) {
+            long dropped = system.getMailboxOverflowCount(dispatcherName);
+            if (dropped > 0) {
+                if (statisticsEnabled) {
+                    mailboxOverflowCounters.computeIfAbsent(dispatcherName, name ->
+                            statsFactory.createDefaultCounter("actorMailboxOverflow", "dispatcher", name)).add((int) dropped);
+                }
+                log.warn("[{}] Dropped {} messages because the actor mailboxes were full", dispatcherName, dropped);
+            }
+        }
+    }
+
+    private AtomicLong getQueueingDelayGauge(String key, String dispatcherName, String tenantId) {
+        return queueingDelayGauges.computeIfAbsent(key + "|" + dispatcherName + "|" + tenantId, k ->
+                statsFactory.createGauge(key, new AtomicLong(), "dispatcher", dispatcherName, "tenantId", tenantId));
+    }
+
     private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
         if (poolSize == 0) {
             int cores = Runtime.getRuntime().availableProcessors();
             poolSize = Math.max(1, cores / 2);
         }
         if (poolSize == 1) {
-            return Executors.newSingleThreadExecutor(SoBeamThreadFactory.forName(dispatcherName));
+            return TbActorDispatcherExecutors.newSingleThreadExecutor(dispatcherName);
         } else {
-            return SoBeamExecutors.newWorkStealingPool(poolSize, dispatcherName);
+            return TbActorDispatcherExecutors.newWorkStealingPool(poolSize, dispatcherName);
         }
     }
 
@@ -32,9 +32,12 @@ import org.springframework.beans.factory.BeanCreationNotAllowedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
@@ -48,6 +51,8 @@ import org.sobeam.server.common.data.id.TenantId;
 import org.sobeam.server.common.data.id.UserId;
 import org.sobeam.server.common.data.limit.LimitedApi;
 import org.sobeam.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
+import org.sobeam.server.common.stats.DefaultCounter;
+import org.sobeam.server.common.stats.StatsFactory;
 import org.sobeam.server.config.WebSocketConfiguration;
 import org.sobeam.server.dao.tenant.TbTenantProfileCache;
 import org.sobeam.server.queue.util.TbCoreComponent;
@@ -58,16 +63,24 @@ import org.sobeam.server.service.security.model.UserPrincipal;
 import org.sobeam.server.service.subscription.SubscriptionErrorCode;
 import org.sobeam.server.service.ws.AuthCmd;
 import org.sobeam.server.service.ws.SessionEvent;
+import org.sobeam.server.service.ws.WebSocketCborUtil;
 import org.sobeam.server.service.ws.WebSocketMsgEndpoint;
+import org.sobeam.server.service.ws.WebSocketPayloadFormat;
 import org.sobeam.server.service.ws.WebSocketService;
 import org.sobeam.server.service.ws.WebSocketSessionRef;
 import org.sobeam.server.service.ws.WebSocketSessionType;
 import org.sobeam.server.service.ws.WsCommandsWrapper;
 import org.sobeam.server.service.ws.notification.cmd.NotificationCmdsWrapper;
 import org.sobeam.server.service.ws.telemetry.cmd.TelemetryCmdsWrapper;
+import org.sobeam.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -80,6 +93,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import static org.sobeam.server.service.ws.DefaultWebSocketService.NUMBER_OF_PING_ATTEMPTS;
 
@@ -87,7 +101,7 @@ import static org.sobeam.server.service.ws.DefaultWebSocketService.NUMBER_OF_PIN
 @TbCoreComponent
 @Slf4j
 @RequiredArgsConstructor
-public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint {
+public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint, SubProtocolCapable {
 
     private final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
@@ -100,6 +114,8 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     private RateLimitService rateLimitService;
     @Autowired
     private JwtAuthenticationProvider authenticationProvider;
+    @Autowired
+    private StatsFactory statsFactory;
 
     @Value("${server.ws.send_timeout:5000}")
     private long sendTimeout;
@@ -109,6 +125,14 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     private int wsMaxQueueMessagesPerSession;
     @Value("${server.ws.auth_timeout_ms:10000}")
     private int authTimeoutMs;
+    @Value("${server.ws.outbox.conflation_enabled:true}")
+    private boolean outboxConflationEnabled;
+    @Value("${server.ws.outbox.max_points_per_msg:1000}")
+    private int outboxMaxPointsPerMsg;
+    @Value("${server.ws.outbox.stats_top_sessions:5}")
+    private int outboxStatsTopSessions;
+    @Value("${server.ws.cbor_enabled:true}")
+    private boolean cborEnabled;
 
     private final ConcurrentMap<String, WebSocketSessionRef> blacklistedSessions = new ConcurrentHashMap<>();
 
@@ -119,8 +143,15 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
 
     private Cache<String, SessionMetaData> pendingSessions;
 
+    private DefaultCounter conflatedUpdatesCounter;
+    private AtomicInteger outboxQueueDepthTotal;
+    private AtomicInteger outboxQueueDepthMax;
+
     @PostConstruct
     private void init() {
+        conflatedUpdatesCounter = statsFactory.createDefaultCounter("wsOutbox", "type", "conflatedUpdates");
+        outboxQueueDepthTotal = statsFactory.createGauge("wsOutbox", new AtomicInteger(), "type", "queueDepthTotal");
+        outboxQueueDepthMax = statsFactory.createGauge("wsOutbox", new AtomicInteger(), "type", "queueDepthMax");
         pendingSessions = Caffeine.newBuilder()
                 .expireAfterWrite(authTimeoutMs, TimeUnit.MILLISECONDS)
                 .<String, SessionMetaData>removalListener((sessionId, sessionMd, removalCause) -> {
@@ -140,6 +171,46 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         internalSessionMap.clear();
     }
 
+    @Scheduled(fixedDelayString = "${server.ws.outbox.stats_interval_ms:60000}")
+    public void reportOutboxStats() {
+        int total = 0;
+        int max = 0;
+        List<SessionOutboxStats> sessionsStats = new ArrayList<>();
+        for (SessionMetaData sessionMd : internalSessionMap.values()) {
+            int queueDepth = sessionMd.getOutboundMsgQueueSize();
+            int sessionConflated = sessionMd.conflatedUpdates.getAndSet(0);
+            total += queueDepth;
+            max = Math.max(max, queueDepth);
+            if (queueDepth > sessionMd.maxMsgQueueSize / 2) {
+                log.debug("{} Outbound queue depth: {} of {}", sessionMd.sessionRef, queueDepth, sessionMd.maxMsgQueueSize);
+            }
+            if (queueDepth > 0 || sessionConflated > 0) {
+                sessionsStats.add(new SessionOutboxStats(sessionMd.sessionRef.getSessionId(), queueDepth, sessionConflated));
+            }
+        }
+        outboxQueueDepthTotal.set(total);
+        outboxQueueDepthMax.set(max);
+        int conflated = conflatedUpdatesCounter.get();
+        conflatedUpdatesCounter.clear();
+        if (total > 0 || conflated > 0) {
+            log.info("WS outbox stats: sessions [{}], total queue depth [{}], max queue depth [{}], conflated updates [{}]",
+                    internalSessionMap.size(), total, max, conflated);
+            if (outboxStatsTopSessions > 0) {
+                // the sessions are logged instead of being exported as metrics to keep the number of the metric tags bounded
+                String topSessions = sessionsStats.stream()
+                        .sorted(Comparator.comparingInt(SessionOutboxStats::queueDepth)
+                                .thenComparingInt(SessionOutboxStats::conflatedUpdates).reversed())
+                        .limit(outboxStatsTopSessions)
+                        .map(SessionOutboxStats::toString)
+                        .collect(Collectors.joining(", "));
+                log.info("WS outbox top sessions: {}", topSessions);
+            }
+        }
+    }
+
+    private record SessionOutboxStats(String sessionId, int queueDepth, int conflatedUpdates) {
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -155,6 +226,42 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         }
     }
 
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        try {
+            SessionMetaData sessionMd = getSessionMd(session.getId());
+            if (sessionMd == null) {
+                log.trace("[{}] Failed to find session", session.getId());
+                session.close(CloseStatus.SERVER_ERROR.withReason("Session not found!"));
+                return;
+            }
+            if (sessionMd.sessionRef.getPayloadFormat() != WebSocketPayloadFormat.CBOR) {
+                session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Binary messages not supported"));
+                return;
+            }
+            ByteBuffer payload = message.getPayload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            String msg;
+            try {
+                // Commands are rare and small, so they are decoded through the same JSON model as the text frames.
+                msg = JacksonUtil.toString(WebSocketCborUtil.toJsonNode(bytes));
+            } catch (IllegalArgumentException e) {
+                log.debug("[{}] Failed to decode CBOR msg: {}", session.getId(), e.getMessage(), e);
+                session.close(CloseStatus.BAD_DATA.withReason("Failed to decode the payload"));
+                return;
+            }
+            sessionMd.onMsg(msg);
+        } catch (IOException e) {
+            log.warn("IO error", e);
+        }
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return cborEnabled ? List.of(WebSocketPayloadFormat.CBOR.getSubProtocol()) : List.of();
+    }
+
     void processMsg(SessionMetaData sessionMd, String msg) throws IOException {
         WebSocketSessionRef sessionRef = sessionMd.sessionRef;
         WsCommandsWrapper cmdsWrapper;
@@ -338,6 +445,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 .localAddress(session.getLocalAddress())
                 .remoteAddress(session.getRemoteAddress())
                 .sessionType(sessionType)
+                .payloadFormat(WebSocketPayloadFormat.forSubProtocol(session.getAcceptedProtocol()))
                 .build();
     }
 
@@ -357,6 +465,8 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         final AtomicBoolean isSending = new AtomicBoolean(false);
         private final Queue<TbWebSocketMsg<?>> outboundMsgQueue = new ConcurrentLinkedQueue<>();
         private final AtomicInteger outboundMsgQueueSize = new AtomicInteger();
+        private final ConcurrentMap<Integer, TbWebSocketTelemetryMsg<?>> pendingTelemetryMsgs = new ConcurrentHashMap<>();
+        private final AtomicInteger conflatedUpdates = new AtomicInteger();
         @Setter
         private int maxMsgQueueSize = wsMaxQueueMessagesPerSession;
 
@@ -396,6 +506,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 log.trace("{} Session transport error", sessionRef, ioe);
             } finally {
                 outboundMsgQueue.clear();
+                pendingTelemetryMsgs.clear();
             }
         }
 
@@ -407,6 +518,37 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             sendMsg(new TbWebSocketTextMsg(msg));
         }
 
+        void sendMsg(byte[] msg) {
+            sendMsg(new TbWebSocketBinaryMsg(ByteBuffer.wrap(msg)));
+        }
+
+        void sendTelemetryUpdate(int subscriptionId, TelemetrySubscriptionUpdate update, boolean latestValues) {
+            if (outboxConflationEnabled) {
+                TbWebSocketTelemetryMsg<?> pendingMsg = pendingTelemetryMsgs.get(subscriptionId);
+                if (pendingMsg != null && pendingMsg.merge(update)) {
+                    conflatedUpdatesCounter.increment();
+                    conflatedUpdates.incrementAndGet();
+                    return;
+                }
+            }
+            TbWebSocketTelemetryMsg<?> msg;
+            if (sessionRef.getPayloadFormat() == WebSocketPayloadFormat.CBOR) {
+                msg = new TbWebSocketTelemetryMsg<>(subscriptionId, update, latestValues, outboxMaxPointsPerMsg,
+                        TbWebSocketMsgType.BINARY, u -> ByteBuffer.wrap(WebSocketCborUtil.toBytes(u)));
+            } else {
+                msg = new TbWebSocketTelemetryMsg<>(subscriptionId, update, latestValues, outboxMaxPointsPerMsg,
+                        TbWebSocketMsgType.TEXT, JacksonUtil::toString);
+            }
+            if (outboxConflationEnabled) {
+                pendingTelemetryMsgs.put(subscriptionId, msg);
+            }
+            sendMsg(msg);
+        }
+
+        int getOutboundMsgQueueSize() {
+            return outboundMsgQueueSize.get();
+        }
+
         void sendMsg(TbWebSocketMsg<?> msg) {
             if (outboundMsgQueueSize.get() < maxMsgQueueSize) {
                 outboundMsgQueue.add(msg);
@@ -421,8 +563,10 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         private void sendMsgInternal(TbWebSocketMsg<?> msg) {
             try {
                 if (TbWebSocketMsgType.TEXT.equals(msg.getType())) {
-                    TbWebSocketTextMsg textMsg = (TbWebSocketTextMsg) msg;
-                    this.asyncRemote.sendText(textMsg.getMsg(), this);
+                    this.asyncRemote.sendText((String) msg.getMsg(), this);
+                    // isSending status will be reset in the onResult method by call back
+                } else if (TbWebSocketMsgType.BINARY.equals(msg.getType())) {
+                    this.asyncRemote.sendBinary((ByteBuffer) msg.getMsg(), this);
                     // isSending status will be reset in the onResult method by call back
                 } else {
                     TbWebSocketPingMsg pingMsg = (TbWebSocketPingMsg) msg;
@@ -455,6 +599,9 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
             TbWebSocketMsg<?> msg = outboundMsgQueue.poll();
             if (msg != null) {
                 outboundMsgQueueSize.decrementAndGet();
+                if (msg instanceof TbWebSocketTelemetryMsg<?> telemetryMsg) {
+                    pendingTelemetryMsgs.remove(telemetryMsg.getSubscriptionId(), telemetryMsg);
+                }
                 sendMsgInternal(msg);
             } else {
                 isSending.set(false);
@@ -487,6 +634,31 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
     @Override
     public void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
         log.debug("{} Sending {}", sessionRef, msg);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendMsg(msg);
+        }
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException {
+        log.debug("{} Sending {} bytes", sessionRef, msg.length);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendMsg(msg);
+        }
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, TelemetrySubscriptionUpdate update, boolean latestValues) throws IOException {
+        log.debug("{} Sending {}", sessionRef, update);
+        SessionMetaData sessionMd = getSessionMdForUpdate(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendTelemetryUpdate(subscriptionId, update, latestValues);
+        }
+    }
+
+    private SessionMetaData getSessionMdForUpdate(WebSocketSessionRef sessionRef, int subscriptionId) {
         String externalId = sessionRef.getSessionId();
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
@@ -496,20 +668,26 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 if (!rateLimitService.checkRateLimit(LimitedApi.WS_UPDATES_PER_SESSION, tenantId, (Object) sessionRef.getSessionId())) {
                     if (blacklistedSessions.putIfAbsent(externalId, sessionRef) == null) {
                         log.info("{} Failed to process session update. Max session updates limit reached", sessionRef);
-                        sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + SobeamErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
+                        if (sessionRef.getPayloadFormat() == WebSocketPayloadFormat.CBOR) {
+                            sessionMd.sendMsg(WebSocketCborUtil.toBytes(Map.of("subscriptionId", subscriptionId,
+                                    "errorCode", SobeamErrorCode.TOO_MANY_UPDATES.getErrorCode(), "errorMsg", "Too many updates!")));
+                        } else {
+                            sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + SobeamErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
+                        }
                     }
-                    return;
+                    return null;
                 } else {
                     log.debug("{} Session is no longer blacklisted.", sessionRef);
                     blacklistedSessions.remove(externalId);
                 }
-                sessionMd.sendMsg(msg);
+                return sessionMd;
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
             }
         } else {
             log.warn("[{}] Failed to find session by external id", externalId);
         }
+        return null;
     }
 
     @Override
@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.controller.plugin;
+
+import lombok.Getter;
+import org.sobeam.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Telemetry update of a single subscription that stays mergeable while it waits in the session outbox.
+ * Latest value subscriptions keep only the newest point per key, time series subscriptions append points.
+ * The message is encoded once, when it is taken from the outbox.
+ */
+public class TbWebSocketTelemetryMsg<T> implements TbWebSocketMsg<T> {
+
+    @Getter
+    private final int subscriptionId;
+    private final boolean latestValues;
+    private final int maxPoints;
+    private final TbWebSocketMsgType type;
+    private final Function<TelemetrySubscriptionUpdate, T> encoder;
+    private final Map<String, List<Object>> data = new TreeMap<>();
+    private int points;
+    private boolean sealed;
+
+    public TbWebSocketTelemetryMsg(int subscriptionId, TelemetrySubscriptionUpdate update, boolean latestValues, int maxPoints,
+                                   TbWebSocketMsgType type, Function<TelemetrySubscriptionUpdate, T> encoder) {
+        this.subscriptionId = subscriptionId;
+        this.latestValues = latestValues;
+        this.maxPoints = maxPoints;
+        this.type = type;
+        this.encoder = encoder;
+        doMerge(update);
+    }
+
+    @Override
+    public TbWebSocketMsgType getType() {
+        return type;
+    }
+
+    /**
+     * Merges the update into this message.
+     *
+     * @return false if the message was already taken for sending or reached the points limit, so the update needs a new message
+     */
+    public synchronized boolean merge(TelemetrySubscriptionUpdate update) {
+        if (sealed || (maxPoints > 0 && points >= maxPoints) || update.getErrorCode() != 0) {
+            return false;
+        }
+        doMerge(update);
+        return true;
+    }
+
+    @Override
+    public synchronized T getMsg() {
+        sealed = true;
+        return encoder.apply(new TelemetrySubscriptionUpdate(subscriptionId, data));
+    }
+
+    synchronized int getPoints() {
+        return points;
+    }
+
+    private void doMerge(TelemetrySubscriptionUpdate update) {
+        if (update.getData() == null) {
+            return;
+        }
+        update.getData().forEach((key, values) -> {
+            if (values == null || values.isEmpty()) {
+                return;
+            }
+            List<Object> current = data.get(key);
+            if (current == null) {
+                current = new ArrayList<>(latestValues ? List.of(values.get(values.size() - 1)) : values);
+                data.put(key, current);
+                points += current.size();
+            } else if (latestValues) {
+                Object latest = values.get(values.size() - 1);
+                if (getTs(latest) >= getTs(current.get(0))) {
+                    current.set(0, latest);
+                }
+            } else {
+                current.addAll(values);
+                points += values.size();
+            }
+        });
+    }
+
+    private static long getTs(Object point) {
+        return (long) ((Object[]) point)[0];
+    }
+
+}
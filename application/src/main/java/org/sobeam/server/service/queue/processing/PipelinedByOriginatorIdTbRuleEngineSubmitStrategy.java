@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.queue.processing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sobeam.server.common.data.id.EntityId;
+import org.sobeam.server.common.msg.TbMsg;
+import org.sobeam.server.gen.transport.TransportProtos;
+import org.sobeam.server.queue.common.TbProtoQueueMsg;
+import org.sobeam.server.service.queue.processing.TbRuleEngineOriginatorLanes.LaneMsg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Submit strategy of a single pack that keeps the messages of the same originator in order across the packs processed
+ * concurrently. The messages are submitted through the lanes shared by the packs, see {@link TbRuleEngineOriginatorLanes}.
+ */
+@Slf4j
+public class PipelinedByOriginatorIdTbRuleEngineSubmitStrategy extends AbstractTbRuleEngineSubmitStrategy {
+
+    private final TbRuleEngineOriginatorLanes lanes;
+    private final Map<UUID, EntityId> originators = new ConcurrentHashMap<>();
+    private volatile Map<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs;
+    private volatile BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer;
+    private volatile Set<UUID> attemptSubmitted = ConcurrentHashMap.newKeySet();
+    private final List<UUID> skipped = new ArrayList<>();
+    private boolean submitted;
+
+    public PipelinedByOriginatorIdTbRuleEngineSubmitStrategy(String queueName, TbRuleEngineOriginatorLanes lanes) {
+        super(queueName);
+        this.lanes = lanes;
+    }
+
+    @Override
+    public void init(List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs) {
+        super.init(msgs);
+        for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
+            EntityId originator = getEntityId(pair.msg.getValue());
+            if (originator != null) {
+                originators.put(pair.uuid, originator);
+            }
+        }
+    }
+
+    @Override
+    public void submitAttempt(BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer) {
+        this.msgConsumer = msgConsumer;
+        this.attemptSubmitted = ConcurrentHashMap.newKeySet();
+        this.msgs = toMap(orderedMsgList);
+        skipped.forEach(this::release);
+        skipped.clear();
+        List<LaneMsg> laneMsgs = new ArrayList<>(orderedMsgList.size());
+        for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
+            EntityId originator = originators.get(pair.uuid);
+            if (originator == null) {
+                submit(pair.uuid);
+            } else if (submitted) {
+                lanes.resubmit(originator, pair.uuid);
+            } else {
+                laneMsgs.add(new LaneMsg(pair.uuid, originator, this));
+            }
+        }
+        if (!submitted) {
+            submitted = true;
+            lanes.add(laneMsgs);
+        }
+    }
+
+    @Override
+    public void update(ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> reprocessMap) {
+        List<IdMsgPair<TransportProtos.ToRuleEngineMsg>> previousMsgList = orderedMsgList;
+        super.update(reprocessMap);
+        // the heads that are released meanwhile are submitted on the next attempt, not to the previous pack context
+        this.msgs = Collections.emptyMap();
+        // released on the next attempt, so the lanes do not submit the reprocessed messages to the previous pack context
+        previousMsgList.stream()
+                .filter(pair -> !reprocessMap.containsKey(pair.uuid))
+                .forEach(pair -> skipped.add(pair.uuid));
+    }
+
+    @Override
+    protected void doOnSuccess(UUID id) {
+        release(id);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        this.msgs = Collections.emptyMap();
+        skipped.forEach(this::release);
+        skipped.clear();
+        orderedMsgList.forEach(pair -> release(pair.uuid));
+    }
+
+    void submit(UUID id) {
+        TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg = msgs.get(id);
+        if (msg != null && attemptSubmitted.add(id)) {
+            msgConsumer.accept(id, msg);
+        }
+    }
+
+    private void release(UUID id) {
+        EntityId originator = originators.get(id);
+        if (originator != null) {
+            lanes.remove(originator, id);
+        }
+    }
+
+    private EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
+        try {
+            return TbMsg.originatorFromBytes(msg.getTbMsg());
+        } catch (IllegalStateException e) {
+            log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg);
+            return null;
+        }
+    }
+
+    private static Map<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> toMap(List<IdMsgPair<TransportProtos.ToRuleEngineMsg>> msgList) {
+        return msgList.stream().collect(Collectors.toMap(pair -> pair.uuid, pair -> pair.msg));
+    }
+
+}
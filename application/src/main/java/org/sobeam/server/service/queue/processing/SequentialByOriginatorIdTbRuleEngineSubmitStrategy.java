@@ -15,15 +15,11 @@
  */
 package org.sobeam.server.service.queue.processing;
 
-import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.sobeam.server.common.data.id.EntityId;
-import org.sobeam.server.common.data.id.EntityIdFactory;
-import org.sobeam.server.common.msg.gen.MsgProtos;
+import org.sobeam.server.common.msg.TbMsg;
 import org.sobeam.server.gen.transport.TransportProtos;
 
-import java.util.UUID;
-
 @Slf4j
 public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends SequentialByEntityIdTbRuleEngineSubmitStrategy {
 
@@ -34,9 +30,8 @@ public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends Sequenti
     @Override
     protected EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsg());
-            return EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
-        } catch (InvalidProtocolBufferException e) {
+            return TbMsg.originatorFromBytes(msg.getTbMsg());
+        } catch (IllegalStateException e) {
             log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg);
             return null;
         }
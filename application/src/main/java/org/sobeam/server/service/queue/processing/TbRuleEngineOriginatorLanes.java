@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.queue.processing;
+
+import org.sobeam.server.common.data.id.EntityId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * FIFO lanes of the messages of the same originator, shared by all the packs that are processed concurrently.
+ * Only the head of each lane is submitted. The next message of the lane is submitted as soon as the head
+ * is acknowledged, regardless of the pack it belongs to, so the lanes of different originators never wait for each other.
+ */
+public class TbRuleEngineOriginatorLanes {
+
+    private final Map<EntityId, ArrayDeque<LaneMsg>> lanes = new HashMap<>();
+
+    void add(List<LaneMsg> msgs) {
+        List<LaneMsg> toSubmit = new ArrayList<>();
+        synchronized (this) {
+            for (LaneMsg msg : msgs) {
+                ArrayDeque<LaneMsg> lane = lanes.computeIfAbsent(msg.originator, originator -> new ArrayDeque<>());
+                lane.add(msg);
+                if (lane.size() == 1) {
+                    toSubmit.add(msg);
+                }
+            }
+        }
+        toSubmit.forEach(LaneMsg::submit);
+    }
+
+    /**
+     * Removes the message from its lane. If the message was the head of the lane, the next message is submitted.
+     */
+    void remove(EntityId originator, UUID id) {
+        LaneMsg next = null;
+        synchronized (this) {
+            ArrayDeque<LaneMsg> lane = lanes.get(originator);
+            if (lane == null) {
+                return;
+            }
+            LaneMsg head = lane.peek();
+            if (head != null && head.id.equals(id)) {
+                lane.poll();
+                next = lane.peek();
+            } else {
+                lane.removeIf(msg -> msg.id.equals(id));
+            }
+            if (lane.isEmpty()) {
+                lanes.remove(originator);
+            }
+        }
+        if (next != null) {
+            next.submit();
+        }
+    }
+
+    /**
+     * Submits the message once again if it is the head of the lane. Otherwise, it is submitted when its turn comes.
+     */
+    void resubmit(EntityId originator, UUID id) {
+        LaneMsg head;
+        synchronized (this) {
+            ArrayDeque<LaneMsg> lane = lanes.get(originator);
+            head = lane != null ? lane.peek() : null;
+        }
+        if (head != null && head.id.equals(id)) {
+            head.submit();
+        }
+    }
+
+    public synchronized int size() {
+        return lanes.size();
+    }
+
+    record LaneMsg(UUID id, EntityId originator, PipelinedByOriginatorIdTbRuleEngineSubmitStrategy strategy) {
+
+        void submit() {
+            strategy.submit(id);
+        }
+
+    }
+
+}
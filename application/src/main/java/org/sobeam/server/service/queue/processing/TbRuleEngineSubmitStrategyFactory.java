@@ -35,9 +35,26 @@ public class TbRuleEngineSubmitStrategyFactory {
                 return new SequentialByTenantIdTbRuleEngineSubmitStrategy(name);
             case SEQUENTIAL:
                 return new SequentialTbRuleEngineSubmitStrategy(name);
+            case PIPELINED_BY_ORIGINATOR:
+                // used when the consumer is not able to commit the packs separately, so the packs are processed one by one
+                return new SequentialByOriginatorIdTbRuleEngineSubmitStrategy(name);
             default:
                 throw new RuntimeException("TbRuleEngineProcessingStrategy with type " + submitStrategy.getType() + " is not supported!");
         }
     }
 
+    /**
+     * Creates the strategy of a pack that is processed concurrently with the other packs of the same consumer.
+     * The order of the messages of the same originator is kept across the packs by the shared lanes.
+     */
+    public TbRuleEngineSubmitStrategy newPipelinedInstance(String name, SubmitStrategy submitStrategy, TbRuleEngineOriginatorLanes lanes) {
+        switch (submitStrategy.getType()) {
+            case SEQUENTIAL_BY_ORIGINATOR:
+            case PIPELINED_BY_ORIGINATOR:
+                return new PipelinedByOriginatorIdTbRuleEngineSubmitStrategy(name, lanes);
+            default:
+                return newInstance(name, submitStrategy);
+        }
+    }
+
 }
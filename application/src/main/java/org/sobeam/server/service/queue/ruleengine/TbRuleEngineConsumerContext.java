@@ -49,6 +49,12 @@ public class TbRuleEngineConsumerContext {
     private int topicDeletionDelayInSec;
     @Value("${queue.rule-engine.management-thread-pool-size:12}")
     private int mgmtThreadPoolSize;
+    @Value("${queue.rule-engine.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+    @Value("${queue.rule-engine.pipeline.max-in-flight-packs:8}")
+    private int maxInFlightPacks;
+    @Value("${queue.rule-engine.pipeline.max-in-flight-msgs:10000}")
+    private int maxInFlightMsgs;
 
     private final ActorSystemContext actorContext;
     private final StatsFactory statsFactory;
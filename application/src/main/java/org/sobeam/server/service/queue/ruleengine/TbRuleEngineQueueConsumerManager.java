@@ -19,11 +19,10 @@ import com.google.protobuf.ProtocolStringList;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.sobeam.server.common.data.id.EntityId;
-import org.sobeam.server.common.data.id.EntityIdFactory;
 import org.sobeam.server.common.data.id.TenantId;
 import org.sobeam.server.common.data.queue.Queue;
+import org.sobeam.server.common.data.queue.SubmitStrategyType;
 import org.sobeam.server.common.msg.TbMsg;
-import org.sobeam.server.common.msg.gen.MsgProtos;
 import org.sobeam.server.common.msg.queue.QueueToRuleEngineMsg;
 import org.sobeam.server.common.msg.queue.RuleEngineException;
 import org.sobeam.server.common.msg.queue.RuleNodeInfo;
@@ -38,17 +37,21 @@ import org.sobeam.server.service.queue.TbMsgPackCallback;
 import org.sobeam.server.service.queue.TbMsgPackProcessingContext;
 import org.sobeam.server.service.queue.TbRuleEngineConsumerStats;
 import org.sobeam.server.service.queue.consumer.MainQueueConsumerManager;
+import org.sobeam.server.service.queue.processing.TbRuleEngineOriginatorLanes;
 import org.sobeam.server.service.queue.processing.TbRuleEngineProcessingDecision;
 import org.sobeam.server.service.queue.processing.TbRuleEngineProcessingResult;
 import org.sobeam.server.service.queue.processing.TbRuleEngineProcessingStrategy;
 import org.sobeam.server.service.queue.processing.TbRuleEngineSubmitStrategy;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +65,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
 
     private final TbRuleEngineConsumerContext ctx;
     private final TbRuleEngineConsumerStats stats;
+    private final ConcurrentMap<TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>, PackPipeline> pipelines = new ConcurrentHashMap<>();
 
     @Builder(builderMethodName = "create") // not to conflict with super.builder()
     public TbRuleEngineQueueConsumerManager(TbRuleEngineConsumerContext ctx,
@@ -119,6 +123,18 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
     protected void processMsgs(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs,
                                TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer,
                                Queue queue) throws Exception {
+        if (isPipelined(queue)) {
+            Object offsets = consumer.getLastPollOffsets();
+            if (offsets != null) {
+                pipelines.computeIfAbsent(consumer, PackPipeline::new).add(msgs, offsets, queue);
+                return;
+            }
+        }
+        PackPipeline pipeline = pipelines.remove(consumer);
+        if (pipeline != null) {
+            pipeline.process(1, Integer.MAX_VALUE); // waiting for all the in-flight packs before switching to the other submit strategy
+            pipeline.stop();
+        }
         TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(queue);
         TbRuleEngineProcessingStrategy ackStrategy = getProcessingStrategy(queue);
         submitStrategy.init(msgs);
@@ -128,22 +144,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
 
             final boolean timeout = !packCtx.await(queue.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
 
-            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
-            if (timeout) {
-                printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
-            }
-            if (!packCtx.getFailedMap().isEmpty()) {
-                printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
-            }
-            packCtx.printProfilerStats();
-
-            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-            if (ctx.isStatsEnabled()) {
-                stats.log(result, decision.isCommit());
-            }
-
-            packCtx.cleanup();
-
+            TbRuleEngineProcessingDecision decision = analyze(queue, ackStrategy, packCtx, timeout);
             if (decision.isCommit()) {
                 submitStrategy.stop();
                 consumer.commit();
@@ -154,6 +155,37 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
         }
     }
 
+    @Override
+    protected void processIdle(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue queue) throws Exception {
+        PackPipeline pipeline = pipelines.get(consumer);
+        if (pipeline != null) {
+            pipeline.process(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    protected void onConsumerStopped(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+        PackPipeline pipeline = pipelines.remove(consumer);
+        if (pipeline != null) {
+            pipeline.commitProcessed();
+            pipeline.stop();
+        }
+    }
+
+    private boolean isPipelined(Queue queue) {
+        return isPipelined(queue.getSubmitStrategy().getType(), ctx.isPipelineEnabled());
+    }
+
+    static boolean isPipelined(SubmitStrategyType type, boolean pipelineEnabled) {
+        return switch (type) {
+            case PIPELINED_BY_ORIGINATOR -> true;
+            // no order between the messages, or the order of the originator messages is kept across the packs by the shared lanes
+            case BURST, SEQUENTIAL_BY_ORIGINATOR -> pipelineEnabled;
+            // the order of all, tenant or batch messages would be broken by the packs processed concurrently
+            case SEQUENTIAL, SEQUENTIAL_BY_TENANT, BATCH -> false;
+        };
+    }
+
     private TbRuleEngineSubmitStrategy getSubmitStrategy(Queue queue) {
         return ctx.getSubmitStrategyFactory().newInstance(queue.getName(), queue.getSubmitStrategy());
     }
@@ -181,7 +213,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
     }
 
     private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
-        TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
+        TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg(), callback);
         QueueToRuleEngineMsg msg;
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes;
@@ -199,7 +231,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
         log.info("[{}] {} to process [{}] messages", queueKey, prefix, map.size());
         for (Map.Entry<UUID, TbProtoQueueMsg<ToRuleEngineMsg>> pending : map.entrySet()) {
             ToRuleEngineMsg tmp = pending.getValue().getValue();
-            TbMsg tmpMsg = TbMsg.fromBytes(config.getName(), tmp.getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+            TbMsg tmpMsg = TbMsg.fromBytes(config.getName(), tmp.getTbMsg(), TbMsgCallback.EMPTY);
             RuleNodeInfo ruleNodeInfo = ctx.getLastVisitedRuleNode(pending.getKey());
             if (printAll) {
                 log.trace("[{}][{}] {} to process message: {}, Last Rule Node: {}", queueKey, TenantId.fromUUID(new UUID(tmp.getTenantIdMSB(), tmp.getTenantIdLSB())), prefix, tmpMsg, ruleNodeInfo);
@@ -210,6 +242,25 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
         }
     }
 
+    private TbRuleEngineProcessingDecision analyze(Queue queue, TbRuleEngineProcessingStrategy ackStrategy, TbMsgPackProcessingContext packCtx, boolean timeout) {
+        TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(queue.getName(), timeout, packCtx);
+        if (timeout) {
+            printFirstOrAll(packCtx, packCtx.getPendingMap(), "Timeout");
+        }
+        if (!packCtx.getFailedMap().isEmpty()) {
+            printFirstOrAll(packCtx, packCtx.getFailedMap(), "Failed");
+        }
+        packCtx.printProfilerStats();
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        if (ctx.isStatsEnabled()) {
+            stats.log(result, decision.isCommit());
+        }
+
+        packCtx.cleanup();
+        return decision;
+    }
+
     public void printStats(long ts) {
         stats.printStats();
         ctx.getStatisticsService().reportQueueStats(ts, stats);
@@ -228,8 +279,7 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
                     }
                     for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
                         try {
-                            MsgProtos.TbMsgProto tbMsgProto = MsgProtos.TbMsgProto.parseFrom(msg.getValue().getTbMsg().toByteArray());
-                            EntityId originator = EntityIdFactory.getByTypeAndUuid(tbMsgProto.getEntityType(), new UUID(tbMsgProto.getEntityIdMSB(), tbMsgProto.getEntityIdLSB()));
+                            EntityId originator = TbMsg.originatorFromBytes(msg.getValue().getTbMsg());
 
                             TopicPartitionInfo tpi = ctx.getPartitionService().resolve(ServiceType.TB_RULE_ENGINE, config.getName(), TenantId.SYS_TENANT_ID, originator);
                             ctx.getProducerProvider().getRuleEngineMsgProducer().send(tpi, msg, null);
@@ -249,4 +299,129 @@ public class TbRuleEngineQueueConsumerManager extends MainQueueConsumerManager<T
         }
     }
 
+    /**
+     * Packs of a single consumer that are processed concurrently, so the consumer keeps polling while the slowest messages
+     * of the previous packs are processed. The packs are analyzed with the processing strategy and committed strictly in the order
+     * they were polled, so the committed offset never passes a pack that is not processed yet.
+     * Only the oldest pack is analyzed, and its processing timeout starts when it becomes the oldest one.
+     */
+    private class PackPipeline {
+
+        private final TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer;
+        private final TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes();
+        private final ArrayDeque<InFlightPack> packs = new ArrayDeque<>();
+        private int inFlightMsgs;
+
+        PackPipeline(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+            this.consumer = consumer;
+        }
+
+        void add(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs, Object offsets, Queue queue) throws InterruptedException {
+            TbRuleEngineSubmitStrategy submitStrategy = ctx.getSubmitStrategyFactory().newPipelinedInstance(queue.getName(), queue.getSubmitStrategy(), lanes);
+            InFlightPack pack = new InFlightPack(queue, submitStrategy, getProcessingStrategy(queue), offsets, msgs.size());
+            submitStrategy.init(msgs);
+            packs.add(pack);
+            inFlightMsgs += pack.size;
+            pack.submitAttempt(packs.size() == 1);
+            process(ctx.getMaxInFlightPacks(), ctx.getMaxInFlightMsgs());
+        }
+
+        /**
+         * Analyzes the oldest packs that are processed or timed out, and waits for the oldest pack
+         * while the number of the packs or the messages in flight is not less than the limit.
+         */
+        void process(int maxInFlightPacks, int maxInFlightMsgs) throws InterruptedException {
+            while (!packs.isEmpty() && !stopped && !consumer.isStopped()) {
+                InFlightPack head = packs.peek();
+                TbMsgPackProcessingContext packCtx = head.packCtx;
+                long remaining = head.deadline - System.currentTimeMillis();
+                if (!packCtx.isDone() && remaining > 0 && packs.size() < maxInFlightPacks && inFlightMsgs < maxInFlightMsgs) {
+                    return;
+                }
+                boolean timeout = !packCtx.await(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+
+                TbRuleEngineProcessingDecision decision = analyze(head.queue, head.ackStrategy, packCtx, timeout);
+                if (decision.isCommit()) {
+                    commitHead();
+                } else {
+                    head.submitStrategy.update(decision.getReprocessMap());
+                    head.submitAttempt(true);
+                }
+            }
+        }
+
+        /**
+         * Commits the oldest packs that are already processed successfully, so they are not consumed again after the consumer restart.
+         */
+        void commitProcessed() {
+            while (!packs.isEmpty()) {
+                InFlightPack head = packs.peek();
+                TbMsgPackProcessingContext packCtx = head.packCtx;
+                if (!packCtx.isDone() || !packCtx.getFailedMap().isEmpty()) {
+                    return;
+                }
+                analyze(head.queue, head.ackStrategy, packCtx, false);
+                commitHead();
+            }
+        }
+
+        private void commitHead() {
+            InFlightPack head = packs.poll();
+            head.submitStrategy.stop();
+            inFlightMsgs -= head.size;
+            try {
+                consumer.commit(head.offsets);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to commit processed pack", queueKey, e);
+            }
+            InFlightPack next = packs.peek();
+            if (next != null) {
+                next.startTimer();
+            }
+        }
+
+        void stop() {
+            packs.forEach(pack -> {
+                pack.submitStrategy.stop();
+                pack.packCtx.cleanup();
+            });
+            packs.clear();
+            inFlightMsgs = 0;
+        }
+
+    }
+
+    private class InFlightPack {
+
+        private final Queue queue;
+        private final TbRuleEngineSubmitStrategy submitStrategy;
+        private final TbRuleEngineProcessingStrategy ackStrategy;
+        private final Object offsets;
+        private final int size;
+        private TbMsgPackProcessingContext packCtx;
+        private long deadline = Long.MAX_VALUE;
+
+        InFlightPack(Queue queue, TbRuleEngineSubmitStrategy submitStrategy, TbRuleEngineProcessingStrategy ackStrategy, Object offsets, int size) {
+            this.queue = queue;
+            this.submitStrategy = submitStrategy;
+            this.ackStrategy = ackStrategy;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        void submitAttempt(boolean head) {
+            TbMsgPackProcessingContext packCtx = new TbMsgPackProcessingContext(queue.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
+            this.packCtx = packCtx;
+            if (head) {
+                startTimer();
+            }
+            submitStrategy.submitAttempt((id, msg) -> submitMessage(packCtx, id, msg));
+        }
+
+        void startTimer() {
+            deadline = System.currentTimeMillis() + queue.getPackProcessingTimeout();
+        }
+
+    }
+
 }
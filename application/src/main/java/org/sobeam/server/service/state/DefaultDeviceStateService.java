@@ -51,6 +51,7 @@ import org.sobeam.server.common.data.id.EntityId;
 import org.sobeam.server.common.data.id.TenantId;
 import org.sobeam.server.common.data.id.UUIDBased;
 import org.sobeam.server.common.data.kv.AttributeKvEntry;
+import org.sobeam.server.common.data.kv.BaseAttributeKvEntry;
 import org.sobeam.server.common.data.kv.BasicTsKvEntry;
 import org.sobeam.server.common.data.kv.BooleanDataEntry;
 import org.sobeam.server.common.data.kv.KvEntry;
@@ -73,6 +74,7 @@ import org.sobeam.server.common.msg.notification.NotificationRuleProcessor;
 import org.sobeam.server.common.msg.queue.ServiceType;
 import org.sobeam.server.common.msg.queue.TbCallback;
 import org.sobeam.server.common.msg.queue.TopicPartitionInfo;
+import org.sobeam.server.common.stats.StatsFactory;
 import org.sobeam.server.common.stats.TbApiUsageReportClient;
 import org.sobeam.server.dao.attributes.AttributesService;
 import org.sobeam.server.dao.device.DeviceService;
@@ -123,6 +125,8 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     public static final String INACTIVITY_ALARM_TIME = "inactivityAlarmTime";
     public static final String INACTIVITY_TIMEOUT = "inactivityTimeout";
 
+    private static final int INACTIVITY_TIMER_WHEEL_SIZE = 4096;
+
     private static final List<EntityKey> PERSISTENT_TELEMETRY_KEYS = Arrays.asList(
             new EntityKey(EntityKeyType.TIME_SERIES, LAST_ACTIVITY_TIME),
             new EntityKey(EntityKeyType.TIME_SERIES, INACTIVITY_ALARM_TIME),
@@ -160,6 +164,8 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     @Autowired
     @Lazy
     private TelemetrySubscriptionService tsSubService;
+    @Autowired
+    private StatsFactory statsFactory;
 
     @Value("${state.defaultInactivityTimeoutInSec}")
     @Getter
@@ -192,8 +198,26 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     @Getter
     private int telemetryTtl;
 
+    @Value("${state.persistence.flush_interval_ms:0}")
+    @Getter
+    private long persistenceFlushIntervalMs;
+
+    @Value("${state.inactivity_timer_wheel.enabled:false}")
+    @Getter
+    private boolean inactivityTimerWheelEnabled;
+
+    @Value("${state.inactivity_timer_wheel.tick_ms:1000}")
+    @Getter
+    private long inactivityTimerWheelTickMs;
+
+    @Value("${state.inactivity_timer_wheel.fallback_check_interval_sec:600}")
+    @Getter
+    private int inactivityTimerWheelFallbackCheckIntervalInSec;
+
     private ListeningExecutorService deviceStateExecutor;
     private ListeningExecutorService deviceStateCallbackExecutor;
+    private DeviceStateUpdateBuffer updateBuffer;
+    private DeviceInactivityTimerWheel inactivityTimerWheel;
 
     final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
 
@@ -204,12 +228,30 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 Math.max(4, Runtime.getRuntime().availableProcessors()), "device-state"));
         deviceStateCallbackExecutor = MoreExecutors.listeningDecorator(SoBeamExecutors.newWorkStealingPool(
                 Math.max(4, Runtime.getRuntime().availableProcessors()), "device-state-callback"));
-        scheduledExecutor.scheduleWithFixedDelay(this::checkStates, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
+        if (inactivityTimerWheelEnabled) {
+            inactivityTimerWheel = new DeviceInactivityTimerWheel(inactivityTimerWheelTickMs, INACTIVITY_TIMER_WHEEL_SIZE, getCurrentTimeMillis());
+            scheduledExecutor.scheduleWithFixedDelay(this::checkExpiredStates, inactivityTimerWheelTickMs, inactivityTimerWheelTickMs, TimeUnit.MILLISECONDS);
+            // Slow full sweep that catches and schedules the devices whose inactivity check was missed by the wheel
+            if (inactivityTimerWheelFallbackCheckIntervalInSec > 0) {
+                scheduledExecutor.scheduleWithFixedDelay(this::checkStates, new Random().nextInt(inactivityTimerWheelFallbackCheckIntervalInSec),
+                        inactivityTimerWheelFallbackCheckIntervalInSec, TimeUnit.SECONDS);
+            }
+        } else {
+            scheduledExecutor.scheduleWithFixedDelay(this::checkStates, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
+        }
         scheduledExecutor.scheduleWithFixedDelay(this::reportActivityStats, defaultActivityStatsIntervalInSec, defaultActivityStatsIntervalInSec, TimeUnit.SECONDS);
+        if (persistenceFlushIntervalMs > 0) {
+            updateBuffer = new DeviceStateUpdateBuffer(statsFactory, this::persist);
+            scheduledExecutor.scheduleWithFixedDelay(this::flushStateUpdates, persistenceFlushIntervalMs, persistenceFlushIntervalMs, TimeUnit.MILLISECONDS);
+            scheduledExecutor.scheduleWithFixedDelay(updateBuffer::reportStats, defaultActivityStatsIntervalInSec, defaultActivityStatsIntervalInSec, TimeUnit.SECONDS);
+        }
     }
 
     @PreDestroy
     public void stop() {
+        if (updateBuffer != null) {
+            updateBuffer.flushAll();
+        }
         super.stop();
         if (deviceStateExecutor != null) {
             deviceStateExecutor.shutdownNow();
@@ -279,6 +321,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 }
                 onDeviceActivityStatusChange(deviceId, true, stateData);
             }
+            scheduleInactivityCheck(deviceId, stateData);
         } else {
             log.debug("updateActivityState - fetched state IS NULL for device {}, lastReportedActivity {}", deviceId, lastReportedActivity);
             cleanupEntity(deviceId);
@@ -404,6 +447,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     }
 
     private void onDeviceDeleted(TenantId tenantId, DeviceId deviceId) {
+        if (updateBuffer != null) {
+            updateBuffer.discard(deviceId);
+        }
         cleanupEntity(deviceId);
         TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId);
         Set<DeviceId> deviceIdSet = partitionedEntities.get(tpi);
@@ -414,8 +460,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
 
     private void initializeActivityState(DeviceId deviceId, DeviceStateData fetchedState) {
         DeviceStateData cachedState = deviceStates.putIfAbsent(fetchedState.getDeviceId(), fetchedState);
-        boolean activityState = Objects.requireNonNullElse(cachedState, fetchedState).getState().isActive();
-        save(deviceId, ACTIVITY_STATE, activityState);
+        DeviceStateData stateData = Objects.requireNonNullElse(cachedState, fetchedState);
+        save(deviceId, ACTIVITY_STATE, stateData.getState().isActive());
+        scheduleInactivityCheck(deviceId, stateData);
     }
 
     @Override
@@ -497,6 +544,52 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 }
             }
         }
+        scheduleInactivityCheck(deviceId, state);
+    }
+
+    private void scheduleInactivityCheck(DeviceId deviceId, DeviceStateData stateData) {
+        if (inactivityTimerWheel == null) {
+            return;
+        }
+        DeviceState state = stateData.getState();
+        if (state.isActive()) {
+            long deadline = Math.max(state.getLastActivityTime(), stateData.getDeviceCreationTime()) + state.getInactivityTimeout();
+            inactivityTimerWheel.schedule(deviceId, deadline);
+        } else {
+            inactivityTimerWheel.cancel(deviceId);
+        }
+    }
+
+    void checkExpiredStates() {
+        try {
+            final long ts = getCurrentTimeMillis();
+            List<DeviceId> expired = inactivityTimerWheel.advance(ts);
+            if (!expired.isEmpty()) {
+                log.debug("Calculating state updates for {} devices with expired inactivity deadline", expired.size());
+            }
+            for (DeviceId deviceId : expired) {
+                DeviceStateData stateData = deviceStates.get(deviceId);
+                if (stateData == null) {
+                    continue;
+                }
+                try {
+                    updateInactivityStateIfExpired(ts, deviceId, stateData);
+                    // The deadline may have been moved by the activity that raced with the expiration.
+                    if (stateData.getState().isActive() && isActive(ts, stateData.getState())) {
+                        scheduleInactivityCheck(deviceId, stateData);
+                    }
+                } catch (Exception e) {
+                    if (e instanceof TenantNotFoundException) {
+                        partitionedEntities.values().forEach(deviceIds -> deviceIds.remove(deviceId));
+                        cleanupEntity(deviceId);
+                    } else {
+                        log.warn("[{}] Failed to update inactivity state [{}]", deviceId, e.getMessage());
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Failed to check expired devices states", t);
+        }
     }
 
     void checkStates() {
@@ -515,6 +608,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                     }
                     try {
                         updateInactivityStateIfExpired(ts, deviceId, stateData);
+                        scheduleInactivityCheck(deviceId, stateData);
                     } catch (Exception e) {
                         if (e instanceof TenantNotFoundException) {
                             idsFromRemovedTenant.add(deviceId);
@@ -582,6 +676,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         state.setLastInactivityAlarmTime(ts);
         save(deviceId, INACTIVITY_ALARM_TIME, ts);
         onDeviceActivityStatusChange(deviceId, false, stateData);
+        scheduleInactivityCheck(deviceId, stateData);
     }
 
     boolean isActive(long ts, DeviceState state) {
@@ -590,7 +685,12 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
 
     @Nonnull
     DeviceStateData getOrFetchDeviceStateData(DeviceId deviceId) {
-        return deviceStates.computeIfAbsent(deviceId, this::fetchDeviceStateDataUsingSeparateRequests);
+        DeviceStateData stateData = deviceStates.get(deviceId);
+        if (stateData == null) {
+            stateData = deviceStates.computeIfAbsent(deviceId, this::fetchDeviceStateDataUsingSeparateRequests);
+            scheduleInactivityCheck(deviceId, stateData);
+        }
+        return stateData;
     }
 
     DeviceStateData fetchDeviceStateDataUsingSeparateRequests(final DeviceId deviceId) {
@@ -633,11 +733,17 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
 
     @Override
     protected void cleanupEntityOnPartitionRemoval(DeviceId deviceId) {
+        if (updateBuffer != null) {
+            updateBuffer.flush(deviceId);
+        }
         cleanupEntity(deviceId);
     }
 
     private void cleanupEntity(DeviceId deviceId) {
         deviceStates.remove(deviceId);
+        if (inactivityTimerWheel != null) {
+            inactivityTimerWheel.cancel(deviceId);
+        }
     }
 
 
@@ -865,7 +971,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     }
 
     private void save(DeviceId deviceId, String key, long value) {
-        if (persistToTelemetry) {
+        if (updateBuffer != null) {
+            updateBuffer.add(deviceId, new BasicTsKvEntry(getCurrentTimeMillis(), new LongDataEntry(key, value)));
+        } else if (persistToTelemetry) {
             tsSubService.saveAndNotifyInternal(
                     TenantId.SYS_TENANT_ID, deviceId,
                     Collections.singletonList(new BasicTsKvEntry(getCurrentTimeMillis(), new LongDataEntry(key, value))),
@@ -876,7 +984,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     }
 
     private void save(DeviceId deviceId, String key, boolean value) {
-        if (persistToTelemetry) {
+        if (updateBuffer != null) {
+            updateBuffer.add(deviceId, new BasicTsKvEntry(getCurrentTimeMillis(), new BooleanDataEntry(key, value)));
+        } else if (persistToTelemetry) {
             tsSubService.saveAndNotifyInternal(
                     TenantId.SYS_TENANT_ID, deviceId,
                     Collections.singletonList(new BasicTsKvEntry(getCurrentTimeMillis(), new BooleanDataEntry(key, value))),
@@ -886,6 +996,29 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         }
     }
 
+    private void flushStateUpdates() {
+        try {
+            // The buffer holds only the devices with pending updates, including the ones updated before their partition got registered.
+            updateBuffer.flushAll();
+        } catch (Throwable t) {
+            log.warn("Failed to flush device state updates", t);
+        }
+    }
+
+    private void persist(DeviceId deviceId, List<TsKvEntry> entries) {
+        String keys = entries.stream().map(KvEntry::getKey).collect(Collectors.joining(","));
+        if (persistToTelemetry) {
+            tsSubService.saveAndNotifyInternal(TenantId.SYS_TENANT_ID, deviceId, entries, telemetryTtl,
+                    new TelemetrySaveCallback<>(deviceId, keys, entries));
+        } else {
+            List<AttributeKvEntry> attributes = entries.stream()
+                    .<AttributeKvEntry>map(entry -> new BaseAttributeKvEntry(entry, entry.getTs()))
+                    .toList();
+            tsSubService.saveAndNotify(TenantId.SYS_TENANT_ID, deviceId, AttributeScope.SERVER_SCOPE, attributes,
+                    new TelemetrySaveCallback<>(deviceId, keys, entries));
+        }
+    }
+
     long getCurrentTimeMillis() {
         return System.currentTimeMillis();
     }
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.state;
+
+import org.sobeam.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hashed timer wheel of device inactivity deadlines.
+ * Each device has at most one deadline. Advancing the wheel visits only the buckets of the elapsed ticks,
+ * so the cost is proportional to the devices scheduled in those buckets rather than to all devices.
+ * Deadlines further than one wheel rotation away stay in their bucket until the matching round.
+ * <p>
+ * The wheel is lock-free: {@link #schedule} and {@link #cancel} may be called from any thread,
+ * while {@link #advance} is called by a single tick thread. The deadline map is the source of truth,
+ * and the bucket entries that no longer match it are dropped lazily when the bucket is visited.
+ */
+class DeviceInactivityTimerWheel {
+
+    private final long tickMs;
+    private final int mask;
+    private final Set<DeviceId>[] buckets;
+    private final ConcurrentMap<DeviceId, Long> deadlines = new ConcurrentHashMap<>();
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    DeviceInactivityTimerWheel(long tickMs, int wheelSize, long startTs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickMs);
+        }
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickMs = tickMs;
+        this.mask = wheelSize - 1;
+        this.buckets = new Set[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.currentTick = startTs / tickMs;
+    }
+
+    void schedule(DeviceId deviceId, long deadline) {
+        Long previous = deadlines.put(deviceId, deadline);
+        int bucket = bucketOf(deadline);
+        if (previous != null && bucketOf(previous) != bucket) {
+            buckets[bucketOf(previous)].remove(deviceId);
+        }
+        buckets[bucket].add(deviceId);
+    }
+
+    void cancel(DeviceId deviceId) {
+        Long previous = deadlines.remove(deviceId);
+        if (previous != null) {
+            buckets[bucketOf(previous)].remove(deviceId);
+        }
+    }
+
+    /**
+     * Removes and returns the devices whose deadline is not after the given time.
+     * Must not be called concurrently.
+     */
+    List<DeviceId> advance(long ts) {
+        long targetTick = ts / tickMs;
+        if (targetTick < currentTick) {
+            return List.of();
+        }
+        List<DeviceId> expired = new ArrayList<>();
+        // The current tick is visited again because its deadlines may have passed only partially on the previous call.
+        long ticks = Math.min(targetTick - currentTick + 1, buckets.length);
+        for (long i = 0; i < ticks; i++) {
+            int bucket = (int) ((currentTick + i) & mask);
+            Iterator<DeviceId> iterator = buckets[bucket].iterator();
+            while (iterator.hasNext()) {
+                DeviceId deviceId = iterator.next();
+                Long deadline = deadlines.get(deviceId);
+                if (deadline != null && deadline > ts && bucketOf(deadline) == bucket) {
+                    // scheduled for one of the next rounds
+                    continue;
+                }
+                iterator.remove();
+                if (deadline != null && deadline <= ts && deadlines.remove(deviceId, deadline)) {
+                    expired.add(deviceId);
+                } else {
+                    // the device might be rescheduled into this bucket concurrently with the removal
+                    Long actual = deadlines.get(deviceId);
+                    if (actual != null && bucketOf(actual) == bucket) {
+                        buckets[bucket].add(deviceId);
+                    }
+                }
+            }
+        }
+        currentTick = targetTick;
+        return expired;
+    }
+
+    int size() {
+        return deadlines.size();
+    }
+
+    // Deadlines that already passed go to the current bucket, so they are picked up by the next advance.
+    private int bucketOf(long deadline) {
+        return (int) (Math.max(deadline / tickMs, currentTick) & mask);
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.common.stats.DefaultCounter;
+import org.sobeam.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Coalesces device state updates between flushes, keeping only the latest value per device and key.
+ * All pending keys of a device are handed to the writer as a single list, so one flush produces at most one write per device.
+ */
+@Slf4j
+class DeviceStateUpdateBuffer {
+
+    static final String STATS_KEY = "deviceStatePersistence";
+
+    private final ConcurrentMap<DeviceId, Map<String, TsKvEntry>> pending = new ConcurrentHashMap<>();
+    private final BiConsumer<DeviceId, List<TsKvEntry>> writer;
+
+    private final DefaultCounter updatesCounter;
+    private final DefaultCounter entriesCounter;
+    private final DefaultCounter writesCounter;
+
+    DeviceStateUpdateBuffer(StatsFactory statsFactory, BiConsumer<DeviceId, List<TsKvEntry>> writer) {
+        this.writer = writer;
+        this.updatesCounter = statsFactory.createDefaultCounter(STATS_KEY, "type", "updates");
+        this.entriesCounter = statsFactory.createDefaultCounter(STATS_KEY, "type", "entries");
+        this.writesCounter = statsFactory.createDefaultCounter(STATS_KEY, "type", "writes");
+    }
+
+    void add(DeviceId deviceId, TsKvEntry entry) {
+        pending.compute(deviceId, (id, entries) -> {
+            if (entries == null) {
+                entries = new LinkedHashMap<>();
+            }
+            entries.put(entry.getKey(), entry);
+            return entries;
+        });
+        updatesCounter.increment();
+    }
+
+    void flush(DeviceId deviceId) {
+        Map<String, TsKvEntry> entries = pending.remove(deviceId);
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        entriesCounter.add(entries.size());
+        writesCounter.increment();
+        try {
+            writer.accept(deviceId, new ArrayList<>(entries.values()));
+        } catch (Exception e) {
+            log.warn("[{}] Failed to persist device state {}", deviceId, entries.keySet(), e);
+        }
+    }
+
+    void flush(Iterable<DeviceId> deviceIds) {
+        for (DeviceId deviceId : deviceIds) {
+            flush(deviceId);
+        }
+    }
+
+    void flushAll() {
+        flush(pending.keySet());
+    }
+
+    /**
+     * Drops the pending updates of the device without writing them, e.g. when the device is deleted.
+     */
+    void discard(DeviceId deviceId) {
+        pending.remove(deviceId);
+    }
+
+    int getPendingDevicesCount() {
+        return pending.size();
+    }
+
+    void reportStats() {
+        int updates = updatesCounter.get();
+        int entries = entriesCounter.get();
+        int writes = writesCounter.get();
+        if (updates > 0) {
+            log.info("Device state persistence: {} updates coalesced into {} entries and {} writes, coalescing ratio {}",
+                    updates, entries, writes, String.format("%.2f", writes > 0 ? (double) updates / writes : 0.0));
+        }
+        updatesCounter.clear();
+        entriesCounter.clear();
+        writesCounter.clear();
+    }
+
+}
@@ -131,6 +131,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private long dynamicPageLinkRefreshInterval;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
+    @Value("${server.ws.dynamic_page_link.shared_result_ttl_ms:0}")
+    private long dynamicPageLinkSharedResultTtlMs;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
     private int maxEntitiesPerDataSubscription;
     @Value("${server.ws.max_entities_per_alarm_subscription:1000}")
@@ -144,6 +146,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private boolean tsInSqlDB;
     private String serviceId;
     private SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private SharedEntityDataQueryExecutor sharedQueryExecutor;
 
     @PostConstruct
     public void initExecutor() {
@@ -156,6 +159,11 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         } else {
             scheduler = Executors.newScheduledThreadPool(dynamicPageLinkRefreshPoolSize, tbThreadFactory);
         }
+        if (dynamicPageLinkSharedResultTtlMs > 0) {
+            sharedQueryExecutor = new SharedEntityDataQueryExecutor(entityService, stats, dynamicPageLinkSharedResultTtlMs);
+            scheduler.scheduleWithFixedDelay(sharedQueryExecutor::cleanup,
+                    dynamicPageLinkSharedResultTtlMs, dynamicPageLinkSharedResultTtlMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
@@ -482,14 +490,15 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         int regularQueryInvocationCntValue = stats.getRegularQueryInvocationCnt().getAndSet(0);
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
+        int dynamicQuerySharedCntValue = stats.getDynamicQuerySharedCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().mapToLong(m -> m.values().stream().filter(TbAbstractSubCtx::isDynamic).count()).sum();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
-                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQuerySharedCnt = [{}], dynamicQueryInvocationTime = [{}], " +
                             "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
-                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
+                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQuerySharedCntValue, dynamicQueryInvocationTimeValue,
                     alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
         }
     }
@@ -498,6 +507,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         Map<Integer, TbAbstractSubCtx> sessionSubs = subscriptionsBySessionId.computeIfAbsent(sessionRef.getSessionId(), k -> new ConcurrentHashMap<>());
         TbEntityDataSubCtx ctx = new TbEntityDataSubCtx(serviceId, wsService, entityService, localSubscriptionService,
                 attributesService, stats, sessionRef, cmd.getCmdId(), maxEntitiesPerDataSubscription);
+        ctx.setSharedQueryExecutor(sharedQueryExecutor);
         if (cmd.getQuery() != null) {
             ctx.setAndResolveQuery(cmd.getQuery());
         }
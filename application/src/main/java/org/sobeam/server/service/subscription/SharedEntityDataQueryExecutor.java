@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.subscription;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sobeam.common.util.JacksonUtil;
+import org.sobeam.server.common.data.id.CustomerId;
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.page.PageData;
+import org.sobeam.server.common.data.query.EntityData;
+import org.sobeam.server.common.data.query.EntityDataQuery;
+import org.sobeam.server.common.data.query.EntityKeyType;
+import org.sobeam.server.common.data.query.TsValue;
+import org.sobeam.server.dao.entity.EntityService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the results of dynamic entity data queries between subscriptions.
+ * Queries are keyed by tenant, customer and the JSON form of the resolved query (including the page link).
+ * A result is reused for {@code resultTtlMs}, and concurrent requests for the same key wait for the single running execution.
+ */
+@Slf4j
+class SharedEntityDataQueryExecutor {
+
+    private final EntityService entityService;
+    private final SubscriptionServiceStatistics stats;
+    private final long resultTtlMs;
+    private final ConcurrentMap<String, SharedExecution> executions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSeq = new AtomicLong();
+
+    SharedEntityDataQueryExecutor(EntityService entityService, SubscriptionServiceStatistics stats, long resultTtlMs) {
+        this.entityService = entityService;
+        this.stats = stats;
+        this.resultTtlMs = resultTtlMs;
+    }
+
+    /**
+     * Returns the shared result of the query. The returned data must not be modified, use {@link #copyOf(PageData)} to own it.
+     */
+    SharedResult find(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        String key = tenantId + "|" + customerId + "|" + JacksonUtil.toString(query);
+        long ts = System.currentTimeMillis();
+        SharedExecution candidate = new SharedExecution(versionSeq.incrementAndGet(), ts, new CompletableFuture<>());
+        SharedExecution execution = executions.compute(key, (k, current) -> current == null || current.isExpired(ts, resultTtlMs) ? candidate : current);
+        if (execution == candidate) {
+            try {
+                candidate.future().complete(entityService.findEntityDataByQuery(tenantId, customerId, query));
+            } catch (RuntimeException e) {
+                candidate.future().completeExceptionally(e);
+                executions.remove(key, candidate);
+                throw e;
+            }
+        } else {
+            stats.getDynamicQuerySharedCnt().incrementAndGet();
+        }
+        try {
+            return new SharedResult(execution.version(), execution.future().join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    void cleanup() {
+        long ts = System.currentTimeMillis();
+        executions.values().removeIf(execution -> execution.isExpired(ts, resultTtlMs));
+    }
+
+    int size() {
+        return executions.size();
+    }
+
+    static PageData<EntityData> copyOf(PageData<EntityData> data) {
+        List<EntityData> entities = new ArrayList<>(data.getData().size());
+        for (EntityData entityData : data.getData()) {
+            Map<EntityKeyType, Map<String, TsValue>> latest = null;
+            if (entityData.getLatest() != null) {
+                latest = new HashMap<>();
+                for (var entry : entityData.getLatest().entrySet()) {
+                    latest.put(entry.getKey(), entry.getValue() != null ? new HashMap<>(entry.getValue()) : null);
+                }
+            }
+            entities.add(new EntityData(entityData.getEntityId(), latest,
+                    entityData.getTimeseries() != null ? new HashMap<>(entityData.getTimeseries()) : null,
+                    entityData.getAggLatest() != null ? new HashMap<>(entityData.getAggLatest()) : null));
+        }
+        return new PageData<>(entities, data.getTotalPages(), data.getTotalElements(), data.hasNext());
+    }
+
+    record SharedResult(long version, PageData<EntityData> data) {}
+
+    private record SharedExecution(long version, long ts, CompletableFuture<PageData<EntityData>> future) {
+
+        boolean isExpired(long now, long ttlMs) {
+            return future.isDone() && now - ts >= ttlMs;
+        }
+
+    }
+
+}
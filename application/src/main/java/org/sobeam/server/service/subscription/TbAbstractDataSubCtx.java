@@ -16,6 +16,7 @@
 package org.sobeam.server.service.subscription;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.sobeam.server.common.data.id.EntityId;
 import org.sobeam.server.common.data.kv.Aggregation;
@@ -39,6 +40,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -49,6 +51,9 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
     protected final Map<Integer, EntityId> subToEntityIdMap;
     @Getter
     protected PageData<EntityData> data;
+    @Setter
+    private SharedEntityDataQueryExecutor sharedQueryExecutor;
+    private long sharedResultVersion = -1;
 
     public TbAbstractDataSubCtx(String serviceId, WebSocketService wsService,
                                 EntityService entityService, TbLocalSubscriptionService localSubscriptionService,
@@ -80,20 +85,36 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
 
     @Override
     protected synchronized void update() {
-        PageData<EntityData> newData = findEntityData();
-        Map<EntityId, EntityData> oldDataMap;
+        PageData<EntityData> newData;
+        if (sharedQueryExecutor != null) {
+            var sharedResult = sharedQueryExecutor.find(getTenantId(), getCustomerId(), buildEntityDataQuery());
+            if (sharedResult.version() == sharedResultVersion) {
+                log.trace("[{}][{}] Shared entity data result was already processed", sessionRef.getSessionId(), cmdId);
+                return;
+            }
+            sharedResultVersion = sharedResult.version();
+            newData = sharedResult.data();
+        } else {
+            newData = findEntityData();
+        }
+        Set<EntityId> oldEntityIds;
         if (data != null && !data.getData().isEmpty()) {
-            oldDataMap = data.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+            oldEntityIds = data.getData().stream().map(EntityData::getEntityId).collect(Collectors.toSet());
         } else {
-            oldDataMap = Collections.emptyMap();
+            oldEntityIds = Collections.emptySet();
         }
-        Map<EntityId, EntityData> newDataMap = newData.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
-        if (oldDataMap.size() == newDataMap.size() && oldDataMap.keySet().equals(newDataMap.keySet())) {
+        Set<EntityId> newEntityIds = newData.getData().stream().map(EntityData::getEntityId).collect(Collectors.toSet());
+        if (oldEntityIds.equals(newEntityIds)) {
             log.trace("[{}][{}] No updates to entity data found", sessionRef.getSessionId(), cmdId);
-        } else {
-            this.data = newData;
-            doUpdate(newDataMap);
+            return;
+        }
+        if (sharedQueryExecutor != null) {
+            // the shared result is copied only when it is going to be used, since the subscription updates the values in place
+            newData = SharedEntityDataQueryExecutor.copyOf(newData);
         }
+        Map<EntityId, EntityData> newDataMap = newData.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
+        this.data = newData;
+        doUpdate(newDataMap);
     }
 
     protected abstract void doUpdate(Map<EntityId, EntityData> newDataMap);
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.ttl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.sobeam.server.dao.timeseries.TimeseriesService;
+import org.sobeam.server.queue.discovery.PartitionService;
+import org.sobeam.server.queue.util.TbCoreComponent;
+
+@TbCoreComponent
+@Slf4j
+@Service
+public class TimeseriesRollupService extends AbstractCleanUpService {
+
+    @Value("${sql.ts.rollup.enabled:false}")
+    private boolean rollupEnabled;
+
+    private final TimeseriesService timeseriesService;
+
+    public TimeseriesRollupService(PartitionService partitionService, TimeseriesService timeseriesService) {
+        super(partitionService);
+        this.timeseriesService = timeseriesService;
+    }
+
+    @Scheduled(initialDelayString = "${sql.ts.rollup.execution_interval_ms:60000}", fixedDelayString = "${sql.ts.rollup.execution_interval_ms:60000}")
+    public void refreshRollups() {
+        if (rollupEnabled && isSystemTenantPartitionMine()) {
+            try {
+                timeseriesService.refreshRollups();
+            } catch (Exception e) {
+                log.warn("Failed to refresh time series rollups", e);
+            }
+        }
+    }
+
+}
@@ -263,8 +263,32 @@ public class DefaultWebSocketService implements WebSocketService {
 
     @Override
     public void sendUpdate(String sessionId, int cmdId, TelemetrySubscriptionUpdate update) {
+        sendTelemetryUpdate(sessionId, cmdId, update, false);
+    }
+
+    private void sendLatestValuesUpdate(String sessionId, int cmdId, TelemetrySubscriptionUpdate update) {
+        sendTelemetryUpdate(sessionId, cmdId, update, true);
+    }
+
+    private void sendTelemetryUpdate(String sessionId, int cmdId, TelemetrySubscriptionUpdate update, boolean latestValues) {
         // We substitute the subscriptionId with cmdId for old-style subscriptions.
-        doSendUpdate(sessionId, cmdId, update.copyWithNewSubscriptionId(cmdId));
+        TelemetrySubscriptionUpdate cmdUpdate = update.copyWithNewSubscriptionId(cmdId);
+        WsSessionMetaData md = wsSessionsMap.get(sessionId);
+        if (md == null) {
+            return;
+        }
+        if (cmdUpdate.getErrorCode() != 0) {
+            sendUpdate(md.getSessionRef(), cmdId, cmdUpdate);
+            return;
+        }
+        WebSocketSessionRef sessionRef = md.getSessionRef();
+        executor.submit(() -> {
+            try {
+                msgEndpoint.send(sessionRef, cmdId, cmdUpdate, latestValues);
+            } catch (IOException e) {
+                log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), cmdUpdate, e);
+            }
+        });
     }
 
     @Override
@@ -461,7 +485,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                sendLatestValuesUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
                             } finally {
                                 subLock.unlock();
                             }
@@ -573,7 +597,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
+                                sendLatestValuesUpdate(subscription.getSessionId(), cmd.getCmdId(), update);
                             } finally {
                                 subLock.unlock();
                             }
@@ -849,6 +873,17 @@ public class DefaultWebSocketService implements WebSocketService {
 
     private void sendUpdate(WebSocketSessionRef sessionRef, int cmdId, Object update) {
         try {
+            if (sessionRef.getPayloadFormat() == WebSocketPayloadFormat.CBOR) {
+                byte[] msg = WebSocketCborUtil.CBOR_MAPPER.writeValueAsBytes(update);
+                executor.submit(() -> {
+                    try {
+                        msgEndpoint.send(sessionRef, cmdId, msg);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                    }
+                });
+                return;
+            }
             String msg = JacksonUtil.OBJECT_MAPPER.writeValueAsString(update);
             executor.submit(() -> {
                 try {
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+
+import java.io.IOException;
+
+/**
+ * CBOR counterpart of the JSON mapper used for the WebSocket payloads.
+ * String references are enabled, so the keys repeated within a frame (field names, telemetry keys) are sent once.
+ */
+public class WebSocketCborUtil {
+
+    public static final ObjectMapper CBOR_MAPPER = CBORMapper.builder()
+            .addModule(new Jdk8Module())
+            .enable(CBORGenerator.Feature.STRINGREF)
+            .build();
+
+    private WebSocketCborUtil() {
+    }
+
+    public static byte[] toBytes(Object value) {
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The given object value cannot be encoded to CBOR: " + value, e);
+        }
+    }
+
+    public static JsonNode toJsonNode(byte[] value) {
+        try {
+            return CBOR_MAPPER.readTree(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The given CBOR payload cannot be decoded", e);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.sobeam.server.service.ws;
 
 import org.springframework.web.socket.CloseStatus;
+import org.sobeam.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.io.IOException;
 
@@ -26,6 +27,14 @@ public interface WebSocketMsgEndpoint {
 
     void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException;
 
+    void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException;
+
+    /**
+     * Sends the telemetry update. Updates of the same subscription that are not sent yet may be merged:
+     * only the latest point per key is kept if {@code latestValues} is set, otherwise the points are appended.
+     */
+    void send(WebSocketSessionRef sessionRef, int subscriptionId, TelemetrySubscriptionUpdate update, boolean latestValues) throws IOException;
+
     void sendPing(WebSocketSessionRef sessionRef, long currentTime) throws IOException;
 
     void close(WebSocketSessionRef sessionRef, CloseStatus withReason) throws IOException;
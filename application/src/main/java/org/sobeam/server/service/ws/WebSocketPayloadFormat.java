@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.ws;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Encoding of the WebSocket frames, negotiated with the client via the 'Sec-WebSocket-Protocol' header.
+ */
+@RequiredArgsConstructor
+public enum WebSocketPayloadFormat {
+
+    JSON(null),
+    CBOR("sobeam.cbor.v1");
+
+    @Getter
+    private final String subProtocol;
+
+    public static WebSocketPayloadFormat forSubProtocol(String subProtocol) {
+        if (subProtocol != null) {
+            for (WebSocketPayloadFormat format : values()) {
+                if (subProtocol.equals(format.subProtocol)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package org.sobeam.server.controller.plugin;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
 import jakarta.websocket.RemoteEndpoint;
 import jakarta.websocket.SendHandler;
 import jakarta.websocket.SendResult;
@@ -24,11 +26,18 @@ import org.awaitility.Awaitility;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.common.util.SoBeamThreadFactory;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.stats.DefaultCounter;
 import org.sobeam.server.service.ws.WebSocketSessionRef;
+import org.sobeam.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -163,6 +172,38 @@ class TbWebSocketHandlerTest {
         verify(asyncRemote, times(1)).sendText(anyString(), any());
     }
 
+    @Test
+    void sendHandler_sendTelemetryUpdate_conflatedWhileWaitingInQueue() {
+        ReflectionTestUtils.setField(wsHandler, "outboxConflationEnabled", true);
+        ReflectionTestUtils.setField(wsHandler, "conflatedUpdatesCounter", new DefaultCounter(new AtomicInteger(), mock(Counter.class)));
+        willDoNothing().given(asyncRemote).sendText(anyString(), any());
+        sendHandler.sendMsg("first message to stay in-flight until the updates are queued");
+
+        for (int i = 0; i < 10; i++) {
+            sendHandler.sendTelemetryUpdate(1, telemetryUpdate(1, i), true);
+            sendHandler.sendTelemetryUpdate(2, telemetryUpdate(2, i), false);
+        }
+        assertThat(sendHandler.getOutboundMsgQueueSize()).isEqualTo(2);
+
+        sendHandler.onResult(new SendResult());
+        sendHandler.onResult(new SendResult());
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(asyncRemote, times(3)).sendText(captor.capture(), any());
+        JsonNode latestValuesMsg = JacksonUtil.toJsonNode(captor.getAllValues().get(1));
+        assertThat(latestValuesMsg.get("subscriptionId").asInt()).isEqualTo(1);
+        assertThat(latestValuesMsg.get("data").get("temperature")).hasSize(1);
+        assertThat(latestValuesMsg.get("data").get("temperature").get(0).get(1).asText()).isEqualTo("9");
+        JsonNode timeSeriesMsg = JacksonUtil.toJsonNode(captor.getAllValues().get(2));
+        assertThat(timeSeriesMsg.get("subscriptionId").asInt()).isEqualTo(2);
+        assertThat(timeSeriesMsg.get("data").get("temperature")).hasSize(10);
+        verify(sendHandler, never()).closeSession(any());
+    }
+
+    private static TelemetrySubscriptionUpdate telemetryUpdate(int subscriptionId, long value) {
+        return new TelemetrySubscriptionUpdate(subscriptionId, List.of(new BasicTsKvEntry(value, new LongDataEntry("temperature", value))));
+    }
+
     @Test
     void sendHandler_onMsg_allProcessed() throws Exception {
         Deque<String> msgs = new ConcurrentLinkedDeque<>();
@@ -394,6 +394,65 @@ public class HashPartitionServiceTest {
         });
     }
 
+    @Test
+    public void testResolve_withHashCache() {
+        HashPartitionService cachedPartitionService = createPartitionService(16);
+        cachedPartitionService.recalculatePartitions(ServiceInfo.newBuilder()
+                .setServiceId("tb-core-0")
+                .addAllServiceTypes(Collections.singletonList(ServiceType.TB_CORE.name()))
+                .build(), Collections.emptyList());
+
+        for (int i = 0; i < 1000; i++) {
+            DeviceId deviceId = new DeviceId(UUID.randomUUID());
+            TopicPartitionInfo expected = partitionService.resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId);
+            assertThat(cachedPartitionService.resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId)).isEqualTo(expected);
+            assertThat(cachedPartitionService.resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId)).isEqualTo(expected);
+            assertThat(cachedPartitionService.resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId).isMyPartition()).isTrue();
+        }
+    }
+
+    @Test
+    public void testResolve_afterIsolatedQueueUpdate() {
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        mockRoutingInfo(tenantId, new TenantProfileId(UUID.randomUUID()), true);
+        mockQueues(List.of(createQueue(TenantId.SYS_TENANT_ID, 10)));
+        HashPartitionService ruleEnginePartitionService = createPartitionService();
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+        TopicPartitionInfo tpi = ruleEnginePartitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantId, deviceId);
+        assertThat(tpi.getTenantId()).contains(TenantId.SYS_TENANT_ID);
+
+        Queue isolatedQueue = createQueue(tenantId, 3);
+        ruleEnginePartitionService.updateQueues(List.of(TransportProtos.QueueUpdateMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setQueueIdMSB(isolatedQueue.getUuidId().getMostSignificantBits())
+                .setQueueIdLSB(isolatedQueue.getUuidId().getLeastSignificantBits())
+                .setQueueName(isolatedQueue.getName())
+                .setQueueTopic(isolatedQueue.getTopic())
+                .setPartitions(isolatedQueue.getPartitions())
+                .build()));
+
+        tpi = ruleEnginePartitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantId, deviceId);
+        assertThat(tpi.getTenantId()).contains(tenantId);
+        assertThat(tpi.getPartition().get()).isEqualTo(ruleEnginePartitionService.resolvePartitionIndex(deviceId.getId(), 3));
+        assertThat(ruleEnginePartitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantId, deviceId, 2))
+                .isEqualTo(buildTpi(tenantId, 2));
+
+        ruleEnginePartitionService.removeTenant(tenantId);
+        ruleEnginePartitionService.evictTenantInfo(tenantId);
+        tpi = ruleEnginePartitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantId, deviceId);
+        assertThat(tpi.getTenantId()).contains(TenantId.SYS_TENANT_ID);
+    }
+
+    private TopicPartitionInfo buildTpi(TenantId tenantId, int partition) {
+        return TopicPartitionInfo.builder()
+                .topic(DataConstants.MAIN_QUEUE_TOPIC)
+                .tenantId(tenantId)
+                .partition(partition)
+                .build();
+    }
+
     private void verifyPartitionChangeEvent(Predicate<PartitionChangeEvent> predicate) {
         verify(applicationEventPublisher).publishEvent(argThat(event -> event instanceof PartitionChangeEvent && predicate.test((PartitionChangeEvent) event)));
     }
@@ -419,6 +478,10 @@ public class HashPartitionServiceTest {
     }
 
     private HashPartitionService createPartitionService() {
+        return createPartitionService(0);
+    }
+
+    private HashPartitionService createPartitionService(int hashCacheSize) {
         HashPartitionService partitionService = new HashPartitionService(serviceInfoProvider,
                 routingInfoService,
                 applicationEventPublisher,
@@ -431,6 +494,7 @@ public class HashPartitionServiceTest {
         ReflectionTestUtils.setField(partitionService, "hashFunctionName", hashFunctionName);
         ReflectionTestUtils.setField(partitionService, "edgeTopic", "tb.edge");
         ReflectionTestUtils.setField(partitionService, "edgePartitions", 10);
+        ReflectionTestUtils.setField(partitionService, "hashCacheSize", hashCacheSize);
         partitionService.init();
         partitionService.partitionsInit();
         return partitionService;
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.queue.processing;
+
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.EntityId;
+import org.sobeam.server.common.msg.TbMsg;
+import org.sobeam.server.common.msg.TbMsgDataType;
+import org.sobeam.server.common.msg.TbMsgProcessingCtx;
+import org.sobeam.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.sobeam.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipelinedByOriginatorIdTbRuleEngineSubmitStrategyTest {
+
+    private final EntityId originatorA = new DeviceId(UUID.randomUUID());
+    private final EntityId originatorB = new DeviceId(UUID.randomUUID());
+
+    private final TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes();
+    private final List<UUID> submitted = new ArrayList<>();
+
+    @Test
+    public void givenTwoPacks_whenHeadOfLaneIsProcessed_thenNextMsgOfOriginatorIsSubmittedFromOtherPack() {
+        var pack1 = newStrategy(originatorA);
+        var pack2 = newStrategy(originatorA, originatorB);
+        List<UUID> ids1 = submitAttempt(pack1);
+        List<UUID> ids2 = submitAttempt(pack2);
+
+        assertThat(submitted).containsExactly(ids1.get(0), ids2.get(1));
+
+        pack1.onSuccess(ids1.get(0));
+
+        assertThat(submitted).containsExactly(ids1.get(0), ids2.get(1), ids2.get(0));
+        assertThat(lanes.size()).isEqualTo(2);
+
+        pack2.onSuccess(ids2.get(0));
+        pack2.onSuccess(ids2.get(1));
+
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void givenFailedHeadOfLane_whenPackIsRetried_thenMsgIsResubmittedAndLaneIsBlocked() {
+        var pack1 = newStrategy(originatorA, originatorB);
+        var pack2 = newStrategy(originatorA);
+        List<UUID> ids1 = submitAttempt(pack1);
+        List<UUID> ids2 = submitAttempt(pack2);
+        pack1.onSuccess(ids1.get(1));
+        submitted.clear();
+
+        pack1.update(new ConcurrentHashMap<>(Map.of(ids1.get(0), pack1.getPendingMap().get(ids1.get(0)))));
+        pack1.submitAttempt(this::onSubmit);
+
+        assertThat(submitted).containsExactly(ids1.get(0));
+
+        pack1.onSuccess(ids1.get(0));
+
+        assertThat(submitted).containsExactly(ids1.get(0), ids2.get(0));
+    }
+
+    @Test
+    public void givenUnprocessedMsgs_whenPackIsStopped_thenLanesAreReleased() {
+        var pack1 = newStrategy(originatorA, originatorA);
+        var pack2 = newStrategy(originatorA);
+        List<UUID> ids1 = submitAttempt(pack1);
+        List<UUID> ids2 = submitAttempt(pack2);
+
+        assertThat(submitted).containsExactly(ids1.get(0));
+
+        pack1.stop();
+
+        assertThat(submitted).containsExactly(ids1.get(0), ids2.get(0));
+        assertThat(lanes.size()).isEqualTo(1);
+    }
+
+    private PipelinedByOriginatorIdTbRuleEngineSubmitStrategy newStrategy(EntityId... originators) {
+        var strategy = new PipelinedByOriginatorIdTbRuleEngineSubmitStrategy("Main", lanes);
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = new ArrayList<>();
+        for (EntityId originator : originators) {
+            msgs.add(toProto(originator));
+        }
+        strategy.init(msgs);
+        return strategy;
+    }
+
+    private List<UUID> submitAttempt(PipelinedByOriginatorIdTbRuleEngineSubmitStrategy strategy) {
+        List<UUID> ids = strategy.orderedMsgList.stream().map(IdMsgPair::getUuid).toList();
+        strategy.submitAttempt(this::onSubmit);
+        return ids;
+    }
+
+    private void onSubmit(UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        submitted.add(id);
+    }
+
+    private static TbProtoQueueMsg<ToRuleEngineMsg> toProto(EntityId originator) {
+        TbMsg tbMsg = TbMsg.builder()
+                .id(UUID.randomUUID())
+                .type("test type")
+                .originator(originator)
+                .dataType(TbMsgDataType.TEXT)
+                .data("test data")
+                .ctx(new TbMsgProcessingCtx())
+                .build();
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), ToRuleEngineMsg.newBuilder()
+                .setTbMsg(TbMsg.toByteString(tbMsg))
+                .build());
+    }
+
+}
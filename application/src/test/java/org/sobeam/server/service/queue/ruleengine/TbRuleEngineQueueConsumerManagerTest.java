@@ -22,6 +22,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -71,6 +72,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -132,6 +134,7 @@ public class TbRuleEngineQueueConsumerManagerTest {
 
     private Set<TestConsumer> consumers;
     private boolean generateQueueMsgs;
+    private boolean pollOffsetsSupported;
     private AtomicInteger totalConsumedMsgs;
     private AtomicInteger totalProcessedMsgs;
 
@@ -638,6 +641,49 @@ public class TbRuleEngineQueueConsumerManagerTest {
         verifySubscribedAndLaunched(consumer, createTpis(expectedPartitions));
     }
 
+    @Test
+    public void testPipelinedProcessing() {
+        ruleEngineConsumerContext.setPipelineEnabled(true);
+        ruleEngineConsumerContext.setMaxInFlightPacks(4);
+        ruleEngineConsumerContext.setMaxInFlightMsgs(100);
+        pollOffsetsSupported = true;
+        queue.setConsumerPerPartition(false);
+        consumerManager.init(queue);
+        consumerManager.update(createTpis(1));
+        TestConsumer consumer = getConsumer();
+
+        await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> consumer.committedOffsets.size() >= 5);
+        assertThat(consumer.committedOffsets).isSorted().doesNotHaveDuplicates();
+        verify(consumer, never()).commit();
+        verify(ruleEngineConsumerContext.getSubmitStrategyFactory(), atLeastOnce()).newPipelinedInstance(any(), eq(queue.getSubmitStrategy()), any());
+    }
+
+    @Test
+    public void testPipelineEnabled_sequentialByTenantPacksProcessedOneByOne() {
+        ruleEngineConsumerContext.setPipelineEnabled(true);
+        ruleEngineConsumerContext.setMaxInFlightPacks(4);
+        ruleEngineConsumerContext.setMaxInFlightMsgs(100);
+        pollOffsetsSupported = true;
+        queue.getSubmitStrategy().setType(SubmitStrategyType.SEQUENTIAL_BY_TENANT);
+        queue.setConsumerPerPartition(false);
+        consumerManager.init(queue);
+        consumerManager.update(createTpis(1));
+        TestConsumer consumer = getConsumer();
+
+        await().atMost(10, TimeUnit.SECONDS).untilAsserted(() -> verify(consumer, atLeast(5)).commit());
+        assertThat(consumer.committedOffsets).isEmpty();
+        verify(ruleEngineConsumerContext.getSubmitStrategyFactory(), never()).newPipelinedInstance(any(), any(), any());
+    }
+
+    @ParameterizedTest
+    @EnumSource(SubmitStrategyType.class)
+    public void testIsPipelined(SubmitStrategyType type) {
+        boolean orderPreserved = type == SubmitStrategyType.SEQUENTIAL || type == SubmitStrategyType.SEQUENTIAL_BY_TENANT || type == SubmitStrategyType.BATCH;
+        assertThat(TbRuleEngineQueueConsumerManager.isPipelined(type, true)).isEqualTo(!orderPreserved);
+        assertThat(TbRuleEngineQueueConsumerManager.isPipelined(type, false)).isEqualTo(type == SubmitStrategyType.PIPELINED_BY_ORIGINATOR);
+    }
+
     private void verifyUnsubscribedAndStopped(TestConsumer consumer) {
         await().atMost(2, TimeUnit.SECONDS)
                 .until(() -> !consumer.subscribed && !consumer.topics.isEmpty());
@@ -710,6 +756,8 @@ public class TbRuleEngineQueueConsumerManagerTest {
         private boolean pollingStarted;
 
         private TbMsg testMsg;
+        private long polledPacks;
+        private final List<Long> committedOffsets = new CopyOnWriteArrayList<>();
 
         public TestConsumer(String topic) {
             super(topic);
@@ -725,6 +773,7 @@ public class TbRuleEngineQueueConsumerManagerTest {
             pollingStarted = true;
             if (testMsg != null && RandomUtils.nextBoolean()) {
                 Thread.sleep(100);
+                polledPacks++;
                 return List.of(testMsg);
             }
             return Collections.emptyList();
@@ -763,6 +812,17 @@ public class TbRuleEngineQueueConsumerManagerTest {
             consumers.remove(this);
         }
 
+        @Override
+        public Object getLastPollOffsets() {
+            return pollOffsetsSupported ? polledPacks : null;
+        }
+
+        @Override
+        public void commit(Object offsets) {
+            committedOffsets.add((Long) offsets);
+            log.debug("commit({}) totalConsumedMsgs = {}", offsets, totalConsumedMsgs.incrementAndGet());
+        }
+
         @Override
         protected void doUnsubscribe() {
             log.debug("doUnsubscribe()");
@@ -626,6 +626,73 @@ public class DefaultDeviceStateServiceTest {
         activityVerify(false);
     }
 
+    @Test
+    public void givenTimerWheel_whenInactivityDeadlineExpires_thenDeviceBecomesInactive() throws Exception {
+        ReflectionTestUtils.setField(service, "inactivityTimerWheelEnabled", true);
+        ReflectionTestUtils.setField(service, "inactivityTimerWheelTickMs", 60000L);
+        initStateService(1000);
+        DeviceState deviceState = DeviceState.builder().inactivityTimeout(100).build();
+        DeviceStateData deviceStateData = DeviceStateData.builder()
+                .tenantId(tenantId)
+                .deviceId(deviceId)
+                .state(deviceState)
+                .metaData(new TbMsgMetaData())
+                .build();
+
+        service.deviceStates.put(deviceId, deviceStateData);
+        service.getPartitionedEntities(tpi).add(deviceId);
+
+        service.onDeviceActivity(tenantId, deviceId, System.currentTimeMillis());
+        activityVerify(true);
+        service.checkExpiredStates();
+        verify(telemetrySubscriptionService, never()).saveAttrAndNotify(any(), eq(deviceId), any(AttributeScope.class), eq(ACTIVITY_STATE), eq(false), any());
+
+        Thread.sleep(150);
+        service.checkExpiredStates();
+        activityVerify(false);
+
+        reset(telemetrySubscriptionService);
+
+        service.onDeviceActivity(tenantId, deviceId, System.currentTimeMillis());
+        activityVerify(true);
+        service.onDeviceInactivityTimeoutUpdate(tenantId, deviceId, 300);
+        Thread.sleep(150);
+        service.checkExpiredStates();
+        verify(telemetrySubscriptionService, never()).saveAttrAndNotify(any(), eq(deviceId), any(AttributeScope.class), eq(ACTIVITY_STATE), eq(false), any());
+        Thread.sleep(200);
+        service.checkExpiredStates();
+        activityVerify(false);
+    }
+
+    @Test
+    public void givenTimerWheel_whenDeviceNotScheduled_thenFallbackCheckSchedulesIt() throws Exception {
+        ReflectionTestUtils.setField(service, "inactivityTimerWheelEnabled", true);
+        ReflectionTestUtils.setField(service, "inactivityTimerWheelTickMs", 60000L);
+        initStateService(1000);
+        DeviceState deviceState = DeviceState.builder()
+                .active(true)
+                .lastActivityTime(System.currentTimeMillis())
+                .inactivityTimeout(100)
+                .build();
+        DeviceStateData deviceStateData = DeviceStateData.builder()
+                .tenantId(tenantId)
+                .deviceId(deviceId)
+                .state(deviceState)
+                .metaData(new TbMsgMetaData())
+                .build();
+
+        // the state is added without scheduling the inactivity check
+        service.deviceStates.put(deviceId, deviceStateData);
+        service.getPartitionedEntities(tpi).add(deviceId);
+
+        service.checkStates();
+        verify(telemetrySubscriptionService, never()).saveAttrAndNotify(any(), eq(deviceId), any(AttributeScope.class), eq(ACTIVITY_STATE), eq(false), any());
+
+        Thread.sleep(150);
+        service.checkExpiredStates();
+        activityVerify(false);
+    }
+
     @Test
     public void increaseSmallInactivityForInactiveDeviceTest() throws Exception {
         final long defaultTimeout = 1;
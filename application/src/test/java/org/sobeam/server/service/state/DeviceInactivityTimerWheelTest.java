@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.state;
+
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DeviceInactivityTimerWheelTest {
+
+    private static final long START_TS = 1_000_000L;
+
+    private final DeviceInactivityTimerWheel wheel = new DeviceInactivityTimerWheel(100, 16, START_TS);
+
+    @Test
+    public void givenDeadline_whenAdvance_thenExpiredOnlyAfterDeadline() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        wheel.schedule(deviceId, START_TS + 550);
+
+        assertThat(wheel.advance(START_TS + 549)).isEmpty();
+        assertThat(wheel.advance(START_TS + 550)).containsExactly(deviceId);
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advance(START_TS + 10_000)).isEmpty();
+    }
+
+    @Test
+    public void givenRescheduledDeadline_whenAdvance_thenOldDeadlineIgnored() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        wheel.schedule(deviceId, START_TS + 200);
+        wheel.schedule(deviceId, START_TS + 700);
+
+        assertThat(wheel.advance(START_TS + 500)).isEmpty();
+        assertThat(wheel.advance(START_TS + 700)).containsExactly(deviceId);
+    }
+
+    @Test
+    public void givenCancelledDeadline_whenAdvance_thenNothingExpired() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        wheel.schedule(deviceId, START_TS + 200);
+        wheel.cancel(deviceId);
+
+        assertThat(wheel.advance(START_TS + 500)).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void givenDeadlineBeyondWheelRotation_whenAdvance_thenExpiredInMatchingRound() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        // The wheel covers 1600 ms, the deadline lands in the same bucket three rounds later.
+        wheel.schedule(deviceId, START_TS + 3 * 1600 + 50);
+
+        for (long ts = START_TS; ts < START_TS + 3 * 1600 + 50; ts += 100) {
+            assertThat(wheel.advance(ts)).isEmpty();
+        }
+        assertThat(wheel.advance(START_TS + 3 * 1600 + 50)).containsExactly(deviceId);
+    }
+
+    @Test
+    public void givenPastDeadline_whenAdvance_thenExpiredImmediately() {
+        wheel.advance(START_TS + 1000);
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        wheel.schedule(deviceId, START_TS);
+
+        assertThat(wheel.advance(START_TS + 1000)).containsExactly(deviceId);
+    }
+
+    @Test
+    public void givenLongPause_whenAdvance_thenAllExpiredDeadlinesReturned() {
+        DeviceId first = new DeviceId(UUID.randomUUID());
+        DeviceId second = new DeviceId(UUID.randomUUID());
+        wheel.schedule(first, START_TS + 300);
+        wheel.schedule(second, START_TS + 1300);
+
+        assertThat(wheel.advance(START_TS + 100_000)).containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    public void givenConcurrentSchedules_whenAdvance_thenEveryDeviceExpiredOnce() throws Exception {
+        int threads = 4;
+        int devicesPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<DeviceId> expired = new ArrayList<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < devicesPerThread; i++) {
+                        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+                        wheel.schedule(deviceId, START_TS + 2 * i);
+                        // cancels race with the advance of the wheel
+                        DeviceId cancelled = new DeviceId(UUID.randomUUID());
+                        wheel.schedule(cancelled, START_TS + 1_000_000 + i);
+                        wheel.cancel(cancelled);
+                    }
+                }));
+            }
+            for (long ts = START_TS; futures.stream().anyMatch(f -> !f.isDone()); ts += 10) {
+                expired.addAll(wheel.advance(Math.min(ts, START_TS + 2 * devicesPerThread)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        expired.addAll(wheel.advance(START_TS + 100_000));
+
+        assertThat(expired).hasSize(threads * devicesPerThread).doesNotHaveDuplicates();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void givenInvalidWheelSize_whenCreate_thenException() {
+        assertThatThrownBy(() -> new DeviceInactivityTimerWheel(100, 10, START_TS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
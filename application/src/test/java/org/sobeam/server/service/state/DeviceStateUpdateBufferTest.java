@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.state;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.BooleanDataEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.common.stats.DefaultStatsFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceStateUpdateBufferTest {
+
+    private final Map<DeviceId, List<List<TsKvEntry>>> writes = new HashMap<>();
+    private DeviceStateUpdateBuffer buffer;
+
+    @BeforeEach
+    public void setUp() {
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", false);
+        buffer = new DeviceStateUpdateBuffer(statsFactory, (deviceId, entries) -> writes.computeIfAbsent(deviceId, id -> new ArrayList<>()).add(entries));
+    }
+
+    @Test
+    public void givenRepeatedUpdates_whenFlush_thenLatestValuePerKeyWrittenOnce() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        buffer.add(deviceId, new BasicTsKvEntry(1L, new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, 1L)));
+        buffer.add(deviceId, new BasicTsKvEntry(2L, new BooleanDataEntry(DefaultDeviceStateService.ACTIVITY_STATE, true)));
+        buffer.add(deviceId, new BasicTsKvEntry(3L, new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, 3L)));
+
+        buffer.flush(deviceId);
+
+        assertThat(writes.get(deviceId)).hasSize(1);
+        List<TsKvEntry> written = writes.get(deviceId).get(0);
+        assertThat(written).hasSize(2);
+        assertThat(written.get(0).getKey()).isEqualTo(DefaultDeviceStateService.LAST_ACTIVITY_TIME);
+        assertThat(written.get(0).getLongValue()).contains(3L);
+        assertThat(written.get(1).getBooleanValue()).contains(true);
+        assertThat(buffer.getPendingDevicesCount()).isZero();
+    }
+
+    @Test
+    public void givenNoPendingUpdates_whenFlush_thenNothingWritten() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+        buffer.flush(deviceId);
+
+        assertThat(writes).isEmpty();
+    }
+
+    @Test
+    public void givenSeveralDevices_whenFlushAll_thenOneWritePerDevice() {
+        DeviceId first = new DeviceId(UUID.randomUUID());
+        DeviceId second = new DeviceId(UUID.randomUUID());
+        for (int i = 0; i < 10; i++) {
+            buffer.add(first, new BasicTsKvEntry(i, new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, i)));
+            buffer.add(second, new BasicTsKvEntry(i, new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, i)));
+        }
+
+        buffer.flushAll();
+
+        assertThat(writes).containsOnlyKeys(first, second);
+        assertThat(writes.get(first)).hasSize(1);
+        assertThat(writes.get(second)).hasSize(1);
+        assertThat(buffer.getPendingDevicesCount()).isZero();
+    }
+
+    @Test
+    public void givenPendingUpdates_whenDiscard_thenNothingWritten() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        buffer.add(deviceId, new BasicTsKvEntry(1L, new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, 1L)));
+
+        buffer.discard(deviceId);
+        buffer.flushAll();
+
+        assertThat(writes).isEmpty();
+        assertThat(buffer.getPendingDevicesCount()).isZero();
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.subscription;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.data.EntityType;
+import org.sobeam.server.common.data.id.CustomerId;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.page.PageData;
+import org.sobeam.server.common.data.query.EntityData;
+import org.sobeam.server.common.data.query.EntityDataPageLink;
+import org.sobeam.server.common.data.query.EntityDataQuery;
+import org.sobeam.server.common.data.query.EntityKeyType;
+import org.sobeam.server.common.data.query.EntityTypeFilter;
+import org.sobeam.server.common.data.query.TsValue;
+import org.sobeam.server.dao.entity.EntityService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SharedEntityDataQueryExecutorTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final EntityService entityService = mock(EntityService.class);
+    private final SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private SharedEntityDataQueryExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = new SharedEntityDataQueryExecutor(entityService, stats, 60000);
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenAnswer(invocation -> pageOf(new DeviceId(UUID.randomUUID())));
+    }
+
+    @Test
+    public void givenIdenticalQueries_whenFind_thenExecutedOnceAndShared() {
+        var first = executor.find(tenantId, null, query(10));
+        var second = executor.find(tenantId, null, query(10));
+
+        verify(entityService, times(1)).findEntityDataByQuery(eq(tenantId), any(), any());
+        assertThat(second.version()).isEqualTo(first.version());
+        assertThat(second.data()).isSameAs(first.data());
+        assertThat(stats.getDynamicQuerySharedCnt().get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenDifferentScopeOrPageLink_whenFind_thenExecutedSeparately() {
+        executor.find(tenantId, null, query(10));
+        executor.find(tenantId, new CustomerId(UUID.randomUUID()), query(10));
+        executor.find(tenantId, null, query(20));
+
+        verify(entityService, times(3)).findEntityDataByQuery(eq(tenantId), any(), any());
+        assertThat(stats.getDynamicQuerySharedCnt().get()).isZero();
+        assertThat(executor.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenExpiredResult_whenFind_thenExecutedAgain() {
+        executor = new SharedEntityDataQueryExecutor(entityService, stats, 0);
+        var first = executor.find(tenantId, null, query(10));
+        var second = executor.find(tenantId, null, query(10));
+
+        verify(entityService, times(2)).findEntityDataByQuery(eq(tenantId), any(), any());
+        assertThat(second.version()).isNotEqualTo(first.version());
+        executor.cleanup();
+        assertThat(executor.size()).isZero();
+    }
+
+    @Test
+    public void givenFailedExecution_whenFind_thenErrorPropagatedAndNotShared() {
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenThrow(new IllegalStateException("DB is down"));
+
+        assertThatThrownBy(() -> executor.find(tenantId, null, query(10))).isInstanceOf(IllegalStateException.class);
+        assertThat(executor.size()).isZero();
+    }
+
+    @Test
+    public void givenSharedData_whenCopyAndModify_thenOriginalUnchanged() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        PageData<EntityData> original = pageOf(deviceId);
+
+        PageData<EntityData> copy = SharedEntityDataQueryExecutor.copyOf(original);
+        copy.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES).put("temperature", new TsValue(2, "25"));
+
+        assertThat(copy.getData().get(0).getEntityId()).isEqualTo(deviceId);
+        assertThat(original.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES).get("temperature").getValue()).isEqualTo("20");
+    }
+
+    private static EntityDataQuery query(int pageSize) {
+        EntityTypeFilter filter = new EntityTypeFilter();
+        filter.setEntityType(EntityType.DEVICE);
+        EntityDataPageLink pageLink = new EntityDataPageLink(pageSize, 0, null, null);
+        pageLink.setDynamic(true);
+        return new EntityDataQuery(filter, pageLink, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static PageData<EntityData> pageOf(DeviceId deviceId) {
+        Map<String, TsValue> values = new HashMap<>();
+        values.put("temperature", new TsValue(1, "20"));
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, values);
+        return new PageData<>(List.of(new EntityData(deviceId, latest, null)), 1, 1, false);
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.service.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.sobeam.common.util.JacksonUtil;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebSocketCborUtilTest {
+
+    @Test
+    public void givenTelemetryUpdate_whenEncodedToCbor_thenDecodedToSameJsonAndSmaller() {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(1, IntStream.range(0, 100)
+                .<TsKvEntry>mapToObj(i -> new BasicTsKvEntry(1000L + i, new LongDataEntry("temperature", (long) i)))
+                .collect(Collectors.toList()));
+
+        byte[] cbor = WebSocketCborUtil.toBytes(update);
+        JsonNode decoded = WebSocketCborUtil.toJsonNode(cbor);
+
+        assertThat(JacksonUtil.toString(decoded)).isEqualTo(JacksonUtil.toString(update));
+        assertThat(cbor.length).isLessThan(JacksonUtil.toString(update).getBytes().length);
+    }
+
+    @Test
+    public void givenSubProtocol_whenResolveFormat_thenJsonIsDefault() {
+        assertThat(WebSocketPayloadFormat.forSubProtocol("sobeam.cbor.v1")).isEqualTo(WebSocketPayloadFormat.CBOR);
+        assertThat(WebSocketPayloadFormat.forSubProtocol("unknown")).isEqualTo(WebSocketPayloadFormat.JSON);
+        assertThat(WebSocketPayloadFormat.forSubProtocol(null)).isEqualTo(WebSocketPayloadFormat.JSON);
+        assertThat(WebSocketPayloadFormat.JSON.getSubProtocol()).isNull();
+    }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.actors;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.actors.AbstractTbActor;
+import org.sobeam.server.actors.DefaultTbActorSystem;
+import org.sobeam.server.actors.TbActor;
+import org.sobeam.server.actors.TbActorCreator;
+import org.sobeam.server.actors.TbActorDispatcherExecutors;
+import org.sobeam.server.actors.TbActorId;
+import org.sobeam.server.actors.TbActorMailboxOverflowPolicy;
+import org.sobeam.server.actors.TbActorMailboxType;
+import org.sobeam.server.actors.TbActorSystem;
+import org.sobeam.server.actors.TbActorSystemSettings;
+import org.sobeam.server.actors.TbStringActorId;
+import org.sobeam.server.common.msg.MsgType;
+import org.sobeam.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the actor mailboxes: several producer threads push messages to the shared set of actors
+ * and wait until all of them are processed by the dispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ActorMailboxBenchmark {
+
+    private static final String DISPATCHER_ID = "benchmark-dispatcher";
+    private static final int MSGS_PER_INVOCATION = 10000;
+
+    @Param({"1", "100"})
+    private int actorCount;
+
+    @Param({"5", "100"})
+    private int actorThroughput;
+
+    @Param({"LINKED", "RING_BUFFER"})
+    private TbActorMailboxType mailboxType;
+
+    @Param({"1024"})
+    private int mailboxCapacity;
+
+    private ExecutorService executor;
+    private TbActorSystem actorSystem;
+    private TbActorId[] actorIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(actorThroughput, 1, 1,
+                mailboxType, mailboxCapacity, TbActorMailboxOverflowPolicy.BACK_PRESSURE, TimeUnit.MINUTES.toMillis(1)));
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
+        actorSystem.createDispatcher(DISPATCHER_ID, executor);
+        actorIds = new TbActorId[actorCount];
+        for (int i = 0; i < actorCount; i++) {
+            actorIds[i] = actorSystem.createRootActor(DISPATCHER_ID, new CountingActorCreator(new TbStringActorId("actor-" + i))).getActorId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actorSystem.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(MSGS_PER_INVOCATION)
+    public void singleProducer() throws InterruptedException {
+        tellAndAwait();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(MSGS_PER_INVOCATION)
+    public void fourProducers() throws InterruptedException {
+        tellAndAwait();
+    }
+
+    private void tellAndAwait() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(MSGS_PER_INVOCATION);
+        LatchMsg msg = new LatchMsg(latch);
+        int offset = ThreadLocalRandom.current().nextInt(actorCount);
+        for (int i = 0; i < MSGS_PER_INVOCATION; i++) {
+            actorSystem.tell(actorIds[(offset + i) % actorCount], msg);
+        }
+        if (!latch.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Messages were not processed in time");
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class LatchMsg implements TbActorMsg {
+
+        @Getter
+        private final CountDownLatch latch;
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
+        }
+    }
+
+    private static class CountingActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            ((LatchMsg) msg).getLatch().countDown();
+            return true;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class CountingActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new CountingActor();
+        }
+    }
+
+}
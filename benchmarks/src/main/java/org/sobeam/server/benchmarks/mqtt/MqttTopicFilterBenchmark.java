@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.mqtt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.transport.mqtt.util.MqttTopicFilter;
+import org.sobeam.server.transport.mqtt.util.MqttTopicFilterFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of the published topics against the device profile topic filters, done for every MQTT publish.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MqttTopicFilterBenchmark {
+
+    @Param({"v1/devices/me/telemetry", "v1/devices/+/telemetry", "sensors/+/data/#", "#"})
+    private String topicFilter;
+
+    private MqttTopicFilter filter;
+
+    @Setup
+    public void setup() {
+        filter = MqttTopicFilterFactory.toFilter(topicFilter);
+    }
+
+    @Benchmark
+    public boolean matchingTopic() {
+        return filter.filter("v1/devices/me/telemetry") | filter.filter("sensors/floor-3/data/temperature/raw");
+    }
+
+    @Benchmark
+    public boolean notMatchingTopic() {
+        return filter.filter("v1/devices/me/attributes/request/1");
+    }
+
+    @Benchmark
+    public MqttTopicFilter toFilter() {
+        return MqttTopicFilterFactory.toFilter(topicFilter);
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.msg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.common.data.DataConstants;
+import org.sobeam.server.common.data.id.CustomerId;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.RuleChainId;
+import org.sobeam.server.common.data.id.RuleNodeId;
+import org.sobeam.server.common.data.msg.TbMsgType;
+import org.sobeam.server.common.msg.TbMsg;
+import org.sobeam.server.common.msg.TbMsgMetaData;
+import org.sobeam.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protobuf serialization of the rule engine messages that happens on every push to and poll from the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbMsgSerializationBenchmark {
+
+    @Param({"10", "100"})
+    private int dataKeys;
+
+    private TbMsg msg;
+    private byte[] msgBytes;
+
+    @Setup
+    public void setup() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Thermostat A-123");
+        metaData.putValue("deviceType", "thermostat");
+        metaData.putValue("ts", "1700000000000");
+        StringBuilder data = new StringBuilder("{");
+        for (int i = 0; i < dataKeys; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append("\"key").append(i).append("\":").append(i * 1.5);
+        }
+        data.append('}');
+        msg = TbMsg.newMsg(DataConstants.MAIN_QUEUE_NAME, TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()),
+                new CustomerId(UUID.randomUUID()), metaData, data.toString(), new RuleChainId(UUID.randomUUID()), new RuleNodeId(UUID.randomUUID()));
+        msgBytes = TbMsg.toByteArray(msg);
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return TbMsg.toByteArray(msg);
+    }
+
+    @Benchmark
+    public TbMsg fromBytes() {
+        return TbMsg.fromBytes(DataConstants.MAIN_QUEUE_NAME, msgBytes, TbMsgCallback.EMPTY);
+    }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.msg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.common.msg.tools.TbRateLimits;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the rate limit check that is done for every incoming message,
+ * for a single and for several threads consuming from the same limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbRateLimitsBenchmark {
+
+    @Param({"1000000000:1", "1000000000:1,1000000000:60,1000000000:3600"})
+    private String limitsConfiguration;
+
+    private TbRateLimits rateLimits;
+
+    @Setup
+    public void setup() {
+        rateLimits = new TbRateLimits(limitsConfiguration);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean tryConsume() {
+        return rateLimits.tryConsume();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tryConsumeContended() {
+        return rateLimits.tryConsume();
+    }
+
+}
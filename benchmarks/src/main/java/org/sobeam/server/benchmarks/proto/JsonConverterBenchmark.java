@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.proto;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.common.adaptor.JsonConverter;
+import org.sobeam.server.common.data.kv.KvEntry;
+import org.sobeam.server.gen.transport.TransportProtos;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the device payloads received by the transports into the queue messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonConverterBenchmark {
+
+    private static final String TELEMETRY = "{\"temperature\":42.5,\"humidity\":77,\"active\":true,\"status\":\"OK\"," +
+            "\"location\":{\"lat\":50.4501,\"lng\":30.5234},\"counter\":1234567890123}";
+    private static final String TELEMETRY_WITH_TS = "[{\"ts\":1700000000000,\"values\":" + TELEMETRY + "}," +
+            "{\"ts\":1700000001000,\"values\":" + TELEMETRY + "}]";
+
+    private JsonElement telemetryJson;
+    private JsonElement telemetryWithTsJson;
+
+    @Setup
+    public void setup() {
+        telemetryJson = JsonParser.parseString(TELEMETRY);
+        telemetryWithTsJson = JsonParser.parseString(TELEMETRY_WITH_TS);
+    }
+
+    @Benchmark
+    public TransportProtos.PostTelemetryMsg convertToTelemetryProto() {
+        return JsonConverter.convertToTelemetryProto(telemetryJson, 1700000000000L);
+    }
+
+    @Benchmark
+    public TransportProtos.PostTelemetryMsg convertToTelemetryProtoWithTs() {
+        return JsonConverter.convertToTelemetryProto(telemetryWithTsJson, 1700000000000L);
+    }
+
+    @Benchmark
+    public TransportProtos.PostTelemetryMsg parseAndConvertToTelemetryProto() {
+        return JsonConverter.convertToTelemetryProto(JsonParser.parseString(TELEMETRY), 1700000000000L);
+    }
+
+    @Benchmark
+    public TransportProtos.PostAttributeMsg convertToAttributesProto() {
+        return JsonConverter.convertToAttributesProto(telemetryJson);
+    }
+
+    @Benchmark
+    public Map<Long, List<KvEntry>> convertToTelemetry() {
+        return JsonConverter.convertToTelemetry(telemetryWithTsJson, 1700000000000L);
+    }
+
+}
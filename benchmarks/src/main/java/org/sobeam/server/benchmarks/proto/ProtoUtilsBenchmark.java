@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.proto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.common.util.JacksonUtil;
+import org.sobeam.server.common.data.Device;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.DeviceProfileId;
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.kv.AttributeKvEntry;
+import org.sobeam.server.common.data.kv.BaseAttributeKvEntry;
+import org.sobeam.server.common.data.kv.JsonDataEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.util.ProtoUtils;
+import org.sobeam.server.gen.transport.TransportProtos;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between the domain objects and their protobuf representation used in the cluster messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProtoUtilsBenchmark {
+
+    private AttributeKvEntry longAttribute;
+    private AttributeKvEntry jsonAttribute;
+    private TransportProtos.AttributeValueProto longAttributeProto;
+    private Device device;
+    private TransportProtos.DeviceProto deviceProto;
+
+    @Setup
+    public void setup() {
+        longAttribute = new BaseAttributeKvEntry(new LongDataEntry("counter", 1234567890L), 1700000000000L, 5L);
+        jsonAttribute = new BaseAttributeKvEntry(new JsonDataEntry("config", "{\"interval\":60,\"mode\":\"eco\"}"), 1700000000000L, 5L);
+        longAttributeProto = ProtoUtils.toProto(longAttribute);
+
+        device = new Device(new DeviceId(UUID.randomUUID()));
+        device.setTenantId(TenantId.fromUUID(UUID.randomUUID()));
+        device.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        device.setCreatedTime(1700000000000L);
+        device.setName("Thermostat A-123");
+        device.setType("thermostat");
+        device.setLabel("Floor 3");
+        device.setAdditionalInfo(JacksonUtil.toJsonNode("{\"gateway\":false,\"description\":\"Benchmark device\"}"));
+        device.setVersion(1L);
+        deviceProto = ProtoUtils.toProto(device);
+    }
+
+    @Benchmark
+    public TransportProtos.AttributeValueProto longAttributeToProto() {
+        return ProtoUtils.toProto(longAttribute);
+    }
+
+    @Benchmark
+    public TransportProtos.AttributeValueProto jsonAttributeToProto() {
+        return ProtoUtils.toProto(jsonAttribute);
+    }
+
+    @Benchmark
+    public AttributeKvEntry attributeFromProto() {
+        return ProtoUtils.fromProto(longAttributeProto);
+    }
+
+    @Benchmark
+    public TransportProtos.DeviceProto deviceToProto() {
+        return ProtoUtils.toProto(device);
+    }
+
+    @Benchmark
+    public Device deviceFromProto() {
+        return ProtoUtils.fromProto(deviceProto);
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.benchmarks.BenchmarkUtils;
+import org.sobeam.server.common.data.DataConstants;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.QueueId;
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.queue.Queue;
+import org.sobeam.server.common.msg.queue.ServiceType;
+import org.sobeam.server.common.msg.queue.TopicPartitionInfo;
+import org.sobeam.server.gen.transport.TransportProtos.ServiceInfo;
+import org.sobeam.server.queue.discovery.HashPartitionService;
+import org.sobeam.server.queue.discovery.QueueRoutingInfo;
+import org.sobeam.server.queue.discovery.TbServiceInfoProvider;
+import org.sobeam.server.queue.discovery.TenantRoutingInfo;
+import org.sobeam.server.queue.discovery.TopicService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of the topic partition for the entity, done for every message pushed to the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HashPartitionServiceBenchmark {
+
+    private static final int ENTITIES_COUNT = 1024;
+
+    @Param({"10", "1000"})
+    private int tenantCount;
+
+    @Param({"3"})
+    private int serviceCount;
+
+    @Param({"0", "4096"})
+    private int hashCacheSize;
+
+    private HashPartitionService partitionService;
+    private TenantId[] tenantIds;
+    private DeviceId[] deviceIds;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int idx;
+    }
+
+    @Setup
+    public void setup() {
+        ServiceInfo currentService = serviceInfo("tb-node-0");
+        List<ServiceInfo> otherServices = new ArrayList<>();
+        for (int i = 1; i < serviceCount; i++) {
+            otherServices.add(serviceInfo("tb-node-" + i));
+        }
+
+        Queue mainQueue = new Queue(new QueueId(UUID.randomUUID()));
+        mainQueue.setTenantId(TenantId.SYS_TENANT_ID);
+        mainQueue.setName(DataConstants.MAIN_QUEUE_NAME);
+        mainQueue.setTopic("tb_rule_engine.main");
+        mainQueue.setPartitions(10);
+
+        TopicService topicService = new TopicService();
+        BenchmarkUtils.setField(topicService, "prefix", "");
+
+        partitionService = new HashPartitionService(new StaticServiceInfoProvider(currentService),
+                tenantId -> new TenantRoutingInfo(tenantId, null, false),
+                event -> {},
+                () -> List.of(new QueueRoutingInfo(mainQueue)),
+                topicService);
+        BenchmarkUtils.setField(partitionService, "coreTopic", "tb_core");
+        BenchmarkUtils.setField(partitionService, "corePartitions", 10);
+        BenchmarkUtils.setField(partitionService, "vcTopic", "tb_version_control");
+        BenchmarkUtils.setField(partitionService, "vcPartitions", 10);
+        BenchmarkUtils.setField(partitionService, "edgeTopic", "tb_edge");
+        BenchmarkUtils.setField(partitionService, "edgePartitions", 10);
+        BenchmarkUtils.setField(partitionService, "hashFunctionName", "murmur3_128");
+        BenchmarkUtils.setField(partitionService, "hashCacheSize", hashCacheSize);
+        partitionService.init();
+        partitionService.partitionsInit();
+        partitionService.recalculatePartitions(currentService, otherServices);
+
+        tenantIds = new TenantId[tenantCount];
+        for (int i = 0; i < tenantCount; i++) {
+            tenantIds[i] = TenantId.fromUUID(UUID.randomUUID());
+        }
+        deviceIds = new DeviceId[ENTITIES_COUNT];
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            deviceIds[i] = new DeviceId(UUID.randomUUID());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TopicPartitionInfo resolveCore(Cursor cursor) {
+        int idx = cursor.idx++;
+        return partitionService.resolve(ServiceType.TB_CORE, tenantIds[idx % tenantCount], deviceIds[idx % ENTITIES_COUNT]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TopicPartitionInfo resolveRuleEngine(Cursor cursor) {
+        int idx = cursor.idx++;
+        return partitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantIds[idx % tenantCount], deviceIds[idx % ENTITIES_COUNT]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TopicPartitionInfo resolveRuleEnginePartition(Cursor cursor) {
+        int idx = cursor.idx++;
+        return partitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantIds[idx % tenantCount], deviceIds[idx % ENTITIES_COUNT], idx % 10);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TopicPartitionInfo resolveRuleEngineContended(Cursor cursor) {
+        int idx = cursor.idx++;
+        return partitionService.resolve(ServiceType.TB_RULE_ENGINE, DataConstants.MAIN_QUEUE_NAME, tenantIds[idx % tenantCount], deviceIds[idx % ENTITIES_COUNT]);
+    }
+
+    private static ServiceInfo serviceInfo(String serviceId) {
+        return ServiceInfo.newBuilder()
+                .setServiceId(serviceId)
+                .addServiceTypes(ServiceType.TB_CORE.name())
+                .addServiceTypes(ServiceType.TB_RULE_ENGINE.name())
+                .build();
+    }
+
+    private record StaticServiceInfoProvider(ServiceInfo serviceInfo) implements TbServiceInfoProvider {
+
+        @Override
+        public String getServiceId() {
+            return serviceInfo.getServiceId();
+        }
+
+        @Override
+        public String getServiceType() {
+            return "monolith";
+        }
+
+        @Override
+        public ServiceInfo getServiceInfo() {
+            return serviceInfo;
+        }
+
+        @Override
+        public boolean isService(ServiceType serviceType) {
+            return serviceInfo.getServiceTypesList().contains(serviceType.name());
+        }
+
+        @Override
+        public ServiceInfo generateNewServiceInfoWithCurrentSystemInfo() {
+            return serviceInfo;
+        }
+
+        @Override
+        public Set<UUID> getAssignedTenantProfiles() {
+            return Set.of();
+        }
+    }
+
+}
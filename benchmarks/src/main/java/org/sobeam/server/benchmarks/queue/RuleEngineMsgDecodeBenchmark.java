@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.queue;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.EntityId;
+import org.sobeam.server.common.data.id.EntityIdFactory;
+import org.sobeam.server.common.data.msg.TbMsgType;
+import org.sobeam.server.common.msg.TbMsg;
+import org.sobeam.server.common.msg.TbMsgMetaData;
+import org.sobeam.server.common.msg.gen.MsgProtos;
+import org.sobeam.server.common.msg.queue.TbMsgCallback;
+import org.sobeam.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.sobeam.server.queue.common.DefaultTbQueueMsgHeaders;
+import org.sobeam.server.queue.common.TbAliasedProtoQueueMsg;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the rule engine queue record into the TbMsg and resolution of the originator for the submit strategy.
+ * Run with the GC profiler ({@code -prof gc}) to compare the allocation rate of the copying and the aliased paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RuleEngineMsgDecodeBenchmark {
+
+    private byte[] record;
+
+    @Setup
+    public void setup() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Thermostat A-123");
+        metaData.putValue("deviceType", "thermostat");
+        metaData.putValue("ts", "1700000000000");
+        TbMsg tbMsg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()), metaData,
+                "{\"temperature\":42.5,\"humidity\":77,\"battery\":93,\"status\":\"ok\"}");
+        UUID tenantId = UUID.randomUUID();
+        record = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getLeastSignificantBits())
+                .setTbMsg(TbMsg.toByteString(tbMsg))
+                .build().toByteArray();
+    }
+
+    @Benchmark
+    public TbMsg eagerDecode() throws InvalidProtocolBufferException {
+        ToRuleEngineMsg msg = ToRuleEngineMsg.parseFrom(record);
+        return TbMsg.fromBytes("Main", msg.getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+    }
+
+    @Benchmark
+    public TbMsg aliasedDecode() throws InvalidProtocolBufferException {
+        TbAliasedProtoQueueMsg<ToRuleEngineMsg> msg = TbAliasedProtoQueueMsg.parse(UUID.randomUUID(), record, new DefaultTbQueueMsgHeaders(), ToRuleEngineMsg.parser());
+        return TbMsg.fromBytes("Main", msg.getValue().getTbMsg(), TbMsgCallback.EMPTY);
+    }
+
+    @Benchmark
+    public EntityId eagerOriginator() throws InvalidProtocolBufferException {
+        ToRuleEngineMsg msg = ToRuleEngineMsg.parseFrom(record);
+        MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsg());
+        return EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+    }
+
+    @Benchmark
+    public EntityId aliasedOriginator() throws InvalidProtocolBufferException {
+        TbAliasedProtoQueueMsg<ToRuleEngineMsg> msg = TbAliasedProtoQueueMsg.parse(UUID.randomUUID(), record, new DefaultTbQueueMsgHeaders(), ToRuleEngineMsg.parser());
+        return TbMsg.originatorFromBytes(msg.getValue().getTbMsg());
+    }
+
+}
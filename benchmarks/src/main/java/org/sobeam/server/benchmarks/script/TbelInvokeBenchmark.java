@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.script;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.common.util.JacksonUtil;
+import org.sobeam.script.api.ScriptType;
+import org.sobeam.script.api.tbel.DefaultTbelInvokeService;
+import org.sobeam.server.benchmarks.BenchmarkUtils;
+import org.sobeam.server.common.data.id.TenantId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invocation of the TBEL scripts the same way the script rule nodes do it:
+ * the message data is converted to the map and the result is awaited synchronously.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbelInvokeBenchmark {
+
+    private static final String[] ARG_NAMES = {"msg", "metadata", "msgType"};
+    private static final String FILTER_SCRIPT = "return msg.temperature > 20 && metadata.deviceType == 'thermostat';";
+    private static final String TRANSFORM_SCRIPT = "var newMsg = {};\n" +
+            "newMsg.temperatureF = msg.temperature * 1.8 + 32;\n" +
+            "newMsg.humidity = msg.humidity;\n" +
+            "newMsg.alert = msg.temperature > 40;\n" +
+            "metadata.converted = 'true';\n" +
+            "return {msg: newMsg, metadata: metadata, msgType: msgType};";
+    private static final String DATA = "{\"temperature\":42.5,\"humidity\":77,\"status\":\"OK\"}";
+    private static final Map<String, String> METADATA = Map.of("deviceName", "Thermostat A-123", "deviceType", "thermostat");
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    private DefaultTbelInvokeService invokeService;
+    private UUID filterScriptId;
+    private UUID transformScriptId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        invokeService = new DefaultTbelInvokeService(Optional.empty(), Optional.empty()) {};
+        BenchmarkUtils.setField(invokeService, "maxTotalArgsSize", 100000L);
+        BenchmarkUtils.setField(invokeService, "maxResultSize", 300000L);
+        BenchmarkUtils.setField(invokeService, "maxScriptBodySize", 50000L);
+        BenchmarkUtils.setField(invokeService, "maxErrors", 3);
+        BenchmarkUtils.setField(invokeService, "maxBlackListDurationSec", 60);
+        BenchmarkUtils.setField(invokeService, "maxInvokeRequestsTimeout", 0L);
+        BenchmarkUtils.setField(invokeService, "threadPoolSize", Runtime.getRuntime().availableProcessors());
+        BenchmarkUtils.setField(invokeService, "maxMemoryLimitMb", 8L);
+        BenchmarkUtils.setField(invokeService, "compiledScriptsCacheSize", 1000);
+        invokeService.init();
+        filterScriptId = invokeService.eval(tenantId, ScriptType.RULE_NODE_SCRIPT, FILTER_SCRIPT, ARG_NAMES).get();
+        transformScriptId = invokeService.eval(tenantId, ScriptType.RULE_NODE_SCRIPT, TRANSFORM_SCRIPT, ARG_NAMES).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        invokeService.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object filter() throws Exception {
+        return invoke(filterScriptId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object transform() throws Exception {
+        return invoke(transformScriptId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object transformContended() throws Exception {
+        return invoke(transformScriptId);
+    }
+
+    private Object invoke(UUID scriptId) throws Exception {
+        Object data = JacksonUtil.fromString(DATA, Object.class);
+        return invokeService.invokeScript(tenantId, null, scriptId, data, new HashMap<>(METADATA), "POST_TELEMETRY_REQUEST").get();
+    }
+
+}
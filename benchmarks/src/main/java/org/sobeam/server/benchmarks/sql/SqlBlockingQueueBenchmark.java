@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sobeam.server.common.stats.DefaultMessagesStats;
+import org.sobeam.server.common.stats.MessagesStats;
+import org.sobeam.server.common.stats.StatsCounter;
+import org.sobeam.server.dao.sql.ScheduledLogExecutorComponent;
+import org.sobeam.server.dao.sql.TbSqlBlockingQueue;
+import org.sobeam.server.dao.sql.TbSqlBlockingQueueParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Batching throughput of {@link TbSqlBlockingQueue}: producers add entities and wait for the batches to be "saved".
+ * The save function burns CPU proportionally to the batch size instead of going to the database,
+ * so the benchmark shows the overhead of the queue itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SqlBlockingQueueBenchmark {
+
+    private static final int ENTITIES_PER_INVOCATION = 10000;
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    @Param({"5"})
+    private long maxDelay;
+
+    @Param({"0", "50"})
+    private long saveTokensPerEntity;
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlBlockingQueue<Long, Void> queue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Benchmark")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(TimeUnit.MINUTES.toMillis(1))
+                .statsNamePrefix("benchmark")
+                .build();
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+        queue = new TbSqlBlockingQueue<>(params, createStats());
+        Function<List<Long>, List<Void>> saveFunction = entities -> {
+            Blackhole.consumeCPU(saveTokensPerEntity * entities.size());
+            return Collections.emptyList();
+        };
+        queue.init(logExecutor, saveFunction, Comparator.naturalOrder(), Function.identity(), 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.destroy();
+        logExecutor.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(ENTITIES_PER_INVOCATION)
+    public void singleProducer() throws Exception {
+        addAndAwait();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(ENTITIES_PER_INVOCATION)
+    public void fourProducers() throws Exception {
+        addAndAwait();
+    }
+
+    private void addAndAwait() throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>(ENTITIES_PER_INVOCATION);
+        for (long i = 0; i < ENTITIES_PER_INVOCATION; i++) {
+            futures.add(queue.add(i));
+        }
+        Futures.allAsList(futures).get(1, TimeUnit.MINUTES);
+    }
+
+    private static MessagesStats createStats() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new DefaultMessagesStats(createCounter(registry, "total"), createCounter(registry, "successful"), createCounter(registry, "failed"));
+    }
+
+    private static StatsCounter createCounter(SimpleMeterRegistry registry, String name) {
+        return new StatsCounter(new AtomicInteger(), registry.counter("benchmark." + name), name);
+    }
+
+}
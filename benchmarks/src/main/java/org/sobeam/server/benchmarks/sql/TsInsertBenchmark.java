@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.benchmarks.sql;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sobeam.server.benchmarks.BenchmarkUtils;
+import org.sobeam.server.dao.model.sqlts.ts.TsKvEntity;
+import org.sobeam.server.dao.sqlts.insert.sql.SqlInsertTsRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JDBC batch insert and the binary COPY insert of {@link SqlInsertTsRepository}.
+ * Requires a running PostgreSQL: the database is configured with the url, username and password params
+ * and a ts_kv table is created in it if it does not exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TsInsertBenchmark {
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int ENTITIES_COUNT = 100;
+    private static final int KEYS_COUNT = 10;
+
+    private static final String CREATE_TS_KV_TABLE = "CREATE TABLE IF NOT EXISTS ts_kv (entity_id uuid NOT NULL, key int NOT NULL, ts bigint NOT NULL, " +
+            "bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json, " +
+            "CONSTRAINT ts_kv_pkey PRIMARY KEY (entity_id, key, ts))";
+
+    @Param({"jdbc:postgresql://localhost:5432/sobeam_benchmarks"})
+    private String url;
+
+    @Param({"postgres"})
+    private String username;
+
+    @Param({"postgres"})
+    private String password;
+
+    @Param({"false", "true"})
+    private boolean copyInsert;
+
+    private HikariDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+    private SqlInsertTsRepository repository;
+    private List<UUID> entityIds;
+    private long ts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(2);
+        dataSource = new HikariDataSource(config);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(CREATE_TS_KV_TABLE);
+        jdbcTemplate.execute("TRUNCATE ts_kv");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        repository = new SqlInsertTsRepository();
+        BenchmarkUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        BenchmarkUtils.setField(repository, "transactionTemplate", transactionTemplate);
+        BenchmarkUtils.setField(repository, "removeNullChars", true);
+        BenchmarkUtils.setField(repository, "copyInsertEnabled", copyInsert);
+
+        entityIds = new ArrayList<>(ENTITIES_COUNT);
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            entityIds.add(UUID.randomUUID());
+        }
+        ts = System.currentTimeMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void saveBatch() {
+        List<TsKvEntity> batch = createBatch();
+        transactionTemplate.executeWithoutResult(status -> repository.saveOrUpdate(batch));
+    }
+
+    private List<TsKvEntity> createBatch() {
+        List<TsKvEntity> batch = new ArrayList<>(BATCH_SIZE);
+        while (batch.size() < BATCH_SIZE) {
+            ts++;
+            for (UUID entityId : entityIds) {
+                for (int key = 0; key < KEYS_COUNT && batch.size() < BATCH_SIZE; key++) {
+                    TsKvEntity entity = new TsKvEntity();
+                    entity.setEntityId(entityId);
+                    entity.setKey(key);
+                    entity.setTs(ts);
+                    if (key % 2 == 0) {
+                        entity.setDoubleValue(ts * 0.5);
+                    } else {
+                        entity.setLongValue(ts);
+                    }
+                    batch.add(entity);
+                }
+            }
+        }
+        return batch;
+    }
+
+}
@@ -62,6 +62,15 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
     }
 
+    @Override
+    public void createTenantFairDispatcher(String dispatcherId, ExecutorService executor, TbActorSchedulingWeightProvider weightProvider) {
+        Dispatcher dispatcher = new Dispatcher(dispatcherId, executor, new TenantFairScheduler(executor, weightProvider));
+        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, dispatcher);
+        if (current != null) {
+            throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
+        }
+    }
+
     @Override
     public void destroyDispatcher(String dispatcherId) {
         Dispatcher dispatcher = dispatchers.remove(dispatcherId);
@@ -72,6 +81,23 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
     }
 
+    @Override
+    public List<TbTenantQueueingStats> getTenantQueueingStats(String dispatcherId) {
+        Dispatcher dispatcher = dispatchers.get(dispatcherId);
+        return dispatcher != null ? dispatcher.getQueueingStats() : Collections.emptyList();
+    }
+
+    @Override
+    public long getMailboxOverflowCount(String dispatcherId) {
+        Dispatcher dispatcher = dispatchers.get(dispatcherId);
+        return dispatcher != null ? dispatcher.getAndResetMailboxOverflows() : 0;
+    }
+
+    @Override
+    public void refreshSchedulingWeights() {
+        dispatchers.values().forEach(Dispatcher::refreshWeights);
+    }
+
     @Override
     public TbActorRef getActor(TbActorId actorId) {
         return actors.get(actorId);
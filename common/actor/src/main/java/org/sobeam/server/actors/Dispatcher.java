@@ -17,12 +17,87 @@ package org.sobeam.server.actors;
 
 import lombok.Data;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Data
 class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    private final TenantFairScheduler tenantScheduler;
+    private final AtomicLong mailboxOverflows = new AtomicLong();
+
+    Dispatcher(String dispatcherId, ExecutorService executor) {
+        this(dispatcherId, executor, null);
+    }
+
+    Dispatcher(String dispatcherId, ExecutorService executor, TenantFairScheduler tenantScheduler) {
+        this.dispatcherId = dispatcherId;
+        this.executor = executor;
+        this.tenantScheduler = tenantScheduler;
+    }
+
+    /**
+     * Executes the task of the actor that belongs to the given tenant.
+     * The tasks are scheduled by tenant if the dispatcher is tenant-fair, otherwise they go directly to the executor.
+     */
+    void execute(TbActorId tenantActorId, Runnable task) {
+        if (tenantScheduler != null) {
+            tenantScheduler.execute(tenantActorId, task);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * @return true if the current thread belongs to some dispatcher executor, so it must never be blocked:
+     * the mailboxes it would wait for may be drained only by the same dispatcher threads
+     */
+    static boolean isDispatcherThread() {
+        return TbActorDispatcherExecutors.isDispatcherThread(Thread.currentThread());
+    }
+
+    void onMailboxOverflow() {
+        mailboxOverflows.incrementAndGet();
+    }
+
+    long getAndResetMailboxOverflows() {
+        return mailboxOverflows.getAndSet(0);
+    }
+
+    List<TbTenantQueueingStats> getQueueingStats() {
+        return tenantScheduler != null ? tenantScheduler.getQueueingStats() : Collections.emptyList();
+    }
+
+    void refreshWeights() {
+        if (tenantScheduler != null) {
+            tenantScheduler.refreshWeights();
+        }
+    }
+
+    /**
+     * @return true if other tasks are waiting for the dispatcher threads, or if it is not possible to check it
+     */
+    boolean hasQueuedTasks() {
+        if (tenantScheduler != null) {
+            return tenantScheduler.hasQueuedTasks();
+        } else if (executor instanceof ForkJoinPool pool) {
+            // only the queue of the current worker is checked instead of scanning the queues of all the workers:
+            // the tasks submitted by the other workers are taken by them or stolen by the idle ones
+            return pool.hasQueuedSubmissions() || (Thread.currentThread() instanceof ForkJoinWorkerThread worker
+                    && worker.getPool() == pool && ForkJoinTask.getQueuedTaskCount() > 0);
+        } else if (executor instanceof ThreadPoolExecutor pool) {
+            return !pool.getQueue().isEmpty();
+        } else {
+            return true;
+        }
+    }
 
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import org.sobeam.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+class LinkedTbActorMsgQueue implements TbActorMsgQueue {
+
+    private final ConcurrentLinkedQueue<TbActorMsg> queue = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public boolean offer(TbActorMsg msg) {
+        return queue.offer(msg);
+    }
+
+    @Override
+    public TbActorMsg poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public void forEach(Consumer<TbActorMsg> action) {
+        queue.forEach(action);
+    }
+
+}
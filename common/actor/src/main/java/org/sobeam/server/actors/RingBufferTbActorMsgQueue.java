@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import org.sobeam.server.common.msg.TbActorMsg;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer/single-consumer queue on top of the preallocated array.
+ * Producers claim the slot by incrementing the producer index and then publish the message into the slot.
+ * The consumer waits for the claimed slot to be published, so the order of the claimed slots is preserved.
+ * <p>
+ * Indexes and slots are accessed via {@link VarHandle}s to avoid extra objects per mailbox,
+ * since there may be millions of actors in the system.
+ */
+class RingBufferTbActorMsgQueue implements TbActorMsgQueue {
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(TbActorMsg[].class);
+    private static final VarHandle PRODUCER_INDEX;
+    private static final VarHandle CONSUMER_INDEX;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            PRODUCER_INDEX = lookup.findVarHandle(RingBufferTbActorMsgQueue.class, "producerIndex", long.class);
+            CONSUMER_INDEX = lookup.findVarHandle(RingBufferTbActorMsgQueue.class, "consumerIndex", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final TbActorMsg[] buffer;
+    private final int mask;
+    private volatile long producerIndex;
+    private volatile long consumerIndex;
+
+    RingBufferTbActorMsgQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new TbActorMsg[size];
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public boolean offer(TbActorMsg msg) {
+        long capacity = buffer.length;
+        while (true) {
+            long pIdx = producerIndex;
+            if (pIdx - consumerIndex >= capacity) {
+                return false;
+            }
+            if (PRODUCER_INDEX.compareAndSet(this, pIdx, pIdx + 1)) {
+                SLOT.setRelease(buffer, (int) (pIdx & mask), msg);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public TbActorMsg poll() {
+        long cIdx = consumerIndex;
+        int offset = (int) (cIdx & mask);
+        TbActorMsg msg = (TbActorMsg) SLOT.getAcquire(buffer, offset);
+        if (msg == null) {
+            if (cIdx == producerIndex) {
+                return null;
+            }
+            // the slot is claimed by the producer, but the message is not published yet
+            do {
+                Thread.yield();
+                msg = (TbActorMsg) SLOT.getAcquire(buffer, offset);
+            } while (msg == null);
+        }
+        SLOT.setRelease(buffer, offset, null);
+        CONSUMER_INDEX.setRelease(this, cIdx + 1);
+        return msg;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    @Override
+    public void forEach(Consumer<TbActorMsg> action) {
+        long pIdx = producerIndex;
+        for (long idx = consumerIndex; idx < pIdx; idx++) {
+            TbActorMsg msg = (TbActorMsg) SLOT.getAcquire(buffer, (int) (idx & mask));
+            if (msg != null) {
+                action.accept(msg);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the executors for the actor dispatchers.
+ * Their threads are marked as the dispatcher threads once on creation, so the actor mailboxes never block them
+ * when the mailbox overflow policy is BACK_PRESSURE. The threads of any other executor are treated as external ones.
+ */
+public final class TbActorDispatcherExecutors {
+
+    private TbActorDispatcherExecutors() {
+    }
+
+    public static ExecutorService newSingleThreadExecutor(String name) {
+        AtomicLong threadNumber = new AtomicLong(1);
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> new DispatcherThread(r, name + "-thread-" + threadNumber.getAndIncrement()));
+    }
+
+    public static ExecutorService newWorkStealingPool(int parallelism, String namePrefix) {
+        AtomicLong threadNumber = new AtomicLong(1);
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = new DispatcherForkJoinWorkerThread(pool);
+            thread.setName(namePrefix + "-" + thread.getPoolIndex() + "-" + threadNumber.getAndIncrement());
+            return thread;
+        }, null, true);
+    }
+
+    static boolean isDispatcherThread(Thread thread) {
+        return thread instanceof DispatcherThread || thread instanceof DispatcherForkJoinWorkerThread;
+    }
+
+    private static final class DispatcherThread extends Thread {
+
+        DispatcherThread(Runnable task, String name) {
+            super(task, name);
+            setDaemon(false);
+            setPriority(Thread.NORM_PRIORITY);
+        }
+
+    }
+
+    private static final class DispatcherForkJoinWorkerThread extends ForkJoinWorkerThread {
+
+        DispatcherForkJoinWorkerThread(ForkJoinPool pool) {
+            super(pool);
+            setContextClassLoader(TbActorDispatcherExecutors.class.getClassLoader());
+        }
+
+    }
+
+}
@@ -15,8 +15,8 @@
  */
 package org.sobeam.server.actors;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.sobeam.server.common.data.EntityType;
 import org.sobeam.server.common.msg.MsgType;
@@ -25,15 +25,14 @@ import org.sobeam.server.common.msg.TbActorMsg;
 import org.sobeam.server.common.msg.TbActorStopReason;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 @Slf4j
 @Getter
-@RequiredArgsConstructor
 public final class TbActorMailbox implements TbActorCtx {
     private static final boolean HIGH_PRIORITY = true;
     private static final boolean NORMAL_PRIORITY = false;
@@ -44,21 +43,48 @@ public final class TbActorMailbox implements TbActorCtx {
     private static final boolean NOT_READY = false;
     private static final boolean READY = true;
 
+    private static final long BACK_PRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
     private final TbActorSystem system;
     private final TbActorSystemSettings settings;
     private final TbActorId selfId;
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final TbActorId tenantActorId;
+    @Getter(AccessLevel.NONE)
+    private final TbActorMsgQueue highPriorityMsgs = new LinkedTbActorMsgQueue();
+    @Getter(AccessLevel.NONE)
+    private final TbActorMsgQueue normalPriorityMsgs;
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
     private volatile TbActorStopReason stopReason;
 
+    public TbActorMailbox(TbActorSystem system, TbActorSystemSettings settings, TbActorId selfId, TbActorRef parentRef, TbActor actor, Dispatcher dispatcher) {
+        this.system = system;
+        this.settings = settings;
+        this.selfId = selfId;
+        this.parentRef = parentRef;
+        this.actor = actor;
+        this.dispatcher = dispatcher;
+        this.tenantActorId = resolveTenantActorId(selfId, parentRef);
+        if (settings.getMailboxType() == TbActorMailboxType.RING_BUFFER) {
+            this.normalPriorityMsgs = new RingBufferTbActorMsgQueue(settings.getMailboxCapacity());
+        } else {
+            this.normalPriorityMsgs = new LinkedTbActorMsgQueue();
+        }
+    }
+
+    private static TbActorId resolveTenantActorId(TbActorId selfId, TbActorRef parentRef) {
+        if (selfId != null && selfId.getEntityType() == EntityType.TENANT) {
+            return selfId;
+        }
+        return parentRef instanceof TbActorMailbox parent ? parent.getTenantActorId() : null;
+    }
+
     public void initActor() {
-        dispatcher.getExecutor().execute(() -> tryInit(1));
+        execute(() -> tryInit(1));
     }
 
     private void tryInit(int attempt) {
@@ -87,15 +113,19 @@ public final class TbActorMailbox implements TbActorCtx {
             } else if (strategy.getRetryDelay() > 0) {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry in attempts in {}ms", selfId, attempt, strategy.getRetryDelay());
                 log.debug("[{}] Error", selfId, t);
-                system.getScheduler().schedule(() -> dispatcher.getExecutor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
+                system.getScheduler().schedule(() -> execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
             } else {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry immediately", selfId, attempt);
                 log.debug("[{}] Error", selfId, t);
-                dispatcher.getExecutor().execute(() -> tryInit(attemptIdx));
+                execute(() -> tryInit(attemptIdx));
             }
         }
     }
 
+    private void execute(Runnable task) {
+        dispatcher.execute(tenantActorId, task);
+    }
+
     private static boolean isUnrecoverable(Throwable t) {
         if (t instanceof TbActorException && t.getCause() != null) {
             t = t.getCause();
@@ -106,9 +136,13 @@ public final class TbActorMailbox implements TbActorCtx {
     private void enqueue(TbActorMsg msg, boolean highPriority) {
         if (!destroyInProgress.get()) {
             if (highPriority) {
-                highPriorityMsgs.add(msg);
-            } else {
-                normalPriorityMsgs.add(msg);
+                highPriorityMsgs.offer(msg);
+            } else if (!offerWithNormalPriority(msg)) {
+                dispatcher.onMailboxOverflow();
+                log.warn("[{}] Mailbox is full, dropping message: {}", selfId, msg.getMsgType());
+                log.debug("[{}] Dropped message: {}", selfId, msg);
+                msg.onTbActorStopped(TbActorStopReason.MAILBOX_OVERFLOW);
+                return;
             }
             tryProcessQueue(true);
         } else {
@@ -128,11 +162,28 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    private boolean offerWithNormalPriority(TbActorMsg msg) {
+        if (normalPriorityMsgs.offer(msg)) {
+            return true;
+        }
+        // the dispatcher threads are never blocked: the actors they would wait for are drained by the same threads
+        if (settings.getMailboxOverflowPolicy() == TbActorMailboxOverflowPolicy.BACK_PRESSURE && !Dispatcher.isDispatcherThread()) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getMailboxBackPressureTimeoutMs());
+            while (!destroyInProgress.get() && System.nanoTime() - deadline < 0) {
+                LockSupport.parkNanos(BACK_PRESSURE_PARK_NANOS);
+                if (normalPriorityMsgs.offer(msg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    execute(this::processMailbox);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -145,6 +196,37 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void processMailbox() {
+        if (settings.getMailboxType() != TbActorMailboxType.RING_BUFFER) {
+            if (processMessages()) {
+                busy.set(FREE);
+                execute(() -> tryProcessQueue(false));
+            } else {
+                execute(this::processMailbox);
+            }
+            return;
+        }
+        // Keep draining in the same task while there are messages and no other tasks wait for the dispatcher,
+        // instead of handing off to the executor after every batch.
+        while (true) {
+            if (processMessages()) {
+                busy.set(FREE);
+                // the message might be added after the last poll but before the mailbox was released
+                if (ready.get() == READY && (!highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty())
+                        && busy.compareAndSet(FREE, BUSY)) {
+                    continue;
+                }
+                return;
+            } else if (dispatcher.hasQueuedTasks()) {
+                execute(this::processMailbox);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the mailbox has no more messages
+     */
+    private boolean processMessages() {
         boolean noMoreElements = false;
         for (int i = 0; i < settings.getActorThroughput(); i++) {
             TbActorMsg msg = highPriorityMsgs.poll();
@@ -170,12 +252,7 @@ public final class TbActorMailbox implements TbActorCtx {
                 break;
             }
         }
-        if (noMoreElements) {
-            busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
-        } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
-        }
+        return noMoreElements;
     }
 
     @Override
@@ -233,7 +310,7 @@ public final class TbActorMailbox implements TbActorCtx {
             stopReason = TbActorStopReason.STOPPED;
         }
         destroyInProgress.set(true);
-        dispatcher.getExecutor().execute(() -> {
+        execute(() -> {
             try {
                 ready.set(NOT_READY);
                 actor.destroy(stopReason, cause);
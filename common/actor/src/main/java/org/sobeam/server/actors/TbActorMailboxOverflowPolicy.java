@@ -0,0 +1,31 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+public enum TbActorMailboxOverflowPolicy {
+
+    /**
+     * The message is rejected immediately and its sender is notified with {@link org.sobeam.server.common.msg.TbActorStopReason#MAILBOX_OVERFLOW}.
+     */
+    REJECT,
+    /**
+     * The sender waits for the free slot up to the configured timeout and then the message is rejected.
+     * Applies only to the senders outside the actor system, such as the queue consumers:
+     * the messages sent by the actors themselves are rejected immediately, so the dispatcher threads are never blocked.
+     */
+    BACK_PRESSURE
+
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+public enum TbActorMailboxType {
+
+    /**
+     * Unbounded mailbox based on the linked queues. Allocates a queue node for every message.
+     */
+    LINKED,
+    /**
+     * Bounded mailbox based on the preallocated ring buffer. Normal priority messages that do not fit
+     * into the buffer are handled according to the {@link TbActorMailboxOverflowPolicy}.
+     */
+    RING_BUFFER
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+/**
+ * Resolves the weight of the tenant for the dispatchers that schedule the actors by tenant.
+ * The tenant with weight 2 gets twice as many dispatcher turns as the tenant with weight 1 while both have pending work.
+ */
+@FunctionalInterface
+public interface TbActorSchedulingWeightProvider {
+
+    /**
+     * @param tenantActorId id of the tenant actor, or null for the actors that do not belong to any tenant
+     * @return weight of the tenant. Values less than 1 are treated as 1
+     */
+    int getWeight(TbActorId tenantActorId);
+
+}
@@ -26,10 +26,33 @@ public interface TbActorSystem {
 
     ScheduledExecutorService getScheduler();
 
+    /**
+     * Creates the dispatcher that runs the actors on the given executor.
+     * The executor should be created by {@link TbActorDispatcherExecutors}, otherwise its threads may be blocked by the full mailboxes.
+     */
     void createDispatcher(String dispatcherId, ExecutorService executor);
 
+    /**
+     * Creates the dispatcher that schedules the actors by tenant using weighted deficit round robin,
+     * so the tenants share the dispatcher threads according to their weights.
+     */
+    void createTenantFairDispatcher(String dispatcherId, ExecutorService executor, TbActorSchedulingWeightProvider weightProvider);
+
     void destroyDispatcher(String dispatcherId);
 
+    /**
+     * Returns the per-tenant queueing delay stats of the dispatcher collected since the previous call.
+     * The list is empty if the dispatcher does not schedule the actors by tenant.
+     */
+    List<TbTenantQueueingStats> getTenantQueueingStats(String dispatcherId);
+
+    void refreshSchedulingWeights();
+
+    /**
+     * Returns the number of the messages dropped since the previous call because the mailboxes of the dispatcher actors were full.
+     */
+    long getMailboxOverflowCount(String dispatcherId);
+
     TbActorRef getActor(TbActorId actorId);
 
     TbActorRef createRootActor(String dispatcherId, TbActorCreator creator);
@@ -15,13 +15,23 @@
  */
 package org.sobeam.server.actors;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 
 @Data
+@AllArgsConstructor
 public class TbActorSystemSettings {
 
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final TbActorMailboxType mailboxType;
+    private final int mailboxCapacity;
+    private final TbActorMailboxOverflowPolicy mailboxOverflowPolicy;
+    private final long mailboxBackPressureTimeoutMs;
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts) {
+        this(actorThroughput, schedulerPoolSize, maxActorInitAttempts, TbActorMailboxType.LINKED, 0, TbActorMailboxOverflowPolicy.REJECT, 0);
+    }
 
 }
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import lombok.Data;
+
+/**
+ * Time the mailbox turns of the tenant actors waited for the dispatcher thread since the previous snapshot.
+ */
+@Data
+public class TbTenantQueueingStats {
+
+    /**
+     * Id of the tenant actor, or null for the actors that do not belong to any tenant
+     */
+    private final TbActorId tenantActorId;
+    private final int weight;
+    private final int queueSize;
+    private final long tasks;
+    private final long totalDelayNanos;
+    private final long maxDelayNanos;
+
+    public long getAvgDelayNanos() {
+        return tasks > 0 ? totalDelayNanos / tasks : 0L;
+    }
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules the tasks of the dispatcher by tenant using weighted deficit round robin.
+ * <p>
+ * Each task is put into the queue of its tenant, and a task that runs the next scheduled one is passed to the executor.
+ * So the executor threads pick the task of the tenant whose turn it is instead of the oldest one, and the tenant
+ * that floods its actors with messages does not delay the actors of other tenants by more than its share.
+ * Every task is one mailbox turn, which is already bounded by the actor throughput, so each task costs one unit of the deficit.
+ * <p>
+ * The scheduler is lock-free. An active tenant queue is either in the ring of the active queues, in the slot of the queue
+ * whose turn continues, or owned by the single thread that has just taken it from there to poll the next task.
+ * So the deficit of the queue is only updated by its owner, which puts the queue back before running the task.
+ */
+@Slf4j
+class TenantFairScheduler {
+
+    private static final TbActorId NO_TENANT = new TbStringActorId("NO_TENANT");
+    // the pending tasks count of the queue that was dropped as idle
+    private static final int REMOVED = Integer.MIN_VALUE;
+
+    private final ExecutorService executor;
+    private final TbActorSchedulingWeightProvider weightProvider;
+    private final ConcurrentMap<TbActorId, TenantQueue> queues = new ConcurrentHashMap<>();
+    private final Queue<TenantQueue> activeQueues = new ConcurrentLinkedQueue<>();
+    // the queue that has the deficit left after its last task, so it takes the next turn as well
+    private final AtomicReference<TenantQueue> currentQueue = new AtomicReference<>();
+    // the tasks that are not taken by runNext yet
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+
+    TenantFairScheduler(ExecutorService executor, TbActorSchedulingWeightProvider weightProvider) {
+        this.executor = executor;
+        this.weightProvider = weightProvider;
+    }
+
+    void execute(TbActorId tenantActorId, Runnable task) {
+        TbActorId key = tenantActorId != null ? tenantActorId : NO_TENANT;
+        QueuedTask queuedTask = new QueuedTask(task, System.nanoTime());
+        while (true) {
+            TenantQueue queue = queues.get(key);
+            if (queue == null) {
+                queue = queues.computeIfAbsent(key, k -> new TenantQueue(tenantActorId, resolveWeight(tenantActorId)));
+            }
+            // the task is counted before it is added, so a dropped queue never gets the task
+            int pending = queue.incrementPending();
+            if (pending == REMOVED) {
+                // the idle queue was dropped by getQueueingStats after it was fetched, so the new one is used instead
+                continue;
+            }
+            queue.tasks.add(queuedTask);
+            if (pending == 0) {
+                // nobody owns the idle queue, so it is reset and activated by the thread that added the first task
+                queue.deficit = 0;
+                activeQueues.add(queue);
+            }
+            break;
+        }
+        queuedTasks.incrementAndGet();
+        executor.execute(this::runNext);
+    }
+
+    private void runNext() {
+        TenantQueue queue;
+        while ((queue = acquireQueue()) == null) {
+            // every counted task has its own runNext, so the task is not lost: its queue is owned by another thread
+            // that is about to put it back, or is being activated by the thread that submitted the task
+            if (queuedTasks.get() <= 0) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        int deficit = queue.deficit;
+        if (deficit <= 0) {
+            deficit += queue.weight;
+        }
+        QueuedTask next;
+        while ((next = queue.tasks.poll()) == null) {
+            // the task is counted, but the thread that submits it has not added it yet
+            Thread.onSpinWait();
+        }
+        queuedTasks.decrementAndGet();
+        // recorded before the task is uncounted, so the queue can't be dropped as idle with the task not recorded yet
+        queue.record(System.nanoTime() - next.submitTs);
+        deficit--;
+        queue.deficit = deficit;
+        if (queue.pending.decrementAndGet() > 0) {
+            if (deficit <= 0 || !currentQueue.compareAndSet(null, queue)) {
+                activeQueues.add(queue);
+            }
+        }
+        next.task.run();
+    }
+
+    private TenantQueue acquireQueue() {
+        TenantQueue queue = currentQueue.get() != null ? currentQueue.getAndSet(null) : null;
+        return queue != null ? queue : activeQueues.poll();
+    }
+
+    boolean hasQueuedTasks() {
+        return queuedTasks.get() > 0;
+    }
+
+    /**
+     * Returns the queueing delay stats of every tenant and resets them.
+     * Queues of the tenants that had no tasks since the previous snapshot are dropped.
+     * The queue is marked as removed only while it has no pending tasks, so {@link #execute} never leaves a task in a dropped queue.
+     */
+    List<TbTenantQueueingStats> getQueueingStats() {
+        List<TbTenantQueueingStats> result = new ArrayList<>(queues.size());
+        for (TenantQueue queue : queues.values()) {
+            long tasks = queue.tasksCount.sumThenReset();
+            long totalDelay = queue.totalDelayNanos.sumThenReset();
+            long maxDelay = queue.maxDelayNanos.getAndSet(0);
+            int queueSize = Math.max(queue.pending.get(), 0);
+            if (tasks == 0 && queue.pending.compareAndSet(0, REMOVED)) {
+                queues.remove(queue.key(), queue);
+                // the last tasks might be recorded after the stats were reset but before the queue became idle
+                tasks = queue.tasksCount.sumThenReset();
+                if (tasks == 0) {
+                    continue;
+                }
+                totalDelay += queue.totalDelayNanos.sumThenReset();
+                maxDelay = Math.max(maxDelay, queue.maxDelayNanos.getAndSet(0));
+                queueSize = 0;
+            }
+            result.add(new TbTenantQueueingStats(queue.tenantActorId, queue.weight, queueSize, tasks, totalDelay, maxDelay));
+        }
+        return result;
+    }
+
+    void refreshWeights() {
+        queues.values().forEach(queue -> queue.weight = resolveWeight(queue.tenantActorId));
+    }
+
+    private int resolveWeight(TbActorId tenantActorId) {
+        try {
+            return Math.max(1, weightProvider.getWeight(tenantActorId));
+        } catch (Exception e) {
+            log.warn("[{}] Failed to resolve the scheduling weight", tenantActorId, e);
+            return 1;
+        }
+    }
+
+    private record QueuedTask(Runnable task, long submitTs) {}
+
+    private static class TenantQueue {
+
+        private final TbActorId tenantActorId;
+        private final Queue<QueuedTask> tasks = new ConcurrentLinkedQueue<>();
+        // the tasks that are counted but not taken yet, or REMOVED once the queue is dropped
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder tasksCount = new LongAdder();
+        private final LongAdder totalDelayNanos = new LongAdder();
+        private final AtomicLong maxDelayNanos = new AtomicLong();
+        private volatile int weight;
+        // updated only by the thread that owns the active queue or activates the idle one
+        private int deficit;
+
+        TenantQueue(TbActorId tenantActorId, int weight) {
+            this.tenantActorId = tenantActorId;
+            this.weight = weight;
+        }
+
+        TbActorId key() {
+            return tenantActorId != null ? tenantActorId : NO_TENANT;
+        }
+
+        /**
+         * @return the previous pending tasks count, or REMOVED if the queue was dropped and the task was not counted
+         */
+        int incrementPending() {
+            int current;
+            do {
+                current = pending.get();
+                if (current == REMOVED) {
+                    return REMOVED;
+                }
+            } while (!pending.compareAndSet(current, current + 1));
+            return current;
+        }
+
+        void record(long delayNanos) {
+            tasksCount.increment();
+            totalDelayNanos.add(delayNanos);
+            maxDelayNanos.accumulateAndGet(delayNanos, Math::max);
+        }
+
+    }
+
+}
@@ -21,7 +21,6 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.sobeam.common.util.SoBeamExecutors;
 import org.sobeam.common.util.SoBeamThreadFactory;
 import org.sobeam.server.common.data.id.DeviceId;
 
@@ -55,11 +54,14 @@ public class ActorSystemTest {
         int cores = Runtime.getRuntime().availableProcessors();
         parallelism = Math.max(2, cores / 2);
         log.debug("parallelism {}", parallelism);
-        TbActorSystemSettings settings = new TbActorSystemSettings(5, parallelism, 42);
-        actorSystem = new DefaultTbActorSystem(settings);
+        actorSystem = new DefaultTbActorSystem(createSettings());
         submitPool = Executors.newFixedThreadPool(parallelism, SoBeamThreadFactory.forName(getClass().getSimpleName() + "-submit-test-scope")); //order guaranteed
     }
 
+    protected TbActorSystemSettings createSettings() {
+        return new TbActorSystemSettings(5, parallelism, 42);
+    }
+
     @AfterEach
     public void shutdownActorSystem() {
         actorSystem.stop();
@@ -71,49 +73,49 @@ public class ActorSystemTest {
 
     @Test
     public void test1actorsAnd100KMessages() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(1, _100K, 1);
     }
 
     @Test
     public void test10actorsAnd100KMessages() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(10, _100K, 1);
     }
 
     @Test
     public void test100KActorsAnd1Messages5timesSingleThread() throws InterruptedException {
-        executor = Executors.newSingleThreadExecutor(SoBeamThreadFactory.forName(getClass().getSimpleName()));
+        executor = TbActorDispatcherExecutors.newSingleThreadExecutor(getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(_100K, 1, 5);
     }
 
     @Test
     public void test100KActorsAnd1Messages5times() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(_100K, 1, 5);
     }
 
     @Test
     public void test100KActorsAnd10Messages() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(_100K, 10, 1);
     }
 
     @Test
     public void test1KActorsAnd1KMessages() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         testActorsAndMessages(1000, 1000, 10);
     }
 
     @Test
     public void testNoMessagesAfterDestroy() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         ActorTestCtx testCtx1 = getActorTestCtx(1);
         ActorTestCtx testCtx2 = getActorTestCtx(1);
@@ -133,7 +135,7 @@ public class ActorSystemTest {
 
     @Test
     public void testOneActorCreated() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         ActorTestCtx testCtx1 = getActorTestCtx(1);
         ActorTestCtx testCtx2 = getActorTestCtx(1);
@@ -174,7 +176,7 @@ public class ActorSystemTest {
 
     @Test
     public void testActorCreatorCalledOnce() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         ActorTestCtx testCtx = getActorTestCtx(1);
         TbActorId actorId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
@@ -199,7 +201,7 @@ public class ActorSystemTest {
 
     @Test
     public void testFailedInit() throws InterruptedException {
-        executor = SoBeamExecutors.newWorkStealingPool(parallelism, getClass());
+        executor = TbActorDispatcherExecutors.newWorkStealingPool(parallelism, getClass().getSimpleName());
         actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
         ActorTestCtx testCtx1 = getActorTestCtx(1);
         ActorTestCtx testCtx2 = getActorTestCtx(1);
@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class RingBufferActorSystemTest extends ActorSystemTest {
+
+    private static final String SINGLE_THREAD_DISPATCHER = "single-thread-dispatcher";
+
+    @Override
+    protected TbActorSystemSettings createSettings() {
+        return new TbActorSystemSettings(5, Math.max(2, Runtime.getRuntime().availableProcessors() / 2), 42,
+                TbActorMailboxType.RING_BUFFER, 64, TbActorMailboxOverflowPolicy.BACK_PRESSURE, TIMEOUT_AWAIT_MAX_SEC * 1000L);
+    }
+
+    @Test
+    public void testActorIsNotBlockedByFullMailboxOfAnotherActor() throws InterruptedException {
+        TbActorSystem system = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42,
+                TbActorMailboxType.RING_BUFFER, 1, TbActorMailboxOverflowPolicy.BACK_PRESSURE, TimeUnit.MINUTES.toMillis(1)));
+        ExecutorService singleThreadExecutor = TbActorDispatcherExecutors.newSingleThreadExecutor(getClass().getSimpleName());
+        try {
+            system.createDispatcher(SINGLE_THREAD_DISPATCHER, singleThreadExecutor);
+            TbActorRef target = system.createRootActor(SINGLE_THREAD_DISPATCHER, creator(new TbStringActorId("target"), msg -> {}));
+            CountDownLatch sent = new CountDownLatch(1);
+            TbActorRef sender = system.createRootActor(SINGLE_THREAD_DISPATCHER, creator(new TbStringActorId("sender"), msg -> {
+                // the target can not process anything until this message is processed, since the dispatcher has the only thread
+                for (int i = 0; i < 10; i++) {
+                    target.tell(new IntTbActorMsg(i));
+                }
+                sent.countDown();
+            }));
+            sender.tell(new IntTbActorMsg(42));
+
+            Assertions.assertTrue(sent.await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+            Assertions.assertTrue(system.getMailboxOverflowCount(SINGLE_THREAD_DISPATCHER) > 0);
+        } finally {
+            system.stop();
+            singleThreadExecutor.shutdownNow();
+        }
+    }
+
+    private static TbActorCreator creator(TbActorId actorId, Consumer<TbActorMsg> processor) {
+        return new TbActorCreator() {
+            @Override
+            public TbActorId createActorId() {
+                return actorId;
+            }
+
+            @Override
+            public TbActor createActor() {
+                return new AbstractTbActor() {
+                    @Override
+                    public boolean process(TbActorMsg msg) {
+                        processor.accept(msg);
+                        return true;
+                    }
+                };
+            }
+        };
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.msg.TbActorMsg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingBufferTbActorMsgQueueTest {
+
+    @Test
+    public void givenCapacity_whenCreate_thenRoundedUpToPowerOfTwo() {
+        assertThat(new RingBufferTbActorMsgQueue(1).capacity()).isEqualTo(1);
+        assertThat(new RingBufferTbActorMsgQueue(5).capacity()).isEqualTo(8);
+        assertThat(new RingBufferTbActorMsgQueue(64).capacity()).isEqualTo(64);
+    }
+
+    @Test
+    public void givenFullQueue_whenOffer_thenRejectedUntilPolled() {
+        RingBufferTbActorMsgQueue queue = new RingBufferTbActorMsgQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(new IntTbActorMsg(i))).isTrue();
+        }
+        assertThat(queue.offer(new IntTbActorMsg(4))).isFalse();
+
+        assertThat(((IntTbActorMsg) queue.poll()).getValue()).isEqualTo(0);
+        assertThat(queue.offer(new IntTbActorMsg(4))).isTrue();
+
+        List<Integer> values = new ArrayList<>();
+        queue.forEach(msg -> values.add(((IntTbActorMsg) msg).getValue()));
+        assertThat(values).containsExactly(1, 2, 3, 4);
+        for (int i = 1; i <= 4; i++) {
+            assertThat(((IntTbActorMsg) queue.poll()).getValue()).isEqualTo(i);
+        }
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenConcurrentProducers_whenPoll_thenAllMessagesReceivedInProducerOrder() throws Exception {
+        int producers = 4;
+        int msgsPerProducer = 100_000;
+        RingBufferTbActorMsgQueue queue = new RingBufferTbActorMsgQueue(128);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                executor.submit(() -> {
+                    for (int i = 0; i < msgsPerProducer; i++) {
+                        TbActorMsg msg = new IntTbActorMsg(producer * msgsPerProducer + i);
+                        while (!queue.offer(msg)) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            int[] lastValues = new int[producers];
+            Arrays.fill(lastValues, -1);
+            int received = 0;
+            while (received < producers * msgsPerProducer) {
+                TbActorMsg msg = queue.poll();
+                if (msg == null) {
+                    Thread.yield();
+                    continue;
+                }
+                int value = ((IntTbActorMsg) msg).getValue();
+                int producer = value / msgsPerProducer;
+                assertThat(value).isGreaterThan(lastValues[producer]);
+                lastValues[producer] = value;
+                received++;
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(queue.isEmpty()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.actors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sobeam.common.util.SoBeamThreadFactory;
+import org.sobeam.server.common.data.id.TenantId;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TenantFairSchedulerTest {
+
+    private final TbActorId tenantA = new TbEntityActorId(new TenantId(UUID.randomUUID()));
+    private final TbActorId tenantB = new TbEntityActorId(new TenantId(UUID.randomUUID()));
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor(SoBeamThreadFactory.forName(getClass().getSimpleName()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenEqualWeights_whenOneTenantFloods_thenTenantsAlternate() throws InterruptedException {
+        TenantFairScheduler scheduler = new TenantFairScheduler(executor, tenantActorId -> 1);
+        List<String> order = runBlocked(scheduler, Map.of(tenantA, 6, tenantB, 2));
+
+        assertThat(order).containsExactly("A", "B", "A", "B", "A", "A", "A", "A");
+    }
+
+    @Test
+    public void givenWeights_whenBothTenantsHaveTasks_thenTurnsAreProportionalToWeights() throws InterruptedException {
+        TenantFairScheduler scheduler = new TenantFairScheduler(executor, tenantActorId -> tenantA.equals(tenantActorId) ? 2 : 1);
+        List<String> order = runBlocked(scheduler, Map.of(tenantA, 6, tenantB, 3));
+
+        assertThat(order).containsExactly("A", "A", "B", "A", "A", "B", "A", "A", "B");
+    }
+
+    @Test
+    public void givenExecutedTasks_whenGetQueueingStats_thenStatsAreReportedAndReset() throws InterruptedException {
+        TenantFairScheduler scheduler = new TenantFairScheduler(executor, tenantActorId -> 0);
+        runBlocked(scheduler, Map.of(tenantA, 3, tenantB, 1));
+
+        List<TbTenantQueueingStats> stats = scheduler.getQueueingStats();
+        assertThat(stats).hasSize(2);
+        TbTenantQueueingStats statsA = stats.stream().filter(s -> tenantA.equals(s.getTenantActorId())).findFirst().orElseThrow();
+        assertThat(statsA.getTasks()).isEqualTo(3);
+        assertThat(statsA.getWeight()).isEqualTo(1);
+        assertThat(statsA.getQueueSize()).isZero();
+        assertThat(statsA.getMaxDelayNanos()).isGreaterThanOrEqualTo(statsA.getAvgDelayNanos()).isPositive();
+
+        // idle tenants are dropped on the next snapshot
+        assertThat(scheduler.getQueueingStats()).isEmpty();
+        assertThat(scheduler.hasQueuedTasks()).isFalse();
+    }
+
+    @Test
+    public void givenConcurrentStatsSnapshots_whenExecute_thenEveryTaskIsRunAndReported() throws Exception {
+        TenantFairScheduler scheduler = new TenantFairScheduler(executor, tenantActorId -> 1);
+        int total = 10000;
+        CountDownLatch done = new CountDownLatch(total);
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicLong reported = new AtomicLong();
+        Thread statsThread = new Thread(() -> {
+            while (!stopped.get()) {
+                scheduler.getQueueingStats().forEach(stats -> reported.addAndGet(stats.getTasks()));
+            }
+        });
+        statsThread.start();
+        try {
+            for (int i = 0; i < total; i++) {
+                scheduler.execute(tenantA, done::countDown);
+                if (i % 100 == 0) {
+                    // let the queue become idle, so the stats snapshot drops it
+                    Thread.sleep(1);
+                }
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            stopped.set(true);
+            statsThread.join();
+        }
+        scheduler.getQueueingStats().forEach(stats -> reported.addAndGet(stats.getTasks()));
+
+        assertThat(reported.get()).isEqualTo(total);
+        assertThat(scheduler.hasQueuedTasks()).isFalse();
+    }
+
+    @Test
+    public void givenConcurrentProducersAndWorkers_whenExecute_thenEveryTaskIsRunOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4, SoBeamThreadFactory.forName(getClass().getSimpleName() + "-pool"));
+        ExecutorService producers = Executors.newFixedThreadPool(4, SoBeamThreadFactory.forName(getClass().getSimpleName() + "-producers"));
+        try {
+            TenantFairScheduler scheduler = new TenantFairScheduler(pool, tenantActorId -> tenantA.equals(tenantActorId) ? 3 : 1);
+            int tasksPerProducer = 5000;
+            AtomicLong[] runs = new AtomicLong[4 * tasksPerProducer];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = new AtomicLong();
+            }
+            CountDownLatch done = new CountDownLatch(runs.length);
+            for (int p = 0; p < 4; p++) {
+                int producer = p;
+                producers.execute(() -> {
+                    for (int i = 0; i < tasksPerProducer; i++) {
+                        AtomicLong counter = runs[producer * tasksPerProducer + i];
+                        scheduler.execute(i % 2 == 0 ? tenantA : tenantB, () -> {
+                            counter.incrementAndGet();
+                            done.countDown();
+                        });
+                    }
+                });
+            }
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(runs).allSatisfy(counter -> assertThat(counter.get()).isEqualTo(1));
+            assertThat(scheduler.hasQueuedTasks()).isFalse();
+        } finally {
+            producers.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Occupies the single executor thread, submits the tasks of tenant A and then of tenant B and returns the execution order.
+     */
+    private List<String> runBlocked(TenantFairScheduler scheduler, Map<TbActorId, Integer> tasks) throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {}
+        });
+        int total = tasks.values().stream().mapToInt(Integer::intValue).sum();
+        CountDownLatch done = new CountDownLatch(total);
+        List<String> order = new CopyOnWriteArrayList<>();
+        for (TbActorId tenant : List.of(tenantA, tenantB)) {
+            String name = tenant.equals(tenantA) ? "A" : "B";
+            for (int i = 0; i < tasks.get(tenant); i++) {
+                scheduler.execute(tenant, () -> {
+                    order.add(name);
+                    done.countDown();
+                });
+            }
+        }
+        assertThat(scheduler.hasQueuedTasks()).isTrue();
+        blocker.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        return order;
+    }
+
+}
@@ -65,6 +65,19 @@ public abstract class CaffeineTbTransactionalCache<K extends Serializable, V ext
         }
     }
 
+    @Override
+    public void putAll(Map<K, V> values) {
+        lock.lock();
+        try {
+            values.forEach((key, value) -> {
+                failAllTransactionsByKey(key);
+                cache.put(key, value);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void putIfAbsent(K key, V value) {
         lock.lock();
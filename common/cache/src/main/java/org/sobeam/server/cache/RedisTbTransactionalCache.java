@@ -34,9 +34,13 @@ import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -91,27 +95,62 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
             return null;
         }
         try (var connection = connectionFactory.getConnection()) {
-            byte[] rawValue = doGet(key, connection);
-            if (rawValue == null || rawValue.length == 0) {
-                return null;
-            } else if (Arrays.equals(rawValue, BINARY_NULL_VALUE)) {
-                return SimpleTbCacheValueWrapper.empty();
-            } else {
-                long startTime = System.nanoTime();
-                V value = valueSerializer.deserialize(key, rawValue);
-                if (value != null) {
-                    fstStatsService.recordDecodeTime(value.getClass(), startTime);
-                    fstStatsService.incrementDecode(value.getClass());
-                }
-                return SimpleTbCacheValueWrapper.wrap(value);
+            return toValueWrapper(key, doGet(key, connection));
+        }
+    }
+
+    @Override
+    public Map<K, TbCacheValueWrapper<V>> getAll(Collection<K> keys) {
+        if (!cacheEnabled || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<K> keysList = new ArrayList<>(keys);
+        byte[][] rawKeys = keysList.stream().map(this::getRawKey).toArray(byte[][]::new);
+        List<byte[]> rawValues;
+        try (var connection = connectionFactory.getConnection()) {
+            rawValues = connection.stringCommands().mGet(rawKeys);
+        }
+        if (rawValues == null) {
+            return Collections.emptyMap();
+        }
+        Map<K, TbCacheValueWrapper<V>> result = new HashMap<>();
+        for (int i = 0; i < keysList.size(); i++) {
+            K key = keysList.get(i);
+            TbCacheValueWrapper<V> value = toValueWrapper(key, fromMultiGetValue(key, rawValues.get(i)));
+            if (value != null) {
+                result.put(key, value);
             }
         }
+        return result;
     }
 
     protected byte[] doGet(K key, RedisConnection connection) {
         return connection.stringCommands().get(getRawKey(key));
     }
 
+    /**
+     * Converts the raw value returned by MGET to the same format that is returned by {@link #doGet(Serializable, RedisConnection)}.
+     */
+    protected byte[] fromMultiGetValue(K key, byte[] rawValue) {
+        return rawValue;
+    }
+
+    private TbCacheValueWrapper<V> toValueWrapper(K key, byte[] rawValue) {
+        if (rawValue == null || rawValue.length == 0) {
+            return null;
+        } else if (Arrays.equals(rawValue, BINARY_NULL_VALUE)) {
+            return SimpleTbCacheValueWrapper.empty();
+        } else {
+            long startTime = System.nanoTime();
+            V value = valueSerializer.deserialize(key, rawValue);
+            if (value != null) {
+                fstStatsService.recordDecodeTime(value.getClass(), startTime);
+                fstStatsService.incrementDecode(value.getClass());
+            }
+            return SimpleTbCacheValueWrapper.wrap(value);
+        }
+    }
+
     @Override
     public void put(K key, V value) {
         if (!cacheEnabled) {
@@ -126,6 +165,30 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
         put(connection, key, value, RedisStringCommands.SetOption.UPSERT);
     }
 
+    @Override
+    public void putAll(Map<K, V> values) {
+        if (!cacheEnabled || values.isEmpty()) {
+            return;
+        }
+        if (connectionFactory.isRedisClusterAware()) {
+            //Pipelining is not supported by the cluster connection, keys may belong to different slots
+            values.forEach(this::put);
+            return;
+        }
+        try (var connection = connectionFactory.getConnection()) {
+            putAll(values, connection);
+        }
+    }
+
+    protected void putAll(Map<K, V> values, RedisConnection connection) {
+        connection.openPipeline();
+        try {
+            values.forEach((key, value) -> put(key, value, connection));
+        } finally {
+            connection.closePipeline();
+        }
+    }
+
     @Override
     public void putIfAbsent(K key, V value) {
         if (!cacheEnabled) {
@@ -17,7 +17,9 @@ package org.sobeam.server.cache;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -27,8 +29,33 @@ public interface TbTransactionalCache<K extends Serializable, V extends Serializ
 
     TbCacheValueWrapper<V> get(K key);
 
+    /**
+     * Multi-key lookup. The result contains only the keys that are present in the cache.
+     * Remote implementations fetch all keys in a single round trip.
+     * @param keys - keys to lookup
+     * @return map of the cached values by key
+     */
+    default Map<K, TbCacheValueWrapper<V>> getAll(Collection<K> keys) {
+        Map<K, TbCacheValueWrapper<V>> result = new HashMap<>();
+        for (K key : keys) {
+            TbCacheValueWrapper<V> value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
     void put(K key, V value);
 
+    /**
+     * Multi-key put. Null values are cached as empty values, the same way as {@link #put(Serializable, Serializable)} does.
+     * @param values - values by key, null values are allowed
+     */
+    default void putAll(Map<K, V> values) {
+        values.forEach(this::put);
+    }
+
     void putIfAbsent(K key, V value);
 
     void evict(K key);
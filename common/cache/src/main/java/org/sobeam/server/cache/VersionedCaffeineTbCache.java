@@ -21,6 +21,7 @@ import org.sobeam.server.common.data.HasVersion;
 import org.sobeam.server.common.data.util.TbPair;
 
 import java.io.Serializable;
+import java.util.Map;
 
 public abstract class VersionedCaffeineTbCache<K extends VersionedCacheKey, V extends Serializable & HasVersion> extends CaffeineTbTransactionalCache<K, V> implements VersionedTbCache<K, V> {
 
@@ -46,6 +47,16 @@ public abstract class VersionedCaffeineTbCache<K extends VersionedCacheKey, V ex
         doPut(key, value, version);
     }
 
+    @Override
+    public void putAll(Map<K, V> values) {
+        lock.lock();
+        try {
+            values.forEach(this::put);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void doPut(K key, V value, Long version) {
         lock.lock();
         try {
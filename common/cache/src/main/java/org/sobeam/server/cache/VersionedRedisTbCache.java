@@ -21,6 +21,7 @@ import org.apache.commons.lang3.NotImplementedException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
 import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -28,6 +29,7 @@ import org.sobeam.server.common.data.HasVersion;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Map;
 
 @Slf4j
 public abstract class VersionedRedisTbCache<K extends VersionedCacheKey, V extends Serializable & HasVersion> extends RedisTbTransactionalCache<K, V> implements VersionedTbCache<K, V> {
@@ -87,6 +89,15 @@ public abstract class VersionedRedisTbCache<K extends VersionedCacheKey, V exten
         return connection.stringCommands().getRange(rawKey, VERSION_SIZE, VALUE_END_OFFSET);
     }
 
+    @Override
+    protected byte[] fromMultiGetValue(K key, byte[] rawValue) {
+        if (!key.isVersioned() || rawValue == null) {
+            return rawValue;
+        }
+        // Same as GETRANGE key 8 -1: strip the version prefix
+        return rawValue.length > VERSION_SIZE ? Arrays.copyOfRange(rawValue, VERSION_SIZE, rawValue.length) : null;
+    }
+
     @Override
     public void put(K key, V value) {
         if (!key.isVersioned()) {
@@ -114,6 +125,17 @@ public abstract class VersionedRedisTbCache<K extends VersionedCacheKey, V exten
         doPut(rawKey, value, version, cacheTtl, connection);
     }
 
+    @Override
+    protected void putAll(Map<K, V> values, RedisConnection connection) {
+        try {
+            super.putAll(values, connection);
+        } catch (RedisPipelineException e) {
+            // Most likely the script is not loaded (e.g. after Redis restart). Versioned put is idempotent, so retry one by one
+            log.debug("Failed to put versioned values in pipeline, falling back to single puts [{}]", connection.getNativeConnection(), e);
+            values.forEach((key, value) -> put(key, value, connection));
+        }
+    }
+
     private void doPut(K key, V value, Long version, Expiration expiration) {
         if (!cacheEnabled) {
             return;
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.sobeam.server.common.data.HasVersion;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VersionedCaffeineTbCacheTest {
+
+    private static final String CACHE_NAME = "versionedTest";
+
+    private VersionedCaffeineTbCache<TestKey, TestValue> cache;
+
+    @BeforeEach
+    public void setUp() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(new CaffeineCache(CACHE_NAME, Caffeine.newBuilder().build())));
+        cacheManager.initializeCaches();
+        cache = new VersionedCaffeineTbCache<>(cacheManager, CACHE_NAME) {};
+    }
+
+    @Test
+    public void givenValues_whenPutAll_thenGetAllReturnsOnlyCachedKeys() {
+        Map<TestKey, TestValue> values = new HashMap<>();
+        values.put(new TestKey("a"), new TestValue("a1", 1L));
+        values.put(new TestKey("b"), null);
+        cache.putAll(values);
+
+        Map<TestKey, TbCacheValueWrapper<TestValue>> result = cache.getAll(List.of(new TestKey("a"), new TestKey("b"), new TestKey("c")));
+
+        assertThat(result).containsOnlyKeys(new TestKey("a"), new TestKey("b"));
+        assertThat(result.get(new TestKey("a")).get()).isEqualTo(new TestValue("a1", 1L));
+        assertThat(result.get(new TestKey("b")).get()).isNull();
+    }
+
+    @Test
+    public void givenNewerVersionCached_whenPutAll_thenOlderVersionIgnored() {
+        cache.put(new TestKey("a"), new TestValue("a2", 2L));
+
+        cache.putAll(Map.of(new TestKey("a"), new TestValue("a1", 1L), new TestKey("b"), new TestValue("b1", 1L)));
+
+        Map<TestKey, TbCacheValueWrapper<TestValue>> result = cache.getAll(List.of(new TestKey("a"), new TestKey("b")));
+        assertThat(result.get(new TestKey("a")).get()).isEqualTo(new TestValue("a2", 2L));
+        assertThat(result.get(new TestKey("b")).get()).isEqualTo(new TestValue("b1", 1L));
+    }
+
+    @Data
+    private static class TestKey implements VersionedCacheKey {
+        private final String key;
+
+        @Override
+        public boolean isVersioned() {
+            return true;
+        }
+    }
+
+    @Data
+    private static class TestValue implements Serializable, HasVersion {
+        private final String value;
+        private final Long version;
+    }
+
+}
@@ -36,6 +36,21 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Returns the offsets of the messages returned by the last poll, so they can be committed independently
+     * of the messages polled later. Returns null if the queue is able to commit only all the polled messages at once.
+     */
+    default Object getLastPollOffsets() {
+        return null;
+    }
+
+    /**
+     * Commits the offsets previously returned by {@link #getLastPollOffsets()}.
+     */
+    default void commit(Object offsets) {
+        commit();
+    }
+
     boolean isStopped();
 
     List<String> getFullTopicNames();
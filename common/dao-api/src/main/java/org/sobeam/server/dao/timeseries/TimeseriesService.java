@@ -63,4 +63,6 @@ public interface TimeseriesService {
     List<String> findAllKeysByEntityIds(TenantId tenantId, List<EntityId> entityIds);
 
     void cleanup(long systemTtl);
+
+    void refreshRollups();
 }
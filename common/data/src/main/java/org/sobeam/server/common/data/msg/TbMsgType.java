@@ -74,6 +74,7 @@ public enum TbMsgType {
     DEVICE_PROFILE_PERIODIC_SELF_MSG(null, true),
     DEVICE_PROFILE_UPDATE_SELF_MSG(null, true),
     DEVICE_UPDATE_SELF_MSG(null, true),
+    DEVICE_PROFILE_STATE_LOADED_SELF_MSG(null, true),
     DEDUPLICATION_TIMEOUT_SELF_MSG(null, true),
     DELAY_TIMEOUT_SELF_MSG(null, true),
     MSG_COUNT_SELF_MSG(null, true),
@@ -16,5 +16,5 @@
 package org.sobeam.server.common.data.queue;
 
 public enum SubmitStrategyType {
-    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL
+    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL, PIPELINED_BY_ORIGINATOR
 }
\ No newline at end of file
@@ -91,6 +91,8 @@ public class DefaultTenantProfileConfiguration implements TenantProfileConfigura
     private long maxDPStorageDays;
     @Schema(example = "50")
     private int maxRuleNodeExecutionsPerMessage;
+    @Schema(example = "1")
+    private int actorSchedulingWeight;
     @Schema(example = "0")
     private long maxEmails;
     @Schema(example = "true")
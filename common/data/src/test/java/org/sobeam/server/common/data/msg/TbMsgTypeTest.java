@@ -25,6 +25,7 @@ import static org.sobeam.server.common.data.msg.TbMsgType.ALARM_DELETE;
 import static org.sobeam.server.common.data.msg.TbMsgType.DEDUPLICATION_TIMEOUT_SELF_MSG;
 import static org.sobeam.server.common.data.msg.TbMsgType.DELAY_TIMEOUT_SELF_MSG;
 import static org.sobeam.server.common.data.msg.TbMsgType.DEVICE_PROFILE_PERIODIC_SELF_MSG;
+import static org.sobeam.server.common.data.msg.TbMsgType.DEVICE_PROFILE_STATE_LOADED_SELF_MSG;
 import static org.sobeam.server.common.data.msg.TbMsgType.DEVICE_PROFILE_UPDATE_SELF_MSG;
 import static org.sobeam.server.common.data.msg.TbMsgType.DEVICE_UPDATE_SELF_MSG;
 import static org.sobeam.server.common.data.msg.TbMsgType.ENTITY_ASSIGNED_TO_EDGE;
@@ -50,6 +51,7 @@ class TbMsgTypeTest {
             DEVICE_PROFILE_PERIODIC_SELF_MSG,
             DEVICE_PROFILE_UPDATE_SELF_MSG,
             DEVICE_UPDATE_SELF_MSG,
+            DEVICE_PROFILE_STATE_LOADED_SELF_MSG,
             DEDUPLICATION_TIMEOUT_SELF_MSG,
             DELAY_TIMEOUT_SELF_MSG,
             MSG_COUNT_SELF_MSG,
@@ -17,6 +17,6 @@ package org.sobeam.server.common.msg;
 
 public enum TbActorStopReason {
 
-    INIT_FAILED, STOPPED
+    INIT_FAILED, STOPPED, MAILBOX_OVERFLOW
 
 }
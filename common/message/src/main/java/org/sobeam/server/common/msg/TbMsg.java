@@ -16,14 +16,21 @@
 package org.sobeam.server.common.msg;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.server.common.data.EntityType;
 import org.sobeam.server.common.data.StringUtils;
 import org.sobeam.server.common.data.id.CustomerId;
@@ -35,9 +42,12 @@ import org.sobeam.server.common.data.msg.TbMsgType;
 import org.sobeam.server.common.msg.gen.MsgProtos;
 import org.sobeam.server.common.msg.queue.TbMsgCallback;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by ashvayka on 13.01.18.
@@ -61,7 +71,10 @@ public final class TbMsg implements Serializable {
     private final CustomerId customerId;
     private final TbMsgMetaData metaData;
     private final TbMsgDataType dataType;
-    private final String data;
+    @Setter(AccessLevel.NONE)
+    @Builder.ObtainVia(method = "getData")
+    // May be null when the message was created from the JSON tree. Serialized lazily, see getData()
+    private volatile String data;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
 
@@ -77,6 +90,13 @@ public final class TbMsg implements Serializable {
     @JsonIgnore
     transient private final TbMsgCallback callback;
 
+    @Getter(value = AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @JsonIgnore
+    //Parsed data shared by all rule nodes that process this message instance. Not serialized, parsed again after the queue
+    transient private final AtomicReference<JsonNode> dataTree = new AtomicReference<>();
+
     public int getAndIncrementRuleNodeCounter() {
         return ctx.getAndIncrementRuleNodeCounter();
     }
@@ -285,7 +305,7 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg transformMsgOriginator(TbMsg tbMsg, EntityId originatorId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, originatorId, tbMsg.getCustomerId(), tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     public static TbMsg transformMsgData(TbMsg tbMsg, String data) {
@@ -295,7 +315,7 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg transformMsgMetadata(TbMsg tbMsg, TbMsgMetaData metadata) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata.copy(), tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, TbMsgMetaData metadata, String data) {
@@ -305,28 +325,44 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg transformMsgCustomerId(TbMsg tbMsg, CustomerId customerId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     public static TbMsg transformMsgRuleChainId(TbMsg tbMsg, RuleChainId ruleChainId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     public static TbMsg transformMsgQueueName(TbMsg tbMsg, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTreeOf(tbMsg);
     }
 
     //used for enqueueForTellNext
     public static TbMsg newMsg(TbMsg tbMsg, String queueName, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
         return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getInternalType(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, tbMsg.getMetaData().copy(),
-                tbMsg.getDataType(), tbMsg.getData(), ruleChainId, ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
+                tbMsg.getDataType(), tbMsg.data, ruleChainId, ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), TbMsgCallback.EMPTY).withDataTreeOf(tbMsg);
+    }
+
+    /**
+     * Creates a copy of the message with the new data represented by the JSON tree.
+     * The tree is serialized only when the data string is requested, e.g. when the message is pushed to the queue.
+     * The tree must not be modified after the call.
+     */
+    public static TbMsg transformMsgData(TbMsg tbMsg, JsonNode data) {
+        return transformMsg(tbMsg, tbMsg.metaData, data);
+    }
+
+    public static TbMsg transformMsg(TbMsg tbMsg, TbMsgMetaData metadata, JsonNode data) {
+        // the same tree means the data was not changed, so the already serialized data is reused
+        String dataStr = tbMsg.dataTree != null && tbMsg.dataTree.get() == data ? tbMsg.data : null;
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata, tbMsg.dataType,
+                dataStr, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.correlationId, tbMsg.partition, tbMsg.ctx.copy(), tbMsg.getCallback()).withDataTree(data);
     }
 
     private TbMsg(String queueName, UUID id, long ts, TbMsgType internalType, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
@@ -420,42 +456,96 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg fromBytes(String queueName, byte[] data, TbMsgCallback callback) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(data);
-            TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
-            EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
-            CustomerId customerId = null;
-            RuleChainId ruleChainId = null;
-            RuleNodeId ruleNodeId = null;
-            UUID correlationId = null;
-            Integer partition = null;
-            if (proto.getCustomerIdMSB() != 0L && proto.getCustomerIdLSB() != 0L) {
-                customerId = new CustomerId(new UUID(proto.getCustomerIdMSB(), proto.getCustomerIdLSB()));
-            }
-            if (proto.getRuleChainIdMSB() != 0L && proto.getRuleChainIdLSB() != 0L) {
-                ruleChainId = new RuleChainId(new UUID(proto.getRuleChainIdMSB(), proto.getRuleChainIdLSB()));
-            }
-            if (proto.getRuleNodeIdMSB() != 0L && proto.getRuleNodeIdLSB() != 0L) {
-                ruleNodeId = new RuleNodeId(new UUID(proto.getRuleNodeIdMSB(), proto.getRuleNodeIdLSB()));
+            return fromProto(queueName, MsgProtos.TbMsgProto.parseFrom(data), callback);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
+        }
+    }
+
+    /**
+     * Same as {@link #fromBytes(String, byte[], TbMsgCallback)}, but reads the message directly from the given buffer
+     * (e.g. the 'tbMsg' field of the queue message) without copying it into a new array first.
+     */
+    public static TbMsg fromBytes(String queueName, ByteString data, TbMsgCallback callback) {
+        try {
+            return fromProto(queueName, MsgProtos.TbMsgProto.parseFrom(data), callback);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
+        }
+    }
+
+    /**
+     * Reads only the originator fields of the serialized message, skipping the metadata and the payload.
+     * Used to route the message without decoding it completely.
+     */
+    public static EntityId originatorFromBytes(ByteString data) {
+        try {
+            CodedInputStream input = data.newCodedInput();
+            String entityType = null;
+            long entityIdMSB = 0L;
+            long entityIdLSB = 0L;
+            // the zero parts of the id are not serialized, so the rest of the message is read only in that case
+            int readFields = 0;
+            int tag;
+            while (readFields != 0b111 && (tag = input.readTag()) != 0) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case MsgProtos.TbMsgProto.ENTITYTYPE_FIELD_NUMBER -> {
+                        entityType = input.readStringRequireUtf8();
+                        readFields |= 0b001;
+                    }
+                    case MsgProtos.TbMsgProto.ENTITYIDMSB_FIELD_NUMBER -> {
+                        entityIdMSB = input.readInt64();
+                        readFields |= 0b010;
+                    }
+                    case MsgProtos.TbMsgProto.ENTITYIDLSB_FIELD_NUMBER -> {
+                        entityIdLSB = input.readInt64();
+                        readFields |= 0b100;
+                    }
+                    default -> input.skipField(tag);
+                }
             }
-            if (proto.getCorrelationIdMSB() != 0L && proto.getCorrelationIdLSB() != 0L) {
-                correlationId = new UUID(proto.getCorrelationIdMSB(), proto.getCorrelationIdLSB());
-                partition = proto.getPartition();
+            if (entityType == null) {
+                throw new IllegalStateException("Could not parse protobuf for TbMsg: originator entity type is missing");
             }
+            return EntityIdFactory.getByTypeAndUuid(entityType, new UUID(entityIdMSB, entityIdLSB));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
+        }
+    }
 
-            TbMsgProcessingCtx ctx;
-            if (proto.hasCtx()) {
-                ctx = TbMsgProcessingCtx.fromProto(proto.getCtx());
-            } else {
-                // Backward compatibility with unprocessed messages fetched from queue after update.
-                ctx = new TbMsgProcessingCtx(proto.getRuleNodeExecCounter());
-            }
+    private static TbMsg fromProto(String queueName, MsgProtos.TbMsgProto proto, TbMsgCallback callback) {
+        TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
+        EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+        CustomerId customerId = null;
+        RuleChainId ruleChainId = null;
+        RuleNodeId ruleNodeId = null;
+        UUID correlationId = null;
+        Integer partition = null;
+        if (proto.getCustomerIdMSB() != 0L && proto.getCustomerIdLSB() != 0L) {
+            customerId = new CustomerId(new UUID(proto.getCustomerIdMSB(), proto.getCustomerIdLSB()));
+        }
+        if (proto.getRuleChainIdMSB() != 0L && proto.getRuleChainIdLSB() != 0L) {
+            ruleChainId = new RuleChainId(new UUID(proto.getRuleChainIdMSB(), proto.getRuleChainIdLSB()));
+        }
+        if (proto.getRuleNodeIdMSB() != 0L && proto.getRuleNodeIdLSB() != 0L) {
+            ruleNodeId = new RuleNodeId(new UUID(proto.getRuleNodeIdMSB(), proto.getRuleNodeIdLSB()));
+        }
+        if (proto.getCorrelationIdMSB() != 0L && proto.getCorrelationIdLSB() != 0L) {
+            correlationId = new UUID(proto.getCorrelationIdMSB(), proto.getCorrelationIdLSB());
+            partition = proto.getPartition();
+        }
 
-            TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
-            return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), null, proto.getType(), entityId, customerId,
-                    metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, correlationId, partition, ctx, callback);
-        } catch (InvalidProtocolBufferException e) {
-            throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
+        TbMsgProcessingCtx ctx;
+        if (proto.hasCtx()) {
+            ctx = TbMsgProcessingCtx.fromProto(proto.getCtx());
+        } else {
+            // Backward compatibility with unprocessed messages fetched from queue after update.
+            ctx = new TbMsgProcessingCtx(proto.getRuleNodeExecCounter());
         }
+
+        TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
+        return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), null, proto.getType(), entityId, customerId,
+                metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, correlationId, partition, ctx, callback);
     }
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId) {
@@ -464,17 +554,68 @@ public final class TbMsg implements Serializable {
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, null, this.correlationId, this.partition, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, null, this.correlationId, this.partition, this.ctx, callback).withDataTreeOf(this);
     }
 
     public TbMsg copyWithRuleNodeId(RuleChainId ruleChainId, RuleNodeId ruleNodeId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.correlationId, this.partition, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.correlationId, this.partition, this.ctx, callback).withDataTreeOf(this);
     }
 
     public TbMsg copyWithNewCtx() {
         return new TbMsg(this.queueName, this.id, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.correlationId, this.partition, this.ctx.copy(), TbMsgCallback.EMPTY);
+                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.correlationId, this.partition, this.ctx.copy(), TbMsgCallback.EMPTY).withDataTreeOf(this);
+    }
+
+    public String getData() {
+        String data = this.data;
+        if (data == null) {
+            JsonNode tree = dataTree != null ? dataTree.get() : null;
+            if (tree != null) {
+                data = JacksonUtil.toString(tree);
+                this.data = data;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the message data parsed as JSON tree. The data is parsed only once per message instance
+     * and the result is shared by all the rule nodes that process the message, so the returned tree must be treated as read-only:
+     * make a {@link JsonNode#deepCopy()} before the modification and use {@link #transformMsgData(TbMsg, JsonNode)} to pass it further.
+     * @return parsed data or null if the data is empty.
+     * @throws IllegalArgumentException if the data is not a valid JSON.
+     */
+    @JsonIgnore
+    public JsonNode getDataAsJsonNode() {
+        if (dataTree == null) {
+            // Message was restored with Java serialization
+            return JacksonUtil.toJsonNode(getData());
+        }
+        JsonNode tree = dataTree.get();
+        if (tree == null) {
+            tree = JacksonUtil.toJsonNode(data);
+            if (tree != null) {
+                dataTree.compareAndSet(null, tree);
+            }
+        }
+        return tree;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getData();
+        out.defaultWriteObject();
+    }
+
+    private TbMsg withDataTree(JsonNode tree) {
+        if (tree != null) {
+            dataTree.set(tree);
+        }
+        return this;
+    }
+
+    private TbMsg withDataTreeOf(TbMsg tbMsg) {
+        return tbMsg.dataTree != null ? withDataTree(tbMsg.dataTree.get()) : this;
     }
 
     public TbMsgCallback getCallback() {
@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.common.msg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.msg.TbMsgType;
+import org.sobeam.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TbMsgTest {
+
+    private static final String DATA = "{\"temperature\":42,\"humidity\":77}";
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void givenMsg_whenGetDataAsJsonNodeTwice_thenTreeIsParsedOnce() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+
+        JsonNode tree = msg.getDataAsJsonNode();
+
+        assertThat(tree.get("temperature").asInt()).isEqualTo(42);
+        assertThat(msg.getDataAsJsonNode()).isSameAs(tree);
+    }
+
+    @Test
+    public void givenTransformedWithTree_whenGetData_thenTreeIsSerializedLazily() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+        ObjectNode newData = (ObjectNode) msg.getDataAsJsonNode().deepCopy();
+        newData.remove("humidity");
+
+        TbMsg transformed = TbMsg.transformMsgData(msg, newData);
+
+        assertThat(transformed.getDataAsJsonNode()).isSameAs(newData);
+        assertThat(transformed.getData()).isEqualTo("{\"temperature\":42}");
+        assertThat(msg.getData()).isEqualTo(DATA);
+    }
+
+    @Test
+    public void givenSameTree_whenTransformMsgData_thenSerializedDataIsReused() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+
+        TbMsg transformed = TbMsg.transformMsgData(msg, msg.getDataAsJsonNode());
+
+        assertThat(transformed.getData()).isSameAs(msg.getData());
+    }
+
+    @Test
+    public void givenTransformedWithTree_whenToByteArray_thenDataIsSerialized() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+        ObjectNode newData = (ObjectNode) msg.getDataAsJsonNode().deepCopy();
+        newData.put("pressure", 1);
+
+        TbMsg restored = TbMsg.fromBytes("Main", TbMsg.toByteArray(TbMsg.transformMsgData(msg, newData)), TbMsgCallback.EMPTY);
+
+        assertThat(restored.getDataAsJsonNode()).isEqualTo(newData);
+    }
+
+    @Test
+    public void givenSerializedMsg_whenOriginatorFromBytes_thenOnlyOriginatorIsRead() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+
+        assertThat(TbMsg.originatorFromBytes(TbMsg.toByteString(msg))).isEqualTo(deviceId);
+    }
+
+    @Test
+    public void givenBytesWithoutOriginator_whenOriginatorFromBytes_thenIllegalStateException() {
+        assertThatThrownBy(() -> TbMsg.originatorFromBytes(ByteString.EMPTY)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void givenSerializedMsg_whenFromByteString_thenSameAsFromBytes() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, DATA);
+
+        TbMsg fromByteString = TbMsg.fromBytes("Main", TbMsg.toByteString(msg), TbMsgCallback.EMPTY);
+        TbMsg fromBytes = TbMsg.fromBytes("Main", TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+
+        assertThat(fromByteString.getId()).isEqualTo(fromBytes.getId());
+        assertThat(fromByteString.getOriginator()).isEqualTo(deviceId);
+        assertThat(fromByteString.getData()).isEqualTo(fromBytes.getData());
+    }
+
+}
@@ -118,7 +118,7 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         records.forEach(record -> {
             try {
                 if (record != null) {
-                    result.add(decode(record));
+                    decode(record, result);
                 }
             } catch (IOException e) {
                 log.error("Failed decode record: [{}]", record);
@@ -187,6 +187,13 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected T decode(R record) throws IOException;
 
+    /**
+     * Decodes the record into the result list. Queues that may carry several messages in one record override this method.
+     */
+    protected void decode(R record, List<T> result) throws IOException {
+        result.add(decode(record));
+    }
+
     abstract protected void doSubscribe(List<String> topicNames);
 
     abstract protected void doCommit();
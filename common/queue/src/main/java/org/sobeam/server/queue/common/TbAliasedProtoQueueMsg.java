@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.common;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import org.sobeam.server.queue.TbQueueMsgHeaders;
+
+import java.util.UUID;
+
+/**
+ * Queue message that keeps the received bytes. The value is parsed on decode with aliasing enabled,
+ * so the 'bytes' fields of the message (e.g. the serialized TbMsg) reference the received buffer instead of being copied.
+ * The parsing failure is reported by the consumer for the particular record, the same way as for the other decoders.
+ */
+public class TbAliasedProtoQueueMsg<T extends GeneratedMessageV3> extends TbProtoQueueMsg<T> {
+
+    private final byte[] data;
+
+    private TbAliasedProtoQueueMsg(UUID key, T value, byte[] data, TbQueueMsgHeaders headers) {
+        super(key, value, headers);
+        this.data = data;
+    }
+
+    public static <T extends GeneratedMessageV3> TbAliasedProtoQueueMsg<T> parse(UUID key, byte[] data, TbQueueMsgHeaders headers, Parser<T> parser) throws InvalidProtocolBufferException {
+        CodedInputStream input = CodedInputStream.newInstance(data);
+        input.enableAliasing(true);
+        return new TbAliasedProtoQueueMsg<>(key, parser.parseFrom(input), data, headers);
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+}
@@ -72,6 +72,8 @@ public class HashPartitionService implements PartitionService {
     private Integer edgePartitions;
     @Value("${queue.partitions.hash_function_name:murmur3_128}")
     private String hashFunctionName;
+    @Value("${queue.partitions.hash_cache_size:4096}")
+    private int hashCacheSize;
 
     private final ApplicationEventPublisher applicationEventPublisher;
     private final TbServiceInfoProvider serviceInfoProvider;
@@ -87,11 +89,15 @@ public class HashPartitionService implements PartitionService {
 
     private final ConcurrentMap<TenantId, TenantRoutingInfo> tenantRoutingInfoMap = new ConcurrentHashMap<>();
 
+    private volatile PartitionRoutingTable routingTable = PartitionRoutingTable.EMPTY;
+    private final Object routingTableLock = new Object();
+
     private List<ServiceInfo> currentOtherServices;
     private final Map<String, List<ServiceInfo>> tbTransportServicesByType = new HashMap<>();
     private volatile Map<TenantProfileId, List<ServiceInfo>> responsibleServices = Collections.emptyMap();
 
     private HashFunction hashFunction;
+    private HashCache hashCache;
 
     public HashPartitionService(TbServiceInfoProvider serviceInfoProvider,
                                 TenantRoutingInfoService tenantRoutingInfoService,
@@ -108,6 +114,7 @@ public class HashPartitionService implements PartitionService {
     @PostConstruct
     public void init() {
         this.hashFunction = forName(hashFunctionName);
+        this.hashCache = hashCacheSize > 0 ? new HashCache(hashCacheSize) : null;
         QueueKey coreKey = new QueueKey(ServiceType.TB_CORE);
         partitionSizesMap.put(coreKey, corePartitions);
         partitionTopicsMap.put(coreKey, coreTopic);
@@ -123,12 +130,14 @@ public class HashPartitionService implements PartitionService {
         QueueKey edgeKey = coreKey.withQueueName(EDGE_QUEUE_NAME);
         partitionSizesMap.put(edgeKey, edgePartitions);
         partitionTopicsMap.put(edgeKey, edgeTopic);
+        updateRoutingTable();
     }
 
     @AfterStartUp(order = AfterStartUp.QUEUE_INFO_INITIALIZATION)
     public void partitionsInit() {
         if (isTransport(serviceInfoProvider.getServiceType())) {
             doInitRuleEnginePartitions();
+            updateRoutingTable();
         }
     }
 
@@ -196,6 +205,7 @@ public class HashPartitionService implements PartitionService {
                 tenantRoutingInfoMap.remove(tenantId);
             }
         }
+        updateRoutingTable();
     }
 
     @Override
@@ -209,6 +219,7 @@ public class HashPartitionService implements PartitionService {
             removeQueue(queueKey);
             evictTenantInfo(queueKey.getTenantId());
         });
+        updateRoutingTable();
         if (serviceInfoProvider.isService(ServiceType.TB_RULE_ENGINE)) {
             publishPartitionChangeEvent(ServiceType.TB_RULE_ENGINE, queueKeys.stream()
                     .collect(Collectors.toMap(k -> k, k -> Collections.emptySet())));
@@ -221,6 +232,7 @@ public class HashPartitionService implements PartitionService {
                 .filter(queueKey -> tenantId.equals(queueKey.getTenantId())).toList();
         queueKeys.forEach(this::removeQueue);
         evictTenantInfo(tenantId);
+        updateRoutingTable();
     }
 
     private void removeQueue(QueueKey queueKey) {
@@ -267,17 +279,23 @@ public class HashPartitionService implements PartitionService {
 
     @Override
     public TopicPartitionInfo resolve(ServiceType serviceType, String queueName, TenantId tenantId, EntityId entityId) {
-        QueueKey queueKey = getQueueKey(serviceType, queueName, tenantId);
-        return resolve(queueKey, entityId);
+        TopicPartitionInfo[] partitions = getPartitions(serviceType, queueName, tenantId);
+        if (partitions == null) {
+            return resolve(getQueueKey(serviceType, queueName, tenantId), entityId);
+        }
+        return partitions[resolvePartitionIndex(entityId.getId(), partitions.length)];
     }
 
     @Override
     public TopicPartitionInfo resolve(ServiceType serviceType, String queueName, TenantId tenantId, EntityId entityId, Integer partition) {
-        QueueKey queueKey = getQueueKey(serviceType, queueName, tenantId);
         if (partition != null) {
-            return buildTopicPartitionInfo(queueKey, partition);
+            TopicPartitionInfo[] partitions = getPartitions(serviceType, queueName, tenantId);
+            if (partitions != null && partition >= 0 && partition < partitions.length) {
+                return partitions[partition];
+            }
+            return buildTopicPartitionInfo(getQueueKey(serviceType, queueName, tenantId), partition);
         } else {
-            return resolve(queueKey, entityId);
+            return resolve(serviceType, queueName, tenantId, entityId);
         }
     }
 
@@ -313,15 +331,45 @@ public class HashPartitionService implements PartitionService {
     }
 
     private TopicPartitionInfo resolve(QueueKey queueKey, EntityId entityId) {
+        TopicPartitionInfo[] partitions = routingTable.get(queueKey);
+        if (partitions != null) {
+            return partitions[resolvePartitionIndex(entityId.getId(), partitions.length)];
+        }
+        // the queue is added but the routing table is not updated yet
         Integer partitionSize = partitionSizesMap.get(queueKey);
         if (partitionSize == null) {
             throw new IllegalStateException("Partitions info for queue " + queueKey + " is missing");
         }
+        return buildTopicPartitionInfo(queueKey, resolvePartitionIndex(entityId.getId(), partitionSize));
+    }
 
-        int hash = hash(entityId.getId());
-        int partition = Math.abs(hash % partitionSize);
-
-        return buildTopicPartitionInfo(queueKey, partition);
+    /**
+     * Returns the partitions of the queue from the routing table, or null if the tenant's queue is not found
+     * and the fallback queue should be resolved with {@link #getQueueKey(ServiceType, String, TenantId)}.
+     */
+    private TopicPartitionInfo[] getPartitions(ServiceType serviceType, String queueName, TenantId tenantId) {
+        TenantId isolatedOrSystemTenantId = getIsolatedOrSystemTenantId(serviceType, tenantId);
+        if (queueName == null || queueName.isEmpty()) {
+            queueName = MAIN_QUEUE_NAME;
+        }
+        return routingTable.get(serviceType, isolatedOrSystemTenantId, queueName);
+    }
+
+    private void updateRoutingTable() {
+        synchronized (routingTableLock) {
+            Map<QueueKey, TopicPartitionInfo[]> partitions = new HashMap<>();
+            partitionSizesMap.forEach((queueKey, size) -> {
+                if (partitionTopicsMap.containsKey(queueKey)) {
+                    List<Integer> myQueuePartitions = myPartitions.get(queueKey);
+                    TopicPartitionInfo[] tpis = new TopicPartitionInfo[size];
+                    for (int i = 0; i < size; i++) {
+                        tpis[i] = buildTopicPartitionInfo(queueKey, i, myQueuePartitions != null && myQueuePartitions.contains(i));
+                    }
+                    partitions.put(queueKey, tpis);
+                }
+            });
+            routingTable = new PartitionRoutingTable(partitions);
+        }
     }
 
     private QueueKey getQueueKey(ServiceType serviceType, String queueName, TenantId tenantId) {
@@ -388,6 +436,7 @@ public class HashPartitionService implements PartitionService {
 
         final ConcurrentMap<QueueKey, List<Integer>> oldPartitions = myPartitions;
         myPartitions = newPartitions;
+        updateRoutingTable();
 
         Map<QueueKey, Set<TopicPartitionInfo>> changedPartitionsMap = new HashMap<>();
 
@@ -650,6 +699,13 @@ public class HashPartitionService implements PartitionService {
     }
 
     private int hash(UUID key) {
+        if (hashCache != null) {
+            return hashCache.get(key);
+        }
+        return doHash(key);
+    }
+
+    private int doHash(UUID key) {
         return hashFunction.newHasher()
                 .putLong(key.getMostSignificantBits())
                 .putLong(key.getLeastSignificantBits())
@@ -669,6 +725,38 @@ public class HashPartitionService implements PartitionService {
         return serviceInfos.stream().map(ServiceInfo::getServiceId).collect(Collectors.toList());
     }
 
+    /**
+     * Direct-mapped cache of the entity id hashes. The hash does not depend on the number of partitions,
+     * so it is shared by all queues. A collision just replaces the previous entry.
+     */
+    private class HashCache {
+
+        private final Entry[] entries;
+        private final int mask;
+
+        HashCache(int size) {
+            int capacity = size > 1 ? Integer.highestOneBit(size - 1) << 1 : 1;
+            this.entries = new Entry[capacity];
+            this.mask = capacity - 1;
+        }
+
+        int get(UUID key) {
+            long bits = key.getMostSignificantBits() ^ key.getLeastSignificantBits();
+            int idx = (int) (bits ^ (bits >>> 32));
+            idx = (idx ^ (idx >>> 16)) & mask;
+            Entry entry = entries[idx];
+            if (entry != null && entry.key.equals(key)) {
+                return entry.hash;
+            }
+            int hash = doHash(key);
+            entries[idx] = new Entry(key, hash);
+            return hash;
+        }
+
+        private record Entry(UUID key, int hash) {}
+
+    }
+
     @Data
     public static class QueueConfig {
         private boolean duplicateMsgToAllPartitions;
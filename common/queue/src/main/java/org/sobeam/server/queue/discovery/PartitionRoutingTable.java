@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.discovery;
+
+import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.msg.queue.ServiceType;
+import org.sobeam.server.common.msg.queue.TopicPartitionInfo;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the topic partitions of all known queues. It is rebuilt and replaced as a whole
+ * when the queues or the partitions assignment change, so the topic partitions are looked up without building the queue key
+ * and without creating new {@link TopicPartitionInfo} instances.
+ */
+final class PartitionRoutingTable {
+
+    static final PartitionRoutingTable EMPTY = new PartitionRoutingTable(Map.of());
+
+    private final Map<QueueKey, TopicPartitionInfo[]> partitions;
+    private final Map<ServiceType, Map<TenantId, Map<String, TopicPartitionInfo[]>>> partitionsByTenant = new EnumMap<>(ServiceType.class);
+
+    PartitionRoutingTable(Map<QueueKey, TopicPartitionInfo[]> partitions) {
+        this.partitions = partitions;
+        partitions.forEach((queueKey, tpis) -> partitionsByTenant
+                .computeIfAbsent(queueKey.getType(), type -> new HashMap<>())
+                .computeIfAbsent(queueKey.getTenantId(), tenantId -> new HashMap<>())
+                .put(queueKey.getQueueName(), tpis));
+    }
+
+    TopicPartitionInfo[] get(ServiceType serviceType, TenantId tenantId, String queueName) {
+        Map<TenantId, Map<String, TopicPartitionInfo[]>> byTenant = partitionsByTenant.get(serviceType);
+        if (byTenant == null) {
+            return null;
+        }
+        Map<String, TopicPartitionInfo[]> byQueueName = byTenant.get(tenantId);
+        return byQueueName != null ? byQueueName.get(queueName) : null;
+    }
+
+    TopicPartitionInfo[] get(QueueKey queueKey) {
+        return partitions.get(queueKey);
+    }
+
+}
@@ -37,6 +37,12 @@ public class KafkaTbQueueMsg implements TbQueueMsg {
         this.data = record.value();
     }
 
+    public KafkaTbQueueMsg(UUID key, TbQueueMsgHeaders headers, byte[] data) {
+        this.key = key;
+        this.headers = headers;
+        this.data = data;
+    }
+
     @Override
     public UUID getKey() {
         return key;
@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.kafka;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.sobeam.server.gen.transport.TransportProtos.QueueMsgPackEntryProto;
+import org.sobeam.server.gen.transport.TransportProtos.QueueMsgPackProto;
+import org.sobeam.server.queue.TbQueueMsg;
+import org.sobeam.server.queue.TbQueueMsgHeaders;
+import org.sobeam.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encoding of several queue messages into a single Kafka record.
+ * The record is marked with the {@link #PACK_HEADER} header, so the consumer can tell packs from the regular records.
+ */
+final class KafkaTbQueueMsgPack {
+
+    static final String PACK_HEADER = "_pack";
+
+    private KafkaTbQueueMsgPack() {
+    }
+
+    static byte[] pack(List<? extends TbQueueMsg> msgs) {
+        QueueMsgPackProto.Builder builder = QueueMsgPackProto.newBuilder();
+        for (TbQueueMsg msg : msgs) {
+            QueueMsgPackEntryProto.Builder entry = QueueMsgPackEntryProto.newBuilder()
+                    .setKeyMSB(msg.getKey().getMostSignificantBits())
+                    .setKeyLSB(msg.getKey().getLeastSignificantBits())
+                    .setData(ByteString.copyFrom(msg.getData()));
+            for (Map.Entry<String, byte[]> header : msg.getHeaders().getData().entrySet()) {
+                entry.putHeaders(header.getKey(), ByteString.copyFrom(header.getValue()));
+            }
+            builder.addMsgs(entry);
+        }
+        return builder.build().toByteArray();
+    }
+
+    static boolean isPack(ConsumerRecord<String, byte[]> record) {
+        return record.headers().lastHeader(PACK_HEADER) != null;
+    }
+
+    static List<TbQueueMsg> unpack(byte[] data) throws InvalidProtocolBufferException {
+        QueueMsgPackProto pack = QueueMsgPackProto.parseFrom(data);
+        List<TbQueueMsg> msgs = new ArrayList<>(pack.getMsgsCount());
+        for (QueueMsgPackEntryProto entry : pack.getMsgsList()) {
+            TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+            entry.getHeadersMap().forEach((key, value) -> headers.put(key, value.toByteArray()));
+            msgs.add(new KafkaTbQueueMsg(new UUID(entry.getKeyMSB(), entry.getKeyLSB()), headers, entry.getData().toByteArray()));
+        }
+        return msgs;
+    }
+
+}
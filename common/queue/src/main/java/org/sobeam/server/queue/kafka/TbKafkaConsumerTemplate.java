@@ -21,6 +21,8 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.sobeam.server.queue.TbQueueAdmin;
 import org.sobeam.server.queue.TbQueueMsg;
@@ -30,7 +32,9 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -46,6 +50,8 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
 
+    private volatile Map<TopicPartition, OffsetAndMetadata> lastPollOffsets = Collections.emptyMap();
+
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
                                     String clientId, String groupId, String topic,
@@ -93,10 +99,17 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         log.trace("poll topic {} took {}ms", getTopic(), stopWatch.getTotalTimeMillis());
 
         if (records.isEmpty()) {
+            lastPollOffsets = Collections.emptyMap();
             return Collections.emptyList();
         } else {
             List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
             records.forEach(recordList::add);
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            for (TopicPartition partition : records.partitions()) {
+                List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(partition);
+                offsets.put(partition, new OffsetAndMetadata(partitionRecords.get(partitionRecords.size() - 1).offset() + 1));
+            }
+            lastPollOffsets = offsets;
             return recordList;
         }
     }
@@ -106,11 +119,38 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         return decoder.decode(new KafkaTbQueueMsg(record));
     }
 
+    @Override
+    protected void decode(ConsumerRecord<String, byte[]> record, List<T> result) throws IOException {
+        if (KafkaTbQueueMsgPack.isPack(record)) {
+            for (TbQueueMsg msg : KafkaTbQueueMsgPack.unpack(record.value())) {
+                result.add(decoder.decode(msg));
+            }
+        } else {
+            result.add(decode(record));
+        }
+    }
+
     @Override
     protected void doCommit() {
         consumer.commitSync();
     }
 
+    @Override
+    public Object getLastPollOffsets() {
+        return lastPollOffsets;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Object offsets) {
+        consumerLock.lock();
+        try {
+            consumer.commitSync((Map<TopicPartition, OffsetAndMetadata>) offsets);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     protected void doUnsubscribe() {
         if (consumer != null) {
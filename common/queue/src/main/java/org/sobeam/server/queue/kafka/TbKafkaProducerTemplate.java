@@ -23,6 +23,7 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
+import org.sobeam.common.util.SoBeamThreadFactory;
 import org.sobeam.server.common.data.StringUtils;
 import org.sobeam.server.common.msg.queue.TopicPartitionInfo;
 import org.sobeam.server.queue.TbQueueAdmin;
@@ -31,11 +32,16 @@ import org.sobeam.server.queue.TbQueueMsg;
 import org.sobeam.server.queue.TbQueueProducer;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -59,8 +65,13 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
     @Getter
     private final String clientId;
 
+    private final boolean packed;
+    private final ConcurrentMap<TopicPartitionInfo, MsgPack> packs;
+    private final ScheduledExecutorService packExecutor;
+    private volatile boolean stopped;
+
     @Builder
-    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin) {
+    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin, boolean packed) {
         Properties props = settings.toProducerProps();
 
         this.clientId = Objects.requireNonNull(clientId, "Kafka producer client.id is null");
@@ -73,6 +84,17 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         this.defaultTopic = defaultTopic;
         this.admin = admin;
         topics = ConcurrentHashMap.newKeySet();
+
+        this.packed = packed && settings.isPackEnabled();
+        if (this.packed) {
+            this.packs = new ConcurrentHashMap<>();
+            this.packExecutor = Executors.newSingleThreadScheduledExecutor(SoBeamThreadFactory.forName("kafka-producer-pack-" + clientId));
+            long lingerMs = Math.max(1, settings.getPackLingerMs());
+            this.packExecutor.scheduleWithFixedDelay(this::flushExpiredPacks, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.packs = null;
+            this.packExecutor = null;
+        }
     }
 
     @Override
@@ -99,27 +121,11 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
     public void send(TopicPartitionInfo tpi, T msg, TbQueueCallback callback) {
         try {
             createTopicIfNotExist(tpi);
-            String key = msg.getKey().toString();
-            byte[] data = msg.getData();
-            ProducerRecord<String, byte[]> record;
-            List<Header> headers = msg.getHeaders().getData().entrySet().stream().map(e -> new RecordHeader(e.getKey(), e.getValue())).collect(Collectors.toList());
-            if (log.isDebugEnabled()) {
-                addAnalyticHeaders(headers);
+            if (packed && tpi.getPartition() != null) {
+                packs.computeIfAbsent(tpi, MsgPack::new).add(msg, callback);
+            } else {
+                doSend(tpi, msg, callback);
             }
-            record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, data, headers);
-            producer.send(record, (metadata, exception) -> {
-                if (exception == null) {
-                    if (callback != null) {
-                        callback.onSuccess(new KafkaTbQueueMsgMetadata(metadata));
-                    }
-                } else {
-                    if (callback != null) {
-                        callback.onFailure(exception);
-                    } else {
-                        log.warn("Producer template failure: {}", exception.getMessage(), exception);
-                    }
-                }
-            });
         } catch (Exception e) {
             if (callback != null) {
                 callback.onFailure(e);
@@ -130,6 +136,64 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         }
     }
 
+    private void doSend(TopicPartitionInfo tpi, T msg, TbQueueCallback callback) {
+        String key = msg.getKey().toString();
+        byte[] data = msg.getData();
+        ProducerRecord<String, byte[]> record;
+        List<Header> headers = msg.getHeaders().getData().entrySet().stream().map(e -> new RecordHeader(e.getKey(), e.getValue())).collect(Collectors.toList());
+        if (log.isDebugEnabled()) {
+            addAnalyticHeaders(headers);
+        }
+        record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, data, headers);
+        producer.send(record, (metadata, exception) -> {
+            if (exception == null) {
+                if (callback != null) {
+                    callback.onSuccess(new KafkaTbQueueMsgMetadata(metadata));
+                }
+            } else {
+                if (callback != null) {
+                    callback.onFailure(exception);
+                } else {
+                    log.warn("Producer template failure: {}", exception.getMessage(), exception);
+                }
+            }
+        });
+    }
+
+    private void doSendPack(TopicPartitionInfo tpi, List<T> msgs, List<TbQueueCallback> callbacks) {
+        String key = msgs.get(0).getKey().toString();
+        int packSize = msgs.size();
+        byte[] data = KafkaTbQueueMsgPack.pack(msgs);
+        List<Header> headers = new ArrayList<>();
+        headers.add(new RecordHeader(KafkaTbQueueMsgPack.PACK_HEADER, Integer.toString(packSize).getBytes(StandardCharsets.UTF_8)));
+        if (log.isDebugEnabled()) {
+            addAnalyticHeaders(headers);
+        }
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, data, headers);
+        producer.send(record, (metadata, exception) -> {
+            if (exception == null) {
+                KafkaTbQueueMsgMetadata msgMetadata = new KafkaTbQueueMsgMetadata(metadata);
+                callbacks.forEach(callback -> {
+                    if (callback != null) {
+                        callback.onSuccess(msgMetadata);
+                    }
+                });
+            } else {
+                log.warn("Producer template failure for pack of {} messages: {}", packSize, exception.getMessage(), exception);
+                callbacks.forEach(callback -> {
+                    if (callback != null) {
+                        callback.onFailure(exception);
+                    }
+                });
+            }
+        });
+    }
+
+    private void flushExpiredPacks() {
+        long expirationTs = System.currentTimeMillis() - settings.getPackLingerMs();
+        packs.values().forEach(pack -> pack.flushIfExpired(expirationTs));
+    }
+
     private void createTopicIfNotExist(TopicPartitionInfo tpi) {
         if (topics.contains(tpi)) {
             return;
@@ -140,8 +204,73 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
 
     @Override
     public void stop() {
+        stopped = true;
+        if (packExecutor != null) {
+            packExecutor.shutdownNow();
+            packs.values().forEach(pack -> pack.flushIfExpired(Long.MAX_VALUE));
+        }
         if (producer != null) {
             producer.close();
         }
     }
+
+    /**
+     * Messages for the same partition accumulated until the pack is full or the linger time passes.
+     * The pack is sent while holding its lock, so the order of the messages within the partition is preserved.
+     */
+    private class MsgPack {
+
+        private final TopicPartitionInfo tpi;
+        private final List<T> msgs = new ArrayList<>();
+        private final List<TbQueueCallback> callbacks = new ArrayList<>();
+        private int size;
+        private long firstMsgTs;
+
+        private MsgPack(TopicPartitionInfo tpi) {
+            this.tpi = tpi;
+        }
+
+        synchronized void add(T msg, TbQueueCallback callback) {
+            if (msgs.isEmpty()) {
+                firstMsgTs = System.currentTimeMillis();
+            }
+            msgs.add(msg);
+            callbacks.add(callback);
+            size += msg.getData().length;
+            // nothing flushes the packs once the template is stopped, so the message is sent right away
+            if (stopped || msgs.size() >= settings.getPackMaxMsgs() || size >= settings.getPackMaxBytes()) {
+                flush();
+            }
+        }
+
+        synchronized void flushIfExpired(long expirationTs) {
+            if (!msgs.isEmpty() && firstMsgTs <= expirationTs) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            List<TbQueueCallback> callbacks = new ArrayList<>(this.callbacks);
+            try {
+                if (msgs.size() == 1) {
+                    doSend(tpi, msgs.get(0), callbacks.get(0));
+                } else {
+                    doSendPack(tpi, msgs, callbacks);
+                }
+            } catch (Exception e) {
+                log.warn("[{}] Failed to send pack to {}: {}", clientId, tpi, e.getMessage(), e);
+                callbacks.forEach(callback -> {
+                    if (callback != null) {
+                        callback.onFailure(e);
+                    }
+                });
+            } finally {
+                msgs.clear();
+                this.callbacks.clear();
+                size = 0;
+            }
+        }
+
+    }
+
 }
@@ -95,6 +95,22 @@ public class TbKafkaSettings {
     @Value("${queue.kafka.buffer.memory:33554432}")
     private long bufferMemory;
 
+    @Value("${queue.kafka.pack.enabled:false}")
+    @Getter
+    private boolean packEnabled;
+
+    @Value("${queue.kafka.pack.linger_ms:5}")
+    @Getter
+    private long packLingerMs;
+
+    @Value("${queue.kafka.pack.max_msgs:100}")
+    @Getter
+    private int packMaxMsgs;
+
+    @Value("${queue.kafka.pack.max_bytes:65536}")
+    @Getter
+    private int packMaxBytes;
+
     @Value("${queue.kafka.replication_factor:1}")
     @Getter
     private short replicationFactor;
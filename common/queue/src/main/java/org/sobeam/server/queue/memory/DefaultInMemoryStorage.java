@@ -16,6 +16,7 @@
 package org.sobeam.server.queue.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.sobeam.server.queue.TbQueueMsg;
 
@@ -29,6 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 @Component
+@ConditionalOnProperty(prefix = "queue.in_memory.spool", value = "enabled", havingValue = "false", matchIfMissing = true)
 @Slf4j
 public final class DefaultInMemoryStorage implements InMemoryStorage {
     private final ConcurrentHashMap<String, BlockingQueue<TbQueueMsg>> storage = new ConcurrentHashMap<>();
@@ -0,0 +1,234 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.memory;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of a single topic, stored in the memory-mapped segment files of the fixed size.
+ * The record is the length, the CRC and the payload. The length is written last and the unused space of the segment is zeroed,
+ * so the log is recovered after a crash by scanning the records from the consumer offset until the first empty or corrupted one.
+ * The offsets are logical: the segment file is named by the offset of its first byte, and the next segment starts where the previous one ends.
+ */
+@Slf4j
+class SegmentedLog {
+
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String OFFSET_FILE = "consumer.offset";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel offsetChannel;
+    private final MappedByteBuffer offsetBuffer;
+    private long writeOffset;
+    private long readOffset;
+    @Getter
+    private volatile int lag;
+
+    SegmentedLog(Path dir, int segmentSize, long maxSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxSize / segmentSize);
+        Files.createDirectories(dir);
+        this.offsetChannel = FileChannel.open(dir.resolve(OFFSET_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.offsetBuffer = offsetChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        this.readOffset = offsetBuffer.getLong(0);
+        recover();
+    }
+
+    synchronized boolean append(byte[] payload) throws IOException {
+        int size = RECORD_HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes does not fit the segment of " + segmentSize + " bytes");
+        }
+        Segment segment = segments.lastEntry().getValue();
+        int position = (int) (writeOffset - segment.base);
+        if (position + size > segmentSize) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            segment.buffer.force();
+            segment = openSegment(segment.base + segmentSize);
+            position = 0;
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(position + Integer.BYTES, crc(payload, 0, payload.length));
+        buffer.put(position + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(position, payload.length);
+        writeOffset = segment.base + position + size;
+        lag++;
+        return true;
+    }
+
+    synchronized List<byte[]> read(int maxRecords) throws IOException {
+        if (readOffset >= writeOffset) {
+            return List.of();
+        }
+        List<byte[]> records = new ArrayList<>(Math.min(lag, maxRecords));
+        while (records.size() < maxRecords && readOffset < writeOffset) {
+            Segment segment = segments.floorEntry(readOffset).getValue();
+            int position = (int) (readOffset - segment.base);
+            int length = position + RECORD_HEADER_SIZE <= segmentSize ? segment.buffer.getInt(position) : 0;
+            if (length == 0) {
+                readOffset = segment.base + segmentSize;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(position + RECORD_HEADER_SIZE, payload);
+            records.add(payload);
+            readOffset += RECORD_HEADER_SIZE + length;
+            lag--;
+        }
+        offsetBuffer.putLong(0, readOffset);
+        deleteConsumedSegments();
+        return records;
+    }
+
+    synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        offsetBuffer.force();
+        try {
+            offsetChannel.close();
+        } catch (IOException e) {
+            log.warn("[{}] Failed to close consumer offset file", dir, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                if (base + segmentSize <= readOffset) {
+                    Files.delete(file);
+                } else {
+                    segments.put(base, new Segment(base, file, segmentSize));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment(readOffset);
+        } else if (readOffset < segments.firstKey()) {
+            readOffset = segments.firstKey();
+        }
+
+        long offset = readOffset;
+        int count = 0;
+        for (Map.Entry<Long, Segment> entry : segments.tailMap(segments.floorKey(readOffset)).entrySet()) {
+            Segment segment = entry.getValue();
+            int position = (int) Math.max(0, offset - segment.base);
+            boolean corrupted = false;
+            while (position + RECORD_HEADER_SIZE <= segmentSize) {
+                int length = segment.buffer.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > segmentSize
+                        || segment.buffer.getInt(position + Integer.BYTES) != crc(segment.buffer, position + RECORD_HEADER_SIZE, length)) {
+                    corrupted = length != 0;
+                    break;
+                }
+                position += RECORD_HEADER_SIZE + length;
+                count++;
+            }
+            if (corrupted) {
+                log.warn("[{}] Found corrupted record at offset {}, skipping the rest of the segment", dir, segment.base + position);
+                // the partially written or corrupted records are never read, and are overwritten by the next append
+                clear(segment.buffer, position);
+            }
+            offset = entry.getKey().equals(segments.lastKey()) ? segment.base + position : segment.base + segmentSize;
+        }
+        writeOffset = offset;
+        lag = count;
+        log.info("[{}] Recovered {} messages in {} segments", dir, count, segments.size());
+    }
+
+    private void clear(MappedByteBuffer buffer, int from) {
+        byte[] zeros = new byte[4096];
+        for (int position = from; position < segmentSize; position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, segmentSize - position));
+        }
+    }
+
+    private Segment openSegment(long base) throws IOException {
+        Segment segment = new Segment(base, dir.resolve(String.format("%020d", base) + SEGMENT_SUFFIX), segmentSize);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    private void deleteConsumedSegments() throws IOException {
+        while (segments.size() > 1 && segments.firstKey() + segmentSize <= readOffset) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            segment.close();
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(MappedByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static class Segment {
+
+        private final long base;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        Segment(long base, Path file, int size) throws IOException {
+            this.base = base;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close segment file {}", file, e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.memory;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.sobeam.server.queue.TbQueueMsg;
+import org.sobeam.server.queue.common.DefaultTbQueueMsgHeaders;
+import org.sobeam.server.queue.common.TbProtoQueueMsg;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory queue storage that spools the messages to the memory-mapped segmented logs on the local disk,
+ * so the queued messages survive the restart and the heap usage does not depend on the queue size.
+ * The same as for {@link DefaultInMemoryStorage}, the messages are acknowledged when they are polled.
+ * Only the {@link TbProtoQueueMsg} messages are supported, and they are decoded back with the parser of the stored value type.
+ */
+@Component
+@ConditionalOnProperty(prefix = "queue.in_memory.spool", value = "enabled", havingValue = "true")
+@Slf4j
+public final class SegmentedLogInMemoryStorage implements InMemoryStorage {
+
+    private static final int MAX_POLL_RECORDS = 1000;
+
+    @Value("${queue.in_memory.spool.path:${java.io.tmpdir}/sobeam/queue}")
+    private String path;
+    @Value("${queue.in_memory.spool.segment_size:16777216}")
+    private int segmentSize;
+    @Value("${queue.in_memory.spool.max_topic_size:1073741824}")
+    private long maxTopicSize;
+
+    private final ConcurrentHashMap<String, SegmentedLog> logs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Parser<?>> parsers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(path);
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                String topic = URLDecoder.decode(dir.getFileName().toString(), StandardCharsets.UTF_8);
+                logs.put(topic, new SegmentedLog(dir, segmentSize, maxTopicSize));
+            }
+        }
+        log.info("Initialized in-memory queue spool at {} with {} topics and {} messages", root.toAbsolutePath(), logs.size(), getLagTotal());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        logs.values().forEach(SegmentedLog::close);
+        logs.clear();
+    }
+
+    @Override
+    public void printStats() {
+        if (log.isDebugEnabled()) {
+            logs.forEach((topic, topicLog) -> {
+                if (topicLog.getLag() > 0) {
+                    log.debug("[{}] Queue Size [{}]", topic, topicLog.getLag());
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getLagTotal() {
+        return logs.values().stream().mapToInt(SegmentedLog::getLag).sum();
+    }
+
+    @Override
+    public int getLag(String topic) {
+        SegmentedLog topicLog = logs.get(topic);
+        return topicLog != null ? topicLog.getLag() : 0;
+    }
+
+    @Override
+    public boolean put(String topic, TbQueueMsg msg) {
+        try {
+            SegmentedLog topicLog = logs.computeIfAbsent(topic, this::createLog);
+            if (!topicLog.append(encode(msg))) {
+                log.warn("[{}] Failed to add message to the queue: max topic size {} reached", topic, maxTopicSize);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("[{}] Failed to add message to the queue", topic, e);
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException {
+        SegmentedLog topicLog = logs.get(topic);
+        if (topicLog == null) {
+            return Collections.emptyList();
+        }
+        List<byte[]> records;
+        try {
+            records = topicLog.read(MAX_POLL_RECORDS);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to read messages from the queue", topic, e);
+            return Collections.emptyList();
+        }
+        if (records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> msgs = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            try {
+                msgs.add((T) decode(record));
+            } catch (Exception e) {
+                log.warn("[{}] Failed to decode message, skipping it", topic, e);
+            }
+        }
+        return msgs;
+    }
+
+    private SegmentedLog createLog(String topic) {
+        try {
+            return new SegmentedLog(Paths.get(path, URLEncoder.encode(topic, StandardCharsets.UTF_8)), segmentSize, maxTopicSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create the log for topic " + topic, e);
+        }
+    }
+
+    private byte[] encode(TbQueueMsg msg) throws IOException {
+        if (!(msg instanceof TbProtoQueueMsg<?> protoMsg)) {
+            throw new IllegalArgumentException("Unsupported message type: " + msg.getClass().getName());
+        }
+        GeneratedMessageV3 value = protoMsg.getValue();
+        byte[] type = value.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        parsers.putIfAbsent(value.getClass().getName(), value.getParserForType());
+        Map<String, byte[]> headers = msg.getHeaders().getData();
+        List<byte[]> headerKeys = new ArrayList<>(headers.size());
+        int size = Long.BYTES * 2 + Integer.BYTES * 2 + type.length + value.getSerializedSize();
+        for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+            byte[] key = header.getKey().getBytes(StandardCharsets.UTF_8);
+            headerKeys.add(key);
+            size += Integer.BYTES * 2 + key.length + header.getValue().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        UUID key = msg.getKey();
+        buffer.putLong(key.getMostSignificantBits());
+        buffer.putLong(key.getLeastSignificantBits());
+        buffer.putInt(headers.size());
+        int i = 0;
+        for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+            putBytes(buffer, headerKeys.get(i++));
+            putBytes(buffer, header.getValue());
+        }
+        putBytes(buffer, type);
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer.array(), buffer.position(), buffer.remaining());
+        value.writeTo(output);
+        output.checkNoSpaceLeft();
+        return buffer.array();
+    }
+
+    private TbQueueMsg decode(byte[] record) throws InvalidProtocolBufferException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        UUID key = new UUID(buffer.getLong(), buffer.getLong());
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        int headersCount = buffer.getInt();
+        for (int i = 0; i < headersCount; i++) {
+            String headerKey = new String(getBytes(buffer), StandardCharsets.UTF_8);
+            headers.put(headerKey, getBytes(buffer));
+        }
+        String type = new String(getBytes(buffer), StandardCharsets.UTF_8);
+        GeneratedMessageV3 value = (GeneratedMessageV3) getParser(type).parseFrom(buffer);
+        return new TbProtoQueueMsg<>(key, value, headers);
+    }
+
+    private Parser<?> getParser(String type) {
+        return parsers.computeIfAbsent(type, t -> {
+            try {
+                return (Parser<?>) Class.forName(t, true, getClass().getClassLoader()).getMethod("parser").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unsupported message type: " + t, e);
+            }
+        });
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
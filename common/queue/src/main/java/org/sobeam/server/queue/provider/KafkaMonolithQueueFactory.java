@@ -41,6 +41,7 @@ import org.sobeam.server.queue.TbQueueConsumer;
 import org.sobeam.server.queue.TbQueueProducer;
 import org.sobeam.server.queue.TbQueueRequestTemplate;
 import org.sobeam.server.queue.common.DefaultTbQueueRequestTemplate;
+import org.sobeam.server.queue.common.TbAliasedProtoQueueMsg;
 import org.sobeam.server.queue.common.TbProtoJsQueueMsg;
 import org.sobeam.server.queue.common.TbProtoQueueMsg;
 import org.sobeam.server.queue.discovery.TbServiceInfoProvider;
@@ -147,6 +148,7 @@ public class KafkaMonolithQueueFactory implements TbCoreQueueFactory, TbRuleEngi
         requestBuilder.clientId("monolith-rule-engine-" + serviceInfoProvider.getServiceId());
         requestBuilder.defaultTopic(topicService.buildTopicName(ruleEngineSettings.getTopic()));
         requestBuilder.admin(ruleEngineAdmin);
+        requestBuilder.packed(true);
         return requestBuilder.build();
     }
 
@@ -211,7 +213,7 @@ public class KafkaMonolithQueueFactory implements TbCoreQueueFactory, TbRuleEngi
         consumerBuilder.topic(topicService.buildTopicName(configuration.getTopic()));
         consumerBuilder.clientId("re-" + queueName + "-consumer-" + serviceInfoProvider.getServiceId() + "-" + consumerCount.incrementAndGet());
         consumerBuilder.groupId(groupId);
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), ToRuleEngineMsg.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> TbAliasedProtoQueueMsg.parse(msg.getKey(), msg.getData(), msg.getHeaders(), ToRuleEngineMsg.parser()));
         consumerBuilder.admin(ruleEngineAdmin);
         consumerBuilder.statsService(consumerStatsService);
         return consumerBuilder.build();
@@ -238,7 +240,7 @@ public class KafkaMonolithQueueFactory implements TbCoreQueueFactory, TbRuleEngi
         consumerBuilder.topic(topicService.buildTopicName(coreSettings.getTopic()));
         consumerBuilder.clientId("monolith-core-consumer-" + serviceInfoProvider.getServiceId() + "-" + consumerCount.incrementAndGet());
         consumerBuilder.groupId(topicService.buildTopicName("monolith-core-consumer"));
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), ToCoreMsg.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> TbAliasedProtoQueueMsg.parse(msg.getKey(), msg.getData(), msg.getHeaders(), ToCoreMsg.parser()));
         consumerBuilder.admin(coreAdmin);
         consumerBuilder.statsService(consumerStatsService);
         return consumerBuilder.build();
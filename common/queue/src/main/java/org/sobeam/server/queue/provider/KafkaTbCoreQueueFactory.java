@@ -40,6 +40,7 @@ import org.sobeam.server.queue.TbQueueConsumer;
 import org.sobeam.server.queue.TbQueueProducer;
 import org.sobeam.server.queue.TbQueueRequestTemplate;
 import org.sobeam.server.queue.common.DefaultTbQueueRequestTemplate;
+import org.sobeam.server.queue.common.TbAliasedProtoQueueMsg;
 import org.sobeam.server.queue.common.TbProtoJsQueueMsg;
 import org.sobeam.server.queue.common.TbProtoQueueMsg;
 import org.sobeam.server.queue.discovery.TbServiceInfoProvider;
@@ -147,6 +148,7 @@ public class KafkaTbCoreQueueFactory implements TbCoreQueueFactory {
         requestBuilder.clientId("tb-core-rule-engine-" + serviceInfoProvider.getServiceId());
         requestBuilder.defaultTopic(topicService.buildTopicName(coreSettings.getTopic()));
         requestBuilder.admin(coreAdmin);
+        requestBuilder.packed(true);
         return requestBuilder.build();
     }
 
@@ -187,7 +189,7 @@ public class KafkaTbCoreQueueFactory implements TbCoreQueueFactory {
         consumerBuilder.topic(topicService.buildTopicName(coreSettings.getTopic()));
         consumerBuilder.clientId("tb-core-consumer-" + serviceInfoProvider.getServiceId() + "-" + consumerCount.incrementAndGet());
         consumerBuilder.groupId(topicService.buildTopicName("tb-core-node"));
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), ToCoreMsg.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> TbAliasedProtoQueueMsg.parse(msg.getKey(), msg.getData(), msg.getHeaders(), ToCoreMsg.parser()));
         consumerBuilder.admin(coreAdmin);
         consumerBuilder.statsService(consumerStatsService);
         return consumerBuilder.build();
@@ -38,6 +38,7 @@ import org.sobeam.server.queue.TbQueueConsumer;
 import org.sobeam.server.queue.TbQueueProducer;
 import org.sobeam.server.queue.TbQueueRequestTemplate;
 import org.sobeam.server.queue.common.DefaultTbQueueRequestTemplate;
+import org.sobeam.server.queue.common.TbAliasedProtoQueueMsg;
 import org.sobeam.server.queue.common.TbProtoJsQueueMsg;
 import org.sobeam.server.queue.common.TbProtoQueueMsg;
 import org.sobeam.server.queue.discovery.TbServiceInfoProvider;
@@ -127,6 +128,7 @@ public class KafkaTbRuleEngineQueueFactory implements TbRuleEngineQueueFactory {
         requestBuilder.clientId("tb-rule-engine-to-rule-engine-" + serviceInfoProvider.getServiceId());
         requestBuilder.defaultTopic(topicService.buildTopicName(ruleEngineSettings.getTopic()));
         requestBuilder.admin(ruleEngineAdmin);
+        requestBuilder.packed(true);
         return requestBuilder.build();
     }
 
@@ -208,7 +210,7 @@ public class KafkaTbRuleEngineQueueFactory implements TbRuleEngineQueueFactory {
         consumerBuilder.topic(topicService.buildTopicName(configuration.getTopic()));
         consumerBuilder.clientId("re-" + queueName + "-consumer-" + serviceInfoProvider.getServiceId() + "-" + consumerCount.incrementAndGet());
         consumerBuilder.groupId(groupId);
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), ToRuleEngineMsg.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> TbAliasedProtoQueueMsg.parse(msg.getKey(), msg.getData(), msg.getHeaders(), ToRuleEngineMsg.parser()));
         consumerBuilder.admin(ruleEngineAdmin);
         consumerBuilder.statsService(consumerStatsService);
         return consumerBuilder.build();
@@ -128,6 +128,7 @@ public class KafkaTbTransportQueueFactory implements TbTransportQueueFactory {
         requestBuilder.clientId("transport-node-rule-engine-" + serviceInfoProvider.getServiceId());
         requestBuilder.defaultTopic(topicService.buildTopicName(ruleEngineSettings.getTopic()));
         requestBuilder.admin(ruleEngineAdmin);
+        requestBuilder.packed(true);
         return requestBuilder.build();
     }
 
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.common;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TbAliasedProtoQueueMsgTest {
+
+    @Test
+    void givenValidData_whenParse_thenValueParsedAndDataKept() throws InvalidProtocolBufferException {
+        ToRuleEngineMsg value = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(1L)
+                .setTenantIdLSB(2L)
+                .setTbMsg(ByteString.copyFromUtf8("tbMsg"))
+                .build();
+        byte[] data = value.toByteArray();
+
+        TbAliasedProtoQueueMsg<ToRuleEngineMsg> msg = TbAliasedProtoQueueMsg.parse(UUID.randomUUID(), data, new DefaultTbQueueMsgHeaders(), ToRuleEngineMsg.parser());
+
+        assertThat(msg.getData()).isSameAs(data);
+        assertThat(msg.getValue()).isEqualTo(value);
+    }
+
+    @Test
+    void givenInvalidData_whenParse_thenInvalidProtocolBufferException() {
+        assertThatThrownBy(() -> TbAliasedProtoQueueMsg.parse(UUID.randomUUID(), new byte[]{-1, -1, -1}, new DefaultTbQueueMsgHeaders(), ToRuleEngineMsg.parser()))
+                .isInstanceOf(InvalidProtocolBufferException.class);
+    }
+
+}
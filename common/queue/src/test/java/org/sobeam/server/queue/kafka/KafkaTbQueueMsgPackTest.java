@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.sobeam.server.queue.TbQueueMsg;
+import org.sobeam.server.queue.TbQueueMsgHeaders;
+import org.sobeam.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaTbQueueMsgPackTest {
+
+    @Test
+    void testPackAndUnpack() throws Exception {
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put("header", "value".getBytes(StandardCharsets.UTF_8));
+        TbQueueMsg first = new KafkaTbQueueMsg(UUID.randomUUID(), headers, "first".getBytes(StandardCharsets.UTF_8));
+        TbQueueMsg second = new KafkaTbQueueMsg(UUID.randomUUID(), new DefaultTbQueueMsgHeaders(), new byte[0]);
+
+        List<TbQueueMsg> msgs = KafkaTbQueueMsgPack.unpack(KafkaTbQueueMsgPack.pack(List.of(first, second)));
+
+        assertThat(msgs).hasSize(2);
+        assertThat(msgs.get(0).getKey()).isEqualTo(first.getKey());
+        assertThat(msgs.get(0).getData()).isEqualTo(first.getData());
+        assertThat(msgs.get(0).getHeaders().get("header")).isEqualTo(headers.get("header"));
+        assertThat(msgs.get(1).getKey()).isEqualTo(second.getKey());
+        assertThat(msgs.get(1).getData()).isEmpty();
+        assertThat(msgs.get(1).getHeaders().getData()).isEmpty();
+    }
+
+    @Test
+    void testIsPack() {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("topic", 0, 0L, UUID.randomUUID().toString(), new byte[0]);
+        assertThat(KafkaTbQueueMsgPack.isPack(record)).isFalse();
+
+        record.headers().add(new RecordHeader(KafkaTbQueueMsgPack.PACK_HEADER, "2".getBytes(StandardCharsets.UTF_8)));
+        assertThat(KafkaTbQueueMsgPack.isPack(record)).isTrue();
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.queue.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sobeam.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.sobeam.server.queue.TbQueueMsg;
+import org.sobeam.server.queue.common.DefaultTbQueueMsgHeaders;
+import org.sobeam.server.queue.common.TbProtoQueueMsg;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SegmentedLogInMemoryStorageTest {
+
+    static final int MAX_POLL_SIZE = 1000;
+    final String topic = "tb_rule_engine.main.0";
+
+    @TempDir
+    Path dir;
+
+    SegmentedLogInMemoryStorage storage;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = createStorage(64 * 1024, 1024 * 1024);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.destroy();
+    }
+
+    @Test
+    public void givenProtoMsg_whenPutAndGet_thenMsgIsDecodedWithHeaders() throws InterruptedException {
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put("header", new byte[]{1, 2, 3});
+        TbProtoQueueMsg<ToRuleEngineMsg> msg = new TbProtoQueueMsg<>(UUID.randomUUID(), createMsg(1), headers);
+
+        assertThat(storage.put(topic, msg)).isTrue();
+        assertThat(storage.getLag(topic)).isEqualTo(1);
+
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> polled = storage.get(topic);
+        assertThat(polled).hasSize(1);
+        assertThat(polled.get(0).getKey()).isEqualTo(msg.getKey());
+        assertThat(polled.get(0).getValue()).isEqualTo(msg.getValue());
+        assertThat(polled.get(0).getHeaders().get("header")).containsExactly(1, 2, 3);
+        assertThat(storage.getLagTotal()).isZero();
+        assertThat(storage.get(topic)).isEmpty();
+    }
+
+    @Test
+    public void givenQueueWithMoreThenBatchSize_whenPoll_thenReturnFullListAndSecondList() throws InterruptedException {
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = putMsgs(MAX_POLL_SIZE + 1);
+
+        assertThat(storage.getLagTotal()).isEqualTo(MAX_POLL_SIZE + 1);
+        assertThat(keys(storage.get(topic))).isEqualTo(keys(msgs.subList(0, MAX_POLL_SIZE)));
+        assertThat(keys(storage.get(topic))).isEqualTo(keys(msgs.subList(MAX_POLL_SIZE, MAX_POLL_SIZE + 1)));
+        assertThat(storage.getLagTotal()).isZero();
+    }
+
+    @Test
+    public void givenUnconsumedMsgs_whenRestart_thenOnlyUnconsumedMsgsAreRecovered() throws Exception {
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = putMsgs(MAX_POLL_SIZE + 10);
+        storage.get(topic);
+        storage.destroy();
+
+        storage = createStorage(64 * 1024, 1024 * 1024);
+
+        assertThat(storage.getLag(topic)).isEqualTo(10);
+        assertThat(keys(storage.get(topic))).isEqualTo(keys(msgs.subList(MAX_POLL_SIZE, MAX_POLL_SIZE + 10)));
+    }
+
+    @Test
+    public void givenConsumedSegments_whenPoll_thenSegmentsAreDeleted() throws Exception {
+        putMsgs(MAX_POLL_SIZE * 2);
+        assertThat(countSegments()).isGreaterThan(1);
+
+        storage.get(topic);
+        storage.get(topic);
+
+        assertThat(countSegments()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenMaxTopicSizeReached_whenPut_thenMsgIsRejected() throws Exception {
+        storage.destroy();
+        storage = createStorage(1024, 2048);
+
+        int accepted = 0;
+        while (storage.put(topic, new TbProtoQueueMsg<>(UUID.randomUUID(), createMsg(accepted)))) {
+            accepted++;
+        }
+
+        assertThat(accepted).isPositive();
+        storage.get(topic);
+        assertThat(storage.put(topic, new TbProtoQueueMsg<>(UUID.randomUUID(), createMsg(accepted)))).isTrue();
+    }
+
+    @Test
+    public void givenNotProtoMsg_whenPut_thenMsgIsRejected() {
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isFalse();
+        assertThat(storage.getLagTotal()).isZero();
+    }
+
+    private SegmentedLogInMemoryStorage createStorage(int segmentSize, long maxTopicSize) throws IOException {
+        SegmentedLogInMemoryStorage newStorage = new SegmentedLogInMemoryStorage();
+        ReflectionTestUtils.setField(newStorage, "path", dir.toString());
+        ReflectionTestUtils.setField(newStorage, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(newStorage, "maxTopicSize", maxTopicSize);
+        newStorage.init();
+        return newStorage;
+    }
+
+    private List<TbProtoQueueMsg<ToRuleEngineMsg>> putMsgs(int count) {
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TbProtoQueueMsg<ToRuleEngineMsg> msg = new TbProtoQueueMsg<>(UUID.randomUUID(), createMsg(i));
+            msgs.add(msg);
+            assertThat(storage.put(topic, msg)).isTrue();
+        }
+        return msgs;
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> topicDirs = Files.list(dir); Stream<Path> files = Files.list(topicDirs.findFirst().orElseThrow())) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SegmentedLog.SEGMENT_SUFFIX)).count();
+        }
+    }
+
+    private static ToRuleEngineMsg createMsg(int i) {
+        return ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(i)
+                .setTenantIdLSB(i)
+                .addRelationTypes("Success")
+                .build();
+    }
+
+    private static List<UUID> keys(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) {
+        return msgs.stream().map(TbProtoQueueMsg::getKey).toList();
+    }
+
+}
@@ -159,13 +159,16 @@ public class CachedAttributesService implements AttributesService {
                     return jpaExecutorService.submit(() -> {
                         log.trace("[{}][{}] Lookup attributes from db: {}", entityId, scope, notFoundAttributeKeys);
                         List<AttributeKvEntry> result = attributesDao.find(tenantId, entityId, scope, notFoundAttributeKeys);
+                        Map<AttributeCacheKey, AttributeKvEntry> toCache = new HashMap<>();
                         for (AttributeKvEntry foundInDbAttribute : result) {
-                            put(entityId, scope, foundInDbAttribute);
+                            toCache.put(new AttributeCacheKey(scope, entityId, foundInDbAttribute.getKey()), foundInDbAttribute);
                             notFoundAttributeKeys.remove(foundInDbAttribute.getKey());
                         }
                         for (String key : notFoundAttributeKeys) {
-                            cache.put(new AttributeCacheKey(scope, entityId, key), null);
+                            toCache.put(new AttributeCacheKey(scope, entityId, key), null);
                         }
+                        log.trace("[{}][{}] Before cache put: {}", entityId, scope, toCache.keySet());
+                        cache.putAll(toCache);
                         List<AttributeKvEntry> mergedAttributes = new ArrayList<>(cachedAttributes);
                         mergedAttributes.addAll(result);
                         log.trace("[{}][{}] Commit cache transaction: {}", entityId, scope, notFoundAttributeKeys);
@@ -176,12 +179,14 @@ public class CachedAttributesService implements AttributesService {
     }
 
     private Map<String, TbCacheValueWrapper<AttributeKvEntry>> findCachedAttributes(EntityId entityId, AttributeScope scope, Collection<String> attributeKeys) {
+        List<AttributeCacheKey> cacheKeys = attributeKeys.stream().map(k -> new AttributeCacheKey(scope, entityId, k)).collect(Collectors.toList());
+        Map<AttributeCacheKey, TbCacheValueWrapper<AttributeKvEntry>> cachedValues = cache.getAll(cacheKeys);
         Map<String, TbCacheValueWrapper<AttributeKvEntry>> cachedAttributes = new HashMap<>();
-        for (String attributeKey : attributeKeys) {
-            var cachedAttributeValue = cache.get(new AttributeCacheKey(scope, entityId, attributeKey));
+        for (AttributeCacheKey cacheKey : cacheKeys) {
+            var cachedAttributeValue = cachedValues.get(cacheKey);
             if (cachedAttributeValue != null) {
                 hitCounter.increment();
-                cachedAttributes.put(attributeKey, cachedAttributeValue);
+                cachedAttributes.put(cacheKey.getKey(), cachedAttributeValue);
             } else {
                 missCounter.increment();
             }
@@ -0,0 +1,219 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.sobeam.common.util.SoBeamThreadFactory;
+import org.sobeam.server.common.data.util.CollectionsUtil;
+import org.sobeam.server.common.stats.MessagesStats;
+import org.sobeam.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded alternative to {@link TbSqlBlockingQueue}.
+ * Producers wait for free space instead of growing the queue without limit. The collector thread does not sleep
+ * between batches: it hands a batch to the writer as soon as the previous one is saved and keeps collecting
+ * elements while the writer is busy. The batch size is halved when the insert takes longer than
+ * the target latency and grown back up to the configured batch size while inserts are fast.
+ * Only one batch per queue is saved at a time, so the order of updates for the same entity is preserved.
+ */
+@Slf4j
+public class TbSqlAdaptiveQueue<E, R> implements TbSqlQueue<E, R> {
+
+    static final String QUEUE_SIZE_STATS_KEY = "sqlQueue.size";
+    static final String BATCH_SIZE_STATS_KEY = "sqlQueue.batchSize";
+    static final String BATCH_LATENCY_STATS_KEY = "sqlQueue.batchLatency";
+
+    private final BlockingQueue<TbSqlQueueElement<E, R>> queue;
+    private final TbSqlBlockingQueueParams params;
+    private final MessagesStats stats;
+    private final StatsFactory statsFactory;
+    private final Semaphore writerPermit = new Semaphore(1);
+    private final int minBatchSize;
+    private final int batchSizeIncrement;
+
+    private final AtomicInteger currentBatchSize;
+    private AtomicInteger queueSizeGauge;
+    private AtomicInteger batchSizeGauge;
+    private Timer batchLatencyTimer;
+
+    private ExecutorService collector;
+    private ExecutorService writer;
+
+    public TbSqlAdaptiveQueue(TbSqlBlockingQueueParams params, MessagesStats stats, StatsFactory statsFactory) {
+        this.params = params;
+        this.stats = stats;
+        this.statsFactory = statsFactory;
+        this.queue = new ArrayBlockingQueue<>(params.getMaxQueueSize());
+        this.minBatchSize = Math.max(1, params.getBatchSize() / 16);
+        this.batchSizeIncrement = minBatchSize;
+        this.currentBatchSize = new AtomicInteger(params.getBatchSize());
+    }
+
+    @Override
+    public void init(ScheduledLogExecutorComponent logExecutor, Function<List<E>, List<R>> saveFunction, Comparator<E> batchUpdateComparator, Function<List<TbSqlQueueElement<E, R>>, List<TbSqlQueueElement<E, R>>> filter, int index) {
+        String[] tags = {"queue", params.getStatsNamePrefix(), "index", Integer.toString(index)};
+        queueSizeGauge = statsFactory.createGauge(QUEUE_SIZE_STATS_KEY, new AtomicInteger(0), tags);
+        batchSizeGauge = statsFactory.createGauge(BATCH_SIZE_STATS_KEY, new AtomicInteger(0), tags);
+        batchLatencyTimer = statsFactory.createTimer(BATCH_LATENCY_STATS_KEY, tags);
+
+        String threadName = "sql-queue-" + index + "-" + params.getLogName().toLowerCase();
+        writer = Executors.newSingleThreadExecutor(SoBeamThreadFactory.forName(threadName + "-writer"));
+        collector = Executors.newSingleThreadExecutor(SoBeamThreadFactory.forName(threadName));
+        collector.submit(() -> {
+            String logName = params.getLogName();
+            while (!Thread.interrupted()) {
+                try {
+                    TbSqlQueueElement<E, R> first = queue.poll(params.getMaxDelay(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    int batchSize = currentBatchSize.get();
+                    List<TbSqlQueueElement<E, R>> entities = new ArrayList<>(batchSize);
+                    entities.add(first);
+                    queue.drainTo(entities, batchSize - 1);
+                    // new elements keep arriving while the previous batch is being saved
+                    writerPermit.acquire();
+                    if (entities.size() < batchSize) {
+                        queue.drainTo(entities, batchSize - entities.size());
+                    }
+                    queueSizeGauge.set(queue.size());
+                    batchSizeGauge.set(entities.size());
+                    writer.submit(() -> save(entities, saveFunction, batchUpdateComparator, filter));
+                } catch (InterruptedException e) {
+                    log.info("[{}] Queue polling was interrupted", logName);
+                    break;
+                } catch (Throwable t) {
+                    log.error("[{}] Failed to submit entities for saving", logName, t);
+                    writerPermit.release();
+                }
+            }
+            log.info("[{}] Queue polling completed", logName);
+        });
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            if (!queue.isEmpty() || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] batchSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), queue.size(), currentBatchSize.get(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+                stats.reset();
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void save(List<TbSqlQueueElement<E, R>> entities, Function<List<E>, List<R>> saveFunction, Comparator<E> batchUpdateComparator,
+                      Function<List<TbSqlQueueElement<E, R>>, List<TbSqlQueueElement<E, R>>> filter) {
+        String logName = params.getLogName();
+        long startTs = System.nanoTime();
+        boolean success = false;
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Going to save {} entities", logName, entities.size());
+                log.trace("[{}] Going to save entities: {}", logName, entities);
+            }
+
+            List<TbSqlQueueElement<E, R>> entitiesToSave = filter.apply(entities);
+
+            if (params.isBatchSortEnabled()) {
+                entitiesToSave = entitiesToSave.stream().sorted((o1, o2) -> batchUpdateComparator.compare(o1.getEntity(), o2.getEntity())).toList();
+            }
+
+            List<R> result = saveFunction.apply(entitiesToSave.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList()));
+
+            if (params.isWithResponse()) {
+                for (int i = 0; i < entitiesToSave.size(); i++) {
+                    entitiesToSave.get(i).getFuture().set(result.get(i));
+                }
+
+                if (entities.size() > entitiesToSave.size()) {
+                    CollectionsUtil.diffLists(entitiesToSave, entities).forEach(v -> v.getFuture().set(null));
+                }
+            } else {
+                entities.forEach(v -> v.getFuture().set(null));
+            }
+
+            stats.incrementSuccessful(entities.size());
+            success = true;
+        } catch (Throwable t) {
+            log.error("[{}] Failed to save {} entities", logName, entities.size(), t);
+            try {
+                stats.incrementFailed(entities.size());
+                entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(t));
+            } catch (Throwable th) {
+                log.error("[{}] Failed to set future exception", logName, th);
+            }
+        } finally {
+            long latencyNanos = System.nanoTime() - startTs;
+            batchLatencyTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+            adjustBatchSize(entities.size(), TimeUnit.NANOSECONDS.toMillis(latencyNanos), success);
+            writerPermit.release();
+        }
+    }
+
+    void adjustBatchSize(int savedCount, long latencyMs, boolean success) {
+        int batchSize = currentBatchSize.get();
+        if (!success || latencyMs > params.getTargetBatchLatencyMs()) {
+            currentBatchSize.set(Math.max(minBatchSize, batchSize / 2));
+        } else if (savedCount >= batchSize) {
+            currentBatchSize.set(Math.min(params.getBatchSize(), batchSize + batchSizeIncrement));
+        }
+    }
+
+    int getCurrentBatchSize() {
+        return currentBatchSize.get();
+    }
+
+    @Override
+    public void destroy() {
+        if (collector != null) {
+            collector.shutdownNow();
+        }
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+    }
+
+    @Override
+    public ListenableFuture<R> add(E element) {
+        SettableFuture<R> future = SettableFuture.create();
+        stats.incrementTotal();
+        try {
+            if (!queue.offer(new TbSqlQueueElement<>(future, element), params.getMaxAddWaitMs(), TimeUnit.MILLISECONDS)) {
+                stats.incrementFailed();
+                future.setException(new IllegalStateException("[" + params.getLogName() + "] Queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.incrementFailed();
+            future.setException(e);
+        }
+        return future;
+    }
+}
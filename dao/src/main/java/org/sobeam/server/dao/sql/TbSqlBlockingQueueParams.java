@@ -31,4 +31,21 @@ public class TbSqlBlockingQueueParams {
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
     private final boolean withResponse;
+
+    @Builder.Default
+    private final TbSqlQueueType queueType = TbSqlQueueType.BLOCKING;
+    /**
+     * Settings below are used by the {@link TbSqlQueueType#ADAPTIVE} queue only.
+     * The maximum number of pending elements per queue; producers wait up to maxAddWaitMs for free space
+     * and fail the element when the queue is still full.
+     */
+    @Builder.Default
+    private final int maxQueueSize = 100000;
+    @Builder.Default
+    private final long maxAddWaitMs = 10000;
+    /**
+     * Batch size is shrunk when the insert takes longer than this value and grown back up to batchSize otherwise.
+     */
+    @Builder.Default
+    private final long targetBatchLatencyMs = 100;
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sql;
+
+public enum TbSqlQueueType {
+
+    /**
+     * Unbounded queue that saves a batch and sleeps for the rest of the max delay if the batch was not full.
+     */
+    BLOCKING,
+    /**
+     * Bounded queue that applies back-pressure to producers, collects the next batch while the previous one is saved
+     * and adapts the batch size to the observed insert latency.
+     */
+    ADAPTIVE
+
+}
@@ -42,6 +42,7 @@ import org.sobeam.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.sobeam.server.dao.sql.ScheduledLogExecutorComponent;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueParams;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.sobeam.server.dao.sql.TbSqlQueueType;
 import org.sobeam.server.dao.util.SqlDao;
 
 import java.util.ArrayList;
@@ -84,6 +85,18 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Value("${sql.attributes.batch_threads:4}")
     private int batchThreads;
 
+    @Value("${sql.attributes.queue_type:BLOCKING}")
+    private TbSqlQueueType queueType;
+
+    @Value("${sql.attributes.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    @Value("${sql.attributes.max_add_wait_ms:10000}")
+    private long maxAddWaitMs;
+
+    @Value("${sql.attributes.target_batch_latency_ms:100}")
+    private long targetBatchLatencyMs;
+
     @Value("${sql.batch_sort:true}")
     private boolean batchSortEnabled;
 
@@ -99,6 +112,10 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                 .statsNamePrefix("attributes")
                 .batchSortEnabled(batchSortEnabled)
                 .withResponse(true)
+                .queueType(queueType)
+                .maxQueueSize(maxQueueSize)
+                .maxAddWaitMs(maxAddWaitMs)
+                .targetBatchLatencyMs(targetBatchLatencyMs)
                 .build();
 
         Function<AttributeKvEntity, Integer> hashcodeFunction = entity -> entity.getId().getEntityId().hashCode();
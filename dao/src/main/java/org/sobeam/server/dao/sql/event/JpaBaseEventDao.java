@@ -44,6 +44,7 @@ import org.sobeam.server.dao.model.sql.EventEntity;
 import org.sobeam.server.dao.sql.ScheduledLogExecutorComponent;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueParams;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.sobeam.server.dao.sql.TbSqlQueueType;
 import org.sobeam.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
 import org.sobeam.server.dao.util.SqlDao;
 
@@ -85,6 +86,18 @@ public class JpaBaseEventDao implements EventDao {
     @Value("${sql.events.batch_threads:3}")
     private int batchThreads;
 
+    @Value("${sql.events.queue_type:BLOCKING}")
+    private TbSqlQueueType queueType;
+
+    @Value("${sql.events.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    @Value("${sql.events.max_add_wait_ms:10000}")
+    private long maxAddWaitMs;
+
+    @Value("${sql.events.target_batch_latency_ms:100}")
+    private long targetBatchLatencyMs;
+
     @Value("${sql.batch_sort:true}")
     private boolean batchSortEnabled;
 
@@ -101,6 +114,10 @@ public class JpaBaseEventDao implements EventDao {
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("events")
                 .batchSortEnabled(batchSortEnabled)
+                .queueType(queueType)
+                .maxQueueSize(maxQueueSize)
+                .maxAddWaitMs(maxAddWaitMs)
+                .targetBatchLatencyMs(targetBatchLatencyMs)
                 .build();
         Function<Event, Integer> hashcodeFunction = entity -> Objects.hash(super.hashCode(), entity.getTenantId(), entity.getEntityId());
         queue = new TbSqlBlockingQueueWrapper<>(params, hashcodeFunction, batchThreads, statsFactory);
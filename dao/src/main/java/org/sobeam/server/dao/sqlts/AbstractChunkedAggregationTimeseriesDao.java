@@ -21,6 +21,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort.Direction;
 import org.sobeam.server.common.data.id.EntityId;
@@ -39,11 +40,13 @@ import org.sobeam.server.dao.model.sqlts.ts.TsKvEntity;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueParams;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.sobeam.server.dao.sqlts.insert.InsertTsRepository;
+import org.sobeam.server.dao.sqlts.sql.SqlAggregationRepository;
 import org.sobeam.server.dao.sqlts.ts.TsKvRepository;
 import org.sobeam.server.dao.timeseries.TimeseriesDao;
 import org.sobeam.server.dao.util.TimeUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -57,9 +60,15 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     protected TsKvRepository tsKvRepository;
 
+    @Autowired
+    protected SqlAggregationRepository aggregationRepository;
+
     @Autowired
     protected InsertTsRepository<TsKvEntity> insertRepository;
 
+    @Value("${sql.ts.single_query_aggregation:true}")
+    protected boolean singleQueryAggregation;
+
     protected TbSqlBlockingQueueWrapper<TsKvEntity, Void> tsQueue;
     @Autowired
     private StatsFactory statsFactory;
@@ -76,6 +85,10 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts")
                 .batchSortEnabled(batchSortEnabled)
+                .queueType(tsQueueType)
+                .maxQueueSize(tsMaxQueueSize)
+                .maxAddWaitMs(tsMaxAddWaitMs)
+                .targetBatchLatencyMs(tsTargetBatchLatencyMs)
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -121,6 +134,8 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         var aggParams = query.getAggParameters();
         if (Aggregation.NONE.equals(aggParams.getAggregation())) {
             return Futures.immediateFuture(findAllAsyncWithLimit(entityId, query));
+        } else if (singleQueryAggregation && aggregationRepository != null) {
+            return getReadTsKvQueryResultFuture(query, findAllAndAggregateAsync(entityId, query));
         } else {
             List<ListenableFuture<Optional<TsKvEntity>>> futures = new ArrayList<>();
             var intervalType = aggParams.getIntervalType();
@@ -158,6 +173,27 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return new ReadTsKvQueryResult(query.getId(), tsKvEntries, lastTs);
     }
 
+    ListenableFuture<List<Optional<? extends AbstractTsKvEntity>>> findAllAndAggregateAsync(EntityId entityId, ReadTsKvQuery query) {
+        long startTs = query.getStartTs();
+        long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+        return service.submit(() -> {
+            List<Optional<? extends AbstractTsKvEntity>> data = findAllAndAggregate(entityId.getId(), keyDictionaryDao.getOrSaveKeyId(query.getKey()),
+                    startTs, endTs, query);
+            if (data.isEmpty()) {
+                // keep the chunked path semantics: no data in range still produces an empty result instead of null
+                return Collections.singletonList(Optional.empty());
+            }
+            data.forEach(entity -> entity.ifPresent(e -> e.setStrKey(query.getKey())));
+            return data;
+        });
+    }
+
+    protected List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(UUID entityId, int keyId, long startTs, long endTs, ReadTsKvQuery query) {
+        var aggParams = query.getAggParameters();
+        return aggregationRepository.findAllAndAggregate(entityId, keyId, startTs, endTs,
+                aggParams.getIntervalType(), aggParams.getInterval(), aggParams.getTzId(), query.getAggregation());
+    }
+
     ListenableFuture<Optional<TsKvEntity>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         return service.submit(() -> {
             TsKvEntity entity = switchAggregation(entityId, key, startTs, endTs, aggregation);
@@ -29,6 +29,7 @@ import org.sobeam.server.common.data.kv.ReadTsKvQueryResult;
 import org.sobeam.server.common.data.kv.TsKvEntry;
 import org.sobeam.server.dao.model.ModelConstants;
 import org.sobeam.server.dao.sql.ScheduledLogExecutorComponent;
+import org.sobeam.server.dao.sql.TbSqlQueueType;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -60,6 +61,18 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     @Value("${sql.ts.batch_threads:4}")
     protected int tsBatchThreads;
 
+    @Value("${sql.ts.queue_type:BLOCKING}")
+    protected TbSqlQueueType tsQueueType;
+
+    @Value("${sql.ts.max_queue_size:100000}")
+    protected int tsMaxQueueSize;
+
+    @Value("${sql.ts.max_add_wait_ms:10000}")
+    protected long tsMaxAddWaitMs;
+
+    @Value("${sql.ts.target_batch_latency_ms:100}")
+    protected long tsTargetBatchLatencyMs;
+
     @Value("${sql.timescale.batch_threads:4}")
     protected int timescaleBatchThreads;
 
@@ -40,8 +40,13 @@ import org.sobeam.server.dao.timeseries.TimeseriesLatestDao;
 import org.sobeam.server.dao.timeseries.TsLatestCacheKey;
 import org.sobeam.server.dao.util.SqlTsLatestAnyDaoCachedRedis;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -152,6 +157,39 @@ public class CachedRedisSqlTimeseriesLatestDao extends BaseAbstractSqlTimeseries
         }, MoreExecutors.directExecutor());
     }
 
+    @Override
+    public ListenableFuture<List<TsKvEntry>> findLatest(TenantId tenantId, EntityId entityId, Collection<String> keys) {
+        final List<TsLatestCacheKey> cacheKeys = keys.stream().map(key -> new TsLatestCacheKey(entityId, key)).collect(Collectors.toList());
+        ListenableFuture<Map<TsLatestCacheKey, TbCacheValueWrapper<TsKvEntry>>> cacheFuture = cacheExecutorService.submit(() -> cache.getAll(cacheKeys));
+
+        return Futures.transformAsync(cacheFuture, cachedValues -> {
+            log.debug("findLatest cache hits [{}] of [{}] for [{}]", cachedValues.size(), cacheKeys.size(), entityId);
+            List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>(cacheKeys.size());
+            for (TsLatestCacheKey cacheKey : cacheKeys) {
+                TbCacheValueWrapper<TsKvEntry> cacheValueWrap = cachedValues.get(cacheKey);
+                if (cacheValueWrap != null) {
+                    futures.add(Futures.immediateFuture(Optional.ofNullable(cacheValueWrap.get())));
+                } else {
+                    futures.add(sqlDao.findLatestOpt(tenantId, entityId, cacheKey.getKey()));
+                }
+            }
+            return Futures.transform(Futures.allAsList(futures), values -> {
+                Map<TsLatestCacheKey, TsKvEntry> toCache = new HashMap<>();
+                List<TsKvEntry> result = new ArrayList<>(values.size());
+                for (int i = 0; i < cacheKeys.size(); i++) {
+                    TsLatestCacheKey cacheKey = cacheKeys.get(i);
+                    TsKvEntry value = values.get(i).orElse(null);
+                    if (!cachedValues.containsKey(cacheKey)) {
+                        toCache.put(cacheKey, value);
+                    }
+                    result.add(sqlDao.wrapNullTsKvEntry(cacheKey.getKey(), value));
+                }
+                cache.putAll(toCache);
+                return result;
+            }, MoreExecutors.directExecutor());
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         return sqlDao.findAllLatest(tenantId, entityId);
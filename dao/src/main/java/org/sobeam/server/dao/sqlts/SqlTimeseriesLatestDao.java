@@ -46,6 +46,7 @@ import org.sobeam.server.dao.model.sqlts.latest.TsKvLatestEntity;
 import org.sobeam.server.dao.sql.ScheduledLogExecutorComponent;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueParams;
 import org.sobeam.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.sobeam.server.dao.sql.TbSqlQueueType;
 import org.sobeam.server.dao.sql.TbSqlQueueElement;
 import org.sobeam.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
 import org.sobeam.server.dao.sqlts.latest.SearchTsKvLatestRepository;
@@ -96,6 +97,18 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
     @Value("${sql.ts_latest.batch_threads:4}")
     private int tsLatestBatchThreads;
 
+    @Value("${sql.ts_latest.queue_type:BLOCKING}")
+    private TbSqlQueueType tsLatestQueueType;
+
+    @Value("${sql.ts_latest.max_queue_size:100000}")
+    private int tsLatestMaxQueueSize;
+
+    @Value("${sql.ts_latest.max_add_wait_ms:10000}")
+    private long tsLatestMaxAddWaitMs;
+
+    @Value("${sql.ts_latest.target_batch_latency_ms:100}")
+    private long tsLatestTargetBatchLatencyMs;
+
     @Value("${sql.batch_sort:true}")
     protected boolean batchSortEnabled;
 
@@ -118,6 +131,10 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
                 .statsNamePrefix("ts.latest")
                 .batchSortEnabled(batchSortEnabled)
                 .withResponse(true)
+                .queueType(tsLatestQueueType)
+                .maxQueueSize(tsLatestMaxQueueSize)
+                .maxAddWaitMs(tsLatestMaxAddWaitMs)
+                .targetBatchLatencyMs(tsLatestTargetBatchLatencyMs)
                 .build();
 
         java.util.function.Function<TsKvLatestEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.insert;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.sobeam.server.dao.model.sql.AbstractTsKvEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Saves time-series either with a JDBC batch of INSERT ... ON CONFLICT statements or, if sql.ts.copy_insert is enabled,
+ * with a single binary COPY into a temporary staging table followed by one INSERT ... SELECT ... ON CONFLICT statement.
+ * The staging table is cleared on commit, so the copy path must be executed inside a transaction.
+ */
+public abstract class AbstractTsKvInsertRepository<T extends AbstractTsKvEntity> extends AbstractInsertRepository implements InsertTsRepository<T> {
+
+    private static final String STAGING_TABLE = "ts_kv_copy_staging";
+    private static final String COLUMNS = "entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v";
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS " + STAGING_TABLE +
+            " (entity_id uuid NOT NULL, key int NOT NULL, ts bigint NOT NULL, bool_v boolean, str_v varchar, long_v bigint, dbl_v double precision, json_v json)" +
+            " ON COMMIT DELETE ROWS;";
+    private static final String COPY_TO_STAGING = "COPY " + STAGING_TABLE + " (" + COLUMNS + ") FROM STDIN WITH (FORMAT BINARY)";
+    private static final String MERGE_FROM_STAGING = "INSERT INTO ts_kv (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + STAGING_TABLE + " " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v;";
+
+    @Value("${sql.ts.copy_insert:false}")
+    private boolean copyInsertEnabled;
+
+    @Override
+    public void saveOrUpdate(List<T> entities) {
+        if (copyInsertEnabled) {
+            copyAndMerge(entities);
+        } else {
+            batchInsert(entities);
+        }
+    }
+
+    protected abstract void batchInsert(List<T> entities);
+
+    protected void copyAndMerge(List<T> entities) {
+        byte[] data = TsKvBinaryCopyEncoder.encode(TsKvBinaryCopyEncoder.deduplicate(entities), this::replaceNullChars);
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute(CREATE_STAGING_TABLE);
+            }
+            CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            try {
+                copyManager.copyIn(COPY_TO_STAGING, new ByteArrayInputStream(data));
+            } catch (IOException e) {
+                throw new SQLException("Failed to copy time-series into the staging table", e);
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate(MERGE_FROM_STAGING);
+            }
+            return null;
+        });
+    }
+
+}
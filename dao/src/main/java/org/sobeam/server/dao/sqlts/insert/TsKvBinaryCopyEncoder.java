@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.insert;
+
+import org.sobeam.server.dao.model.sql.AbstractTsKvEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Encodes ts_kv rows in the PostgreSQL binary COPY format:
+ * (entity_id uuid, key int, ts bigint, bool_v boolean, str_v varchar, long_v bigint, dbl_v double precision, json_v json).
+ */
+public final class TsKvBinaryCopyEncoder {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELDS_COUNT = 8;
+
+    private TsKvBinaryCopyEncoder() {
+    }
+
+    public static byte[] encode(Collection<? extends AbstractTsKvEntity> entities, UnaryOperator<String> strValueFilter) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entities.size() * 80);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+            for (AbstractTsKvEntity entity : entities) {
+                out.writeShort(FIELDS_COUNT);
+                writeUuid(out, entity.getEntityId());
+                out.writeInt(4);
+                out.writeInt(entity.getKey());
+                out.writeInt(8);
+                out.writeLong(entity.getTs());
+                if (entity.getBooleanValue() != null) {
+                    out.writeInt(1);
+                    out.writeByte(entity.getBooleanValue() ? 1 : 0);
+                } else {
+                    out.writeInt(-1);
+                }
+                writeString(out, strValueFilter.apply(entity.getStrValue()));
+                if (entity.getLongValue() != null) {
+                    out.writeInt(8);
+                    out.writeLong(entity.getLongValue());
+                } else {
+                    out.writeInt(-1);
+                }
+                if (entity.getDoubleValue() != null) {
+                    out.writeInt(8);
+                    out.writeDouble(entity.getDoubleValue());
+                } else {
+                    out.writeInt(-1);
+                }
+                // binary representation of json is the same as its text representation
+                writeString(out, strValueFilter.apply(entity.getJsonValue()));
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Keeps only the last entity for each (entity_id, key, ts), because a single INSERT ... ON CONFLICT DO UPDATE
+     * statement is not able to update the same row twice.
+     */
+    public static <T extends AbstractTsKvEntity> Collection<T> deduplicate(List<T> entities) {
+        Map<TsKvRowKey, T> rows = new LinkedHashMap<>(entities.size() * 4 / 3 + 1);
+        for (T entity : entities) {
+            rows.put(new TsKvRowKey(entity.getEntityId(), entity.getKey(), entity.getTs()), entity);
+        }
+        return rows.values();
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeInt(16);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    private record TsKvRowKey(UUID entityId, int key, Long ts) {
+    }
+
+}
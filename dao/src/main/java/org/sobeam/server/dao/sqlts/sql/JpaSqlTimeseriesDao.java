@@ -26,8 +26,13 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import org.sobeam.server.common.data.id.EntityId;
 import org.sobeam.server.common.data.id.TenantId;
+import org.sobeam.server.common.data.kv.DeleteTsKvQuery;
+import org.sobeam.server.common.data.kv.IntervalType;
+import org.sobeam.server.common.data.kv.ReadTsKvQuery;
 import org.sobeam.server.common.data.kv.TsKvEntry;
 import org.sobeam.server.dao.dictionary.KeyDictionaryDao;
+import org.sobeam.server.dao.model.ModelConstants;
+import org.sobeam.server.dao.model.sql.AbstractTsKvEntity;
 import org.sobeam.server.dao.model.sqlts.ts.TsKvEntity;
 import org.sobeam.server.dao.sqlts.AbstractChunkedAggregationTimeseriesDao;
 import org.sobeam.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
@@ -41,14 +46,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
 
 @Component
 @Slf4j
@@ -68,6 +78,25 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
     @Value("${sql.postgres.ts_key_value_partitioning:MONTHS}")
     private String partitioning;
 
+    @Autowired
+    private TsRollupRepository rollupRepository;
+
+    @Value("${sql.ts.rollup.enabled:false}")
+    private boolean rollupEnabled;
+
+    @Value("${sql.ts.rollup.execution_interval_ms:60000}")
+    private long rollupExecutionIntervalMs;
+
+    @Value("${sql.ts.rollup.late_data_window_ms:3600000}")
+    private long rollupLateDataWindowMs;
+
+    @Value("${sql.ts.rollup.max_refresh_range_ms:86400000}")
+    private long rollupMaxRefreshRangeMs;
+
+    private volatile TsRollupCoverage rollupCoverage;
+    private volatile long rollupCoverageLoadTs;
+    // time ranges of the data that was saved after it was rolled up, refreshed by every node on its own
+    private final ConcurrentMap<LateDataKey, LateDataRange> lateData = new ConcurrentHashMap<>();
 
     @Override
     protected void init() {
@@ -79,6 +108,10 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
             log.warn("Incorrect configuration of partitioning {}", partitioning);
             throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
         }
+        if (rollupEnabled) {
+            logExecutor.scheduleAtFixedRate(() -> service.execute(this::refreshLateDataRollups),
+                    rollupExecutionIntervalMs, rollupExecutionIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -97,15 +130,191 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
         entity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
         entity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
         log.trace("Saving entity: {}", entity);
-        return Futures.transform(tsQueue.add(entity), v -> dataPointDays, MoreExecutors.directExecutor());
+        boolean isLateData = rollupEnabled && tsKvEntry.getTs() < System.currentTimeMillis() - rollupLateDataWindowMs;
+        return Futures.transform(tsQueue.add(entity), v -> {
+            if (isLateData) {
+                addLateData(entityId.getId(), keyId, tsKvEntry.getTs());
+            }
+            return dataPointDays;
+        }, MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        ListenableFuture<Void> future = super.remove(tenantId, entityId, query);
+        if (!rollupEnabled) {
+            return future;
+        }
+        return Futures.transform(future, v -> {
+            refreshRollups(rollupRepository.findCoverage(), entityId.getId(), keyDictionaryDao.getOrSaveKeyId(query.getKey()), query.getStartTs(), query.getEndTs());
+            return null;
+        }, service);
+    }
+
+    @Override
+    protected List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(UUID entityId, int keyId, long startTs, long endTs, ReadTsKvQuery query) {
+        if (rollupEnabled) {
+            var aggParams = query.getAggParameters();
+            TsRollupPlan plan = getRollupPlan(startTs, endTs, aggParams.getIntervalType(), aggParams.getInterval(), aggParams.getTzId());
+            if (plan != null) {
+                List<Optional<? extends AbstractTsKvEntity>> data = aggregationRepository.findAllAndAggregateWithRollups(entityId, keyId, startTs, endTs,
+                        aggParams.getIntervalType(), aggParams.getInterval(), aggParams.getTzId(), query.getAggregation(), plan.getBucketSize(),
+                        plan.getRollupStartTs(), plan.getRollupEndTs(), plan.getExcludedRollups(), plan.getRawStartTs(), plan.getRawEndTs());
+                if (data != null) {
+                    return data;
+                }
+            }
+        }
+        return super.findAllAndAggregate(entityId, keyId, startTs, endTs, query);
+    }
+
+    private TsRollupPlan getRollupPlan(long startTs, long endTs, IntervalType intervalType, long interval, ZoneId tzId) {
+        long[] bucketStarts;
+        if (IntervalType.MILLISECONDS.equals(intervalType)) {
+            if (interval < TsRollupRepository.MINUTE) {
+                return null;
+            }
+            bucketStarts = LongStream.iterate(startTs, ts -> ts < endTs, ts -> ts + interval).toArray();
+        } else {
+            bucketStarts = SqlAggregationRepository.calculateBucketStarts(startTs, endTs, intervalType, tzId);
+        }
+        return TsRollupPlan.create(getRollupCoverage(), bucketStarts, endTs);
+    }
+
+    private TsRollupCoverage getRollupCoverage() {
+        // the coverage only grows between the refreshes, so the cached one is always safe to use
+        long now = System.currentTimeMillis();
+        if (now - rollupCoverageLoadTs > rollupExecutionIntervalMs) {
+            rollupCoverage = rollupRepository.findCoverage();
+            rollupCoverageLoadTs = now;
+        }
+        return rollupCoverage;
+    }
+
+    @Override
+    public void refreshRollups() {
+        if (!rollupEnabled) {
+            return;
+        }
+        long endTs = TsRollupRepository.floor(System.currentTimeMillis() - rollupLateDataWindowMs, TsRollupRepository.MINUTE);
+        TsRollupCoverage coverage = rollupRepository.findCoverage();
+        if (coverage == null) {
+            Long minRawTs = rollupRepository.findMinRawTs();
+            long backfillTs = minRawTs != null ? TsRollupRepository.floor(Math.max(minRawTs, 0), TsRollupRepository.MINUTE) : endTs;
+            coverage = new TsRollupCoverage(endTs, endTs, Math.min(backfillTs, endTs));
+            rollupRepository.saveCoverage(coverage);
+            log.info("Going to roll up the time series starting from {}", coverage.getBackfillTs());
+        }
+        refreshLateDataRollups(coverage);
+        if (coverage.getEndTs() < endTs) {
+            coverage = refreshRollups(coverage, coverage.getEndTs(), Math.min(endTs, coverage.getEndTs() + rollupMaxRefreshRangeMs));
+        }
+        if (coverage.getStartTs() > coverage.getBackfillTs()) {
+            coverage = refreshRollups(coverage, Math.max(coverage.getBackfillTs(), coverage.getStartTs() - rollupMaxRefreshRangeMs), coverage.getStartTs());
+            if (coverage.getStartTs() <= coverage.getBackfillTs()) {
+                log.info("Finished rolling up the time series history");
+            }
+        }
+        rollupCoverage = coverage;
+        rollupCoverageLoadTs = System.currentTimeMillis();
+    }
+
+    private TsRollupCoverage refreshRollups(TsRollupCoverage coverage, long startTs, long endTs) {
+        TsRollupCoverage newCoverage = new TsRollupCoverage(Math.min(coverage.getStartTs(), startTs),
+                Math.max(coverage.getEndTs(), endTs), coverage.getBackfillTs());
+        long refreshStartTs = System.currentTimeMillis();
+        rollupRepository.refresh(TsRollupRepository.MINUTE, startTs, endTs);
+        for (long bucketSize : TsRollupRepository.BUCKET_SIZES.subList(1, TsRollupRepository.BUCKET_SIZES.size())) {
+            long bucketsStartTs = Math.max(TsRollupRepository.floor(startTs, bucketSize), newCoverage.getStartTs(bucketSize));
+            long bucketsEndTs = Math.min(TsRollupRepository.ceil(endTs, bucketSize), newCoverage.getEndTs(bucketSize));
+            if (bucketsStartTs < bucketsEndTs) {
+                rollupRepository.refresh(bucketSize, bucketsStartTs, bucketsEndTs);
+            }
+        }
+        rollupRepository.saveCoverage(newCoverage);
+        log.debug("Refreshed time series rollups for interval {}-{} in {} ms", startTs, endTs, System.currentTimeMillis() - refreshStartTs);
+        return newCoverage;
+    }
+
+    private void addLateData(UUID entityId, int keyId, long ts) {
+        long startTs = TsRollupRepository.floor(ts, TsRollupRepository.MINUTE);
+        lateData.merge(new LateDataKey(entityId, keyId), new LateDataRange(startTs, startTs + TsRollupRepository.MINUTE),
+                (a, b) -> new LateDataRange(Math.min(a.startTs(), b.startTs()), Math.max(a.endTs(), b.endTs())));
+    }
+
+    private void refreshLateDataRollups() {
+        if (lateData.isEmpty()) {
+            return;
+        }
+        try {
+            refreshLateDataRollups(rollupRepository.findCoverage());
+        } catch (Exception e) {
+            log.warn("Failed to refresh time series rollups for the late data", e);
+        }
+    }
+
+    private void refreshLateDataRollups(TsRollupCoverage coverage) {
+        for (LateDataKey key : lateData.keySet()) {
+            LateDataRange range = lateData.remove(key);
+            if (range != null) {
+                try {
+                    refreshRollups(coverage, key.entityId(), key.keyId(), range.startTs(), range.endTs());
+                } catch (RuntimeException e) {
+                    addLateData(key.entityId(), key.keyId(), range.startTs());
+                    addLateData(key.entityId(), key.keyId(), range.endTs() - 1);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void refreshRollups(TsRollupCoverage coverage, UUID entityId, int keyId, long startTs, long endTs) {
+        if (coverage == null) {
+            return;
+        }
+        for (long bucketSize : TsRollupRepository.BUCKET_SIZES) {
+            long bucketsStartTs = Math.max(TsRollupRepository.floor(startTs, bucketSize), coverage.getStartTs(bucketSize));
+            long bucketsEndTs = Math.min(TsRollupRepository.ceil(endTs, bucketSize), coverage.getEndTs(bucketSize));
+            if (bucketsStartTs < bucketsEndTs) {
+                rollupRepository.refresh(entityId, keyId, bucketSize, bucketsStartTs, bucketsEndTs);
+            }
+        }
     }
 
     @Override
     public void cleanup(long systemTtl) {
         if (systemTtl > 0) {
             cleanupPartitions(systemTtl);
+            if (rollupEnabled && !tsFormat.equals(SqlTsPartitionDate.INDEFINITE)) {
+                // the partitions before the one that contains the expiration time are dropped for all the entities
+                LocalDateTime expirationTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(systemTtl)), ZoneOffset.UTC);
+                int removed = rollupRepository.cleanup(toMills(tsFormat.trancateTo(expirationTime)));
+                log.info("Total time series rollups removed with the dropped partitions: [{}]", removed);
+            }
         }
         super.cleanup(systemTtl);
+        if (rollupEnabled) {
+            cleanupRollups(systemTtl);
+        }
+    }
+
+    private void cleanupRollups(long systemTtl) {
+        log.info("Going to cleanup old timeseries rollups using ttl: {}s", systemTtl);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("call cleanup_timeseries_rollups_by_ttl(?,?,?)")) {
+            stmt.setObject(1, ModelConstants.NULL_UUID);
+            stmt.setLong(2, systemTtl);
+            stmt.setLong(3, 0);
+            stmt.setQueryTimeout((int) TimeUnit.HOURS.toSeconds(1));
+            stmt.execute();
+            printWarnings(stmt);
+            try (ResultSet resultSet = stmt.getResultSet()) {
+                resultSet.next();
+                log.info("Total time series rollups removed by TTL for entities: [{}]", resultSet.getLong(1));
+            }
+        } catch (SQLException e) {
+            log.error("SQLException occurred during timeseries rollups TTL task execution ", e);
+        }
     }
 
     private void cleanupPartitions(long systemTtl) {
@@ -167,4 +376,10 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
     private static long toMills(LocalDateTime time) {
         return time.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
+
+    private record LateDataKey(UUID entityId, int keyId) {
+    }
+
+    private record LateDataRange(long startTs, long endTs) {
+    }
 }
@@ -0,0 +1,282 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.sobeam.server.common.data.kv.Aggregation;
+import org.sobeam.server.common.data.kv.IntervalType;
+import org.sobeam.server.dao.model.sql.AbstractTsKvEntity;
+import org.sobeam.server.dao.model.sqlts.ts.TsKvEntity;
+import org.sobeam.server.dao.util.SqlTsDao;
+import org.sobeam.server.dao.util.TimeUtils;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Computes all aggregation buckets of a time range with a single GROUP BY query on plain PostgreSQL.
+ * Fixed (MILLISECONDS) buckets are calculated arithmetically on the server side,
+ * calendar (WEEK, WEEK_ISO, MONTH, QUARTER) buckets are resolved with width_bucket over the timezone-aware bucket bounds.
+ * The buckets may also be computed from the pre-aggregated rollups (see {@link TsRollupRepository}) combined with the raw data
+ * for the parts of the range that the rollups do not cover.
+ */
+@Slf4j
+@Repository
+@SqlTsDao
+public class SqlAggregationRepository {
+
+    private static final String FIXED_BUCKET = "(tskv.ts - ?) / ? AS bucket, ";
+    private static final String CALENDAR_BUCKET = "width_bucket(tskv.ts, ?) - 1 AS bucket, ";
+
+    private static final String NUMERIC_SUM = "SUM(COALESCE(tskv.long_v, 0)) AS longValue, " +
+            "SUM(COALESCE(tskv.dbl_v, 0.0)) AS doubleValue, ";
+    private static final String NUMERIC_MAX = "MAX(COALESCE(tskv.long_v, -9223372036854775807)) AS longValue, " +
+            "MAX(COALESCE(tskv.dbl_v, -1.79769E+308)) AS doubleValue, ";
+    private static final String NUMERIC_MIN = "MIN(COALESCE(tskv.long_v, 9223372036854775807)) AS longValue, " +
+            "MIN(COALESCE(tskv.dbl_v, 1.79769E+308)) AS doubleValue, ";
+    private static final String NUMERIC_COUNTS = "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, ";
+    private static final String ALL_COUNTS = "SUM(CASE WHEN tskv.bool_v IS NULL THEN 0 ELSE 1 END) AS booleanValueCount, " +
+            "SUM(CASE WHEN tskv.str_v IS NULL THEN 0 ELSE 1 END) AS strValueCount, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longValueCount, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleValueCount, " +
+            "SUM(CASE WHEN tskv.json_v IS NULL THEN 0 ELSE 1 END) AS jsonValueCount, ";
+
+    private static final String FROM_WHERE_CLAUSE = "MAX(tskv.ts) AS maxAggTs FROM ts_kv tskv " +
+            "WHERE tskv.entity_id = ? AND tskv.key = ? AND tskv.ts >= ? AND tskv.ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String ROLLUP_NUMERIC_SUM = "COALESCE(SUM(tskv.long_sum), 0) AS longValue, " +
+            "COALESCE(SUM(tskv.dbl_sum), 0.0) AS doubleValue, ";
+    private static final String ROLLUP_NUMERIC_MAX = "COALESCE(MAX(tskv.long_max), -9223372036854775807) AS longValue, " +
+            "COALESCE(MAX(tskv.dbl_max), -1.79769E+308) AS doubleValue, ";
+    private static final String ROLLUP_NUMERIC_MIN = "COALESCE(MIN(tskv.long_min), 9223372036854775807) AS longValue, " +
+            "COALESCE(MIN(tskv.dbl_min), 1.79769E+308) AS doubleValue, ";
+    private static final String ROLLUP_NUMERIC_COUNTS = "SUM(tskv.long_count) AS longCountValue, " +
+            "SUM(tskv.dbl_count) AS doubleCountValue, ";
+    private static final String ROLLUP_ALL_COUNTS = "SUM(tskv.bool_count) AS booleanValueCount, " +
+            "SUM(tskv.str_count) AS strValueCount, " +
+            "SUM(tskv.long_count) AS longValueCount, " +
+            "SUM(tskv.dbl_count) AS doubleValueCount, " +
+            "SUM(tskv.json_count) AS jsonValueCount, ";
+
+    // the raw data points are converted to the single-point rollups, so both sources are aggregated the same way
+    private static final String ROLLUP_FROM_WHERE_CLAUSE = "MAX(tskv.max_ts) AS maxAggTs FROM (" +
+            "SELECT tsr.ts, tsr.bool_count, tsr.str_count, tsr.json_count, tsr.long_count, tsr.long_sum, tsr.long_min, tsr.long_max, " +
+            "tsr.dbl_count, tsr.dbl_sum, tsr.dbl_min, tsr.dbl_max, tsr.max_ts FROM ts_rollup tsr " +
+            "WHERE tsr.entity_id = ? AND tsr.key = ? AND tsr.bucket_size = ? AND tsr.ts >= ? AND tsr.ts < ? AND tsr.ts <> ALL(?) " +
+            "UNION ALL " +
+            "SELECT raw.ts, CASE WHEN raw.bool_v IS NULL THEN 0 ELSE 1 END, CASE WHEN raw.str_v IS NULL THEN 0 ELSE 1 END, " +
+            "CASE WHEN raw.json_v IS NULL THEN 0 ELSE 1 END, CASE WHEN raw.long_v IS NULL THEN 0 ELSE 1 END, raw.long_v, raw.long_v, raw.long_v, " +
+            "CASE WHEN raw.dbl_v IS NULL THEN 0 ELSE 1 END, raw.dbl_v, raw.dbl_v, raw.dbl_v, raw.ts FROM ts_kv raw " +
+            "JOIN unnest(?, ?) AS r(start_ts, end_ts) ON raw.ts >= r.start_ts AND raw.ts < r.end_ts " +
+            "WHERE raw.entity_id = ? AND raw.key = ?" +
+            ") tskv GROUP BY bucket ORDER BY bucket";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(UUID entityId, int keyId, long startTs, long endTs,
+                                                                           IntervalType intervalType, long interval, ZoneId tzId,
+                                                                           Aggregation aggregation) {
+        boolean fixed = IntervalType.MILLISECONDS.equals(intervalType);
+        long[] bucketStarts = fixed ? null : calculateBucketStarts(startTs, endTs, intervalType, tzId);
+        String sql = "SELECT " + (fixed ? FIXED_BUCKET : CALENDAR_BUCKET) + getAggregationColumns(aggregation) + FROM_WHERE_CLAUSE;
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>();
+        jdbcTemplate.query(sql, ps -> {
+            int idx = setBucketParams(ps, startTs, interval, bucketStarts);
+            ps.setObject(idx++, entityId);
+            ps.setInt(idx++, keyId);
+            ps.setLong(idx++, startTs);
+            ps.setLong(idx, endTs);
+        }, rs -> {
+            TsKvEntity entity = toEntity(rs, aggregation);
+            if (entity.isNotEmpty()) {
+                result.add(Optional.of(toBucketEntity(rs, entity, entityId, startTs, endTs, interval, bucketStarts)));
+            }
+        });
+        log.trace("[{}][{}] Aggregated {} buckets with single query", entityId, keyId, result.size());
+        return result;
+    }
+
+    /**
+     * Aggregates the buckets using the rollups of the given bucket size that start within the [rollupStartTs, rollupEndTs) range,
+     * except the excluded ones, and the raw data of the [rawStartTs[i], rawEndTs[i]) ranges.
+     * The caller must make sure that the rollups and the raw ranges do not overlap
+     * and that each rollup that is used fits into the single aggregation bucket.
+     *
+     * @return the aggregated buckets or null if the string values have to be aggregated, which is not supported by the rollups
+     */
+    public List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregateWithRollups(UUID entityId, int keyId, long startTs, long endTs,
+                                                                                      IntervalType intervalType, long interval, ZoneId tzId,
+                                                                                      Aggregation aggregation, long bucketSize,
+                                                                                      long rollupStartTs, long rollupEndTs, long[] excludedRollups,
+                                                                                      long[] rawStartTs, long[] rawEndTs) {
+        boolean fixed = IntervalType.MILLISECONDS.equals(intervalType);
+        long[] bucketStarts = fixed ? null : calculateBucketStarts(startTs, endTs, intervalType, tzId);
+        String sql = "SELECT " + (fixed ? FIXED_BUCKET : CALENDAR_BUCKET) + getRollupAggregationColumns(aggregation) + ROLLUP_FROM_WHERE_CLAUSE;
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>();
+        boolean[] hasStrValues = new boolean[1];
+        jdbcTemplate.query(sql, ps -> {
+            int idx = setBucketParams(ps, startTs, interval, bucketStarts);
+            ps.setObject(idx++, entityId);
+            ps.setInt(idx++, keyId);
+            ps.setLong(idx++, bucketSize);
+            ps.setLong(idx++, rollupStartTs);
+            ps.setLong(idx++, rollupEndTs);
+            ps.setArray(idx++, toSqlArray(ps, excludedRollups));
+            ps.setArray(idx++, toSqlArray(ps, rawStartTs));
+            ps.setArray(idx++, toSqlArray(ps, rawEndTs));
+            ps.setObject(idx++, entityId);
+            ps.setInt(idx, keyId);
+        }, rs -> {
+            TsKvEntity entity = Aggregation.COUNT.equals(aggregation) ? toEntity(rs, aggregation) :
+                    new TsKvEntity(getLong(rs, "longValue"), getDouble(rs, "doubleValue"),
+                            getLong(rs, "longCountValue"), getLong(rs, "doubleCountValue"),
+                            aggregation.name(), getLong(rs, "maxAggTs"));
+            if (entity.isNotEmpty()) {
+                result.add(Optional.of(toBucketEntity(rs, entity, entityId, startTs, endTs, interval, bucketStarts)));
+            } else if (!Aggregation.COUNT.equals(aggregation)) {
+                Long strValueCount = getLong(rs, "strValueCount");
+                hasStrValues[0] |= strValueCount != null && strValueCount > 0;
+            }
+        });
+        if (hasStrValues[0] && (Aggregation.MIN.equals(aggregation) || Aggregation.MAX.equals(aggregation))) {
+            return null;
+        }
+        log.trace("[{}][{}] Aggregated {} buckets using {} ms rollups", entityId, keyId, result.size(), bucketSize);
+        return result;
+    }
+
+    private static int setBucketParams(PreparedStatement ps, long startTs, long interval, long[] bucketStarts) throws SQLException {
+        int idx = 1;
+        if (bucketStarts == null) {
+            ps.setLong(idx++, startTs);
+            ps.setLong(idx++, interval);
+        } else {
+            ps.setArray(idx++, toSqlArray(ps, bucketStarts));
+        }
+        return idx;
+    }
+
+    private static TsKvEntity toBucketEntity(ResultSet rs, TsKvEntity entity, UUID entityId, long startTs, long endTs,
+                                             long interval, long[] bucketStarts) throws SQLException {
+        long bucket = rs.getLong("bucket");
+        long bucketStartTs;
+        long bucketEndTs;
+        if (bucketStarts == null) {
+            bucketStartTs = startTs + bucket * interval;
+            bucketEndTs = Math.min(bucketStartTs + interval, endTs);
+        } else {
+            int i = (int) bucket;
+            bucketStartTs = bucketStarts[i];
+            bucketEndTs = i + 1 < bucketStarts.length ? bucketStarts[i + 1] : endTs;
+        }
+        entity.setEntityId(entityId);
+        entity.setTs(bucketStartTs + (bucketEndTs - bucketStartTs) / 2);
+        return entity;
+    }
+
+    private static Array toSqlArray(PreparedStatement ps, long[] values) throws SQLException {
+        Long[] array = new Long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            array[i] = values[i];
+        }
+        return ps.getConnection().createArrayOf("bigint", array);
+    }
+
+    static long[] calculateBucketStarts(long startTs, long endTs, IntervalType intervalType, ZoneId tzId) {
+        List<Long> starts = new ArrayList<>();
+        long startPeriod = startTs;
+        while (startPeriod < endTs) {
+            starts.add(startPeriod);
+            startPeriod = Math.min(TimeUtils.calculateIntervalEnd(startPeriod, intervalType, tzId), endTs);
+        }
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static String getAggregationColumns(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return NUMERIC_SUM + NUMERIC_COUNTS;
+            case MAX:
+                return NUMERIC_MAX + NUMERIC_COUNTS + "MAX(tskv.str_v) AS strValue, ";
+            case MIN:
+                return NUMERIC_MIN + NUMERIC_COUNTS + "MIN(tskv.str_v) AS strValue, ";
+            case COUNT:
+                return ALL_COUNTS;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static String getRollupAggregationColumns(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return ROLLUP_NUMERIC_SUM + ROLLUP_NUMERIC_COUNTS;
+            case MAX:
+                return ROLLUP_NUMERIC_MAX + ROLLUP_NUMERIC_COUNTS + "SUM(tskv.str_count) AS strValueCount, ";
+            case MIN:
+                return ROLLUP_NUMERIC_MIN + ROLLUP_NUMERIC_COUNTS + "SUM(tskv.str_count) AS strValueCount, ";
+            case COUNT:
+                return ROLLUP_ALL_COUNTS;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static TsKvEntity toEntity(ResultSet rs, Aggregation aggregation) throws SQLException {
+        Long maxAggTs = getLong(rs, "maxAggTs");
+        if (Aggregation.COUNT.equals(aggregation)) {
+            return new TsKvEntity(getLong(rs, "booleanValueCount"), getLong(rs, "strValueCount"),
+                    getLong(rs, "longValueCount"), getLong(rs, "doubleValueCount"),
+                    getLong(rs, "jsonValueCount"), maxAggTs);
+        }
+        TsKvEntity entity = new TsKvEntity(getLong(rs, "longValue"), getDouble(rs, "doubleValue"),
+                getLong(rs, "longCountValue"), getLong(rs, "doubleCountValue"),
+                aggregation.name(), maxAggTs);
+        if (!entity.isNotEmpty() && (Aggregation.MIN.equals(aggregation) || Aggregation.MAX.equals(aggregation))) {
+            String strValue = rs.getString("strValue");
+            if (strValue != null) {
+                return new TsKvEntity(strValue, maxAggTs);
+            }
+        }
+        return entity;
+    }
+
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        Number value = (Number) rs.getObject(column);
+        return value != null ? value.longValue() : null;
+    }
+
+    private static Double getDouble(ResultSet rs, String column) throws SQLException {
+        Number value = (Number) rs.getObject(column);
+        return value != null ? value.doubleValue() : null;
+    }
+
+}
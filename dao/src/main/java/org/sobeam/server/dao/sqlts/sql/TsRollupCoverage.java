@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import lombok.Data;
+
+/**
+ * Time range [startTs, endTs) covered by the minute rollups.
+ * The hour and day rollups cover the hours and days that fit into this range completely.
+ * The coverage is extended backwards down to the backfillTs while the history is rolled up.
+ */
+@Data
+public class TsRollupCoverage {
+
+    private final long startTs;
+    private final long endTs;
+    private final long backfillTs;
+
+    public long getStartTs(long bucketSize) {
+        return TsRollupRepository.ceil(startTs, bucketSize);
+    }
+
+    public long getEndTs(long bucketSize) {
+        return TsRollupRepository.floor(endTs, bucketSize);
+    }
+
+}
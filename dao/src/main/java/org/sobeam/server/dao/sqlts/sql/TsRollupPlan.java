@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.BUCKET_SIZES;
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.ceil;
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.floor;
+
+/**
+ * Describes how the aggregation query is computed from the rollups of the single bucket size and the raw data.
+ * The rollups are used for the [rollupStartTs, rollupEndTs) range except the ones that are split by the aggregation bucket bounds.
+ * The raw data is read for the rest: the parts of the query range not covered by the rollups and the excluded rollups.
+ */
+@Data
+class TsRollupPlan {
+
+    // the share of the aggregation bucket that may be read from the raw data when its bounds are not aligned with the rollups
+    private static final int MIN_ROLLUPS_PER_UNALIGNED_BUCKET = 24;
+
+    private final long bucketSize;
+    private final long rollupStartTs;
+    private final long rollupEndTs;
+    private final long[] excludedRollups;
+    private final long[] rawStartTs;
+    private final long[] rawEndTs;
+
+    /**
+     * Picks the coarsest rollups that fit the aggregation buckets.
+     *
+     * @param bucketStarts the start timestamps of the aggregation buckets, the first one is the query start
+     * @return the plan or null if the query should be computed from the raw data only
+     */
+    static TsRollupPlan create(TsRollupCoverage coverage, long[] bucketStarts, long endTs) {
+        if (coverage == null || bucketStarts.length == 0) {
+            return null;
+        }
+        long startTs = bucketStarts[0];
+        long avgBucketLength = (endTs - startTs) / bucketStarts.length;
+        for (int i = BUCKET_SIZES.size() - 1; i >= 0; i--) {
+            long bucketSize = BUCKET_SIZES.get(i);
+            if (bucketSize > avgBucketLength) {
+                continue;
+            }
+            long rollupStartTs = Math.max(ceil(startTs, bucketSize), coverage.getStartTs(bucketSize));
+            long rollupEndTs = Math.min(floor(endTs, bucketSize), coverage.getEndTs(bucketSize));
+            if (rollupStartTs >= rollupEndTs) {
+                continue;
+            }
+            List<Long> excluded = new ArrayList<>();
+            for (int j = 1; j < bucketStarts.length; j++) {
+                long bound = bucketStarts[j];
+                long rollupTs = floor(bound, bucketSize);
+                // several short buckets may split the same rollup
+                if (bound > rollupStartTs && bound < rollupEndTs && rollupTs != bound
+                        && (excluded.isEmpty() || excluded.get(excluded.size() - 1) != rollupTs)) {
+                    excluded.add(rollupTs);
+                }
+            }
+            if (!excluded.isEmpty() && bucketSize * MIN_ROLLUPS_PER_UNALIGNED_BUCKET > avgBucketLength) {
+                continue;
+            }
+            List<long[]> rawRanges = new ArrayList<>();
+            if (startTs < rollupStartTs) {
+                rawRanges.add(new long[]{startTs, rollupStartTs});
+            }
+            for (long rollupTs : excluded) {
+                rawRanges.add(new long[]{rollupTs, rollupTs + bucketSize});
+            }
+            if (rollupEndTs < endTs) {
+                rawRanges.add(new long[]{rollupEndTs, endTs});
+            }
+            return new TsRollupPlan(bucketSize, rollupStartTs, rollupEndTs,
+                    excluded.stream().mapToLong(Long::longValue).toArray(),
+                    rawRanges.stream().mapToLong(range -> range[0]).toArray(),
+                    rawRanges.stream().mapToLong(range -> range[1]).toArray());
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.sobeam.server.dao.util.SqlTsDao;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains the pre-aggregated minute, hour and day rollups of the time series in the ts_rollup table.
+ * Minute rollups are computed from the raw data, hour rollups from the minute ones and day rollups from the hour ones.
+ * Buckets are aligned to UTC.
+ */
+@Slf4j
+@Repository
+@SqlTsDao
+public class TsRollupRepository {
+
+    public static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    public static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    public static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // from the finest to the coarsest one
+    public static final List<Long> BUCKET_SIZES = List.of(MINUTE, HOUR, DAY);
+
+    private static final String INSERT_ROLLUP = "INSERT INTO ts_rollup (entity_id, key, bucket_size, ts, bool_count, str_count, json_count, " +
+            "long_count, long_sum, long_min, long_max, dbl_count, dbl_sum, dbl_min, dbl_max, max_ts) ";
+    private static final String SELECT_FROM_RAW = "SELECT tskv.entity_id, tskv.key, ?, tskv.ts - tskv.ts % ? AS bucket, " +
+            "COUNT(tskv.bool_v), COUNT(tskv.str_v), COUNT(tskv.json_v), " +
+            "COUNT(tskv.long_v), SUM(tskv.long_v), MIN(tskv.long_v), MAX(tskv.long_v), " +
+            "COUNT(tskv.dbl_v), SUM(tskv.dbl_v), MIN(tskv.dbl_v), MAX(tskv.dbl_v), MAX(tskv.ts) " +
+            "FROM ts_kv tskv WHERE tskv.ts >= ? AND tskv.ts < ? ";
+    private static final String SELECT_FROM_ROLLUP = "SELECT tsr.entity_id, tsr.key, ?, tsr.ts - tsr.ts % ? AS bucket, " +
+            "SUM(tsr.bool_count), SUM(tsr.str_count), SUM(tsr.json_count), " +
+            "SUM(tsr.long_count), SUM(tsr.long_sum), MIN(tsr.long_min), MAX(tsr.long_max), " +
+            "SUM(tsr.dbl_count), SUM(tsr.dbl_sum), MIN(tsr.dbl_min), MAX(tsr.dbl_max), MAX(tsr.max_ts) " +
+            "FROM ts_rollup tsr WHERE tsr.bucket_size = ? AND tsr.ts >= ? AND tsr.ts < ? ";
+    private static final String RAW_ENTITY_KEY_FILTER = "AND tskv.entity_id = ? AND tskv.key = ? ";
+    private static final String ROLLUP_ENTITY_KEY_FILTER = "AND tsr.entity_id = ? AND tsr.key = ? ";
+    private static final String GROUP_BY_BUCKET = "GROUP BY 1, 2, 4";
+    private static final String DELETE_ROLLUPS = "DELETE FROM ts_rollup WHERE bucket_size = ? AND ts >= ? AND ts < ? ";
+    private static final String DELETE_ENTITY_KEY_FILTER = "AND entity_id = ? AND key = ?";
+
+    private static final int COVERAGE_ID = 0;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recomputes the rollups of the given bucket size that start within the [startTs, endTs) range.
+     * The range must be aligned to the bucket size.
+     */
+    @Transactional
+    public void refresh(long bucketSize, long startTs, long endTs) {
+        jdbcTemplate.update(DELETE_ROLLUPS, bucketSize, startTs, endTs);
+        int rows;
+        if (bucketSize == MINUTE) {
+            rows = jdbcTemplate.update(INSERT_ROLLUP + SELECT_FROM_RAW + GROUP_BY_BUCKET, bucketSize, bucketSize, startTs, endTs);
+        } else {
+            long sourceBucketSize = getSourceBucketSize(bucketSize);
+            rows = jdbcTemplate.update(INSERT_ROLLUP + SELECT_FROM_ROLLUP + GROUP_BY_BUCKET, bucketSize, bucketSize, sourceBucketSize, startTs, endTs);
+        }
+        log.trace("[{}] Refreshed {} rollups for interval {}-{}", bucketSize, rows, startTs, endTs);
+    }
+
+    /**
+     * Recomputes the rollups of the single key of the entity, e.g. after the raw data was removed.
+     * The range must be aligned to the bucket size.
+     */
+    @Transactional
+    public void refresh(UUID entityId, int keyId, long bucketSize, long startTs, long endTs) {
+        jdbcTemplate.update(DELETE_ROLLUPS + DELETE_ENTITY_KEY_FILTER, bucketSize, startTs, endTs, entityId, keyId);
+        if (bucketSize == MINUTE) {
+            jdbcTemplate.update(INSERT_ROLLUP + SELECT_FROM_RAW + RAW_ENTITY_KEY_FILTER + GROUP_BY_BUCKET,
+                    bucketSize, bucketSize, startTs, endTs, entityId, keyId);
+        } else {
+            jdbcTemplate.update(INSERT_ROLLUP + SELECT_FROM_ROLLUP + ROLLUP_ENTITY_KEY_FILTER + GROUP_BY_BUCKET,
+                    bucketSize, bucketSize, getSourceBucketSize(bucketSize), startTs, endTs, entityId, keyId);
+        }
+    }
+
+    public TsRollupCoverage findCoverage() {
+        return DataAccessUtils.singleResult(jdbcTemplate.query("SELECT start_ts, end_ts, backfill_ts FROM ts_rollup_coverage WHERE id = ?",
+                (rs, rowNum) -> new TsRollupCoverage(rs.getLong("start_ts"), rs.getLong("end_ts"), rs.getLong("backfill_ts")), COVERAGE_ID));
+    }
+
+    public void saveCoverage(TsRollupCoverage coverage) {
+        jdbcTemplate.update("INSERT INTO ts_rollup_coverage (id, start_ts, end_ts, backfill_ts) VALUES (?, ?, ?, ?) " +
+                        "ON CONFLICT (id) DO UPDATE SET start_ts = EXCLUDED.start_ts, end_ts = EXCLUDED.end_ts, backfill_ts = EXCLUDED.backfill_ts",
+                COVERAGE_ID, coverage.getStartTs(), coverage.getEndTs(), coverage.getBackfillTs());
+    }
+
+    public Long findMinRawTs() {
+        return jdbcTemplate.queryForObject("SELECT MIN(ts) FROM ts_kv", Long.class);
+    }
+
+    /**
+     * Removes the rollups that end before the expiration time, e.g. when the raw data partitions before it are dropped.
+     * The per-tenant and per-customer TTL is applied by the cleanup_timeseries_rollups_by_ttl procedure.
+     */
+    public int cleanup(long expirationTs) {
+        return jdbcTemplate.update("DELETE FROM ts_rollup WHERE ts + bucket_size <= ?", expirationTs);
+    }
+
+    static long getSourceBucketSize(long bucketSize) {
+        return BUCKET_SIZES.get(BUCKET_SIZES.indexOf(bucketSize) - 1);
+    }
+
+    static long floor(long ts, long bucketSize) {
+        return Math.floorDiv(ts, bucketSize) * bucketSize;
+    }
+
+    static long ceil(long ts, long bucketSize) {
+        return -Math.floorDiv(-ts, bucketSize) * bucketSize;
+    }
+
+}
@@ -86,6 +86,10 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts.timescale")
                 .batchSortEnabled(batchSortEnabled)
+                .queueType(tsQueueType)
+                .maxQueueSize(tsMaxQueueSize)
+                .maxAddWaitMs(tsMaxAddWaitMs)
+                .targetBatchLatencyMs(tsTargetBatchLatencyMs)
                 .build();
 
         Function<TimescaleTsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
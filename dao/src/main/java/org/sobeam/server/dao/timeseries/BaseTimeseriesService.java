@@ -24,6 +24,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.sobeam.common.util.DonAsynchron;
 import org.sobeam.server.common.data.EntityType;
 import org.sobeam.server.common.data.EntityView;
 import org.sobeam.server.common.data.id.DeviceProfileId;
@@ -89,6 +90,9 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private EntityViewService entityViewService;
 
+    @Autowired(required = false)
+    private TsHotWindowCache tsHotWindowCache;
+
     @Override
     public ListenableFuture<List<ReadTsKvQueryResult>> findAllByQueries(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
         validate(entityId);
@@ -101,9 +105,36 @@ public class BaseTimeseriesService implements TimeseriesService {
                     queries.stream()
                             .filter(query -> keys.isEmpty() || keys.contains(query.getKey()))
                             .collect(Collectors.toList());
-            return timeseriesDao.findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+            return findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
         }
-        return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        return findAllAsync(tenantId, entityId, queries);
+    }
+
+    private ListenableFuture<List<ReadTsKvQueryResult>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        if (tsHotWindowCache == null) {
+            return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        }
+        List<ReadTsKvQueryResult> results = new ArrayList<>(queries.size());
+        List<ReadTsKvQuery> notCachedQueries = new ArrayList<>();
+        for (ReadTsKvQuery query : queries) {
+            ReadTsKvQueryResult result = tsHotWindowCache.get(entityId, query);
+            results.add(result);
+            if (result == null) {
+                notCachedQueries.add(query);
+            }
+        }
+        if (notCachedQueries.isEmpty()) {
+            return Futures.immediateFuture(results);
+        }
+        return Futures.transform(timeseriesDao.findAllAsync(tenantId, entityId, notCachedQueries), daoResults -> {
+            int daoResultIndex = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, daoResults.get(daoResultIndex++));
+                }
+            }
+            return results;
+        }, MoreExecutors.directExecutor());
     }
 
     @Override
@@ -126,12 +157,8 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Override
     public ListenableFuture<List<TsKvEntry>> findLatest(TenantId tenantId, EntityId entityId, Collection<String> keys) {
         validate(entityId);
-        List<ListenableFuture<TsKvEntry>> futures = new ArrayList<>(keys.size());
         keys.forEach(key -> Validator.validateString(key, k -> "Incorrect key " + k));
-        for (String key : keys) {
-            futures.add(timeseriesLatestDao.findLatest(tenantId, entityId, key));
-        }
-        return Futures.allAsList(futures);
+        return timeseriesLatestDao.findLatest(tenantId, entityId, keys);
     }
 
     @Override
@@ -155,6 +182,11 @@ public class BaseTimeseriesService implements TimeseriesService {
         timeseriesDao.cleanup(systemTtl);
     }
 
+    @Override
+    public void refreshRollups() {
+        timeseriesDao.refreshRollups();
+    }
+
     @Override
     public ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
         validate(entityId);
@@ -209,7 +241,12 @@ public class BaseTimeseriesService implements TimeseriesService {
             throw new IncorrectParameterException("Telemetry data can't be stored for entity view. Read only");
         }
         futures.add(timeseriesDao.savePartition(tenantId, entityId, tsKvEntry.getTs(), tsKvEntry.getKey()));
-        futures.add(timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl));
+        ListenableFuture<Integer> saveFuture = timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl);
+        if (tsHotWindowCache != null) {
+            tsHotWindowCache.put(entityId, tsKvEntry);
+            DonAsynchron.withCallback(saveFuture, result -> {}, t -> tsHotWindowCache.invalidate(entityId, tsKvEntry.getKey()));
+        }
+        futures.add(saveFuture);
     }
 
     private List<ReadTsKvQuery> updateQueriesForEntityView(EntityView entityView, List<ReadTsKvQuery> queries) {
@@ -267,6 +304,9 @@ public class BaseTimeseriesService implements TimeseriesService {
     }
 
     private void deleteAndRegisterFutures(TenantId tenantId, List<ListenableFuture<TsKvLatestRemovingResult>> futures, EntityId entityId, DeleteTsKvQuery query) {
+        if (tsHotWindowCache != null) {
+            tsHotWindowCache.invalidate(entityId, query.getKey());
+        }
         futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> null, MoreExecutors.directExecutor()));
         if (query.getDeleteLatest()) {
             futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
@@ -122,6 +122,9 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
     @Value("${cassandra.query.set_null_values_enabled}")
     private boolean setNullValuesEnabled;
 
+    @Value("${cassandra.query.ts_read_partitions_parallelism:1}")
+    private int readPartitionsParallelism;
+
     private NoSqlTsPartitionDate tsFormat;
 
     private PreparedStatement partitionInsertStmt;
@@ -327,6 +330,7 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             @Override
             public void onFailure(Throwable t) {
                 log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), toPartitionTs(query.getStartTs()), toPartitionTs(query.getEndTs()), t);
+                resultFuture.setException(t);
             }
         }, readResultsProcessingExecutor);
 
@@ -349,46 +353,39 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             resultFuture.set(cursor.getData());
         } else {
             PreparedStatement proto = getFetchStmt(Aggregation.NONE, cursor.getOrderBy());
-            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
-
-            stmtBuilder.setString(0, cursor.getEntityType());
-            stmtBuilder.setUuid(1, cursor.getEntityId());
-            stmtBuilder.setString(2, cursor.getKey());
-            stmtBuilder.setLong(3, cursor.getNextPartition());
-            stmtBuilder.setLong(4, cursor.getStartTs());
-            stmtBuilder.setLong(5, cursor.getEndTs());
-            stmtBuilder.setInt(6, cursor.getCurrentLimit());
-
-            BoundStatement stmt = stmtBuilder.build();
+            List<ListenableFuture<List<Row>>> futures = new ArrayList<>();
+            // each partition of the window is requested with the whole remaining limit, the excessive rows are dropped by the cursor
+            while (cursor.hasNextPartition() && futures.size() < Math.max(readPartitionsParallelism, 1)) {
+                BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
+
+                stmtBuilder.setString(0, cursor.getEntityType());
+                stmtBuilder.setUuid(1, cursor.getEntityId());
+                stmtBuilder.setString(2, cursor.getKey());
+                stmtBuilder.setLong(3, cursor.getNextPartition());
+                stmtBuilder.setLong(4, cursor.getStartTs());
+                stmtBuilder.setLong(5, cursor.getEndTs());
+                stmtBuilder.setInt(6, cursor.getCurrentLimit());
+
+                BoundStatement stmt = stmtBuilder.build();
+                futures.add(Futures.transformAsync(executeAsyncRead(tenantId, stmt), result -> result == null ?
+                        Futures.immediateFuture(Collections.<Row>emptyList()) : result.allRows(readResultsProcessingExecutor), readResultsProcessingExecutor));
+            }
 
-            Futures.addCallback(executeAsyncRead(tenantId, stmt), new FutureCallback<TbResultSet>() {
+            Futures.addCallback(Futures.allAsList(futures), new FutureCallback<List<List<Row>>>() {
                 @Override
-                public void onSuccess(@Nullable TbResultSet result) {
-                    if (result == null) {
-                        cursor.addData(convertResultToTsKvEntryList(Collections.emptyList()));
-                        findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
-                    } else {
-                        Futures.addCallback(result.allRows(readResultsProcessingExecutor), new FutureCallback<List<Row>>() {
-
-                            @Override
-                            public void onSuccess(@Nullable List<Row> result) {
-                                cursor.addData(convertResultToTsKvEntryList(result == null ? Collections.emptyList() : result));
-                                findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
-                            }
-
-                            @Override
-                            public void onFailure(Throwable t) {
-                                log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
-                            }
-                        }, readResultsProcessingExecutor);
-
-
+                public void onSuccess(@Nullable List<List<Row>> result) {
+                    if (result != null) {
+                        for (List<Row> rows : result) {
+                            cursor.addData(convertResultToTsKvEntryList(rows == null ? Collections.emptyList() : rows));
+                        }
                     }
+                    findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
-                    log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
+                    log.error("[{}][{}] Failed to fetch data for key {}", cursor.getEntityType(), cursor.getEntityId(), cursor.getKey(), t);
+                    resultFuture.setException(t);
                 }
             }, readResultsProcessingExecutor);
         }
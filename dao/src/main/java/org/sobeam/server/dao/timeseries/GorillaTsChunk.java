@@ -0,0 +1,214 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Append-only block of (ts, value) points compressed as described in the Gorilla paper:
+ * timestamps are stored as delta-of-delta and values as XOR with the previous value, both with variable bit length.
+ * Values are raw 64-bit patterns: long values as is and double values as {@link Double#doubleToLongBits(double)}.
+ * Timestamps must be strictly increasing. The class is not thread-safe.
+ */
+final class GorillaTsChunk {
+
+    static final int MAX_POINTS = 1024;
+
+    private static final int OBJECT_OVERHEAD_BYTES = 64;
+
+    private long[] words = new long[16];
+    private int writePos;
+    private int count;
+
+    private long firstTs;
+    private long lastTs;
+    private long lastDelta;
+    private long lastValue;
+    private int lastLeadingZeros = -1;
+    private int lastTrailingZeros;
+
+    void append(long ts, long value) {
+        if (count == 0) {
+            writeBits(ts, 64);
+            writeBits(value, 64);
+            firstTs = ts;
+        } else {
+            long delta = ts - lastTs;
+            writeTimestamp(delta - lastDelta);
+            writeValue(value ^ lastValue);
+            lastDelta = delta;
+        }
+        lastTs = ts;
+        lastValue = value;
+        count++;
+    }
+
+    /**
+     * Releases the unused part of the buffer. No points can be appended after the chunk is sealed.
+     */
+    void seal() {
+        words = Arrays.copyOf(words, (writePos + 63) >>> 6);
+    }
+
+    boolean isFull() {
+        return count >= MAX_POINTS;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getFirstTs() {
+        return firstTs;
+    }
+
+    long getLastTs() {
+        return lastTs;
+    }
+
+    int getSizeInBytes() {
+        return OBJECT_OVERHEAD_BYTES + words.length * Long.BYTES;
+    }
+
+    void forEach(PointConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        int pos = 0;
+        long ts = readBits(pos, 64);
+        pos += 64;
+        long value = readBits(pos, 64);
+        pos += 64;
+        consumer.accept(ts, value);
+
+        long delta = 0;
+        int leadingZeros = 0;
+        int trailingZeros = 0;
+        for (int i = 1; i < count; i++) {
+            long deltaOfDelta;
+            if (readBits(pos++, 1) == 0) {
+                deltaOfDelta = 0;
+            } else if (readBits(pos++, 1) == 0) {
+                deltaOfDelta = readBits(pos, 7) - 63;
+                pos += 7;
+            } else if (readBits(pos++, 1) == 0) {
+                deltaOfDelta = readBits(pos, 9) - 255;
+                pos += 9;
+            } else if (readBits(pos++, 1) == 0) {
+                deltaOfDelta = readBits(pos, 12) - 2047;
+                pos += 12;
+            } else {
+                deltaOfDelta = readBits(pos, 64);
+                pos += 64;
+            }
+            delta += deltaOfDelta;
+            ts += delta;
+
+            if (readBits(pos++, 1) == 1) {
+                if (readBits(pos++, 1) == 1) {
+                    leadingZeros = (int) readBits(pos, 6);
+                    int meaningfulBits = (int) readBits(pos + 6, 6) + 1;
+                    pos += 12;
+                    trailingZeros = 64 - leadingZeros - meaningfulBits;
+                }
+                int meaningfulBits = 64 - leadingZeros - trailingZeros;
+                value ^= readBits(pos, meaningfulBits) << trailingZeros;
+                pos += meaningfulBits;
+            }
+            consumer.accept(ts, value);
+        }
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(xor);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+        } else {
+            int meaningfulBits = 64 - leadingZeros - trailingZeros;
+            writeBits(0b11, 2);
+            writeBits(leadingZeros, 6);
+            writeBits(meaningfulBits - 1, 6);
+            writeBits(xor >>> trailingZeros, meaningfulBits);
+            lastLeadingZeros = leadingZeros;
+            lastTrailingZeros = trailingZeros;
+        }
+    }
+
+    private void writeBits(long value, int bits) {
+        int requiredWords = (writePos + bits + 63) >>> 6;
+        if (requiredWords > words.length) {
+            words = Arrays.copyOf(words, Math.max(requiredWords, words.length * 2));
+        }
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+        int index = writePos >>> 6;
+        int free = 64 - (writePos & 63);
+        if (bits <= free) {
+            words[index] |= value << (free - bits);
+        } else {
+            int rest = bits - free;
+            words[index] |= value >>> rest;
+            words[index + 1] |= value << (64 - rest);
+        }
+        writePos += bits;
+    }
+
+    private long readBits(int pos, int bits) {
+        int index = pos >>> 6;
+        int free = 64 - (pos & 63);
+        long result;
+        if (bits <= free) {
+            result = words[index] >>> (free - bits);
+        } else {
+            int rest = bits - free;
+            result = (words[index] << rest) | (words[index + 1] >>> (64 - rest));
+        }
+        return bits < 64 ? result & ((1L << bits) - 1) : result;
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+
+        void accept(long ts, long value);
+
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.sobeam.server.dao.timeseries;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.sobeam.server.common.data.id.DeviceProfileId;
 import org.sobeam.server.common.data.id.EntityId;
@@ -23,6 +24,8 @@ import org.sobeam.server.common.data.kv.DeleteTsKvQuery;
 import org.sobeam.server.common.data.kv.TsKvEntry;
 import org.sobeam.server.common.data.kv.TsKvLatestRemovingResult;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,6 +43,17 @@ public interface TimeseriesLatestDao {
      */
     ListenableFuture<TsKvEntry> findLatest(TenantId tenantId, EntityId entityId, String key);
 
+    /**
+     * Same as {@link #findLatest(TenantId, EntityId, String)} for each key. The result is in the order of the keys.
+     */
+    default ListenableFuture<List<TsKvEntry>> findLatest(TenantId tenantId, EntityId entityId, Collection<String> keys) {
+        List<ListenableFuture<TsKvEntry>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(findLatest(tenantId, entityId, key));
+        }
+        return Futures.allAsList(futures);
+    }
+
     ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId);
 
     ListenableFuture<Long> saveLatest(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry);
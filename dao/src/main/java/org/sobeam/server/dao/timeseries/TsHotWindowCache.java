@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.timeseries;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.sobeam.server.common.data.id.EntityId;
+import org.sobeam.server.common.data.kv.AggTsKvEntry;
+import org.sobeam.server.common.data.kv.Aggregation;
+import org.sobeam.server.common.data.kv.AggregationParams;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.DataType;
+import org.sobeam.server.common.data.kv.DoubleDataEntry;
+import org.sobeam.server.common.data.kv.IntervalType;
+import org.sobeam.server.common.data.kv.KvEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.ReadTsKvQuery;
+import org.sobeam.server.common.data.kv.ReadTsKvQueryResult;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.dao.util.TimeUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache of the raw numeric time-series points saved during the last window_ms.
+ * The points are stored per entity and key in {@link GorillaTsChunk}s and are used to answer the read queries
+ * whose time range starts after the moment the cache began to see all writes of the series.
+ * Writes of non-numeric values, out-of-order writes and deletes drop the series, so the next write starts a new one.
+ * <p>
+ * The cache sees only the writes done by this node, so it is correct only if all the writes of an entity go through
+ * the node that serves the reads of that entity.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "cache.ts_hot_window", value = "enabled", havingValue = "true")
+public class TsHotWindowCache {
+
+    @Value("${cache.ts_hot_window.window_ms:86400000}")
+    private long windowMs;
+
+    @Value("${cache.ts_hot_window.max_memory_mb:256}")
+    private long maxMemoryMb;
+
+    private Cache<TsHotWindowKey, HotSeries> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryMb * 1024 * 1024)
+                .weigher((TsHotWindowKey key, HotSeries series) -> series.getSizeInBytes())
+                .expireAfterWrite(windowMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public void put(EntityId entityId, TsKvEntry entry) {
+        TsHotWindowKey key = new TsHotWindowKey(entityId, entry.getKey());
+        DataType dataType = entry.getDataType();
+        if (dataType != DataType.LONG && dataType != DataType.DOUBLE) {
+            cache.invalidate(key);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long windowStartTs = now - windowMs;
+        if (entry.getTs() < windowStartTs) {
+            return;
+        }
+        long value = dataType == DataType.LONG ? entry.getLongValue().get() : Double.doubleToLongBits(entry.getDoubleValue().get());
+        cache.asMap().compute(key, (k, series) -> {
+            if (series == null || series.dataType != dataType) {
+                series = new HotSeries(dataType, now);
+            }
+            return series.append(entry.getTs(), value, windowStartTs) ? series : null;
+        });
+    }
+
+    public void invalidate(EntityId entityId, String key) {
+        cache.invalidate(new TsHotWindowKey(entityId, key));
+    }
+
+    /**
+     * @return the query result or null if the time range of the query is not fully covered by the cache
+     */
+    public ReadTsKvQueryResult get(EntityId entityId, ReadTsKvQuery query) {
+        long windowStartTs = System.currentTimeMillis() - windowMs;
+        if (query.getStartTs() < windowStartTs) {
+            return null;
+        }
+        HotSeries series = cache.getIfPresent(new TsHotWindowKey(entityId, query.getKey()));
+        if (series == null) {
+            return null;
+        }
+        Points points;
+        synchronized (series) {
+            if (query.getStartTs() < series.coverageStartTs) {
+                return null;
+            }
+            points = series.collect(query.getStartTs(), query.getEndTs());
+        }
+        if (Aggregation.NONE.equals(query.getAggregation())) {
+            return toRawResult(query, series.dataType, points);
+        } else {
+            return toAggregatedResult(query, series.dataType, points);
+        }
+    }
+
+    private static ReadTsKvQueryResult toRawResult(ReadTsKvQuery query, DataType dataType, Points points) {
+        int limit = Math.min(query.getLimit(), points.size);
+        boolean desc = "DESC".equalsIgnoreCase(query.getOrder());
+        List<TsKvEntry> data = new ArrayList<>(limit);
+        long lastTs = query.getStartTs();
+        for (int i = 0; i < limit; i++) {
+            int index = desc ? points.size - 1 - i : i;
+            long ts = points.ts[index];
+            data.add(new BasicTsKvEntry(ts, toKvEntry(query.getKey(), dataType, points.values[index])));
+            lastTs = Math.max(lastTs, ts);
+        }
+        return new ReadTsKvQueryResult(query.getId(), data, lastTs);
+    }
+
+    private static ReadTsKvQueryResult toAggregatedResult(ReadTsKvQuery query, DataType dataType, Points points) {
+        AggregationParams aggParams = query.getAggParameters();
+        List<TsKvEntry> data = new ArrayList<>();
+        long lastTs = query.getStartTs();
+        long startPeriod = query.getStartTs();
+        long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
+        int index = 0;
+        while (startPeriod < endPeriod && index < points.size) {
+            long startTs = startPeriod;
+            long endTs;
+            if (IntervalType.MILLISECONDS.equals(aggParams.getIntervalType())) {
+                endTs = startPeriod + aggParams.getInterval();
+            } else {
+                endTs = TimeUtils.calculateIntervalEnd(startTs, aggParams.getIntervalType(), aggParams.getTzId());
+            }
+            endTs = Math.min(endTs, endPeriod);
+            int from = index;
+            while (index < points.size && points.ts[index] < endTs) {
+                index++;
+            }
+            if (index > from) {
+                long ts = startTs + (endTs - startTs) / 2;
+                data.add(aggregate(query.getKey(), query.getAggregation(), dataType, points.values, from, index, ts));
+                lastTs = Math.max(lastTs, points.ts[index - 1]);
+            }
+            startPeriod = endTs;
+        }
+        return new ReadTsKvQueryResult(query.getId(), data, lastTs);
+    }
+
+    private static TsKvEntry aggregate(String key, Aggregation aggregation, DataType dataType, long[] values, int from, int to, long ts) {
+        int count = to - from;
+        if (aggregation == Aggregation.COUNT) {
+            return new BasicTsKvEntry(ts, new LongDataEntry(key, (long) count));
+        }
+        if (dataType == DataType.LONG) {
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            return switch (aggregation) {
+                case AVG -> new AggTsKvEntry(ts, new DoubleDataEntry(key, (double) sum / count), count);
+                case SUM -> new BasicTsKvEntry(ts, new LongDataEntry(key, sum));
+                case MIN -> new BasicTsKvEntry(ts, new LongDataEntry(key, min));
+                case MAX -> new BasicTsKvEntry(ts, new LongDataEntry(key, max));
+                default -> throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+            };
+        } else {
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                double value = Double.longBitsToDouble(values[i]);
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            return switch (aggregation) {
+                case AVG -> new AggTsKvEntry(ts, new DoubleDataEntry(key, sum / count), count);
+                case SUM -> new BasicTsKvEntry(ts, new DoubleDataEntry(key, sum));
+                case MIN -> new BasicTsKvEntry(ts, new DoubleDataEntry(key, min));
+                case MAX -> new BasicTsKvEntry(ts, new DoubleDataEntry(key, max));
+                default -> throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+            };
+        }
+    }
+
+    private static KvEntry toKvEntry(String key, DataType dataType, long value) {
+        return dataType == DataType.LONG ? new LongDataEntry(key, value) : new DoubleDataEntry(key, Double.longBitsToDouble(value));
+    }
+
+    private record TsHotWindowKey(EntityId entityId, String key) {
+    }
+
+    private static final class HotSeries {
+
+        private static final int OBJECT_OVERHEAD_BYTES = 128;
+
+        private final DataType dataType;
+        private final ArrayDeque<GorillaTsChunk> chunks = new ArrayDeque<>();
+        private long coverageStartTs;
+        private int sealedChunksSizeInBytes;
+
+        private HotSeries(DataType dataType, long coverageStartTs) {
+            this.dataType = dataType;
+            this.coverageStartTs = coverageStartTs;
+        }
+
+        synchronized boolean append(long ts, long value, long windowStartTs) {
+            GorillaTsChunk chunk = chunks.peekLast();
+            if (chunk != null && ts <= chunk.getLastTs()) {
+                return false;
+            }
+            if (chunk == null || chunk.isFull()) {
+                if (chunk != null) {
+                    chunk.seal();
+                    sealedChunksSizeInBytes += chunk.getSizeInBytes();
+                }
+                chunk = new GorillaTsChunk();
+                chunks.addLast(chunk);
+            }
+            chunk.append(ts, value);
+            while (chunks.size() > 1 && chunks.peekFirst().getLastTs() < windowStartTs) {
+                GorillaTsChunk expired = chunks.pollFirst();
+                sealedChunksSizeInBytes -= expired.getSizeInBytes();
+                coverageStartTs = Math.max(coverageStartTs, expired.getLastTs() + 1);
+            }
+            return true;
+        }
+
+        synchronized int getSizeInBytes() {
+            GorillaTsChunk last = chunks.peekLast();
+            return OBJECT_OVERHEAD_BYTES + sealedChunksSizeInBytes + (last != null ? last.getSizeInBytes() : 0);
+        }
+
+        Points collect(long startTs, long endTs) {
+            Points points = new Points();
+            for (GorillaTsChunk chunk : chunks) {
+                if (chunk.getLastTs() < startTs || chunk.getFirstTs() >= endTs) {
+                    continue;
+                }
+                chunk.forEach((ts, value) -> {
+                    if (ts >= startTs && ts < endTs) {
+                        points.add(ts, value);
+                    }
+                });
+            }
+            return points;
+        }
+
+    }
+
+    private static final class Points {
+
+        private long[] ts = new long[64];
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long ts, long value) {
+            if (size == this.ts.length) {
+                this.ts = Arrays.copyOf(this.ts, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            this.ts[size] = ts;
+            values[size] = value;
+            size++;
+        }
+
+    }
+
+}
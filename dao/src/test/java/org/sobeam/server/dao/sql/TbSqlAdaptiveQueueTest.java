@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sobeam.server.common.stats.DefaultStatsFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TbSqlAdaptiveQueueTest {
+
+    private DefaultStatsFactory statsFactory;
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlAdaptiveQueue<Integer, Void> queue;
+
+    @Before
+    public void setUp() {
+        statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", false);
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+        logExecutor.stop();
+    }
+
+    @Test
+    public void givenSlowInserts_whenAdjustBatchSize_thenBatchSizeIsHalvedDownToMinimum() {
+        queue = createQueue(1600, 1000, 100);
+
+        queue.adjustBatchSize(1600, 500, true);
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(800);
+        queue.adjustBatchSize(800, 500, false);
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(400);
+        for (int i = 0; i < 10; i++) {
+            queue.adjustBatchSize(400, 500, true);
+        }
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(100);
+    }
+
+    @Test
+    public void givenFastFullBatches_whenAdjustBatchSize_thenBatchSizeGrowsUpToConfiguredValue() {
+        queue = createQueue(1600, 1000, 100);
+        queue.adjustBatchSize(1600, 500, true);
+
+        queue.adjustBatchSize(800, 10, true);
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(900);
+        queue.adjustBatchSize(100, 10, true);
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(900);
+        for (int i = 0; i < 20; i++) {
+            queue.adjustBatchSize(queue.getCurrentBatchSize(), 10, true);
+        }
+        assertThat(queue.getCurrentBatchSize()).isEqualTo(1600);
+    }
+
+    @Test
+    public void givenFullQueue_whenAdd_thenFutureFailsAfterWaiting() {
+        queue = createQueue(10, 2, 100);
+
+        queue.add(1);
+        queue.add(2);
+        ListenableFuture<Void> future = queue.add(3);
+
+        assertThatThrownBy(() -> Futures.getDone(future))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void givenElements_whenSaved_thenAllSavedInOrderAndFuturesCompleted() throws Exception {
+        queue = createQueue(100, 1000, 1000);
+        List<Integer> saved = new CopyOnWriteArrayList<>();
+        queue.init(logExecutor, batch -> {
+            assertThat(batch.size()).isLessThanOrEqualTo(100);
+            saved.addAll(batch);
+            return null;
+        }, Comparator.naturalOrder(), l -> l, 0);
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(queue.add(i));
+        }
+        Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        assertThat(saved).hasSize(1000).isSorted();
+    }
+
+    private TbSqlAdaptiveQueue<Integer, Void> createQueue(int batchSize, int maxQueueSize, long targetBatchLatencyMs) {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(batchSize)
+                .maxDelay(10)
+                .statsPrintIntervalMs(60000)
+                .statsNamePrefix("test")
+                .queueType(TbSqlQueueType.ADAPTIVE)
+                .maxQueueSize(maxQueueSize)
+                .maxAddWaitMs(10)
+                .targetBatchLatencyMs(targetBatchLatencyMs)
+                .build();
+        return new TbSqlAdaptiveQueue<>(params, statsFactory.createMessagesStats("test"), statsFactory);
+    }
+
+}
@@ -18,11 +18,14 @@ package org.sobeam.server.dao.sqlts;
 import com.google.common.util.concurrent.Futures;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.sobeam.server.common.data.kv.BaseReadTsKvQuery;
 import org.sobeam.server.common.data.kv.ReadTsKvQuery;
 import org.sobeam.server.common.data.kv.ReadTsKvQueryResult;
 import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.dao.sqlts.sql.SqlAggregationRepository;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,6 +36,7 @@ import static org.mockito.BDDMockito.willCallRealMethod;
 import static org.mockito.BDDMockito.willReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.sobeam.server.common.data.id.TenantId.SYS_TENANT_ID;
@@ -146,6 +150,17 @@ public class AbstractChunkedAggregationTimeseriesDaoTest {
         }
     }
 
+    @Test
+    public void givenSingleQueryAggregationEnabled_whenAggregateCount_thenAllIntervalsFetchedWithOneQuery() {
+        ReadTsKvQuery query = new BaseReadTsKvQuery(TEMP, 1, 3000, 3, LIMIT, COUNT, DESC);
+        ReflectionTestUtils.setField(tsDao, "aggregationRepository", mock(SqlAggregationRepository.class));
+        ReflectionTestUtils.setField(tsDao, "singleQueryAggregation", true);
+        willReturn(Futures.immediateFuture(Collections.emptyList())).given(tsDao).findAllAndAggregateAsync(any(), any());
+        tsDao.findAllAsync(SYS_TENANT_ID, SYS_TENANT_ID, query);
+        verify(tsDao, times(1)).findAllAndAggregateAsync(SYS_TENANT_ID, query);
+        verify(tsDao, never()).findAndAggregateAsync(any(), any(), anyLong(), anyLong(), anyLong(), any());
+    }
+
     long getTsForReadTsKvQuery(long startTs, long endTs) {
         return startTs + (endTs - startTs) / 2L;
     }
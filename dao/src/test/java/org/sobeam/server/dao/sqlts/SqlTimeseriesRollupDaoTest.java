@@ -0,0 +1,212 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.sobeam.server.common.data.AttributeScope;
+import org.sobeam.server.common.data.Device;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.id.EntityId;
+import org.sobeam.server.common.data.kv.Aggregation;
+import org.sobeam.server.common.data.kv.AggregationParams;
+import org.sobeam.server.common.data.kv.BaseAttributeKvEntry;
+import org.sobeam.server.common.data.kv.BaseDeleteTsKvQuery;
+import org.sobeam.server.common.data.kv.BaseReadTsKvQuery;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.DoubleDataEntry;
+import org.sobeam.server.common.data.kv.IntervalType;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.ReadTsKvQuery;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.dao.attributes.AttributesService;
+import org.sobeam.server.dao.device.DeviceService;
+import org.sobeam.server.dao.service.AbstractServiceTest;
+import org.sobeam.server.dao.sqlts.sql.TsRollupRepository;
+import org.sobeam.server.dao.timeseries.TimeseriesDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compares the aggregates served from the time series rollups with the ones computed from the raw data.
+ */
+@TestPropertySource(locations = {"classpath:application-test.properties", "classpath:sql-test.properties"}, properties = {
+        "sql.ts.rollup.enabled=true",
+        "sql.ts.rollup.late_data_window_ms=0",
+        "sql.ts.rollup.max_refresh_range_ms=2592000000"
+})
+public class SqlTimeseriesRollupDaoTest extends AbstractServiceTest {
+
+    private static final String LONG_KEY = "rollupLongKey";
+    private static final String DOUBLE_KEY = "rollupDoubleKey";
+    private static final long STEP = TimeUnit.MINUTES.toMillis(7) + TimeUnit.SECONDS.toMillis(13);
+    private static final int DAYS = 3;
+
+    @Autowired
+    private TimeseriesDao tsDao;
+    @Autowired
+    private DeviceService deviceService;
+    @Autowired
+    private AttributesService attributesService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long startTs;
+    private long endTs;
+
+    @Before
+    public void before() {
+        jdbcTemplate.update("DELETE FROM ts_rollup");
+        jdbcTemplate.update("DELETE FROM ts_rollup_coverage");
+        startTs = Math.floorDiv(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(DAYS + 2), TsRollupRepository.DAY) * TsRollupRepository.DAY;
+        endTs = startTs + TimeUnit.DAYS.toMillis(DAYS);
+    }
+
+    @Test
+    public void givenRolledUpData_whenAggregate_thenSameResultAsRawData() throws Exception {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        saveData(deviceId);
+        tsDao.refreshRollups();
+
+        assertRollupAggregatesEqualRawAggregates(deviceId);
+    }
+
+    @Test
+    public void givenDataRemoved_whenAggregate_thenSameResultAsRawData() throws Exception {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        saveData(deviceId);
+        tsDao.refreshRollups();
+
+        long removeStartTs = startTs + TimeUnit.HOURS.toMillis(30) + 12345;
+        tsDao.remove(tenantId, deviceId, new BaseDeleteTsKvQuery(LONG_KEY, removeStartTs,
+                removeStartTs + TimeUnit.HOURS.toMillis(5))).get(30, TimeUnit.SECONDS);
+
+        assertRollupAggregatesEqualRawAggregates(deviceId);
+    }
+
+    @Test
+    public void givenDataSavedAfterRollup_whenRefresh_thenSameResultAsRawData() throws Exception {
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(tsDao), "rollupLateDataWindowMs", TimeUnit.HOURS.toMillis(1));
+        try {
+            DeviceId deviceId = new DeviceId(UUID.randomUUID());
+            saveData(deviceId);
+            tsDao.refreshRollups();
+
+            // older than the late data window, so it lands in the range that is already rolled up
+            List<ListenableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                long ts = startTs + TimeUnit.HOURS.toMillis(20) + i * TimeUnit.MINUTES.toMillis(53) + 777;
+                futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, 1000L + i)), 0));
+                futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts, new DoubleDataEntry(DOUBLE_KEY, -1000.5 - i)), 0));
+            }
+            Futures.allAsList(futures).get(60, TimeUnit.SECONDS);
+            tsDao.refreshRollups();
+
+            assertRollupAggregatesEqualRawAggregates(deviceId);
+        } finally {
+            ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(tsDao), "rollupLateDataWindowMs", 0L);
+        }
+    }
+
+    @Test
+    public void givenTenantTtl_whenCleanup_thenExpiredRollupsRemovedAndSameResultAsRawData() throws Exception {
+        Device device = new Device();
+        device.setTenantId(tenantId);
+        device.setName("Rollup device");
+        device.setType("default");
+        DeviceId deviceId = deviceService.saveDevice(device).getId();
+        saveData(deviceId);
+        tsDao.refreshRollups();
+
+        // expires in the middle of the second day, not aligned to the minute
+        long expirationTs = startTs + TimeUnit.HOURS.toMillis(37) + TimeUnit.MINUTES.toMillis(23);
+        long ttlSec = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - expirationTs) + 17;
+        attributesService.save(tenantId, tenantId, AttributeScope.SERVER_SCOPE,
+                List.of(new BaseAttributeKvEntry(new LongDataEntry("TTL", ttlSec), System.currentTimeMillis()))).get(30, TimeUnit.SECONDS);
+        tsDao.cleanup(0);
+
+        Long expiredRollups = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ts_rollup WHERE entity_id = ? AND ts + bucket_size <= ?",
+                Long.class, deviceId.getId(), expirationTs - TimeUnit.MINUTES.toMillis(1));
+        assertThat(expiredRollups).isZero();
+        assertRollupAggregatesEqualRawAggregates(deviceId);
+    }
+
+    private void assertRollupAggregatesEqualRawAggregates(EntityId entityId) throws Exception {
+        List<AggregationParams> params = new ArrayList<>();
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.MIN, Aggregation.MAX, Aggregation.SUM, Aggregation.COUNT)) {
+            params.add(AggregationParams.milliseconds(aggregation, TsRollupRepository.HOUR));
+            params.add(AggregationParams.milliseconds(aggregation, TsRollupRepository.DAY));
+            params.add(AggregationParams.milliseconds(aggregation, TimeUnit.MINUTES.toMillis(90)));
+            params.add(AggregationParams.calendar(aggregation, IntervalType.WEEK_ISO, "UTC"));
+        }
+        for (String key : List.of(LONG_KEY, DOUBLE_KEY)) {
+            for (AggregationParams aggParams : params) {
+                List<TsKvEntry> fromRollups = find(entityId, key, aggParams);
+                setRollupEnabled(false);
+                List<TsKvEntry> fromRaw;
+                try {
+                    fromRaw = find(entityId, key, aggParams);
+                } finally {
+                    setRollupEnabled(true);
+                }
+                assertThat(fromRollups).as("%s %s", key, aggParams).hasSameSizeAs(fromRaw);
+                for (int i = 0; i < fromRaw.size(); i++) {
+                    assertThat(fromRollups.get(i).getTs()).as("%s %s", key, aggParams).isEqualTo(fromRaw.get(i).getTs());
+                    assertThat(toDouble(fromRollups.get(i))).as("%s %s", key, aggParams).isCloseTo(toDouble(fromRaw.get(i)), within(1e-6));
+                }
+            }
+        }
+    }
+
+    private List<TsKvEntry> find(EntityId entityId, String key, AggregationParams aggParams) throws Exception {
+        // the range starts and ends in the middle of the minute, so the edges are read from the raw data
+        ReadTsKvQuery query = new BaseReadTsKvQuery(key, startTs - TimeUnit.HOURS.toMillis(2) + 4321, endTs + TimeUnit.HOURS.toMillis(3) + 1234,
+                aggParams, 100000, "ASC");
+        return tsDao.findAllAsync(tenantId, entityId, query).get(30, TimeUnit.SECONDS).getData();
+    }
+
+    private void saveData(EntityId entityId) throws Exception {
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        int i = 0;
+        for (long ts = startTs + 1234; ts < endTs; ts += STEP, i++) {
+            futures.add(tsDao.save(tenantId, entityId, new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, (long) (i % 97) - 40)), 0));
+            futures.add(tsDao.save(tenantId, entityId, new BasicTsKvEntry(ts, new DoubleDataEntry(DOUBLE_KEY, (i % 89) * 0.25 - 10)), 0));
+        }
+        Futures.allAsList(futures).get(60, TimeUnit.SECONDS);
+    }
+
+    private void setRollupEnabled(boolean enabled) {
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(tsDao), "rollupEnabled", enabled);
+    }
+
+    private static double toDouble(TsKvEntry entry) {
+        return entry.getDoubleValue().orElseGet(() -> entry.getLongValue().orElseThrow().doubleValue());
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.insert;
+
+import org.junit.Test;
+import org.sobeam.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsKvBinaryCopyEncoderTest {
+
+    private static final UUID ENTITY_ID = UUID.fromString("3d8bd7a0-1e52-11ee-9a1a-4f7c3d1f0a01");
+
+    @Test
+    public void givenEntities_whenEncode_thenBinaryCopyFormatIsProduced() throws IOException {
+        TsKvEntity longEntity = createEntity(1, 100L);
+        longEntity.setLongValue(42L);
+        TsKvEntity strEntity = createEntity(2, 100L);
+        strEntity.setStrValue("temp");
+
+        byte[] data = TsKvBinaryCopyEncoder.encode(List.of(longEntity, strEntity), UnaryOperator.identity());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertThat(signature).isEqualTo(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0});
+        assertThat(in.readInt()).isZero();
+        assertThat(in.readInt()).isZero();
+
+        assertRowPrefix(in, 1, 100L);
+        assertThat(in.readInt()).isEqualTo(-1); // bool_v
+        assertThat(in.readInt()).isEqualTo(-1); // str_v
+        assertThat(in.readInt()).isEqualTo(8);
+        assertThat(in.readLong()).isEqualTo(42L);
+        assertThat(in.readInt()).isEqualTo(-1); // dbl_v
+        assertThat(in.readInt()).isEqualTo(-1); // json_v
+
+        assertRowPrefix(in, 2, 100L);
+        assertThat(in.readInt()).isEqualTo(-1);
+        assertThat(in.readInt()).isEqualTo(4);
+        byte[] str = new byte[4];
+        in.readFully(str);
+        assertThat(new String(str, StandardCharsets.UTF_8)).isEqualTo("temp");
+        assertThat(in.readInt()).isEqualTo(-1);
+        assertThat(in.readInt()).isEqualTo(-1);
+        assertThat(in.readInt()).isEqualTo(-1);
+
+        assertThat(in.readShort()).isEqualTo((short) -1);
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    public void givenDuplicatedRows_whenDeduplicate_thenLastEntityIsKept() {
+        TsKvEntity first = createEntity(1, 100L);
+        first.setLongValue(1L);
+        TsKvEntity other = createEntity(1, 200L);
+        TsKvEntity last = createEntity(1, 100L);
+        last.setLongValue(2L);
+
+        Collection<TsKvEntity> result = TsKvBinaryCopyEncoder.deduplicate(List.of(first, other, last));
+
+        assertThat(result).containsExactly(last, other);
+    }
+
+    private static void assertRowPrefix(DataInputStream in, int key, long ts) throws IOException {
+        assertThat(in.readShort()).isEqualTo((short) 8);
+        assertThat(in.readInt()).isEqualTo(16);
+        assertThat(new UUID(in.readLong(), in.readLong())).isEqualTo(ENTITY_ID);
+        assertThat(in.readInt()).isEqualTo(4);
+        assertThat(in.readInt()).isEqualTo(key);
+        assertThat(in.readInt()).isEqualTo(8);
+        assertThat(in.readLong()).isEqualTo(ts);
+    }
+
+    private static TsKvEntity createEntity(int key, long ts) {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(ENTITY_ID);
+        entity.setKey(key);
+        entity.setTs(ts);
+        return entity;
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import org.junit.Test;
+import org.sobeam.server.common.data.kv.IntervalType;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlAggregationRepositoryTest {
+
+    private static final ZoneId TZ = ZoneId.of("Europe/Kiev");
+
+    @Test
+    public void givenMonthInterval_whenCalculateBucketStarts_thenFirstBucketStartsAtStartTsAndOthersAtMonthStart() {
+        long startTs = ts(2024, 1, 15);
+        long endTs = ts(2024, 4, 10);
+
+        long[] starts = SqlAggregationRepository.calculateBucketStarts(startTs, endTs, IntervalType.MONTH, TZ);
+
+        assertThat(starts).containsExactly(startTs, ts(2024, 2, 1), ts(2024, 3, 1), ts(2024, 4, 1));
+    }
+
+    @Test
+    public void givenWeekIsoInterval_whenCalculateBucketStarts_thenBucketsStartOnMonday() {
+        long startTs = ts(2024, 3, 6);
+        long endTs = ts(2024, 3, 20);
+
+        long[] starts = SqlAggregationRepository.calculateBucketStarts(startTs, endTs, IntervalType.WEEK_ISO, TZ);
+
+        assertThat(starts).containsExactly(startTs, ts(2024, 3, 11), ts(2024, 3, 18));
+    }
+
+    @Test
+    public void givenEmptyRange_whenCalculateBucketStarts_thenNoBuckets() {
+        long startTs = ts(2024, 3, 6);
+
+        assertThat(SqlAggregationRepository.calculateBucketStarts(startTs, startTs, IntervalType.WEEK, TZ)).isEmpty();
+    }
+
+    private static long ts(int year, int month, int day) {
+        return ZonedDateTime.of(year, month, day, 0, 0, 0, 0, TZ).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.sqlts.sql;
+
+import org.junit.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.DAY;
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.HOUR;
+import static org.sobeam.server.dao.sqlts.sql.TsRollupRepository.MINUTE;
+
+public class TsRollupPlanTest {
+
+    private static final long START_TS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    @Test
+    public void givenAlignedDailyBuckets_whenCreatePlan_thenDayRollupsOnly() {
+        TsRollupCoverage coverage = new TsRollupCoverage(START_TS - 10 * DAY, START_TS + 40 * DAY, 0);
+        long endTs = START_TS + 30 * DAY;
+
+        TsRollupPlan plan = TsRollupPlan.create(coverage, buckets(START_TS, endTs, DAY), endTs);
+
+        assertThat(plan.getBucketSize()).isEqualTo(DAY);
+        assertThat(plan.getRollupStartTs()).isEqualTo(START_TS);
+        assertThat(plan.getRollupEndTs()).isEqualTo(endTs);
+        assertThat(plan.getExcludedRollups()).isEmpty();
+        assertThat(plan.getRawStartTs()).isEmpty();
+    }
+
+    @Test
+    public void givenUnalignedDailyBuckets_whenCreatePlan_thenHourRollupsAndRawDataAroundBucketBounds() {
+        TsRollupCoverage coverage = new TsRollupCoverage(START_TS - 10 * DAY, START_TS + 40 * DAY, 0);
+        long startTs = START_TS + 5 * MINUTE;
+        long endTs = startTs + 3 * DAY;
+
+        TsRollupPlan plan = TsRollupPlan.create(coverage, buckets(startTs, endTs, DAY), endTs);
+
+        assertThat(plan.getBucketSize()).isEqualTo(HOUR);
+        assertThat(plan.getRollupStartTs()).isEqualTo(START_TS + HOUR);
+        assertThat(plan.getRollupEndTs()).isEqualTo(START_TS + 3 * DAY);
+        assertThat(plan.getExcludedRollups()).containsExactly(START_TS + DAY, START_TS + 2 * DAY);
+        assertThat(plan.getRawStartTs()).containsExactly(startTs, START_TS + DAY, START_TS + 2 * DAY, START_TS + 3 * DAY);
+        assertThat(plan.getRawEndTs()).containsExactly(START_TS + HOUR, START_TS + DAY + HOUR, START_TS + 2 * DAY + HOUR, endTs);
+    }
+
+    @Test
+    public void givenQueryEndsAfterCoverage_whenCreatePlan_thenRawDataIsReadForTheRest() {
+        TsRollupCoverage coverage = new TsRollupCoverage(START_TS, START_TS + DAY + 30 * MINUTE, 0);
+        long endTs = START_TS + 2 * DAY;
+
+        TsRollupPlan plan = TsRollupPlan.create(coverage, buckets(START_TS, endTs, DAY), endTs);
+
+        assertThat(plan.getBucketSize()).isEqualTo(DAY);
+        assertThat(plan.getRollupEndTs()).isEqualTo(START_TS + DAY);
+        assertThat(plan.getRawStartTs()).containsExactly(START_TS + DAY);
+        assertThat(plan.getRawEndTs()).containsExactly(endTs);
+    }
+
+    @Test
+    public void givenNoCoverageOrShortBuckets_whenCreatePlan_thenNoPlan() {
+        long endTs = START_TS + DAY;
+        assertThat(TsRollupPlan.create(null, buckets(START_TS, endTs, HOUR), endTs)).isNull();
+
+        TsRollupCoverage coverage = new TsRollupCoverage(START_TS, endTs, 0);
+        assertThat(TsRollupPlan.create(coverage, buckets(START_TS, endTs, 30000), endTs)).isNull();
+    }
+
+    private static long[] buckets(long startTs, long endTs, long interval) {
+        return LongStream.iterate(startTs, ts -> ts < endTs, ts -> ts + interval).toArray();
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.timeseries;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GorillaTsChunkTest {
+
+    @Test
+    public void givenRandomPoints_whenAppendAndRead_thenSamePointsAreReturned() {
+        Random random = new Random(42);
+        GorillaTsChunk chunk = new GorillaTsChunk();
+        List<long[]> expected = new ArrayList<>();
+        long ts = 1700000000000L;
+        double temperature = 20.0;
+        for (int i = 0; i < GorillaTsChunk.MAX_POINTS; i++) {
+            ts += switch (i % 4) {
+                case 0 -> 1000;
+                case 1 -> 1 + random.nextInt(100);
+                case 2 -> 1 + random.nextInt(100000);
+                default -> 1 + random.nextInt(Integer.MAX_VALUE);
+            };
+            long value = switch (i % 3) {
+                case 0 -> Double.doubleToLongBits(temperature += random.nextGaussian());
+                case 1 -> random.nextLong();
+                default -> expected.isEmpty() ? 0 : expected.get(expected.size() - 1)[1];
+            };
+            chunk.append(ts, value);
+            expected.add(new long[]{ts, value});
+        }
+        chunk.seal();
+
+        List<long[]> actual = new ArrayList<>();
+        chunk.forEach((pointTs, value) -> actual.add(new long[]{pointTs, value}));
+
+        assertThat(chunk.isFull()).isTrue();
+        assertThat(actual).containsExactlyElementsOf(expected);
+        assertThat(chunk.getFirstTs()).isEqualTo(expected.get(0)[0]);
+        assertThat(chunk.getLastTs()).isEqualTo(ts);
+    }
+
+    @Test
+    public void givenRegularSeries_whenAppend_thenPointsAreCompressed() {
+        GorillaTsChunk chunk = new GorillaTsChunk();
+        long ts = 1700000000000L;
+        for (int i = 0; i < GorillaTsChunk.MAX_POINTS; i++) {
+            chunk.append(ts += 1000, Double.doubleToLongBits(20.0 + (i % 10) * 0.5));
+        }
+        chunk.seal();
+
+        assertThat(chunk.getSizeInBytes()).isLessThan(GorillaTsChunk.MAX_POINTS * 2 * Long.BYTES / 8);
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.timeseries;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sobeam.server.common.data.id.DeviceId;
+import org.sobeam.server.common.data.kv.AggTsKvEntry;
+import org.sobeam.server.common.data.kv.Aggregation;
+import org.sobeam.server.common.data.kv.BaseReadTsKvQuery;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.DoubleDataEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.ReadTsKvQueryResult;
+import org.sobeam.server.common.data.kv.StringDataEntry;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsHotWindowCacheTest {
+
+    private static final String KEY = "temperature";
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private TsHotWindowCache cache;
+    private long startTs;
+
+    @Before
+    public void setUp() {
+        cache = new TsHotWindowCache();
+        ReflectionTestUtils.setField(cache, "windowMs", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(cache, "maxMemoryMb", 16L);
+        cache.init();
+        // points are in the future, so they are saved after the series has been created
+        startTs = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Test
+    public void givenLongPoints_whenQueryWithoutAggregation_thenLimitedPointsInRequestedOrderAreReturned() {
+        for (int i = 0; i < 10; i++) {
+            cache.put(deviceId, new BasicTsKvEntry(startTs + i * 1000, new LongDataEntry(KEY, (long) i)));
+        }
+
+        ReadTsKvQueryResult result = cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs + 2000, startTs + 8000, 3, "DESC"));
+
+        assertThat(result).isNotNull();
+        assertThat(result.getData()).extracting(TsKvEntry::getTs).containsExactly(startTs + 7000, startTs + 6000, startTs + 5000);
+        assertThat(result.getData().get(0).getLongValue()).contains(7L);
+        assertThat(result.getLastEntryTs()).isEqualTo(startTs + 7000);
+
+        result = cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs + 2000, startTs + 8000, 100, "ASC"));
+        assertThat(result.getData()).extracting(TsKvEntry::getTs).first().isEqualTo(startTs + 2000);
+        assertThat(result.getData()).hasSize(6);
+    }
+
+    @Test
+    public void givenDoublePoints_whenQueryWithAggregation_thenEachIntervalIsAggregated() {
+        for (int i = 0; i < 10; i++) {
+            cache.put(deviceId, new BasicTsKvEntry(startTs + i * 1000, new DoubleDataEntry(KEY, i + 0.5)));
+        }
+
+        ReadTsKvQueryResult avg = cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs, startTs + 10000, 5000, 0, Aggregation.AVG));
+        ReadTsKvQueryResult max = cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs, startTs + 10000, 5000, 0, Aggregation.MAX));
+        ReadTsKvQueryResult count = cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs, startTs + 20000, 5000, 0, Aggregation.COUNT));
+
+        assertThat(avg.getData()).hasSize(2);
+        assertThat(avg.getData().get(0)).isInstanceOf(AggTsKvEntry.class);
+        assertThat(avg.getData().get(0).getTs()).isEqualTo(startTs + 2500);
+        assertThat(avg.getData().get(0).getDoubleValue()).contains(2.5);
+        assertThat(avg.getData().get(1).getDoubleValue()).contains(7.5);
+        assertThat(avg.getLastEntryTs()).isEqualTo(startTs + 9000);
+        assertThat(max.getData().stream().map(entry -> entry.getDoubleValue().orElseThrow())).containsExactly(4.5, 9.5);
+        assertThat(count.getData().stream().map(entry -> entry.getLongValue().orElseThrow())).containsExactly(5L, 5L);
+    }
+
+    @Test
+    public void givenQueryStartedBeforeCacheCoverage_whenGet_thenNotServed() {
+        cache.put(deviceId, new BasicTsKvEntry(startTs, new LongDataEntry(KEY, 1L)));
+
+        assertThat(cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs - 60000, startTs + 1000, 10, "DESC"))).isNull();
+        assertThat(cache.get(deviceId, new BaseReadTsKvQuery("humidity", startTs, startTs + 1000, 10, "DESC"))).isNull();
+    }
+
+    @Test
+    public void givenNonNumericOrOutOfOrderWrite_whenGet_thenSeriesIsDropped() {
+        cache.put(deviceId, new BasicTsKvEntry(startTs + 1000, new LongDataEntry(KEY, 1L)));
+        cache.put(deviceId, new BasicTsKvEntry(startTs + 2000, new StringDataEntry(KEY, "hot")));
+        assertThat(cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs, startTs + 3000, 10, "DESC"))).isNull();
+
+        cache.put(deviceId, new BasicTsKvEntry(startTs + 3000, new LongDataEntry(KEY, 1L)));
+        cache.put(deviceId, new BasicTsKvEntry(startTs + 2500, new LongDataEntry(KEY, 2L)));
+        assertThat(cache.get(deviceId, new BaseReadTsKvQuery(KEY, startTs + 3000, startTs + 4000, 10, "DESC"))).isNull();
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2024 The Sobeam Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sobeam.server.dao.timeseries;
+
+import org.junit.Test;
+import org.sobeam.server.common.data.kv.Aggregation;
+import org.sobeam.server.common.data.kv.BaseReadTsKvQuery;
+import org.sobeam.server.common.data.kv.BasicTsKvEntry;
+import org.sobeam.server.common.data.kv.LongDataEntry;
+import org.sobeam.server.common.data.kv.TsKvEntry;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsKvQueryCursorTest {
+
+    @Test
+    public void givenPartitionsReadConcurrently_whenAddData_thenDataIsTruncatedToLimit() {
+        BaseReadTsKvQuery query = new BaseReadTsKvQuery("temperature", 0, 100, 0, 3, Aggregation.NONE, "DESC");
+        TsKvQueryCursor cursor = new TsKvQueryCursor("DEVICE", UUID.randomUUID(), query, List.of(0L, 50L));
+
+        assertThat(cursor.getNextPartition()).isEqualTo(50L);
+        assertThat(cursor.getNextPartition()).isEqualTo(0L);
+        cursor.addData(List.of(entry(90), entry(80)));
+        cursor.addData(List.of(entry(40), entry(30)));
+
+        assertThat(cursor.isFull()).isTrue();
+        assertThat(cursor.getData()).extracting(TsKvEntry::getTs).containsExactly(90L, 80L, 40L);
+
+        cursor.addData(List.of(entry(20)));
+        assertThat(cursor.getData()).hasSize(3);
+    }
+
+    private static TsKvEntry entry(long ts) {
+        return new BasicTsKvEntry(ts, new LongDataEntry("temperature", ts));
+    }
+
+}
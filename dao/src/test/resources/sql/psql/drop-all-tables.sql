@@ -9,6 +9,8 @@ DROP FUNCTION IF EXISTS unassign_alarm;
 DROP PROCEDURE IF EXISTS cleanup_edge_events_by_ttl;
 DROP PROCEDURE IF EXISTS cleanup_timeseries_by_ttl;
 DROP FUNCTION IF EXISTS delete_customer_records_from_ts_kv;
+DROP PROCEDURE IF EXISTS cleanup_timeseries_rollups_by_ttl;
+DROP FUNCTION IF EXISTS delete_records_from_ts_rollup;
 
 DROP VIEW IF EXISTS device_info_active_attribute_view CASCADE;
 DROP VIEW IF EXISTS device_info_active_ts_view CASCADE;
@@ -40,6 +42,8 @@ DROP TABLE IF EXISTS ts_kv;
 DROP TABLE IF EXISTS ts_kv_latest;
 DROP SEQUENCE IF EXISTS ts_kv_latest_version_seq;
 DROP TABLE IF EXISTS ts_kv_dictionary;
+DROP TABLE IF EXISTS ts_rollup;
+DROP TABLE IF EXISTS ts_rollup_coverage;
 DROP TABLE IF EXISTS user_credentials;
 DROP TABLE IF EXISTS widgets_bundle_widget;
 DROP TABLE IF EXISTS widget_type;
@@ -15,6 +15,8 @@
  */
 package org.sobeam.rule.engine.geo;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -22,6 +24,8 @@ import lombok.NonNull;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.geom.util.GeometryFixer;
 import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContext;
@@ -38,40 +42,61 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class GeoUtil {
 
+    private static final int COMPILED_POLYGONS_CACHE_MAX_SIZE = 10000;
+    private static final long COMPILED_POLYGONS_CACHE_EXPIRE_MINUTES = 60;
+
     private static final SpatialContext distCtx = SpatialContext.GEO;
     private static final JtsSpatialContext jtsCtx;
 
+    /*
+     * Polygon definitions are usually the same for all messages of the rule node (configuration or device attribute),
+     * so the parsed, fixed and united geometry is compiled once and reused by all threads.
+     * */
+    private static final Cache<String, PreparedGeometry> compiledPolygons = Caffeine.newBuilder()
+            .maximumSize(COMPILED_POLYGONS_CACHE_MAX_SIZE)
+            .expireAfterAccess(COMPILED_POLYGONS_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
     static {
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
     }
 
-    public static synchronized double distance(Coordinates x, Coordinates y, RangeUnit unit) {
+    public static double distance(Coordinates x, Coordinates y, RangeUnit unit) {
         Point xLL = distCtx.getShapeFactory().pointXY(x.getLongitude(), x.getLatitude());
         Point yLL = distCtx.getShapeFactory().pointXY(y.getLongitude(), y.getLatitude());
         return unit.fromKm(distCtx.getDistCalc().distance(xLL, yLL) * DistanceUtils.DEG_TO_KM);
     }
 
-    public static synchronized boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+    public static boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+        return compilePolygons(polygonInString).contains(toPoint(coordinates));
+    }
+
+    public static PreparedGeometry compilePolygons(@NonNull String polygonInString) {
         if (polygonInString.isEmpty() || polygonInString.isBlank()) {
             throw new RuntimeException("Polygon string can't be empty or null!");
         }
+        return compiledPolygons.get(polygonInString, GeoUtil::buildGlobalGeometry);
+    }
 
+    static org.locationtech.jts.geom.Point toPoint(Coordinates coordinates) {
+        return jtsCtx.getShapeFactory().getGeometryFactory()
+                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
+    }
+
+    private static PreparedGeometry buildGlobalGeometry(String polygonInString) {
         JsonArray polygonsJson = normalizePolygonsJson(JsonParser.parseString(polygonInString).getAsJsonArray());
         List<Geometry> polygons = buildPolygonsFromJson(polygonsJson);
         Set<Geometry> holes = extractHolesFrom(polygons);
         polygons.removeIf(holes::contains);
 
-        Geometry globalGeometry = unionToGlobalGeometry(polygons, holes);
-        var point = jtsCtx.getShapeFactory().getGeometryFactory()
-                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
-
-        return globalGeometry.contains(point);
+        return PreparedGeometryFactory.prepare(unionToGlobalGeometry(polygons, holes));
     }
 
     private static Geometry unionToGlobalGeometry(List<Geometry> polygons, Set<Geometry> holes) {
@@ -46,6 +46,8 @@ import org.sobeam.server.common.msg.tools.SchedulerUtils;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -61,6 +63,7 @@ class AlarmRuleState {
     private final AlarmRule alarmRule;
     private final AlarmConditionSpec spec;
     private final Set<AlarmConditionFilterKey> entityKeys;
+    private final List<CompiledFilter> compiledFilters;
     private PersistedAlarmRuleState state;
     private boolean updateFlag;
     private final DynamicPredicateValueCtx dynamicPredicateValueCtx;
@@ -76,6 +79,29 @@ class AlarmRuleState {
         }
         this.spec = getSpec(alarmRule);
         this.dynamicPredicateValueCtx = dynamicPredicateValueCtx;
+        this.compiledFilters = compile(alarmRule.getCondition());
+    }
+
+    /**
+     * Parses the constant values of the condition once, instead of doing it on every evaluation.
+     */
+    private static List<CompiledFilter> compile(AlarmCondition condition) {
+        if (condition.getCondition() == null) {
+            return List.of();
+        }
+        List<CompiledFilter> result = new ArrayList<>(condition.getCondition().size());
+        for (AlarmConditionFilter filter : condition.getCondition()) {
+            EntityKeyValue constantValue = null;
+            if (filter.getKey().getType().equals(AlarmConditionKeyType.CONSTANT)) {
+                try {
+                    constantValue = getConstantValue(filter);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to parse constant value from filter: {}", filter, e);
+                }
+            }
+            result.add(new CompiledFilter(filter, constantValue));
+        }
+        return result;
     }
 
     public boolean validateTsUpdate(Set<AlarmConditionFilterKey> changedKeys) {
@@ -123,7 +149,7 @@ class AlarmRuleState {
         boolean active = isActive(data, data.getTs());
         switch (spec.getType()) {
             case SIMPLE:
-                return (active && eval(alarmRule.getCondition(), data)) ? AlarmEvalResult.TRUE : AlarmEvalResult.FALSE;
+                return (active && evalCondition(data)) ? AlarmEvalResult.TRUE : AlarmEvalResult.FALSE;
             case DURATION:
                 return evalDuration(data, active);
             case REPEATING:
@@ -225,7 +251,7 @@ class AlarmRuleState {
     }
 
     private AlarmEvalResult evalRepeating(DataSnapshot data, boolean active) {
-        if (active && eval(alarmRule.getCondition(), data)) {
+        if (active && evalCondition(data)) {
             state.setEventCount(state.getEventCount() + 1);
             updateFlag = true;
             long requiredRepeats = resolveRequiredRepeats(data);
@@ -236,7 +262,7 @@ class AlarmRuleState {
     }
 
     private AlarmEvalResult evalDuration(DataSnapshot data, boolean active) {
-        if (active && eval(alarmRule.getCondition(), data)) {
+        if (active && evalCondition(data)) {
             if (state.getLastEventTs() > 0) {
                 if (data.getTs() > state.getLastEventTs()) {
                     state.setDuration(state.getDuration() + (data.getTs() - state.getLastEventTs()));
@@ -320,17 +346,13 @@ class AlarmRuleState {
         }
     }
 
-    private boolean eval(AlarmCondition condition, DataSnapshot data) {
+    private boolean evalCondition(DataSnapshot data) {
         boolean eval = true;
-        for (var filter : condition.getCondition()) {
+        for (CompiledFilter compiledFilter : compiledFilters) {
+            AlarmConditionFilter filter = compiledFilter.filter();
             EntityKeyValue value;
             if (filter.getKey().getType().equals(AlarmConditionKeyType.CONSTANT)) {
-                try {
-                    value = getConstantValue(filter);
-                } catch (RuntimeException e) {
-                    log.warn("Failed to parse constant value from filter: {}", filter, e);
-                    value = null;
-                }
+                value = compiledFilter.constantValue();
             } else {
                 value = data.getValue(filter.getKey());
             }
@@ -342,7 +364,7 @@ class AlarmRuleState {
         return eval;
     }
 
-    private EntityKeyValue getConstantValue(AlarmConditionFilter filter) {
+    private static EntityKeyValue getConstantValue(AlarmConditionFilter filter) {
         EntityKeyValue value = new EntityKeyValue();
         String valueStr = filter.getValue().toString();
         switch (filter.getValueType()) {
@@ -606,4 +628,7 @@ class AlarmRuleState {
                 return null;
         }
     }
+
+    private record CompiledFilter(AlarmConditionFilter filter, EntityKeyValue constantValue) {}
+
 }
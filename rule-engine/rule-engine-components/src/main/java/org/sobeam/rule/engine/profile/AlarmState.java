@@ -72,9 +72,7 @@ class AlarmState {
 
     public boolean process(TbContext ctx, TbMsg msg, DataSnapshot data, SnapshotUpdate update) throws ExecutionException, InterruptedException {
         initCurrentAlarm(ctx);
-        lastMsgMetaData = msg.getMetaData();
-        lastMsgQueueName = msg.getQueueName();
-        this.dataSnapshot = data;
+        updateLastMsg(msg, data);
         try {
             return createOrClearAlarms(ctx, msg, data, update, AlarmRuleState::eval);
         } catch (NumericParseException e) {
@@ -82,6 +80,15 @@ class AlarmState {
         }
     }
 
+    /**
+     * Remembers the message and the data without the evaluation of the rules, for the alarms not affected by the update.
+     */
+    public void updateLastMsg(TbMsg msg, DataSnapshot data) {
+        lastMsgMetaData = msg.getMetaData();
+        lastMsgQueueName = msg.getQueueName();
+        this.dataSnapshot = data;
+    }
+
     public boolean process(TbContext ctx, long ts) throws ExecutionException, InterruptedException {
         initCurrentAlarm(ctx);
         try {
@@ -15,8 +15,12 @@
  */
 package org.sobeam.rule.engine.profile;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
+import org.sobeam.common.util.DonAsynchron;
 import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.rule.engine.api.TbContext;
 import org.sobeam.rule.engine.profile.state.PersistedAlarmState;
@@ -38,13 +42,16 @@ import org.sobeam.server.common.data.id.EntityId;
 import org.sobeam.server.common.data.kv.AttributeKvEntry;
 import org.sobeam.server.common.data.kv.KvEntry;
 import org.sobeam.server.common.data.kv.TsKvEntry;
+import org.sobeam.server.common.data.msg.TbMsgType;
 import org.sobeam.server.common.data.query.EntityKey;
 import org.sobeam.server.common.data.query.EntityKeyType;
 import org.sobeam.server.common.data.rule.RuleNodeState;
 import org.sobeam.server.common.msg.TbMsg;
+import org.sobeam.server.common.msg.TbMsgMetaData;
 import org.sobeam.server.dao.sql.query.EntityKeyMapping;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -53,6 +60,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.sobeam.server.common.data.msg.TbMsgType.ACTIVITY_EVENT;
@@ -75,11 +83,18 @@ class DeviceState {
     private final ProfileState deviceProfile;
     private RuleNodeState state;
     private PersistedDeviceState pds;
-    private DataSnapshot latestValues;
+    private volatile DataSnapshot latestValues;
+    private final AtomicReference<ListenableFuture<DataSnapshot>> latestValuesFuture = new AtomicReference<>();
+    // messages that wait for the latest values to be fetched
+    private final List<PendingMsg> pendingMsgs = new ArrayList<>();
     private final ConcurrentMap<String, AlarmState> alarmStates = new ConcurrentHashMap<>();
     private final DynamicPredicateValueCtx dynamicPredicateValueCtx;
 
     DeviceState(TbContext ctx, TbDeviceProfileNodeConfiguration config, DeviceId deviceId, ProfileState deviceProfile, RuleNodeState state) {
+        this(ctx, config, deviceId, deviceProfile, state, true);
+    }
+
+    DeviceState(TbContext ctx, TbDeviceProfileNodeConfiguration config, DeviceId deviceId, ProfileState deviceProfile, RuleNodeState state, boolean fetchState) {
         this.persistState = config.isPersistAlarmRulesState();
         this.deviceId = deviceId;
         this.deviceProfile = deviceProfile;
@@ -89,7 +104,7 @@ class DeviceState {
         if (config.isPersistAlarmRulesState()) {
             if (state != null) {
                 this.state = state;
-            } else {
+            } else if (fetchState) {
                 this.state = ctx.findRuleNodeStateForEntity(deviceId);
             }
             if (this.state != null) {
@@ -117,7 +132,8 @@ class DeviceState {
             Set<AlarmConditionFilterKey> keysToFetch = new HashSet<>(this.deviceProfile.getEntityKeys());
             keysToFetch.removeAll(oldKeys);
             if (!keysToFetch.isEmpty()) {
-                addEntityKeysToSnapshot(ctx, deviceId, keysToFetch, latestValues);
+                // profile updates are rare, so the new keys are fetched in place
+                addEntityKeysToSnapshot(ctx, deviceId, keysToFetch, latestValues).get();
             }
         }
         Set<String> newAlarmStateIds = this.deviceProfile.getAlarmSettings().stream().map(DeviceProfileAlarm::getId).collect(Collectors.toSet());
@@ -131,6 +147,30 @@ class DeviceState {
         }
     }
 
+    /**
+     * Applies the persisted alarm rule state fetched after the device state was created,
+     * e.g. when the first message of a newly assigned device arrives before the partition change is processed.
+     * The persisted state is ignored if the device state was already saved, since the saved one is newer.
+     *
+     * @return true if the persisted state was applied
+     */
+    boolean restoreState(RuleNodeState state) {
+        if (!persistState || this.state.getId() != null) {
+            return false;
+        }
+        this.state = state;
+        pds = JacksonUtil.fromString(state.getStateData(), PersistedDeviceState.class);
+        for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
+            AlarmState alarmState = alarmStates.get(alarm.getId());
+            if (alarmState != null) {
+                alarmState.updateState(alarm, getOrInitPersistedAlarmState(alarm));
+            } else {
+                alarmStates.put(alarm.getId(), new AlarmState(deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
+            }
+        }
+        return true;
+    }
+
     public void harvestAlarms(TbContext ctx, long ts) throws ExecutionException, InterruptedException {
         log.debug("[{}] Going to harvest alarms: {}", ctx.getSelfId(), ts);
         boolean stateChanged = false;
@@ -143,10 +183,98 @@ class DeviceState {
         }
     }
 
+    /**
+     * Processes the message if the latest values of the alarm rule keys are already known.
+     * Otherwise, starts fetching them without blocking the rule engine thread and postpones the message.
+     * Once the values are fetched, the {@link TbMsgType#DEVICE_PROFILE_STATE_LOADED_SELF_MSG} is sent to the rule node
+     * and the postponed messages are processed by {@link #onLatestValuesFetched(TbContext)}.
+     */
     public void process(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         if (latestValues == null) {
-            latestValues = fetchLatestValues(ctx, deviceId);
+            ListenableFuture<DataSnapshot> future = fetchLatestValues(ctx, false);
+            if (pendingMsgs.isEmpty() && future.isDone()) {
+                applyLatestValues(future);
+            } else {
+                pendingMsgs.add(new PendingMsg(ctx, msg));
+                return;
+            }
+        }
+        doProcess(ctx, msg);
+    }
+
+    /**
+     * Starts fetching the latest values in advance, so the first message of the device does not wait for them.
+     * Safe to call from any thread.
+     *
+     * @return the future of the fetch, or null if the values are already known
+     */
+    ListenableFuture<DataSnapshot> prefetchLatestValues(TbContext ctx) {
+        return latestValues == null ? fetchLatestValues(ctx, true) : null;
+    }
+
+    void onLatestValuesFetched(TbContext ctx) {
+        ListenableFuture<DataSnapshot> future = latestValuesFuture.get();
+        if (future == null || !future.isDone()) {
+            return;
+        }
+        List<PendingMsg> msgs = new ArrayList<>(pendingMsgs);
+        pendingMsgs.clear();
+        try {
+            applyLatestValues(future);
+        } catch (ExecutionException e) {
+            log.debug("[{}] Failed to fetch latest values", deviceId, e);
+            msgs.forEach(pending -> pending.ctx().tellFailure(pending.msg(), e.getCause() != null ? e.getCause() : e));
+            return;
+        }
+        for (PendingMsg pending : msgs) {
+            try {
+                doProcess(pending.ctx(), pending.msg());
+            } catch (Exception e) {
+                pending.ctx().tellFailure(pending.msg(), e);
+            }
+        }
+    }
+
+    /**
+     * Passes the messages that wait for the latest values to the next nodes without alarm evaluation.
+     * Used when the device state is removed before the values are fetched.
+     */
+    void releasePendingMsgs() {
+        pendingMsgs.forEach(pending -> pending.ctx().tellSuccess(pending.msg()));
+        pendingMsgs.clear();
+    }
+
+    private ListenableFuture<DataSnapshot> fetchLatestValues(TbContext ctx, boolean notifyIfDone) {
+        ListenableFuture<DataSnapshot> future = latestValuesFuture.get();
+        if (future != null) {
+            return future;
+        }
+        future = fetchLatestValuesAsync(ctx, deviceId);
+        if (!latestValuesFuture.compareAndSet(null, future)) {
+            return latestValuesFuture.get();
+        }
+        if (!future.isDone()) {
+            DonAsynchron.withCallback(future, values -> notifyLatestValuesFetched(ctx), t -> notifyLatestValuesFetched(ctx));
+        } else if (notifyIfDone) {
+            notifyLatestValuesFetched(ctx);
+        }
+        return future;
+    }
+
+    private void notifyLatestValuesFetched(TbContext ctx) {
+        ctx.tellSelf(TbMsg.newMsg(TbMsgType.DEVICE_PROFILE_STATE_LOADED_SELF_MSG, ctx.getTenantId(), TbMsgMetaData.EMPTY, deviceId.getId().toString()), 0L);
+    }
+
+    private void applyLatestValues(ListenableFuture<DataSnapshot> future) throws ExecutionException {
+        latestValuesFuture.compareAndSet(future, null);
+        DataSnapshot values = Futures.getDone(future);
+        // the values might be fetched again by the warm-up after the device was processed
+        if (latestValues == null) {
+            latestValues = values;
         }
+    }
+
+    private void doProcess(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
         if (msg.isTypeOf(POST_TELEMETRY_REQUEST)) {
             stateChanged = processTelemetry(ctx, msg);
@@ -187,7 +315,7 @@ class DeviceState {
 
     private boolean processAlarmClearNotification(TbContext ctx, TbMsg msg) {
         boolean stateChanged = false;
-        Alarm alarmNf = JacksonUtil.fromString(msg.getData(), Alarm.class);
+        Alarm alarmNf = JacksonUtil.treeToValue(msg.getDataAsJsonNode(), Alarm.class);
         for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
             AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
                     a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
@@ -198,7 +326,7 @@ class DeviceState {
     }
 
     private void processAlarmAckNotification(TbContext ctx, TbMsg msg) {
-        Alarm alarmNf = JacksonUtil.fromString(msg.getData(), Alarm.class);
+        Alarm alarmNf = JacksonUtil.treeToValue(msg.getDataAsJsonNode(), Alarm.class);
         for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
             AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
                     a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
@@ -208,7 +336,7 @@ class DeviceState {
     }
 
     private void processAlarmDeleteNotification(TbContext ctx, TbMsg msg) {
-        Alarm alarm = JacksonUtil.fromString(msg.getData(), Alarm.class);
+        Alarm alarm = JacksonUtil.treeToValue(msg.getDataAsJsonNode(), Alarm.class);
         alarmStates.values().removeIf(alarmState -> alarmState.getCurrentAlarm() != null
                 && alarmState.getCurrentAlarm().getId().equals(alarm.getId()));
         ctx.tellSuccess(msg);
@@ -225,7 +353,7 @@ class DeviceState {
     private boolean processAttributesDeleteNotification(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException {
         boolean stateChanged = false;
         List<String> keys = new ArrayList<>();
-        JsonParser.parseString(msg.getData()).getAsJsonObject().get("attributes").getAsJsonArray().forEach(e -> keys.add(e.getAsString()));
+        msg.getDataAsJsonNode().get("attributes").forEach(e -> keys.add(e.asText()));
         String scope = msg.getMetaData().getValue(DataConstants.SCOPE);
         if (StringUtils.isEmpty(scope)) {
             scope = DataConstants.CLIENT_SCOPE;
@@ -236,12 +364,7 @@ class DeviceState {
                     .peek(latestValues::removeValue)
                     .map(DataSnapshot::toConditionKey).collect(Collectors.toSet());
             SnapshotUpdate update = new SnapshotUpdate(AlarmConditionKeyType.ATTRIBUTE, removedKeys);
-
-            for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
-                AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
-                        a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
-                stateChanged |= alarmState.process(ctx, msg, latestValues, update);
-            }
+            stateChanged = processAlarms(ctx, msg, update);
         }
         ctx.tellSuccess(msg);
         return stateChanged;
@@ -256,11 +379,7 @@ class DeviceState {
         Set<AttributeKvEntry> attributes = JsonConverter.convertToAttributes(JsonParser.parseString(msg.getData()));
         if (!attributes.isEmpty()) {
             SnapshotUpdate update = merge(latestValues, attributes, scope);
-            for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
-                AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
-                        a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
-                stateChanged |= alarmState.process(ctx, msg, latestValues, update);
-            }
+            stateChanged = processAlarms(ctx, msg, update);
         }
         ctx.tellSuccess(msg);
         return stateChanged;
@@ -275,22 +394,33 @@ class DeviceState {
             List<KvEntry> data = entry.getValue();
             SnapshotUpdate update = merge(latestValues, ts, data);
             if (update.hasUpdate()) {
-                for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
-                    AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
-                            a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
-                    try {
-                        stateChanged |= alarmState.process(ctx, msg, latestValues, update);
-                    } catch (ApiUsageLimitsExceededException e) {
-                        alarmStates.remove(alarm.getId());
-                        throw e;
-                    }
-                }
+                stateChanged |= processAlarms(ctx, msg, update);
             }
         }
         ctx.tellSuccess(msg);
         return stateChanged;
     }
 
+    private boolean processAlarms(TbContext ctx, TbMsg msg, SnapshotUpdate update) throws ExecutionException, InterruptedException {
+        boolean stateChanged = false;
+        Set<String> affectedAlarmIds = deviceProfile.getAffectedAlarmIds(update);
+        for (DeviceProfileAlarm alarm : deviceProfile.getAlarmSettings()) {
+            AlarmState alarmState = alarmStates.computeIfAbsent(alarm.getId(),
+                    a -> new AlarmState(this.deviceProfile, deviceId, alarm, getOrInitPersistedAlarmState(alarm), dynamicPredicateValueCtx));
+            if (!affectedAlarmIds.contains(alarm.getId())) {
+                alarmState.updateLastMsg(msg, latestValues);
+                continue;
+            }
+            try {
+                stateChanged |= alarmState.process(ctx, msg, latestValues, update);
+            } catch (ApiUsageLimitsExceededException e) {
+                alarmStates.remove(alarm.getId());
+                throw e;
+            }
+        }
+        return stateChanged;
+    }
+
     private SnapshotUpdate merge(DataSnapshot latestValues, Long newTs, List<KvEntry> data) {
         Set<AlarmConditionFilterKey> keys = new HashSet<>();
         for (KvEntry entry : data) {
@@ -329,18 +459,16 @@ class DeviceState {
         return EntityKeyType.ATTRIBUTE;
     }
 
-    private DataSnapshot fetchLatestValues(TbContext ctx, EntityId originator) throws ExecutionException, InterruptedException {
+    private ListenableFuture<DataSnapshot> fetchLatestValuesAsync(TbContext ctx, EntityId originator) {
         Set<AlarmConditionFilterKey> entityKeysToFetch = deviceProfile.getEntityKeys();
-        DataSnapshot result = new DataSnapshot(entityKeysToFetch);
-        addEntityKeysToSnapshot(ctx, originator, entityKeysToFetch, result);
-        return result;
+        return addEntityKeysToSnapshot(ctx, originator, entityKeysToFetch, new DataSnapshot(entityKeysToFetch));
     }
 
-    private void addEntityKeysToSnapshot(TbContext ctx, EntityId originator, Set<AlarmConditionFilterKey> entityKeysToFetch, DataSnapshot result) throws InterruptedException, ExecutionException {
+    private ListenableFuture<DataSnapshot> addEntityKeysToSnapshot(TbContext ctx, EntityId originator, Set<AlarmConditionFilterKey> entityKeysToFetch, DataSnapshot result) {
         Set<String> attributeKeys = new HashSet<>();
         Set<String> latestTsKeys = new HashSet<>();
+        List<AlarmConditionFilterKey> entityFieldKeys = new ArrayList<>();
 
-        Device device = null;
         for (AlarmConditionFilterKey entityKey : entityKeysToFetch) {
             String key = entityKey.getKey();
             switch (entityKey.getType()) {
@@ -351,42 +479,56 @@ class DeviceState {
                     latestTsKeys.add(key);
                     break;
                 case ENTITY_FIELD:
-                    if (device == null) {
-                        device = ctx.getDeviceService().findDeviceById(ctx.getTenantId(), new DeviceId(originator.getId()));
-                    }
-                    if (device != null) {
-                        switch (key) {
-                            case EntityKeyMapping.NAME:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getName()));
-                                break;
-                            case EntityKeyMapping.TYPE:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getType()));
-                                break;
-                            case EntityKeyMapping.CREATED_TIME:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromLong(device.getCreatedTime()));
-                                break;
-                            case EntityKeyMapping.LABEL:
-                                result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getLabel()));
-                                break;
-                        }
-                    }
+                    entityFieldKeys.add(entityKey);
                     break;
             }
         }
 
-        if (!latestTsKeys.isEmpty()) {
-            List<TsKvEntry> data = ctx.getTimeseriesService().findLatest(ctx.getTenantId(), originator, latestTsKeys).get();
-            for (TsKvEntry entry : data) {
+        ListenableFuture<Device> deviceFuture = entityFieldKeys.isEmpty() ? Futures.immediateFuture(null) :
+                ctx.getDeviceService().findDeviceByIdAsync(ctx.getTenantId(), new DeviceId(originator.getId()));
+        ListenableFuture<List<TsKvEntry>> latestTsFuture = latestTsKeys.isEmpty() ? Futures.immediateFuture(Collections.emptyList()) :
+                ctx.getTimeseriesService().findLatest(ctx.getTenantId(), originator, latestTsKeys);
+        List<ListenableFuture<List<AttributeKvEntry>>> attributeFutures = new ArrayList<>();
+        if (!attributeKeys.isEmpty()) {
+            attributeFutures.add(ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.CLIENT_SCOPE, attributeKeys));
+            attributeFutures.add(ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SHARED_SCOPE, attributeKeys));
+            attributeFutures.add(ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SERVER_SCOPE, attributeKeys));
+        }
+
+        List<ListenableFuture<?>> futures = new ArrayList<>(attributeFutures);
+        futures.add(deviceFuture);
+        futures.add(latestTsFuture);
+        // the results are applied in the same order as they were fetched before: server attributes override shared and client ones
+        return Futures.whenAllSucceed(futures).call(() -> {
+            Device device = Futures.getDone(deviceFuture);
+            if (device != null) {
+                for (AlarmConditionFilterKey entityKey : entityFieldKeys) {
+                    switch (entityKey.getKey()) {
+                        case EntityKeyMapping.NAME:
+                            result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getName()));
+                            break;
+                        case EntityKeyMapping.TYPE:
+                            result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getType()));
+                            break;
+                        case EntityKeyMapping.CREATED_TIME:
+                            result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromLong(device.getCreatedTime()));
+                            break;
+                        case EntityKeyMapping.LABEL:
+                            result.putValue(entityKey, device.getCreatedTime(), EntityKeyValue.fromString(device.getLabel()));
+                            break;
+                    }
+                }
+            }
+            for (TsKvEntry entry : Futures.getDone(latestTsFuture)) {
                 if (entry.getValue() != null) {
                     result.putValue(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, entry.getKey()), entry.getTs(), toEntityValue(entry));
                 }
             }
-        }
-        if (!attributeKeys.isEmpty()) {
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.CLIENT_SCOPE, attributeKeys).get());
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SHARED_SCOPE, attributeKeys).get());
-            addToSnapshot(result, ctx.getAttributesService().find(ctx.getTenantId(), originator, AttributeScope.SERVER_SCOPE, attributeKeys).get());
-        }
+            for (ListenableFuture<List<AttributeKvEntry>> attributeFuture : attributeFutures) {
+                addToSnapshot(result, Futures.getDone(attributeFuture));
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
     }
 
     private void addToSnapshot(DataSnapshot snapshot, List<AttributeKvEntry> data) {
@@ -433,4 +575,6 @@ class DeviceState {
         }
     }
 
+    private record PendingMsg(TbContext ctx, TbMsg msg) {}
+
 }
@@ -55,6 +55,8 @@ class ProfileState {
 
     private final Map<String, Map<AlarmSeverity, Set<AlarmConditionFilterKey>>> alarmCreateKeys = new HashMap<>();
     private final Map<String, Set<AlarmConditionFilterKey>> alarmClearKeys = new HashMap<>();
+    // ids of the alarms whose create or clear rules use the key
+    private final Map<AlarmConditionFilterKey, Set<String>> alarmIdsByKey = new HashMap<>();
 
     ProfileState(DeviceProfile deviceProfile) {
         updateDeviceProfile(deviceProfile);
@@ -65,6 +67,7 @@ class ProfileState {
         alarmSettings.clear();
         alarmCreateKeys.clear();
         alarmClearKeys.clear();
+        alarmIdsByKey.clear();
         entityKeys.clear();
         if (deviceProfile.getProfileData().getAlarms() != null) {
             alarmSettings.addAll(deviceProfile.getProfileData().getAlarms());
@@ -92,10 +95,18 @@ class ProfileState {
                     }
                     addEntityKeysFromAlarmConditionSpec(alarm.getClearRule());
                 }
+                createAlarmKeys.values().forEach(keys -> indexAlarmKeys(alarm.getId(), keys));
+                indexAlarmKeys(alarm.getId(), alarmClearKeys.getOrDefault(alarm.getId(), Collections.emptySet()));
             }
         }
     }
 
+    private void indexAlarmKeys(String alarmId, Set<AlarmConditionFilterKey> keys) {
+        for (AlarmConditionFilterKey key : keys) {
+            alarmIdsByKey.computeIfAbsent(key, k -> new HashSet<>()).add(alarmId);
+        }
+    }
+
     private void addScheduleDynamicValues(AlarmSchedule schedule) {
         DynamicValue<String> dynamicValue = schedule.getDynamicValue();
         if (dynamicValue != null) {
@@ -177,6 +188,21 @@ class ProfileState {
         }
     }
 
+    /**
+     * Returns the ids of the alarms that have at least one rule using the updated keys.
+     * Rules of other alarms are never evaluated for the update, so such alarms may be skipped.
+     */
+    Set<String> getAffectedAlarmIds(SnapshotUpdate update) {
+        Set<String> result = new HashSet<>();
+        for (AlarmConditionFilterKey key : update.getKeys()) {
+            Set<String> alarmIds = alarmIdsByKey.get(key);
+            if (alarmIds != null) {
+                result.addAll(alarmIds);
+            }
+        }
+        return result;
+    }
+
     Set<AlarmConditionFilterKey> getClearAlarmKeys(String id) {
         Set<AlarmConditionFilterKey> keys = alarmClearKeys.get(id);
         if (keys == null) {
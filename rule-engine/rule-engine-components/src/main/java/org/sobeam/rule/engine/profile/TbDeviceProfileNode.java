@@ -17,7 +17,10 @@ package org.sobeam.rule.engine.profile;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.sobeam.common.util.DonAsynchron;
 import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.rule.engine.api.RuleEngineDeviceProfileCache;
 import org.sobeam.rule.engine.api.RuleNode;
@@ -41,11 +44,14 @@ import org.sobeam.server.common.msg.TbMsg;
 import org.sobeam.server.common.msg.TbMsgMetaData;
 import org.sobeam.server.common.msg.queue.PartitionChangeMsg;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RuleNode(
@@ -63,6 +69,8 @@ import java.util.concurrent.TimeUnit;
 )
 public class TbDeviceProfileNode implements TbNode {
 
+    private static final int WARM_UP_BATCH_SIZE = 100;
+
     private TbDeviceProfileNodeConfiguration config;
     private RuleEngineDeviceProfileCache cache;
     private TbContext ctx;
@@ -75,10 +83,18 @@ public class TbDeviceProfileNode implements TbNode {
         this.ctx = ctx;
         scheduleAlarmHarvesting(ctx, null);
         ctx.addDeviceProfileListeners(this::onProfileUpdate, this::onDeviceUpdate);
-        initAlarmRuleState(false);
+        warmUpDeviceStates(initAlarmRuleState(false));
     }
 
-    private void initAlarmRuleState(boolean printNewlyAddedDeviceStates) {
+    /**
+     * Restores the device states of the local devices from the persisted alarm rule states.
+     * The states are fetched page by page and only the devices that do not have the state yet are restored,
+     * so after the partition change only the devices of the newly assigned partitions are affected.
+     *
+     * @return the newly restored device states
+     */
+    private List<DeviceState> initAlarmRuleState(boolean printNewlyAddedDeviceStates) {
+        List<DeviceState> restoredStates = new ArrayList<>();
         if (config.isFetchAlarmRulesStateOnStart()) {
             log.info("[{}] Fetching alarm rule state", ctx.getSelfId());
             int fetchCount = 0;
@@ -89,7 +105,17 @@ public class TbDeviceProfileNode implements TbNode {
                     for (RuleNodeState rns : states.getData()) {
                         fetchCount++;
                         if (rns.getEntityId().getEntityType().equals(EntityType.DEVICE) && ctx.isLocalEntity(rns.getEntityId())) {
-                            getOrCreateDeviceState(ctx, new DeviceId(rns.getEntityId().getId()), rns, printNewlyAddedDeviceStates);
+                            DeviceId deviceId = new DeviceId(rns.getEntityId().getId());
+                            DeviceState existingState = deviceStates.get(deviceId);
+                            if (existingState == null) {
+                                DeviceState deviceState = getOrCreateDeviceState(ctx, deviceId, rns, printNewlyAddedDeviceStates);
+                                if (deviceState != null) {
+                                    restoredStates.add(deviceState);
+                                }
+                            } else if (existingState.restoreState(rns)) {
+                                // the device state was created by a message that arrived before the partition change was processed
+                                log.debug("[{}][{}] Restored alarm rule state of device [{}]", ctx.getTenantId(), ctx.getSelfId(), deviceId);
+                            }
                         }
                     }
                 }
@@ -99,12 +125,13 @@ public class TbDeviceProfileNode implements TbNode {
                     pageLink = pageLink.nextPageLink();
                 }
             }
-            log.info("[{}] Fetched alarm rule state for {} entities", ctx.getSelfId(), fetchCount);
+            log.info("[{}] Fetched alarm rule state for {} entities, restored {} device states", ctx.getSelfId(), fetchCount, restoredStates.size());
         }
         if (!config.isPersistAlarmRulesState() && ctx.isLocalEntity(ctx.getSelfId())) {
             log.debug("[{}] Going to cleanup rule node states", ctx.getSelfId());
             ctx.clearRuleNodeStates();
         }
+        return restoredStates;
     }
 
     @Override
@@ -115,8 +142,13 @@ public class TbDeviceProfileNode implements TbNode {
             harvestAlarms(ctx, System.currentTimeMillis());
         } else if (msg.isTypeOf(TbMsgType.DEVICE_PROFILE_UPDATE_SELF_MSG)) {
             updateProfile(ctx, new DeviceProfileId(UUID.fromString(msg.getData())));
+        } else if (msg.isTypeOf(TbMsgType.DEVICE_PROFILE_STATE_LOADED_SELF_MSG)) {
+            DeviceState deviceState = deviceStates.get(new DeviceId(UUID.fromString(msg.getData())));
+            if (deviceState != null) {
+                deviceState.onLatestValuesFetched(ctx);
+            }
         } else if (msg.isTypeOf(TbMsgType.DEVICE_UPDATE_SELF_MSG)) {
-            JsonNode data = JacksonUtil.toJsonNode(msg.getData());
+            JsonNode data = msg.getDataAsJsonNode();
             DeviceId deviceId = new DeviceId(UUID.fromString(data.get("deviceId").asText()));
             if (data.has("profileId")) {
                 invalidateDeviceProfileCache(deviceId, new DeviceProfileId(UUID.fromString(data.get("deviceProfileId").asText())));
@@ -150,13 +182,70 @@ public class TbDeviceProfileNode implements TbNode {
     @Override
     public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
         // Cleanup the cache for all entities that are no longer assigned to current server partitions
-        deviceStates.entrySet().removeIf(entry -> !ctx.isLocalEntity(entry.getKey()));
-        initAlarmRuleState(true);
+        deviceStates.entrySet().removeIf(entry -> {
+            if (!ctx.isLocalEntity(entry.getKey())) {
+                entry.getValue().releasePendingMsgs();
+                return true;
+            }
+            return false;
+        });
+        warmUpDeviceStates(initAlarmRuleState(true));
+    }
+
+    /**
+     * Fetches the latest values for the device states restored from the persisted alarm rule states,
+     * so the first messages of the devices after the restart or rebalance do not wait for the database.
+     * The values are fetched in batches to not flood the database with requests.
+     */
+    private void warmUpDeviceStates(List<DeviceState> states) {
+        if (!states.isEmpty()) {
+            warmUpDeviceStates(states, 0, new WarmUpProgress(states.size()));
+        }
+    }
+
+    private void warmUpDeviceStates(List<DeviceState> states, int fromIdx, WarmUpProgress progress) {
+        int toIdx = Math.min(states.size(), fromIdx + WARM_UP_BATCH_SIZE);
+        List<ListenableFuture<DataSnapshot>> batch = new ArrayList<>(toIdx - fromIdx);
+        for (int i = fromIdx; i < toIdx; i++) {
+            try {
+                ListenableFuture<DataSnapshot> future = states.get(i).prefetchLatestValues(ctx);
+                if (future != null) {
+                    batch.add(future);
+                    DonAsynchron.withCallback(future, values -> progress.loaded.incrementAndGet(), t -> progress.failed.incrementAndGet());
+                } else {
+                    progress.loaded.incrementAndGet();
+                }
+            } catch (Exception e) {
+                progress.failed.incrementAndGet();
+                log.debug("[{}] Failed to prefetch the latest values", ctx.getSelfId(), e);
+            }
+        }
+        Futures.whenAllComplete(batch).run(() -> {
+            if (toIdx < states.size()) {
+                log.debug("[{}] Warmed up {} of {} device states", ctx.getSelfId(), toIdx, states.size());
+                warmUpDeviceStates(states, toIdx, progress);
+            } else {
+                log.info("[{}] Warmed up {} device states in {} ms: {} loaded, {} failed", ctx.getSelfId(), progress.total,
+                        System.currentTimeMillis() - progress.startTs, progress.loaded.get(), progress.failed.get());
+            }
+        }, ctx.getDbCallbackExecutor());
+    }
+
+    private static class WarmUpProgress {
+        private final int total;
+        private final long startTs = System.currentTimeMillis();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        WarmUpProgress(int total) {
+            this.total = total;
+        }
     }
 
     @Override
     public void destroy() {
         ctx.removeListeners();
+        deviceStates.values().forEach(DeviceState::releasePendingMsgs);
         deviceStates.clear();
     }
 
@@ -165,7 +254,10 @@ public class TbDeviceProfileNode implements TbNode {
         if (deviceState == null) {
             DeviceProfile deviceProfile = cache.get(ctx.getTenantId(), deviceId);
             if (deviceProfile != null) {
-                deviceState = new DeviceState(ctx, config, deviceId, new ProfileState(deviceProfile), rns);
+                // the persisted states of the local devices are restored by initAlarmRuleState, including the devices
+                // whose messages arrive before the partition change is processed, so there is nothing to look up
+                boolean fetchState = rns == null && !(config.isFetchAlarmRulesStateOnStart() && ctx.isLocalEntity(deviceId));
+                deviceState = new DeviceState(ctx, config, deviceId, new ProfileState(deviceProfile), rns, fetchState);
                 deviceStates.put(deviceId, deviceState);
                 if (printNewlyAddedDeviceStates) {
                     log.info("[{}][{}] Device [{}] was added during PartitionChangeMsg", ctx.getTenantId(), ctx.getSelfId(), deviceId);
@@ -239,6 +331,9 @@ public class TbDeviceProfileNode implements TbNode {
 
     private void removeDeviceState(DeviceId deviceId) {
         DeviceState state = deviceStates.remove(deviceId);
+        if (state != null) {
+            state.releasePendingMsgs();
+        }
         if (config.isPersistAlarmRulesState() && (state != null || !config.isFetchAlarmRulesStateOnStart())) {
             ctx.removeRuleNodeStateForEntity(deviceId);
         }
@@ -69,13 +69,13 @@ public class TbCopyKeysNode extends TbAbstractTransformNodeWithTbMsgSource {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         var metaDataCopy = msg.getMetaData().copy();
-        String msgData = msg.getData();
         boolean msgChanged = false;
-        JsonNode dataNode = JacksonUtil.toJsonNode(msgData);
+        JsonNode dataNode = msg.getDataAsJsonNode();
+        JsonNode msgData = dataNode;
         if (dataNode.isObject()) {
             switch (copyFrom) {
                 case METADATA:
-                    ObjectNode msgDataNode = (ObjectNode) dataNode;
+                    ObjectNode msgDataNode = dataNode.deepCopy();
                     Map<String, String> metaDataMap = metaDataCopy.getData();
                     for (Map.Entry<String, String> entry : metaDataMap.entrySet()) {
                         String mdKey = entry.getKey();
@@ -85,7 +85,7 @@ public class TbCopyKeysNode extends TbAbstractTransformNodeWithTbMsgSource {
                             msgDataNode.put(mdKey, mdValue);
                         }
                     }
-                    msgData = JacksonUtil.toString(msgDataNode);
+                    msgData = msgDataNode;
                     break;
                 case DATA:
                     Iterator<Map.Entry<String, JsonNode>> iteratorNode = dataNode.fields();
@@ -18,7 +18,6 @@ package org.sobeam.rule.engine.transform;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.rule.engine.api.RuleNode;
 import org.sobeam.rule.engine.api.TbContext;
 import org.sobeam.rule.engine.api.TbNodeConfiguration;
@@ -69,7 +68,7 @@ public class TbDeleteKeysNode extends TbAbstractTransformNodeWithTbMsgSource {
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         var metaDataCopy = msg.getMetaData().copy();
-        var msgDataStr = msg.getData();
+        JsonNode msgData = null;
         boolean hasNoChanges = false;
         switch (deleteFrom) {
             case METADATA:
@@ -83,9 +82,9 @@ public class TbDeleteKeysNode extends TbAbstractTransformNodeWithTbMsgSource {
                 hasNoChanges = mdKeysToDelete.isEmpty();
                 break;
             case DATA:
-                JsonNode dataNode = JacksonUtil.toJsonNode(msgDataStr);
+                JsonNode dataNode = msg.getDataAsJsonNode();
                 if (dataNode.isObject()) {
-                    var msgDataObject = (ObjectNode) dataNode;
+                    ObjectNode msgDataObject = dataNode.deepCopy();
                     var msgKeysToDelete = new ArrayList<String>();
                     dataNode.fieldNames().forEachRemaining(key -> {
                         if (matches(key)) {
@@ -93,14 +92,20 @@ public class TbDeleteKeysNode extends TbAbstractTransformNodeWithTbMsgSource {
                         }
                     });
                     msgDataObject.remove(msgKeysToDelete);
-                    msgDataStr = JacksonUtil.toString(msgDataObject);
+                    msgData = msgDataObject;
                     hasNoChanges = msgKeysToDelete.isEmpty();
                 }
                 break;
             default:
                 log.debug("Unexpected DeleteFrom value: {}. Allowed values: {}", deleteFrom, TbMsgSource.values());
         }
-        ctx.tellSuccess(hasNoChanges ? msg : TbMsg.transformMsg(msg, metaDataCopy, msgDataStr));
+        if (hasNoChanges) {
+            ctx.tellSuccess(msg);
+        } else if (msgData != null) {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, metaDataCopy, msgData));
+        } else {
+            ctx.tellSuccess(TbMsg.transformMsg(msg, metaDataCopy, msg.getData()));
+        }
     }
 
     @Override
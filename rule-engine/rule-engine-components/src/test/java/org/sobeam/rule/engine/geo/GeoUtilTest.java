@@ -160,4 +160,9 @@ public class GeoUtilTest {
                 );
     }
 
+    @Test
+    public void testCompiledPolygonsAreReused() {
+        Assertions.assertSame(GeoUtil.compilePolygons(SAND_CLOCK_WITH_HOLE_IN_CENTER), GeoUtil.compilePolygons(SAND_CLOCK_WITH_HOLE_IN_CENTER));
+    }
+
 }
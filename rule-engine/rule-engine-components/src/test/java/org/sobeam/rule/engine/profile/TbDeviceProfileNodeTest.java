@@ -18,21 +18,28 @@ package org.sobeam.rule.engine.profile;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.provider.Arguments;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sobeam.common.util.JacksonUtil;
 import org.sobeam.rule.engine.AbstractRuleNodeUpgradeTest;
+import org.sobeam.rule.engine.TestDbCallbackExecutor;
 import org.sobeam.rule.engine.api.RuleEngineAlarmService;
 import org.sobeam.rule.engine.api.RuleEngineDeviceProfileCache;
 import org.sobeam.rule.engine.api.TbContext;
 import org.sobeam.rule.engine.api.TbNode;
 import org.sobeam.rule.engine.api.TbNodeConfiguration;
 import org.sobeam.rule.engine.api.TbNodeException;
+import org.sobeam.rule.engine.profile.state.PersistedAlarmRuleState;
+import org.sobeam.rule.engine.profile.state.PersistedAlarmState;
+import org.sobeam.rule.engine.profile.state.PersistedDeviceState;
 import org.sobeam.server.common.data.AttributeScope;
 import org.sobeam.server.common.data.Device;
 import org.sobeam.server.common.data.DeviceProfile;
@@ -56,18 +63,24 @@ import org.sobeam.server.common.data.id.AlarmId;
 import org.sobeam.server.common.data.id.CustomerId;
 import org.sobeam.server.common.data.id.DeviceId;
 import org.sobeam.server.common.data.id.DeviceProfileId;
+import org.sobeam.server.common.data.id.RuleNodeStateId;
 import org.sobeam.server.common.data.id.TenantId;
 import org.sobeam.server.common.data.kv.AttributeKvEntry;
+import org.sobeam.server.common.data.kv.TsKvEntry;
 import org.sobeam.server.common.data.msg.TbMsgType;
+import org.sobeam.server.common.data.page.PageData;
 import org.sobeam.server.common.data.query.BooleanFilterPredicate;
 import org.sobeam.server.common.data.query.DynamicValue;
 import org.sobeam.server.common.data.query.DynamicValueSourceType;
 import org.sobeam.server.common.data.query.EntityKeyValueType;
 import org.sobeam.server.common.data.query.FilterPredicateValue;
 import org.sobeam.server.common.data.query.NumericFilterPredicate;
+import org.sobeam.server.common.data.rule.RuleNodeState;
 import org.sobeam.server.common.msg.TbMsg;
 import org.sobeam.server.common.msg.TbMsgDataType;
 import org.sobeam.server.common.msg.TbMsgMetaData;
+import org.sobeam.server.common.msg.queue.PartitionChangeMsg;
+import org.sobeam.server.common.msg.queue.ServiceType;
 import org.sobeam.server.dao.attributes.AttributesService;
 import org.sobeam.server.dao.device.DeviceService;
 import org.sobeam.server.dao.model.sql.AttributeKvCompositeKey;
@@ -79,13 +92,17 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -453,7 +470,7 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
         deviceProfileData.setAlarms(Collections.singletonList(dpa));
         deviceProfile.setProfileData(deviceProfileData);
 
-        Mockito.when(deviceService.findDeviceById(tenantId, deviceId)).thenReturn(device);
+        Mockito.when(deviceService.findDeviceByIdAsync(tenantId, deviceId)).thenReturn(Futures.immediateFuture(device));
         Mockito.when(cache.get(tenantId, deviceId)).thenReturn(deviceProfile);
         Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature")))
                 .thenReturn(Futures.immediateFuture(Collections.emptyList()));
@@ -753,8 +770,8 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
         Mockito.when(ctx.getAttributesService()).thenReturn(attributesService);
         Mockito.when(attributesService.find(eq(tenantId), eq(tenantId), Mockito.any(AttributeScope.class), Mockito.anyString()))
                 .thenReturn(optionalDurationAttribute);
-        Mockito.when(ctx.getDeviceService().findDeviceById(tenantId, deviceId))
-                .thenReturn(device);
+        Mockito.when(ctx.getDeviceService().findDeviceByIdAsync(tenantId, deviceId))
+                .thenReturn(Futures.immediateFuture(device));
         Mockito.when(attributesService.find(eq(tenantId), eq(customerId), eq(AttributeScope.SERVER_SCOPE), Mockito.anyString()))
                 .thenReturn(emptyOptional);
         Mockito.when(attributesService.find(eq(tenantId), eq(deviceId), Mockito.any(AttributeScope.class), Mockito.anySet()))
@@ -982,8 +999,8 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
         Mockito.when(ctx.getAttributesService()).thenReturn(attributesService);
         Mockito.when(attributesService.find(eq(tenantId), eq(tenantId), Mockito.any(AttributeScope.class), Mockito.anyString()))
                 .thenReturn(optionalDurationAttribute);
-        Mockito.when(ctx.getDeviceService().findDeviceById(tenantId, deviceId))
-                .thenReturn(device);
+        Mockito.when(ctx.getDeviceService().findDeviceByIdAsync(tenantId, deviceId))
+                .thenReturn(Futures.immediateFuture(device));
         Mockito.when(attributesService.find(eq(tenantId), eq(customerId), eq(AttributeScope.SERVER_SCOPE), Mockito.anyString()))
                 .thenReturn(emptyOptional);
         Mockito.when(attributesService.find(eq(tenantId), eq(deviceId), Mockito.any(AttributeScope.class), Mockito.anySet()))
@@ -1439,8 +1456,8 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
         Mockito.when(ctx.getAttributesService()).thenReturn(attributesService);
         Mockito.when(attributesService.find(eq(tenantId), eq(deviceId), Mockito.any(AttributeScope.class), Mockito.anySet()))
                 .thenReturn(listListenableFutureWithLess);
-        Mockito.when(ctx.getDeviceService().findDeviceById(tenantId, deviceId))
-                .thenReturn(device);
+        Mockito.when(ctx.getDeviceService().findDeviceByIdAsync(tenantId, deviceId))
+                .thenReturn(Futures.immediateFuture(device));
         Mockito.when(attributesService.find(eq(tenantId), eq(customerId), eq(AttributeScope.SERVER_SCOPE), Mockito.anyString()))
                 .thenReturn(optionalListenableFutureWithLess);
 
@@ -1593,8 +1610,8 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
                 .thenReturn(null);
         registerCreateAlarmMock(alarmService.createAlarm(any()), true);
         Mockito.when(ctx.getAttributesService()).thenReturn(attributesService);
-        Mockito.when(ctx.getDeviceService().findDeviceById(tenantId, deviceId))
-                .thenReturn(device);
+        Mockito.when(ctx.getDeviceService().findDeviceByIdAsync(tenantId, deviceId))
+                .thenReturn(Futures.immediateFuture(device));
         Mockito.when(attributesService.find(eq(tenantId), eq(deviceId), Mockito.any(AttributeScope.class), Mockito.anySet()))
                 .thenReturn(listListenableFutureWithLess);
         Mockito.when(attributesService.find(eq(tenantId), eq(customerId),  Mockito.any(AttributeScope.class), Mockito.anyString()))
@@ -1679,8 +1696,8 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
                 .thenReturn(null);
         registerCreateAlarmMock(alarmService.createAlarm(any()), true);
         Mockito.when(ctx.getAttributesService()).thenReturn(attributesService);
-        Mockito.when(ctx.getDeviceService().findDeviceById(tenantId, deviceId))
-                .thenReturn(device);
+        Mockito.when(ctx.getDeviceService().findDeviceByIdAsync(tenantId, deviceId))
+                .thenReturn(Futures.immediateFuture(device));
         Mockito.when(attributesService.find(eq(tenantId), eq(deviceId), Mockito.any(AttributeScope.class), Mockito.anySet()))
                 .thenReturn(listListenableFutureWithLess);
         Mockito.when(attributesService.find(eq(tenantId), eq(customerId), Mockito.any(AttributeScope.class), Mockito.anyString()))
@@ -1703,14 +1720,351 @@ public class TbDeviceProfileNodeTest extends AbstractRuleNodeUpgradeTest {
         verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
     }
 
+    @Test
+    public void givenFetchAlarmRulesStateOnStart_whenInit_thenRestoreLocalDeviceStatesAndPrefetchLatestValues() throws Exception {
+        DeviceProfile deviceProfile = new DeviceProfile();
+        DeviceProfileData deviceProfileData = new DeviceProfileData();
+        AlarmConditionFilter highTempFilter = new AlarmConditionFilter();
+        highTempFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"));
+        highTempFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate highTemperaturePredicate = new NumericFilterPredicate();
+        highTemperaturePredicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        highTemperaturePredicate.setValue(new FilterPredicateValue<>(30.0));
+        highTempFilter.setPredicate(highTemperaturePredicate);
+        AlarmCondition alarmCondition = new AlarmCondition();
+        alarmCondition.setCondition(Collections.singletonList(highTempFilter));
+        AlarmRule alarmRule = new AlarmRule();
+        alarmRule.setCondition(alarmCondition);
+        DeviceProfileAlarm dpa = new DeviceProfileAlarm();
+        dpa.setId("highTemperatureAlarmID");
+        dpa.setAlarmType("highTemperatureAlarm");
+        dpa.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL, alarmRule)));
+        deviceProfileData.setAlarms(Collections.singletonList(dpa));
+        deviceProfile.setProfileData(deviceProfileData);
+
+        PersistedDeviceState persistedDeviceState = new PersistedDeviceState();
+        persistedDeviceState.setAlarmStates(new HashMap<>());
+        RuleNodeState ruleNodeState = new RuleNodeState();
+        ruleNodeState.setEntityId(deviceId);
+        ruleNodeState.setStateData(JacksonUtil.toString(persistedDeviceState));
+        DeviceId newDeviceId = new DeviceId(UUID.randomUUID());
+
+        Mockito.when(ctx.findRuleNodeStates(any())).thenReturn(new PageData<>(Collections.singletonList(ruleNodeState), 1, 1, false));
+        Mockito.when(ctx.isLocalEntity(any())).thenReturn(true);
+        Mockito.when(ctx.getDbCallbackExecutor()).thenReturn(new TestDbCallbackExecutor());
+        Mockito.when(cache.get(eq(tenantId), any(DeviceId.class))).thenReturn(deviceProfile);
+        Mockito.when(timeseriesService.findLatest(eq(tenantId), any(), eq(Collections.singleton("temperature"))))
+                .thenReturn(Futures.immediateFuture(Collections.emptyList()));
+
+        ObjectNode configuration = JacksonUtil.newObjectNode();
+        configuration.put("persistAlarmRulesState", true);
+        configuration.put("fetchAlarmRulesStateOnStart", true);
+        init(configuration);
+
+        verify(timeseriesService).findLatest(tenantId, deviceId, Collections.singleton("temperature"));
+
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("temperature", 20);
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, newDeviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        node.onMsg(ctx, msg);
+
+        verify(ctx).tellSuccess(msg);
+        verify(timeseriesService).findLatest(tenantId, newDeviceId, Collections.singleton("temperature"));
+        verify(ctx, Mockito.never()).findRuleNodeStateForEntity(any());
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void givenMsgBeforePartitionChange_whenPartitionChange_thenPersistedStateApplied() throws Exception {
+        DeviceProfile deviceProfile = new DeviceProfile();
+        DeviceProfileData deviceProfileData = new DeviceProfileData();
+        AlarmConditionFilter highTempFilter = new AlarmConditionFilter();
+        highTempFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"));
+        highTempFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate highTemperaturePredicate = new NumericFilterPredicate();
+        highTemperaturePredicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        highTemperaturePredicate.setValue(new FilterPredicateValue<>(30.0));
+        highTempFilter.setPredicate(highTemperaturePredicate);
+        AlarmCondition alarmCondition = new AlarmCondition();
+        alarmCondition.setCondition(Collections.singletonList(highTempFilter));
+        RepeatingAlarmConditionSpec repeatingSpec = new RepeatingAlarmConditionSpec();
+        repeatingSpec.setPredicate(new FilterPredicateValue<>(2));
+        alarmCondition.setSpec(repeatingSpec);
+        AlarmRule alarmRule = new AlarmRule();
+        alarmRule.setCondition(alarmCondition);
+        DeviceProfileAlarm dpa = new DeviceProfileAlarm();
+        dpa.setId("highTemperatureAlarmID");
+        dpa.setAlarmType("highTemperatureAlarm");
+        dpa.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL, alarmRule)));
+        deviceProfileData.setAlarms(Collections.singletonList(dpa));
+        deviceProfile.setProfileData(deviceProfileData);
+
+        // the device has already seen one of the two required events on the previous owner of the partition
+        PersistedAlarmState persistedAlarmState = new PersistedAlarmState();
+        persistedAlarmState.setCreateRuleStates(new HashMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL,
+                new PersistedAlarmRuleState(System.currentTimeMillis(), 0L, 1L))));
+        PersistedDeviceState persistedDeviceState = new PersistedDeviceState();
+        persistedDeviceState.setAlarmStates(new HashMap<>(Collections.singletonMap(dpa.getId(), persistedAlarmState)));
+        RuleNodeState ruleNodeState = new RuleNodeState(new RuleNodeStateId(UUID.randomUUID()));
+        ruleNodeState.setEntityId(deviceId);
+        ruleNodeState.setStateData(JacksonUtil.toString(persistedDeviceState));
+
+        Mockito.when(ctx.findRuleNodeStates(any()))
+                .thenReturn(new PageData<>(Collections.emptyList(), 0, 0, false))
+                .thenReturn(new PageData<>(Collections.singletonList(ruleNodeState), 1, 1, false));
+        Mockito.when(ctx.isLocalEntity(any())).thenReturn(true);
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(deviceProfile);
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature")))
+                .thenReturn(Futures.immediateFuture(Collections.emptyList()));
+        registerCreateAlarmMock(alarmService.createAlarm(any()), true);
+        TbMsg theMsg = TbMsg.newMsg(TbMsgType.ALARM, deviceId, TbMsgMetaData.EMPTY, TbMsg.EMPTY_STRING);
+        when(ctx.newMsg(any(), any(TbMsgType.class), any(), any(), any(), Mockito.anyString())).thenReturn(theMsg);
+
+        ObjectNode configuration = JacksonUtil.newObjectNode();
+        configuration.put("persistAlarmRulesState", true);
+        configuration.put("fetchAlarmRulesStateOnStart", true);
+        init(configuration);
+
+        // the device partition is already assigned to this server, but the partition change is not processed yet
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("temperature", 20);
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        node.onMsg(ctx, msg);
+        verify(ctx).tellSuccess(msg);
+
+        node.onPartitionChangeMsg(ctx, new PartitionChangeMsg(ServiceType.TB_RULE_ENGINE));
+
+        data.put("temperature", 42);
+        TbMsg msg2 = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+        node.onMsg(ctx, msg2);
+
+        verify(ctx).tellSuccess(msg2);
+        verify(ctx).enqueueForTellNext(theMsg, "Alarm Created");
+        verify(ctx, Mockito.never()).findRuleNodeStateForEntity(any());
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void givenLatestValuesNotFetched_whenMsg_thenMsgsPostponedUntilStateLoaded() throws Exception {
+        init();
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(createHighTemperatureProfile());
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature"))).thenReturn(latestFuture);
+
+        TbMsg msg1 = createTelemetryMsg(20);
+        TbMsg msg2 = createTelemetryMsg(21);
+        node.onMsg(ctx, msg1);
+        node.onMsg(ctx, msg2);
+
+        verify(timeseriesService).findLatest(tenantId, deviceId, Collections.singleton("temperature"));
+        verify(ctx, Mockito.never()).tellSuccess(any());
+        verify(ctx, Mockito.never()).tellSelf(any(), eq(0L));
+
+        latestFuture.set(Collections.emptyList());
+        node.onMsg(ctx, captureStateLoadedMsg());
+
+        InOrder inOrder = Mockito.inOrder(ctx);
+        inOrder.verify(ctx).tellSuccess(msg1);
+        inOrder.verify(ctx).tellSuccess(msg2);
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void givenLatestValuesFetchFailed_whenStateLoaded_thenPostponedMsgsFailed() throws Exception {
+        init();
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(createHighTemperatureProfile());
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature"))).thenReturn(latestFuture);
+
+        TbMsg msg = createTelemetryMsg(42);
+        node.onMsg(ctx, msg);
+
+        latestFuture.setException(new RuntimeException("Database is not available"));
+        node.onMsg(ctx, captureStateLoadedMsg());
+
+        verify(ctx).tellFailure(eq(msg), Mockito.argThat(t -> "Database is not available".equals(t.getMessage())));
+        verify(ctx, Mockito.never()).tellSuccess(any());
+        verify(alarmService, Mockito.never()).createAlarm(any());
+    }
+
+    @Test
+    public void givenPostponedMsg_whenDeviceDeleted_thenMsgReleased() throws Exception {
+        init();
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(createHighTemperatureProfile());
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature"))).thenReturn(latestFuture);
+
+        TbMsg msg = createTelemetryMsg(42);
+        node.onMsg(ctx, msg);
+        TbMsg deletedMsg = TbMsg.newMsg(TbMsgType.ENTITY_DELETED, deviceId, TbMsgMetaData.EMPTY, TbMsg.EMPTY_JSON_OBJECT);
+        node.onMsg(ctx, deletedMsg);
+
+        verify(ctx).tellSuccess(msg);
+        verify(ctx).tellSuccess(deletedMsg);
+
+        // the state loaded notification of the removed device is ignored
+        latestFuture.set(Collections.emptyList());
+        node.onMsg(ctx, captureStateLoadedMsg());
+
+        verify(ctx).tellSuccess(msg);
+        verify(alarmService, Mockito.never()).createAlarm(any());
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void givenPostponedMsg_whenPartitionChange_thenMsgOfNotLocalDeviceReleased() throws Exception {
+        init();
+        SettableFuture<List<TsKvEntry>> latestFuture = SettableFuture.create();
+        Mockito.when(cache.get(tenantId, deviceId)).thenReturn(createHighTemperatureProfile());
+        Mockito.when(timeseriesService.findLatest(tenantId, deviceId, Collections.singleton("temperature"))).thenReturn(latestFuture);
+        Mockito.when(ctx.isLocalEntity(any())).thenReturn(false);
+
+        TbMsg msg = createTelemetryMsg(42);
+        node.onMsg(ctx, msg);
+        verify(ctx, Mockito.never()).tellSuccess(msg);
+
+        node.onPartitionChangeMsg(ctx, new PartitionChangeMsg(ServiceType.TB_RULE_ENGINE));
+
+        verify(ctx).tellSuccess(msg);
+        verify(alarmService, Mockito.never()).createAlarm(any());
+        verify(ctx, Mockito.never()).tellFailure(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void givenUpdatedKeys_whenGetAffectedAlarmIds_thenOnlyAlarmsUsingKeysReturned() {
+        DeviceProfile deviceProfile = createHighTemperatureProfile();
+        DeviceProfileAlarm temperatureAlarm = deviceProfile.getProfileData().getAlarms().get(0);
+        NumericFilterPredicate temperaturePredicate = (NumericFilterPredicate) temperatureAlarm.getCreateRules()
+                .get(AlarmSeverity.CRITICAL).getCondition().getCondition().get(0).getPredicate();
+        temperaturePredicate.setValue(new FilterPredicateValue<>(30.0, null,
+                new DynamicValue<>(DynamicValueSourceType.CURRENT_DEVICE, "temperatureThreshold", false)));
+
+        AlarmConditionFilter humidityFilter = new AlarmConditionFilter();
+        humidityFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "humidity"));
+        humidityFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate humidityPredicate = new NumericFilterPredicate();
+        humidityPredicate.setOperation(NumericFilterPredicate.NumericOperation.LESS);
+        humidityPredicate.setValue(new FilterPredicateValue<>(20.0));
+        humidityFilter.setPredicate(humidityPredicate);
+        AlarmCondition humidityCondition = new AlarmCondition();
+        humidityCondition.setCondition(Collections.singletonList(humidityFilter));
+        AlarmRule humidityRule = new AlarmRule();
+        humidityRule.setCondition(humidityCondition);
+        DeviceProfileAlarm humidityAlarm = new DeviceProfileAlarm();
+        humidityAlarm.setId("lowHumidityAlarmID");
+        humidityAlarm.setAlarmType("lowHumidityAlarm");
+        humidityAlarm.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.WARNING, humidityRule)));
+        deviceProfile.getProfileData().setAlarms(List.of(temperatureAlarm, humidityAlarm));
+
+        ProfileState profileState = new ProfileState(deviceProfile);
+
+        assertEquals(Set.of("highTemperatureAlarmID"), profileState.getAffectedAlarmIds(new SnapshotUpdate(AlarmConditionKeyType.TIME_SERIES,
+                Set.of(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature")))));
+        assertEquals(Set.of("highTemperatureAlarmID"), profileState.getAffectedAlarmIds(new SnapshotUpdate(AlarmConditionKeyType.ATTRIBUTE,
+                Set.of(new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, "temperatureThreshold")))));
+        assertEquals(Set.of("lowHumidityAlarmID"), profileState.getAffectedAlarmIds(new SnapshotUpdate(AlarmConditionKeyType.TIME_SERIES,
+                Set.of(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "humidity")))));
+        assertEquals(Set.of("highTemperatureAlarmID", "lowHumidityAlarmID"), profileState.getAffectedAlarmIds(new SnapshotUpdate(AlarmConditionKeyType.TIME_SERIES,
+                Set.of(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"),
+                        new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "humidity")))));
+        assertEquals(Collections.emptySet(), profileState.getAffectedAlarmIds(new SnapshotUpdate(AlarmConditionKeyType.TIME_SERIES,
+                Set.of(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "pressure")))));
+    }
+
+    @Test
+    public void givenManyRestoredDeviceStates_whenInit_thenLatestValuesFetchedInBatches() throws Exception {
+        List<RuleNodeState> ruleNodeStates = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            PersistedDeviceState persistedDeviceState = new PersistedDeviceState();
+            persistedDeviceState.setAlarmStates(new HashMap<>());
+            RuleNodeState ruleNodeState = new RuleNodeState();
+            ruleNodeState.setEntityId(new DeviceId(UUID.randomUUID()));
+            ruleNodeState.setStateData(JacksonUtil.toString(persistedDeviceState));
+            ruleNodeStates.add(ruleNodeState);
+        }
+        List<SettableFuture<List<TsKvEntry>>> latestFutures = new ArrayList<>();
+
+        Mockito.when(ctx.findRuleNodeStates(any())).thenReturn(new PageData<>(ruleNodeStates, 1, ruleNodeStates.size(), false));
+        Mockito.when(ctx.isLocalEntity(any())).thenReturn(true);
+        Mockito.when(ctx.getDbCallbackExecutor()).thenReturn(new TestDbCallbackExecutor());
+        Mockito.when(cache.get(eq(tenantId), any(DeviceId.class))).thenReturn(createHighTemperatureProfile());
+        Mockito.when(timeseriesService.findLatest(eq(tenantId), any(), eq(Collections.singleton("temperature")))).thenAnswer(invocation -> {
+            SettableFuture<List<TsKvEntry>> future = SettableFuture.create();
+            latestFutures.add(future);
+            return future;
+        });
+
+        ObjectNode configuration = JacksonUtil.newObjectNode();
+        configuration.put("persistAlarmRulesState", true);
+        configuration.put("fetchAlarmRulesStateOnStart", true);
+        init(configuration);
+
+        // the next batch is fetched only when the previous one is completed
+        assertEquals(100, latestFutures.size());
+        latestFutures.subList(0, 99).forEach(future -> future.set(Collections.emptyList()));
+        assertEquals(100, latestFutures.size());
+        latestFutures.get(99).set(Collections.emptyList());
+        assertEquals(200, latestFutures.size());
+        latestFutures.subList(100, 200).forEach(future -> future.setException(new RuntimeException("Database is not available")));
+        assertEquals(250, latestFutures.size());
+        latestFutures.subList(200, 250).forEach(future -> future.set(Collections.emptyList()));
+        assertEquals(250, latestFutures.size());
+    }
+
+    private DeviceProfile createHighTemperatureProfile() {
+        DeviceProfile deviceProfile = new DeviceProfile();
+        DeviceProfileData deviceProfileData = new DeviceProfileData();
+        AlarmConditionFilter highTempFilter = new AlarmConditionFilter();
+        highTempFilter.setKey(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature"));
+        highTempFilter.setValueType(EntityKeyValueType.NUMERIC);
+        NumericFilterPredicate highTemperaturePredicate = new NumericFilterPredicate();
+        highTemperaturePredicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        highTemperaturePredicate.setValue(new FilterPredicateValue<>(30.0));
+        highTempFilter.setPredicate(highTemperaturePredicate);
+        AlarmCondition alarmCondition = new AlarmCondition();
+        alarmCondition.setCondition(Collections.singletonList(highTempFilter));
+        AlarmRule alarmRule = new AlarmRule();
+        alarmRule.setCondition(alarmCondition);
+        DeviceProfileAlarm dpa = new DeviceProfileAlarm();
+        dpa.setId("highTemperatureAlarmID");
+        dpa.setAlarmType("highTemperatureAlarm");
+        dpa.setCreateRules(new TreeMap<>(Collections.singletonMap(AlarmSeverity.CRITICAL, alarmRule)));
+        deviceProfileData.setAlarms(Collections.singletonList(dpa));
+        deviceProfile.setProfileData(deviceProfileData);
+        return deviceProfile;
+    }
+
+    private TbMsg createTelemetryMsg(int temperature) {
+        ObjectNode data = JacksonUtil.newObjectNode();
+        data.put("temperature", temperature);
+        return TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, JacksonUtil.toString(data), null, null);
+    }
+
+    private TbMsg captureStateLoadedMsg() {
+        ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx).tellSelf(msgCaptor.capture(), eq(0L));
+        TbMsg stateLoadedMsg = msgCaptor.getValue();
+        assertTrue(stateLoadedMsg.isTypeOf(TbMsgType.DEVICE_PROFILE_STATE_LOADED_SELF_MSG));
+        assertEquals(deviceId.getId().toString(), stateLoadedMsg.getData());
+        return stateLoadedMsg;
+    }
+
     private void init() throws TbNodeException {
+        init(JacksonUtil.newObjectNode());
+    }
+
+    private void init(ObjectNode configuration) throws TbNodeException {
         Mockito.when(ctx.getTenantId()).thenReturn(tenantId);
         Mockito.when(ctx.getDeviceProfileCache()).thenReturn(cache);
         Mockito.lenient().when(ctx.getTimeseriesService()).thenReturn(timeseriesService);
         Mockito.lenient().when(ctx.getAlarmService()).thenReturn(alarmService);
         Mockito.when(ctx.getDeviceService()).thenReturn(deviceService);
         Mockito.lenient().when(ctx.getAttributesService()).thenReturn(attributesService);
-        TbNodeConfiguration nodeConfiguration = new TbNodeConfiguration(JacksonUtil.newObjectNode());
+        TbNodeConfiguration nodeConfiguration = new TbNodeConfiguration(configuration);
         node = new TbDeviceProfileNode();
         node.init(ctx, nodeConfiguration);
     }
@@ -91,6 +91,7 @@ export class DefaultTenantProfileConfigurationComponent implements ControlValueA
       maxTbelExecutions: [null, [Validators.required, Validators.min(0)]],
       maxDPStorageDays: [null, [Validators.required, Validators.min(0)]],
       maxRuleNodeExecutionsPerMessage: [null, [Validators.required, Validators.min(0)]],
+      actorSchedulingWeight: [null, [Validators.min(0)]],
       maxEmails: [null, [Validators.required, Validators.min(0)]],
       maxSms: [null, []],
       smsEnabled: [null, []],
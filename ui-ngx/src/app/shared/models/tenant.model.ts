@@ -54,6 +54,7 @@ export interface DefaultTenantProfileConfiguration {
   maxTbelExecutions: number;
   maxDPStorageDays: number;
   maxRuleNodeExecutionsPerMessage: number;
+  actorSchedulingWeight?: number;
   maxEmails: number;
   maxSms: number;
   smsEnabled: boolean;
@@ -110,6 +111,7 @@ export function createTenantProfileConfiguration(type: TenantProfileType): Tenan
           maxTbelExecutions: 0,
           maxDPStorageDays: 0,
           maxRuleNodeExecutionsPerMessage: 0,
+          actorSchedulingWeight: 1,
           maxEmails: 0,
           maxSms: 0,
           smsEnabled: true,